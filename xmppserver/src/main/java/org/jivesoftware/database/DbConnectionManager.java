@@ -79,6 +79,12 @@ public class DbConnectionManager {
     private static final String SETTING_DATABASE_MAX_RETRIES = "database.maxRetries";
     private static final String SETTING_DATABASE_RETRY_DELAY = "database.retryDelay";
 
+    /**
+     * The maximum number of values to bind in a single {@code IN} clause. This keeps statements well below the
+     * limits that databases impose on the number of parameters and the number of list elements (1000 for Oracle).
+     */
+    public static final int IN_CLAUSE_BATCH_SIZE = 100;
+
     private static DatabaseType databaseType = DatabaseType.unknown;
 
     private static SchemaManager schemaManager = new SchemaManager();
@@ -169,14 +175,17 @@ public class DbConnectionManager {
         do {
             currentAttemptNumber++;
             try {
+                final long start = System.nanoTime();
                 Connection con = connectionProvider.getConnection();
                 if (con != null) {
+                    StatementProfiler.recordPoolWait(System.nanoTime() - start);
                     // Got one, lets hand it off.
-                    // Usually profiling is not enabled. So we return a normal 
-                    // connection unless profiling is enabled. If yes, wrap the
-                    // connection with a profiled connection.
+                    // Usually profiling is not enabled. So we return a connection
+                    // that is (possibly) sampled by the always-on statement profiler,
+                    // unless profiling is enabled. If yes, wrap the connection with a
+                    // profiled connection.
                     if (!profilingEnabled) {
-                        return con;
+                        return StatementProfiler.wrap(con);
                     } else {
                         return new ProfiledConnection(con); 
                     }
@@ -206,6 +215,27 @@ public class DbConnectionManager {
                 "The exception from the last attempt is as follows: " + lastException);
     }
 
+    /**
+     * Returns a parenthesized list of placeholders, to be appended to SQL that ends with {@code IN}. For example,
+     * three placeholders yield {@code (?,?,?)}.
+     *
+     * @param count the number of placeholders, which should not exceed {@link #IN_CLAUSE_BATCH_SIZE}.
+     * @return the placeholder list.
+     */
+    public static String getInClausePlaceholders(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one placeholder is required.");
+        }
+        final StringBuilder sb = new StringBuilder(count * 2 + 1).append('(');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('?');
+        }
+        return sb.append(')').toString();
+    }
+
     /**
      * Returns a Connection from the currently active connection provider that
      * is ready to participate in transactions (auto commit is set to false).
@@ -31,6 +31,9 @@ import java.time.Duration;
 /**
  * Default Jive connection provider, which uses an internal connection pool.<p>
  *
+ * Prepared statements are cached per pooled connection, so that statements that are executed repeatedly are only
+ * prepared once per connection.<p>
+ *
  * @author Jive Software
  */
 public class DefaultConnectionProvider implements ConnectionProvider {
@@ -53,6 +56,7 @@ public class DefaultConnectionProvider implements ConnectionProvider {
     private long refusedCount = 0;
     private PoolingDataSource<PoolableConnection> dataSource;
     private GenericObjectPool<PoolableConnection> connectionPool;
+    private int statementCacheSize = 50;
 
     /**
      * Maximum time a connection can be open before it's reopened.
@@ -106,6 +110,11 @@ public class DefaultConnectionProvider implements ConnectionProvider {
         poolableConnectionFactory.setValidationQuery(testSQL);
         poolableConnectionFactory.setValidationQueryTimeout((int)testTimeout.toSeconds());
         poolableConnectionFactory.setMaxConnLifetimeMillis((long) connectionTimeout.toMillis());
+        if (statementCacheSize > 0) {
+            // Cache prepared statements per connection. Closing a statement returns it to the cache of its connection.
+            poolableConnectionFactory.setPoolStatements(true);
+            poolableConnectionFactory.setMaxOpenPreparedStatements(statementCacheSize);
+        }
 
         final GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
         poolConfig.setTestOnBorrow(testBeforeUse);
@@ -383,6 +392,27 @@ public class DefaultConnectionProvider implements ConnectionProvider {
         this.testAfterUse = testAfterUse;
     }
 
+    /**
+     * Returns the maximum number of prepared statements that are cached for each pooled connection. Zero indicates
+     * that prepared statements are not cached.
+     *
+     * @return the size of the statement cache of each connection.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of prepared statements that are cached for each pooled connection. Zero disables the
+     * cache.
+     *
+     * @param statementCacheSize the size of the statement cache of each connection.
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        saveProperties();
+    }
+
     public boolean isMysqlUseUnicode() {
         return mysqlUseUnicode;
     }
@@ -406,6 +436,7 @@ public class DefaultConnectionProvider implements ConnectionProvider {
         timeBetweenEvictionRuns = Duration.ofMillis(JiveGlobals.getXMLProperty("database.defaultProvider.timeBetweenEvictionRuns", (int) (Duration.ofSeconds(30).toMillis())));
         minIdleTime = Duration.ofMillis(JiveGlobals.getXMLProperty("database.defaultProvider.minIdleTime", (int) (Duration.ofMinutes(15)).toMillis()));
         maxWaitTime = Duration.ofMillis(JiveGlobals.getXMLProperty("database.defaultProvider.maxWaitTime", (int) Duration.ofMillis(500).toMillis()));
+        statementCacheSize = JiveGlobals.getXMLProperty("database.defaultProvider.statementCacheSize", 50);
 
         // See if we should use Unicode under MySQL
         mysqlUseUnicode = Boolean.valueOf(JiveGlobals.getXMLProperty("database.mysql.useUnicode"));
@@ -442,6 +473,7 @@ public class DefaultConnectionProvider implements ConnectionProvider {
         JiveGlobals.setXMLProperty("database.defaultProvider.timeBetweenEvictionRuns", String.valueOf(timeBetweenEvictionRuns));
         JiveGlobals.setXMLProperty("database.defaultProvider.minIdleTime", String.valueOf(minIdleTime));
         JiveGlobals.setXMLProperty("database.defaultProvider.maxWaitTime", String.valueOf(maxWaitTime));
+        JiveGlobals.setXMLProperty("database.defaultProvider.statementCacheSize", Integer.toString(statementCacheSize));
 
         JiveGlobals.setXMLProperty("database.defaultProvider.minConnections", Integer.toString(minConnections));
         JiveGlobals.setXMLProperty("database.defaultProvider.maxConnections", Integer.toString(maxConnections));
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, that uses buckets of exponentially increasing size.
+ *
+ * Bucket {@code i} counts durations of at least 2<sup>i-1</sup> and less than 2<sup>i</sup> microseconds (bucket 0
+ * counts durations below one microsecond). Percentiles are therefore estimated with a precision of a factor two,
+ * which is sufficient to tell fast and slow operations apart, while recording a duration costs only a few atomic
+ * increments.
+ */
+public class LatencyHistogram
+{
+    static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, in nanoseconds.
+     */
+    public void record(final long nanos)
+    {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        totalNanos.add(value);
+        if (value > maxNanos.get()) {
+            maxNanos.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    static int bucketOf(final long nanos)
+    {
+        final long micros = nanos / 1000;
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * @return the number of recorded durations.
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all recorded durations.
+     */
+    public Duration getTotal()
+    {
+        return Duration.ofNanos(totalNanos.sum());
+    }
+
+    /**
+     * @return the average of all recorded durations, or zero if none were recorded.
+     */
+    public Duration getMean()
+    {
+        final long n = count.sum();
+        return n == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos.sum() / n);
+    }
+
+    /**
+     * @return the longest recorded duration.
+     */
+    public Duration getMax()
+    {
+        return Duration.ofNanos(maxNanos.get());
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations. The estimate is the upper bound of the bucket that contains
+     * the percentile, capped by the longest recorded duration.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the estimated percentile, or zero if no durations were recorded.
+     */
+    public Duration getPercentile(final double percentile)
+    {
+        long total = 0;
+        final long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                final long upperBoundNanos = i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) * 1000;
+                return Duration.ofNanos(Math.min(upperBoundNanos, maxNanos.get()));
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Removes all recorded durations.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+}
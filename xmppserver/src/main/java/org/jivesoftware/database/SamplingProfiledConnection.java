@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps a connection so that the execution times of its statements are recorded by {@link StatementProfiler}.
+ *
+ * Prepared statements are recorded using the SQL with which they were prepared. Plain statements are recorded using
+ * their SQL after {@link StatementProfiler#redact(String) redaction} of literals. Callable statements are not
+ * profiled.
+ */
+class SamplingProfiledConnection extends AbstractConnection {
+
+    SamplingProfiledConnection(Connection connection) {
+        super(connection);
+    }
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    private static <T> T time(String sql, SqlCall<T> call) throws SQLException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            StatementProfiler.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return new SampledStatement(connection.createStatement());
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        return new SampledStatement(connection.createStatement(resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        return new SampledStatement(connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return new SampledPreparedStatement(connection.prepareStatement(sql), sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return new SampledPreparedStatement(connection.prepareStatement(sql, resultSetType, resultSetConcurrency), sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        return new SampledPreparedStatement(connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return new SampledPreparedStatement(connection.prepareStatement(sql, autoGeneratedKeys), sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        return new SampledPreparedStatement(connection.prepareStatement(sql, columnIndexes), sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        return new SampledPreparedStatement(connection.prepareStatement(sql, columnNames), sql);
+    }
+
+    /**
+     * Times the execution of a plain statement.
+     */
+    private static class SampledStatement extends StatementWrapper {
+
+        private String batchSql;
+
+        SampledStatement(Statement stmt) {
+            super(stmt);
+        }
+
+        @Override
+        public boolean execute(String sql) throws SQLException {
+            return time(StatementProfiler.redact(sql), () -> stmt.execute(sql));
+        }
+
+        @Override
+        public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+            return time(StatementProfiler.redact(sql), () -> stmt.execute(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public ResultSet executeQuery(String sql) throws SQLException {
+            return time(StatementProfiler.redact(sql), () -> stmt.executeQuery(sql));
+        }
+
+        @Override
+        public int executeUpdate(String sql) throws SQLException {
+            return time(StatementProfiler.redact(sql), () -> stmt.executeUpdate(sql));
+        }
+
+        @Override
+        public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+            return time(StatementProfiler.redact(sql), () -> stmt.executeUpdate(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public void addBatch(String sql) throws SQLException {
+            if (batchSql == null) {
+                batchSql = "(batch) " + StatementProfiler.redact(sql);
+            }
+            stmt.addBatch(sql);
+        }
+
+        @Override
+        public void clearBatch() throws SQLException {
+            batchSql = null;
+            stmt.clearBatch();
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            final String sql = batchSql == null ? "(batch)" : batchSql;
+            batchSql = null;
+            return time(sql, stmt::executeBatch);
+        }
+    }
+
+    /**
+     * Times the execution of a prepared statement, using the SQL with which it was prepared.
+     */
+    private static class SampledPreparedStatement extends PreparedStatementWrapper {
+
+        private final String sql;
+
+        SampledPreparedStatement(PreparedStatement pstmt, String sql) {
+            super(pstmt);
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean execute() throws SQLException {
+            return time(sql, pstmt::execute);
+        }
+
+        @Override
+        public ResultSet executeQuery() throws SQLException {
+            return time(sql, pstmt::executeQuery);
+        }
+
+        @Override
+        public int executeUpdate() throws SQLException {
+            return time(sql, pstmt::executeUpdate);
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            return time(sql, pstmt::executeBatch);
+        }
+    }
+}
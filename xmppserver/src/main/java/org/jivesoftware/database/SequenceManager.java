@@ -16,19 +16,24 @@
 
 package org.jivesoftware.database;
 
-import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.jivesoftware.openfire.stats.i18nStatistic;
 import org.jivesoftware.util.JiveConstants;
-import org.jivesoftware.util.cache.Cache;
-import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +53,14 @@ import org.slf4j.LoggerFactory;
  * </ul>
  * Each sequence type that this class manages has a different block size value. Objects that aren't
  * created often have a block size of 1, while frequently created objects such as entries and
- * comments have larger block sizes.
+ * comments have larger block sizes. The configured block size is a minimum: when IDs of a type
+ * are drawn faster than one block per {@link #BLOCK_TARGET_DURATION}, the block size of that type
+ * is doubled (up to {@link #MAX_BLOCK_SIZE}), and halved again when demand decreases.
+ * <p>
+ * Each cluster node reserves its own blocks: a block is reserved by an update of the database row
+ * that is conditional on the value that was read, which is retried when another node reserved a
+ * block first. IDs are handed out from the current block without locking. The next block is
+ * reserved in the background before the current block is exhausted.</p>
  *
  * @author Matt Tucker
  * @author Bruce Ritchie
@@ -57,6 +69,33 @@ public class SequenceManager {
 
     private static final Logger Log = LoggerFactory.getLogger(SequenceManager.class);
 
+    /**
+     * The maximum block size to which the block size of a sequence is increased when IDs are drawn frequently.
+     */
+    public static final SystemProperty<Integer> MAX_BLOCK_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("sequence.block.max-size")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The duration that a block of IDs should last. Block sizes are increased when blocks are exhausted in less than
+     * half this duration, and decreased when they last longer than twice this duration.
+     */
+    public static final SystemProperty<Duration> BLOCK_TARGET_DURATION = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("sequence.block.target-duration")
+        .setDefaultValue(Duration.ofMinutes(1))
+        .setMinValue(Duration.ofSeconds(1))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum number of attempts to reserve a block, when other cluster nodes concurrently reserve blocks.
+     */
+    private static final int MAX_RESERVE_ATTEMPTS = 10;
+
     private static final String CREATE_ID =
             "INSERT INTO ofID (id, idType) VALUES (1, ?)";
 
@@ -76,7 +115,10 @@ public class SequenceManager {
         new SequenceManager(JiveConstants.MUC_MESSAGE_ID, 50);
     }
 
-    private static final Cache<Integer, Data> sequenceBlocks = CacheFactory.createCache("Sequences");
+    /**
+     * The number of blocks that were reserved in the database, for all types.
+     */
+    private static final AtomicLong blockFetchCount = new AtomicLong();
 
     /**
      * Returns the next ID of the specified type.
@@ -85,15 +127,12 @@ public class SequenceManager {
      * @return the next unique ID of the specified type.
      */
     public static long nextID(int type) {
-        if (managers.containsKey(type)) {
-            return managers.get(type).nextUniqueID();
-        }
-        else {
-            // Verify type is valid from the db, if so create an instance for the type
-            // And return the next unique id
-            SequenceManager manager = new SequenceManager(type, 1);
-            return manager.nextUniqueID();
+        SequenceManager manager = managers.get(type);
+        if (manager == null) {
+            // Create an instance for the type (that is registered only once, even when invoked concurrently).
+            manager = managers.computeIfAbsent(type, t -> new SequenceManager(t, 1, false));
         }
+        return manager.nextUniqueID();
     }
 
     /**
@@ -135,15 +174,60 @@ public class SequenceManager {
      */
     public static void setBlockSize(int type, int blockSize) {
         if (managers.containsKey(type)) {
-            managers.get(type).blockSize = blockSize;
+            final SequenceManager manager = managers.get(type);
+            manager.minBlockSize = blockSize;
+            manager.blockSize = blockSize;
         }
         else {
             new SequenceManager(type, blockSize);
         }
     }
 
+    /**
+     * Creates and adds statistics to statistic manager.
+     */
+    public static void initStatistics() {
+        StatisticsManager.getInstance().addStatistic("sequence_block_fetches", new i18nStatistic("sequence.block_fetches", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                final long total = blockFetchCount.get();
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+    }
+
     private final int type;
-    private int blockSize;
+
+    /**
+     * The configured block size, below which the block size is never decreased.
+     */
+    private volatile int minBlockSize;
+
+    /**
+     * The size of the next block that is to be reserved.
+     */
+    private volatile int blockSize;
+
+    /**
+     * The block from which IDs are currently handed out.
+     */
+    private final AtomicReference<Block> currentBlock = new AtomicReference<>();
+
+    /**
+     * A block that was reserved before the current block was exhausted, if any.
+     */
+    private final AtomicReference<Block> prefetchedBlock = new AtomicReference<>();
+
+    private final AtomicBoolean prefetching = new AtomicBoolean();
 
     /**
      * Creates a new DbSequenceManager.
@@ -152,9 +236,16 @@ public class SequenceManager {
      * @param size the number of id's to "checkout" at a time.
      */
     public SequenceManager(int seqType, int size) {
-        managers.put(seqType, this);
+        this(seqType, size, true);
+    }
+
+    private SequenceManager(int seqType, int size, boolean register) {
         this.type = seqType;
+        this.minBlockSize = size;
         this.blockSize = size;
+        if (register) {
+            managers.put(seqType, this);
+        }
     }
 
     /**
@@ -163,36 +254,119 @@ public class SequenceManager {
      * @return the next sequence number
      */
     public long nextUniqueID() {
-        final Lock lock = sequenceBlocks.getLock(type);
-        lock.lock();
-        try {
-            Data data = sequenceBlocks.get(type);
-            if (data == null || !(data.getCurrentID() < data.getMaxID())) {
-                data = getNextBlock();
+        while (true) {
+            final Block block = currentBlock.get();
+            if (block != null) {
+                final long id = block.nextID.getAndIncrement();
+                if (id < block.maxID) {
+                    if (id == block.prefetchID) {
+                        prefetch();
+                    }
+                    return id;
+                }
             }
+            replaceBlock(block);
+        }
+    }
+
+    /**
+     * Replaces an exhausted block with the prefetched block, or with a newly reserved block. When another thread
+     * already replaced the block, this method has no effect.
+     *
+     * @param exhausted the block that was exhausted (null if no block has been reserved yet).
+     */
+    private synchronized void replaceBlock(final Block exhausted) {
+        if (currentBlock.get() != exhausted) {
+            return;
+        }
+        if (exhausted != null) {
+            adaptBlockSize(exhausted);
+        }
+        Block next = prefetchedBlock.getAndSet(null);
+        if (next == null) {
+            next = reserveBlock(blockSize);
+        }
+        currentBlock.set(next);
+    }
+
+    /**
+     * Reserves the next block in the background, unless that is already in progress.
+     */
+    private void prefetch() {
+        if (!prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            TaskEngine.getInstance().submit(() -> {
+                try {
+                    if (prefetchedBlock.get() == null) {
+                        prefetchedBlock.compareAndSet(null, reserveBlock(blockSize));
+                    }
+                } catch (Exception e) {
+                    // The block is reserved when it is needed instead.
+                    Log.debug("Unable to prefetch a block of IDs of type {}", type, e);
+                } finally {
+                    prefetching.set(false);
+                }
+            });
+        } catch (Exception e) {
+            prefetching.set(false);
+            Log.debug("Unable to schedule the prefetch of a block of IDs of type {}", type, e);
+        }
+    }
 
-            final long id = data.getCurrentID();
-            data.setCurrentID(id + 1);
-            sequenceBlocks.put(type, data);
-            return id;
-        } finally {
-            lock.unlock();
+    /**
+     * Adjusts the size of the blocks that are reserved to the rate in which IDs are drawn.
+     *
+     * @param exhausted the block that was exhausted.
+     */
+    private void adaptBlockSize(final Block exhausted) {
+        final Duration target = BLOCK_TARGET_DURATION.getValue();
+        final Duration lifetime = Duration.ofNanos(System.nanoTime() - exhausted.reserved);
+        final int size = blockSize;
+        if (lifetime.compareTo(target.dividedBy(2)) < 0) {
+            blockSize = Math.max(minBlockSize, Math.min(MAX_BLOCK_SIZE.getValue(), size * 2));
+        } else if (lifetime.compareTo(target.multipliedBy(2)) > 0) {
+            blockSize = Math.max(minBlockSize, size / 2);
+        }
+        if (blockSize != size) {
+            Log.debug("Block size for IDs of type {} changed from {} to {}", type, size, blockSize);
         }
     }
 
     /**
-     * Performs a lookup to get the next available ID block. The algorithm is as follows:
+     * Reserves a block of IDs in the database. The algorithm is as follows:
      * <ol>
      * <li> Select currentID from appropriate db row.
      * <li> Increment id returned from db.
      * <li> Update db row with new id where id=old_id.
      * </ol>
+     * When the update does not affect the row, another cluster node reserved a block in the mean time, and the
+     * algorithm is repeated.
      *
-     * Calls to this method should only occur while a lock has already been acquired.
+     * @param size the number of IDs in the block.
+     * @return the reserved block.
+     */
+    private Block reserveBlock(final int size) {
+        for (int attempt = 1; attempt <= MAX_RESERVE_ATTEMPTS; attempt++) {
+            final Block block = tryReserveBlock(size);
+            if (block != null) {
+                blockFetchCount.incrementAndGet();
+                return block;
+            }
+            Log.debug("Another process reserved a block of IDs of type {} concurrently (attempt {} of {}).", type, attempt, MAX_RESERVE_ATTEMPTS);
+        }
+        throw new IllegalStateException("Failed at attempt to obtain an ID, aborting...");
+    }
+
+    /**
+     * Attempts to reserve a block of IDs in the database.
      *
-     * @return the next available ID block
+     * @param size the number of IDs in the block.
+     * @return the reserved block, or null when another process updated the sequence concurrently.
      */
-    private Data getNextBlock() {
+    // Package protected to be able to unit test this method.
+    Block tryReserveBlock(final int size) {
         Connection con = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -209,12 +383,18 @@ public class SequenceManager {
                 currentID = rs.getLong(1);
             }
             else {
-                createNewID(con, type);
+                try {
+                    createNewID(con, type);
+                } catch (SQLException e) {
+                    // The row is likely to have been created concurrently by another process.
+                    Log.debug("Unable to create the ID row for type {}", type, e);
+                    return null;
+                }
             }
             DbConnectionManager.fastcloseStmt(rs, pstmt);
 
             // Increment the id to define our block.
-            long newID = currentID + blockSize;
+            long newID = currentID + size;
             // The WHERE clause includes the last value of the id. This ensures
             // that an update will occur only if nobody else has performed an
             // update first.
@@ -222,16 +402,10 @@ public class SequenceManager {
             pstmt.setLong(1, newID);
             pstmt.setInt(2, type);
             pstmt.setLong(3, currentID);
-            // Check to see if the row was affected. If not, some other process
-            // already changed the original id that we read. This code should be
-            // called under a lock, so this is not supposed to happen. Throw a
-            // very verbose error if it does.
             if (pstmt.executeUpdate() == 1) {
-                final Data result = new Data(currentID, newID);
-                sequenceBlocks.put(type, result);
-                return result;
+                return new Block(currentID, newID);
             } else {
-                throw new IllegalStateException("Failed at attempt to obtain an ID, aborting...");
+                return null;
             }
         }
         catch (SQLException e) {
@@ -259,53 +433,28 @@ public class SequenceManager {
         }
     }
 
-    static class Data implements Serializable {
-        private long currentID;
-        private long maxID;
-
-        Data() { // for serialization.
-        }
-
-        public Data(long currentID, long maxID) {
-            this.currentID = currentID;
-            this.maxID = maxID;
-        }
-
-        public long getCurrentID() {
-            return currentID;
-        }
-
-        public void setCurrentID(long currentID) {
-            this.currentID = currentID;
-        }
-
-        public long getMaxID() {
-            return maxID;
-        }
-
-        public void setMaxID(long maxID) {
+    /**
+     * A block of IDs that is reserved by this node. IDs are handed out by incrementing {@link #nextID}; values that
+     * reach {@link #maxID} are not part of the block.
+     */
+    static final class Block {
+        final AtomicLong nextID;
+        final long maxID;
+
+        /**
+         * The ID that, when handed out, causes the next block to be reserved in the background.
+         */
+        final long prefetchID;
+
+        /**
+         * The moment at which the block was reserved, as given by {@link System#nanoTime()}.
+         */
+        final long reserved = System.nanoTime();
+
+        Block(long currentID, long maxID) {
+            this.nextID = new AtomicLong(currentID);
             this.maxID = maxID;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Data data = (Data) o;
-            return currentID == data.currentID && maxID == data.maxID;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(currentID, maxID);
-        }
-
-        @Override
-        public String toString() {
-            return "Data{" +
-                "currentID=" + currentID +
-                ", maxID=" + maxID +
-                '}';
+            this.prefetchID = maxID - Math.max(1, (maxID - currentID) / 4);
         }
     }
 }
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import org.jivesoftware.openfire.JMXManager;
+import org.jivesoftware.openfire.mbean.DatabaseProfiler;
+import org.jivesoftware.openfire.mbean.DatabaseProfilerMBean;
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.jivesoftware.openfire.stats.i18nStatistic;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Collects statistics on the execution of database statements, with an overhead that is low enough to keep it
+ * enabled on production systems.
+ *
+ * Unlike {@link ProfiledConnection}, which is enabled on demand and records every query in synchronized maps, this
+ * profiler records executions in lock-free counters and {@link LatencyHistogram histograms}, keyed by the SQL of the
+ * statement. For prepared statements, that SQL is the constant with placeholders that is used throughout Openfire,
+ * which means that values of bound parameters are never recorded. Literals in the SQL of plain statements are
+ * replaced by placeholders before they are recorded. Optionally, only a fraction of the connections is profiled.
+ *
+ * Executions that take longer than a configurable threshold are retained in a small log of slow queries.
+ */
+public final class StatementProfiler
+{
+    private static final Logger Log = LoggerFactory.getLogger(StatementProfiler.class);
+
+    /**
+     * Enables or disables the always-on statement profiler.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("database.profiler.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The percentage of database connections of which the statements are profiled.
+     */
+    public static final SystemProperty<Integer> SAMPLE_PERCENTAGE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("database.profiler.sample-percentage")
+        .setDefaultValue(100)
+        .setMinValue(0)
+        .setMaxValue(100)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The minimum execution time of a statement for it to be recorded in the slow query log.
+     */
+    public static final SystemProperty<Duration> SLOW_QUERY_THRESHOLD = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("database.profiler.slow-query-threshold")
+        .setDefaultValue(Duration.ofMillis(500))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The number of slow queries that are retained.
+     */
+    public static final SystemProperty<Integer> SLOW_QUERY_LOG_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("database.profiler.slow-query-log-size")
+        .setDefaultValue(50)
+        .setMinValue(0)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum number of distinct statements for which statistics are kept. Executions of other statements are
+     * combined under {@link #OTHER_STATEMENTS}.
+     */
+    public static final SystemProperty<Integer> MAX_STATEMENTS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("database.profiler.max-statements")
+        .setDefaultValue(1000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The key under which statements are recorded once {@link #MAX_STATEMENTS} has been reached.
+     */
+    public static final String OTHER_STATEMENTS = "(other statements)";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    private static final Map<String, StatementStatistics> statements = new ConcurrentHashMap<>();
+    private static final LatencyHistogram poolWait = new LatencyHistogram();
+    private static final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private static final LongAdder slowQueryCount = new LongAdder();
+    private static final AtomicBoolean initialized = new AtomicBoolean();
+
+    private StatementProfiler() {}
+
+    /**
+     * Registers the statistics and the MBean of the profiler. Subsequent invocations have no effect.
+     */
+    public static void initStatistics() {
+        if (!initialized.compareAndSet(false, true)) {
+            return;
+        }
+        StatisticsManager.getInstance().addStatistic("database_slow_queries", new i18nStatistic("database.slow_queries", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                final long total = slowQueryCount.sum();
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+        JMXManager.tryRegister(new DatabaseProfiler(), DatabaseProfilerMBean.OBJECT_NAME);
+    }
+
+    /**
+     * Wraps a connection so that the statements that it creates are profiled, if the connection is selected as part of
+     * the sample of profiled connections.
+     *
+     * @param connection the connection to wrap.
+     * @return a profiling wrapper, or the original connection if it is not to be profiled.
+     */
+    static Connection wrap(@Nonnull final Connection connection) {
+        if (!isSampled()) {
+            return connection;
+        }
+        return new SamplingProfiledConnection(connection);
+    }
+
+    static boolean isSampled() {
+        if (!ENABLED.getValue()) {
+            return false;
+        }
+        final int percentage = SAMPLE_PERCENTAGE.getValue();
+        return percentage >= 100 || (percentage > 0 && ThreadLocalRandom.current().nextInt(100) < percentage);
+    }
+
+    /**
+     * Records the time that was spent waiting for a connection from the connection provider.
+     *
+     * @param nanos the time waited, in nanoseconds.
+     */
+    static void recordPoolWait(final long nanos) {
+        if (ENABLED.getValue()) {
+            poolWait.record(nanos);
+        }
+    }
+
+    /**
+     * Records the execution of a statement.
+     *
+     * @param sql the SQL of the statement, which must not contain values of parameters.
+     * @param nanos the execution time, in nanoseconds.
+     * @param failed true if the execution threw an exception.
+     */
+    static void record(@Nonnull final String sql, final long nanos, final boolean failed) {
+        StatementStatistics statistics = statements.get(sql);
+        if (statistics == null) {
+            final String key = statements.size() < MAX_STATEMENTS.getValue() ? sql : OTHER_STATEMENTS;
+            statistics = statements.computeIfAbsent(key, StatementStatistics::new);
+        }
+        statistics.latency.record(nanos);
+        if (failed) {
+            statistics.errors.increment();
+        }
+
+        if (nanos >= SLOW_QUERY_THRESHOLD.getValue().toNanos()) {
+            slowQueryCount.increment();
+            final int logSize = SLOW_QUERY_LOG_SIZE.getValue();
+            final SlowQuery slowQuery = new SlowQuery(sql, Instant.now(), Duration.ofNanos(nanos), failed, Thread.currentThread().getName());
+            Log.debug("Slow database statement ({} ms): {}", slowQuery.getDuration().toMillis(), sql);
+            synchronized (slowQueries) {
+                slowQueries.addLast(slowQuery);
+                while (slowQueries.size() > logSize) {
+                    slowQueries.removeFirst();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces string and numeric literals in SQL by placeholders, so that the SQL of plain statements can be recorded
+     * without the values that it contains.
+     *
+     * @param sql the SQL to redact.
+     * @return the SQL, with literals replaced by '?'.
+     */
+    static String redact(@Nonnull final String sql) {
+        final String withoutStrings = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMERIC_LITERAL.matcher(withoutStrings).replaceAll("?");
+    }
+
+    /**
+     * @return the statistics of all profiled statements, sorted by the total time spent executing them, descending.
+     */
+    public static List<StatementStatistics> getStatementStatistics() {
+        final List<StatementStatistics> result = new ArrayList<>(statements.values());
+        result.sort(Comparator.comparing((StatementStatistics s) -> s.getLatency().getTotal()).reversed());
+        return result;
+    }
+
+    /**
+     * @return the most recent slow queries, oldest first.
+     */
+    public static List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    /**
+     * @return the total number of slow queries that were recorded.
+     */
+    public static long getSlowQueryCount() {
+        return slowQueryCount.sum();
+    }
+
+    /**
+     * @return the time that was spent waiting for connections from the connection provider.
+     */
+    public static LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    /**
+     * Removes all collected statistics.
+     */
+    public static void reset() {
+        statements.clear();
+        poolWait.reset();
+        slowQueryCount.reset();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Execution statistics of one statement.
+     */
+    public static final class StatementStatistics {
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        StatementStatistics(@Nonnull final String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * @return the SQL of the statement, with placeholders instead of values.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return the execution times of the statement.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the number of executions that threw an exception.
+         */
+        public long getErrorCount() {
+            return errors.sum();
+        }
+    }
+
+    /**
+     * An execution of a statement that took longer than {@link #SLOW_QUERY_THRESHOLD}.
+     */
+    public static final class SlowQuery {
+        private final String sql;
+        private final Instant timestamp;
+        private final Duration duration;
+        private final boolean failed;
+        private final String threadName;
+
+        SlowQuery(@Nonnull final String sql, @Nonnull final Instant timestamp, @Nonnull final Duration duration, final boolean failed, @Nonnull final String threadName) {
+            this.sql = sql;
+            this.timestamp = timestamp;
+            this.duration = duration;
+            this.failed = failed;
+            this.threadName = threadName;
+        }
+
+        /**
+         * @return the SQL of the statement, with placeholders instead of values.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return the moment at which the execution finished.
+         */
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the execution time.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return true if the execution threw an exception.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the name of the thread that executed the statement.
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + " " + duration.toMillis() + " ms" + (failed ? " (failed)" : "") + " [" + threadName + "] " + sql;
+        }
+    }
+}
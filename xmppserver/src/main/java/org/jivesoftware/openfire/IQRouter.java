@@ -31,7 +31,11 @@ import org.jivesoftware.openfire.session.DomainPair;
 import org.jivesoftware.openfire.session.LocalClientSession;
 import org.jivesoftware.openfire.session.Session;
 import org.jivesoftware.openfire.user.UserManager;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 import org.jivesoftware.util.LocaleUtils;
+import org.jivesoftware.util.NamedThreadFactory;
+import org.jivesoftware.util.SystemProperty;
 import org.jivesoftware.util.TaskEngine;
 import org.jivesoftware.util.cache.Cache;
 import org.jivesoftware.util.cache.CacheFactory;
@@ -41,8 +45,11 @@ import org.xmpp.component.IQResultListener;
 import org.xmpp.packet.*;
 
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Routes iq packets throughout the server. Routing is based on the recipient
@@ -56,13 +63,27 @@ public class IQRouter extends BasicModule {
 
     private static final Logger Log = LoggerFactory.getLogger(IQRouter.class);
 
+    /**
+     * The precision with which the timeouts of IQ result listeners are handled.
+     */
+    public static final SystemProperty<Duration> RESULT_TIMEOUT_TICK = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.iqrouter.result-timeout.tick")
+        .setDefaultValue(Duration.ofMillis(100))
+        .setMinValue(Duration.ofMillis(1))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(false)
+        .build();
+
     private RoutingTable routingTable;
     private MulticastRouter multicastRouter;
     private String serverName;
     private final List<IQHandler> iqHandlers = new ArrayList<>();
     private final Map<String, IQHandler> namespace2Handlers = new ConcurrentHashMap<>();
     private final Map<String, IQResultListener> resultListeners = new ConcurrentHashMap<>();
-    private final Map<String, Long> resultTimeout = new ConcurrentHashMap<>();
+    private final Map<String, Timeout> resultTimeout = new ConcurrentHashMap<>();
+    private final HashedWheelTimer resultTimeoutTimer = new HashedWheelTimer(
+        new NamedThreadFactory("iq-result-timeout-", Executors.defaultThreadFactory(), true, Thread.NORM_PRIORITY),
+        RESULT_TIMEOUT_TICK.getValue().toMillis(), TimeUnit.MILLISECONDS, 512);
     private final Cache<String, NodeID> resultPending = CacheFactory.createCache("Routing Result Listeners");
     private SessionManager sessionManager;
     private UserManager userManager;
@@ -227,8 +248,8 @@ public class IQRouter extends BasicModule {
      *
      * Note that the listener will remain active for <em>at least</em> the
      * specified timeout value. The listener will not be removed at the exact
-     * moment it times out. Instead, purging of timed out listeners is a
-     * periodic scheduled job.
+     * moment it times out, but shortly after (within the precision defined by
+     * {@link #RESULT_TIMEOUT_TICK}).
      *
      * @param id
      *            the id of the IQ packet being sent from the server to an XMPP
@@ -243,13 +264,48 @@ public class IQRouter extends BasicModule {
     public void addIQResultListener(String id, IQResultListener listener, long timeoutmillis) {
         resultListeners.put(id, listener);
         resultPending.put(id, XMPPServer.getInstance().getNodeID());
-        resultTimeout.put(id, System.currentTimeMillis() + timeoutmillis);
+        // Notify the listener from the task engine, as the timer's thread is shared by all timeouts.
+        final Timeout timeout = resultTimeoutTimer.newTimeout(expired -> TaskEngine.getInstance().submit(() -> timeout(id, listener, expired)), timeoutmillis, TimeUnit.MILLISECONDS);
+        final Timeout previous = resultTimeout.put(id, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+        if (timeout.isExpired()) {
+            // The timeout expired before it was registered, and could not be removed when it was processed.
+            resultTimeout.remove(id, timeout);
+        }
+    }
+
+    /**
+     * Removes a listener that waits for a result to an IQ stanza that has
+     * timed out, and notifies it of the timeout.
+     *
+     * @param id the id of the IQ packet.
+     * @param listener the listener that timed out.
+     * @param timeout the timeout that expired.
+     */
+    private void timeout(String id, IQResultListener listener, Timeout timeout) {
+        // Do not act on a listener (or timeout) that has been replaced by another for the same ID.
+        if (resultListeners.remove(id, listener)) {
+            resultTimeout.remove(id, timeout);
+            try {
+                listener.answerTimeout(id);
+            }
+            catch (Exception e) {
+                Log.error("Error processing timeout of IQ result listener for packet ID: " + id, e);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        resultTimeoutTimer.stop();
     }
 
     @Override
     public void initialize(XMPPServer server) {
         super.initialize(server);
-        TaskEngine.getInstance().scheduleAtFixedRate(new TimeoutTask(), Duration.ofSeconds(5), Duration.ofSeconds(5));
         serverName = server.getServerInfo().getXMPPDomain();
         routingTable = server.getRoutingTable();
         multicastRouter = server.getMulticastRouter();
@@ -305,7 +361,10 @@ public class IQRouter extends BasicModule {
             // of the cluster.
             IQResultListener iqResultListener = resultListeners.remove(packet.getID());
             if (iqResultListener != null) {
-                resultTimeout.remove(packet.getID());
+                final Timeout timeout = resultTimeout.remove(packet.getID());
+                if (timeout != null) {
+                    timeout.cancel();
+                }
                 resultPending.remove(packet.getID());
                 try {
                     iqResultListener.receivedAnswer(packet);
@@ -508,51 +567,4 @@ public class IQRouter extends BasicModule {
             sendErrorPacket( iq, PacketError.Condition.service_unavailable );
         }
     }
-
-    /**
-     * Timer task that will remove Listeners that wait for results to IQ stanzas
-     * that have timed out. Time out values can be set to each listener
-     * individually by adjusting the timeout value in the third parameter of
-     * {@link IQRouter#addIQResultListener(String, IQResultListener, long)}.
-     *
-     * @author Guus der Kinderen, guus@nimbuzz.com
-     */
-    private class TimeoutTask extends TimerTask {
-
-        /**
-         * Iterates over and removes all timed out results.<p>
-         *
-         * The map that keeps track of timeout values is ordered by timeout
-         * date. This way, iteration can be stopped as soon as the first value
-         * has been found that didn't timeout yet.
-         */
-        @Override
-        public void run() {
-            // Use an Iterator to allow changes to the Map that is backing
-            // the Iterator.
-            final Iterator<Map.Entry<String, Long>> it = resultTimeout.entrySet().iterator();
-
-            while (it.hasNext()) {
-                final Map.Entry<String, Long> pointer = it.next();
-
-                if (System.currentTimeMillis() < pointer.getValue()) {
-                    // This entry has not expired yet. Ignore it.
-                    continue;
-                }
-
-                final String packetId = pointer.getKey();
-
-                // remove this listener from the list
-                final IQResultListener listener = resultListeners.remove(packetId);
-                if (listener != null) {
-                    // notify listener of the timeout.
-                    listener.answerTimeout(packetId);
-                }
-
-                // remove the packet from the list that's used to track
-                // timeouts
-                it.remove();
-            }
-        }
-    }
 }
@@ -23,6 +23,7 @@ import org.jivesoftware.database.DbConnectionManager;
 import org.jivesoftware.database.SequenceManager;
 import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.event.UserEventDispatcher;
 import org.jivesoftware.openfire.event.UserEventListener;
 import org.jivesoftware.openfire.user.User;
@@ -509,6 +510,12 @@ public class OfflineMessageStore extends BasicModule implements UserEventListene
         //Do nothing
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Registering the user event listener and scheduling the cleanup task do not depend on other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
@@ -22,6 +22,8 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.jivesoftware.database.DbConnectionManager;
 import org.jivesoftware.database.JNDIDataSourceProvider;
+import org.jivesoftware.database.SequenceManager;
+import org.jivesoftware.database.StatementProfiler;
 import org.jivesoftware.openfire.admin.AdminManager;
 import org.jivesoftware.openfire.archive.ArchiveManager;
 import org.jivesoftware.openfire.audit.AuditManager;
@@ -34,6 +36,7 @@ import org.jivesoftware.openfire.commands.AdHocCommandHandler;
 import org.jivesoftware.openfire.component.InternalComponentManager;
 import org.jivesoftware.openfire.container.AdminConsolePlugin;
 import org.jivesoftware.openfire.container.Module;
+import org.jivesoftware.openfire.container.ModuleStarter;
 import org.jivesoftware.openfire.container.PluginManager;
 import org.jivesoftware.openfire.disco.*;
 import org.jivesoftware.openfire.entitycaps.EntityCapabilitiesManager;
@@ -47,6 +50,7 @@ import org.jivesoftware.openfire.keystore.IdentityStore;
 import org.jivesoftware.openfire.lockout.LockOutManager;
 import org.jivesoftware.openfire.mediaproxy.MediaProxyService;
 import org.jivesoftware.openfire.muc.MultiUserChatManager;
+import org.jivesoftware.openfire.net.AdmissionController;
 import org.jivesoftware.openfire.net.MulticastDNSService;
 import org.jivesoftware.openfire.net.ServerTrafficCounter;
 import org.jivesoftware.openfire.pep.IQPEPHandler;
@@ -66,6 +70,7 @@ import org.jivesoftware.openfire.spi.*;
 import org.jivesoftware.openfire.transport.TransportHandler;
 import org.jivesoftware.openfire.update.UpdateManager;
 import org.jivesoftware.openfire.user.User;
+import org.jivesoftware.openfire.user.UserDataPreloader;
 import org.jivesoftware.openfire.user.UserManager;
 import org.jivesoftware.openfire.vcard.VCardManager;
 import org.jivesoftware.util.*;
@@ -86,6 +91,7 @@ import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
@@ -173,6 +179,7 @@ public class XMPPServer {
     private ClassLoader loader;
 
     private PluginManager pluginManager;
+    private ModuleStarter moduleStarter;
     private InternalComponentManager componentManager;
     private RemoteSessionLocator remoteSessionLocator;
 
@@ -676,6 +683,10 @@ public class XMPPServer {
             }
             // Initialize statistics
             ServerTrafficCounter.initStatistics();
+            AdmissionController.initStatistics();
+            SequenceManager.initStatistics();
+            StatementProfiler.initStatistics();
+            TaskEngine.getInstance().initStatistics();
 
             // Load plugins (when in setup mode only the admin console will be loaded)
             pluginManager.start();
@@ -746,13 +757,16 @@ public class XMPPServer {
     }
 
     private void loadModules() {
-        // Load boot modules
+        // Load boot modules. The first modules can be started concurrently (they declare their start dependencies), and
+        // are therefore kept together: a module that does not declare its start dependencies waits for all modules
+        // that were loaded before it.
         loadModule(RoutingTableImpl.class.getName());
-        loadModule(AuditManagerImpl.class.getName());
         loadModule(RosterManager.class.getName());
+        loadModule(PresenceManagerImpl.class.getName());
+        loadModule(OfflineMessageStore.class.getName());
+        loadModule(AuditManagerImpl.class.getName());
         loadModule(PrivateStorage.class.getName());
         // Load core modules
-        loadModule(PresenceManagerImpl.class.getName());
         loadModule(SessionManager.class.getName());
         loadModule(PacketRouterImpl.class.getName());
         loadModule(IQRouter.class.getName());
@@ -763,7 +777,6 @@ public class XMPPServer {
         loadModule(PacketDelivererImpl.class.getName());
         loadModule(TransportHandler.class.getName());
         loadModule(OfflineMessageStrategy.class.getName());
-        loadModule(OfflineMessageStore.class.getName());
         loadModule(VCardManager.class.getName());
         // Load standard modules
         loadModule(IQBindHandler.class.getName());
@@ -801,6 +814,7 @@ public class XMPPServer {
         loadModule(EntityCapabilitiesManager.class.getName());
         loadModule(SoftwareVersionManager.class.getName());
         loadModule(SoftwareServerVersionManager.class.getName());
+        loadModule(UserDataPreloader.class.getName());
 
         // Load this module always last since we don't want to start listening for clients
         // before the rest of the modules have been started
@@ -828,9 +842,13 @@ public class XMPPServer {
     }
 
     private void initModules() {
-        for (Module module : modules.values()) {
+        moduleStarter = new ModuleStarter();
+        final long initializationStart = System.nanoTime();
+        for (Module module : new ArrayList<>(modules.values())) {
             try {
+                final long start = System.nanoTime();
                 module.initialize(this);
+                moduleStarter.recordInitialization(module, Duration.ofNanos(System.nanoTime() - start));
             }
             catch (Exception e) {
                 e.printStackTrace();
@@ -842,6 +860,8 @@ public class XMPPServer {
             }
         }
 
+        moduleStarter.recordTotalInitialization(Duration.ofNanos(System.nanoTime() - initializationStart));
+
         // Register modules with service discovery provides where applicable.
         for (Module module : modules.values() )
         {
@@ -880,15 +900,17 @@ public class XMPPServer {
      * start them.</p>
      */
     private void startModules() {
-        for (Module module : modules.values()) {
-            try {
-                logger.debug( "Starting module: " + module.getName() );
-                module.start();
-            }
-            catch (Exception e) {
-                logger.error( "An exception occurred while starting module '{}'.", module.getName(), e );
-            }
-        }
+        moduleStarter.start(new ArrayList<>(modules.values()));
+    }
+
+    /**
+     * Returns the object that started the modules of this server, which provides the time that it took to initialize
+     * and start each module.
+     *
+     * @return the module starter, or null if the modules have not been initialized (eg: in setup mode).
+     */
+    public ModuleStarter getModuleStarter() {
+        return moduleStarter;
     }
 
     /**
@@ -18,6 +18,8 @@ package org.jivesoftware.openfire.container;
 
 import org.jivesoftware.openfire.XMPPServer;
 
+import java.util.Set;
+
 /**
  * Logical, server-managed entities must implement this interface. A module
  * represents an operational unit and may contain zero or more services
@@ -68,6 +70,22 @@ public interface Module {
      */
     void start();
 
+    /**
+     * Returns the modules that need to have been started before this module can be started.
+     *
+     * By default, a module is started only after all modules that were loaded before it have been started. A module
+     * that returns a non-null value declares that it can be started concurrently with other modules, as soon as the
+     * modules in the returned set, that were loaded before it, have been started. Modules that do not declare their
+     * dependencies are still started only after all modules that were loaded before them.
+     *
+     * @return the modules that need to be started first, or null if this module must be started after all modules
+     *         that were loaded before it.
+     * @see ModuleStarter
+     */
+    default Set<Class<? extends Module>> getStartDependencies() {
+        return null;
+    }
+
     /**
      * Stop the module. The module should attempt to free up threads
      * and prepare for either another call to initialize (reconfigure the module)
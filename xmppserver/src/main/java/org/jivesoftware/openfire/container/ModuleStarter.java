@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.container;
+
+import org.jivesoftware.util.NamedThreadFactory;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Starts the modules of the server, and keeps track of the time that it took to initialize and start each of them.
+ *
+ * Modules are started in the order in which they were loaded. A module that {@link Module#getStartDependencies()
+ * declares its dependencies} is started on a separate thread, as soon as the modules that it depends on (and all
+ * modules that do not declare dependencies and were loaded before it) have been started. Modules that do not declare
+ * their dependencies are started on the thread that invokes {@link #start(Collection)}, after all modules that were
+ * loaded before them have been started. This retains the original, sequential startup order for all modules that do
+ * not opt in to concurrent startup.
+ */
+public class ModuleStarter {
+
+    private static final Logger Log = LoggerFactory.getLogger(ModuleStarter.class);
+
+    /**
+     * Enables or disables starting modules that declare their dependencies concurrently.
+     */
+    public static final SystemProperty<Boolean> PARALLEL_START_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.modules.parallel-start.enabled")
+        .setDefaultValue(true)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum number of modules that are started concurrently.
+     */
+    public static final SystemProperty<Integer> PARALLEL_START_THREADS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.modules.parallel-start.threads")
+        .setDefaultValue(4)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The number of slowest modules that are named in the startup summary in the log.
+     */
+    private static final int SLOWEST_MODULES_LOGGED = 5;
+
+    private final Map<String, Duration> initializationTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Duration> startTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile Duration totalInitializationTime = Duration.ZERO;
+    private volatile Duration totalStartTime = Duration.ZERO;
+
+    /**
+     * Records the time that it took to initialize a module.
+     *
+     * @param module the module that was initialized.
+     * @param duration the time that the invocation of {@link Module#initialize} took.
+     */
+    public void recordInitialization(@Nonnull final Module module, @Nonnull final Duration duration) {
+        initializationTimes.put(module.getName(), duration);
+        Log.debug("Initialized module '{}' in {} ms.", module.getName(), duration.toMillis());
+    }
+
+    /**
+     * Records the time that it took to initialize all modules.
+     *
+     * @param duration the time that the initialization of all modules took.
+     */
+    public void recordTotalInitialization(@Nonnull final Duration duration) {
+        totalInitializationTime = duration;
+    }
+
+    /**
+     * Starts modules. Exceptions thrown by a module are logged, and do not prevent other modules (including the
+     * modules that depend on it) from being started. This method returns after all modules have been started.
+     *
+     * @param modules the modules to start, in the order in which they were loaded.
+     */
+    public void start(@Nonnull final Collection<Module> modules) {
+        final long start = System.nanoTime();
+        final boolean parallel = PARALLEL_START_ENABLED.getValue();
+        final ExecutorService executor = parallel
+            ? Executors.newFixedThreadPool(PARALLEL_START_THREADS.getValue(), new NamedThreadFactory("module-startup-", null, true, null))
+            : null;
+        try {
+            final Map<Class<?>, CompletableFuture<Void>> started = new HashMap<>();
+            final List<CompletableFuture<Void>> running = new ArrayList<>();
+            for (final Module module : modules) {
+                final Set<Class<? extends Module>> dependencies = module.getStartDependencies();
+                if (executor == null || dependencies == null) {
+                    // Wait for all modules that were loaded before this one.
+                    awaitAll(running);
+                    running.clear();
+                    startModule(module);
+                    started.put(module.getClass(), CompletableFuture.completedFuture(null));
+                } else {
+                    final CompletableFuture<?>[] prerequisites = dependencies.stream()
+                        .map(started::get)
+                        .filter(future -> future != null)
+                        .toArray(CompletableFuture[]::new);
+                    final CompletableFuture<Void> future = CompletableFuture.allOf(prerequisites)
+                        .handle((result, throwable) -> null)
+                        .thenRunAsync(() -> startModule(module), executor);
+                    started.put(module.getClass(), future);
+                    running.add(future);
+                }
+            }
+            awaitAll(running);
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        totalStartTime = Duration.ofNanos(System.nanoTime() - start);
+        logSummary();
+    }
+
+    private static void awaitAll(@Nonnull final List<CompletableFuture<Void>> futures) {
+        for (final CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (final Exception e) {
+                // Exceptions of modules are logged when they occur.
+            }
+        }
+    }
+
+    private void startModule(@Nonnull final Module module) {
+        final long start = System.nanoTime();
+        try {
+            Log.debug("Starting module: {}", module.getName());
+            module.start();
+        } catch (final Exception e) {
+            Log.error("An exception occurred while starting module '{}'.", module.getName(), e);
+        }
+        final Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        startTimes.put(module.getName(), duration);
+        Log.debug("Started module '{}' in {} ms.", module.getName(), duration.toMillis());
+    }
+
+    private void logSummary() {
+        final Map<String, Duration> totals = getTotalTimes();
+        final String slowest = totals.entrySet().stream()
+            .sorted(Map.Entry.<String, Duration>comparingByValue().reversed())
+            .limit(SLOWEST_MODULES_LOGGED)
+            .map(entry -> entry.getKey() + " (" + entry.getValue().toMillis() + " ms)")
+            .collect(Collectors.joining(", "));
+        Log.info("Initialized {} modules in {} ms and started them in {} ms. Slowest modules: {}",
+            totals.size(), totalInitializationTime.toMillis(), totalStartTime.toMillis(), slowest);
+    }
+
+    /**
+     * @return the time that it took to initialize each module, by module name, in the order of initialization.
+     */
+    public Map<String, Duration> getInitializationTimes() {
+        synchronized (initializationTimes) {
+            return new LinkedHashMap<>(initializationTimes);
+        }
+    }
+
+    /**
+     * @return the time that it took to start each module, by module name, in the order in which modules finished
+     *         starting.
+     */
+    public Map<String, Duration> getStartTimes() {
+        synchronized (startTimes) {
+            return new LinkedHashMap<>(startTimes);
+        }
+    }
+
+    /**
+     * @return the sum of the time that it took to initialize and to start each module, by module name, in the order
+     *         of initialization.
+     */
+    public Map<String, Duration> getTotalTimes() {
+        final Map<String, Duration> result = getInitializationTimes();
+        getStartTimes().forEach((name, duration) -> result.merge(name, duration, Duration::plus));
+        return result;
+    }
+
+    /**
+     * @return the time that it took to initialize all modules.
+     */
+    public Duration getTotalInitializationTime() {
+        return totalInitializationTime;
+    }
+
+    /**
+     * @return the time that it took to start all modules. When modules are started concurrently, this is less than
+     *         the sum of the start times of all modules.
+     */
+    public Duration getTotalStartTime() {
+        return totalStartTime;
+    }
+}
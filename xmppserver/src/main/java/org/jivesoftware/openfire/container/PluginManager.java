@@ -36,6 +36,7 @@ import java.io.InputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.jar.JarFile;
@@ -111,6 +112,9 @@ public class PluginManager
     @GuardedBy("this")
     private final Map<String, Integer> failureToLoadCount = new HashMap<>();
 
+    // The time it took to extract and load each plugin, by canonical name.
+    private final Map<String, Duration> pluginLoadTimes = Collections.synchronizedMap(new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+
     private final PluginMonitor pluginMonitor;
     private boolean executed = false;
 
@@ -451,13 +455,78 @@ public class PluginManager
         return executed;
     }
 
+    /**
+     * Returns the time that it took to load each plugin that is currently loaded. This includes the time that it took
+     * to extract the plugin archive, if it was extracted by the current instance of Openfire.
+     *
+     * @return the load time of each plugin, by canonical name.
+     */
+    public Map<String, Duration> getPluginLoadTimes()
+    {
+        synchronized ( pluginLoadTimes )
+        {
+            return new TreeMap<>( pluginLoadTimes );
+        }
+    }
+
+    /**
+     * Adds time that was spent to load a plugin, outside of {@link #loadPlugin(String, Path, PluginClassLoader)}, for
+     * example to extract its archive or to create its class loader.
+     *
+     * @param canonicalName the canonical name of the plugin.
+     * @param duration the time that was spent.
+     */
+    void addPluginLoadTime( String canonicalName, Duration duration )
+    {
+        pluginLoadTimes.merge( canonicalName, duration, Duration::plus );
+    }
+
+    /**
+     * Discards the time that was spent to load a plugin, for example because the plugin could not be loaded.
+     *
+     * @param canonicalName the canonical name of the plugin.
+     */
+    void removePluginLoadTime( String canonicalName )
+    {
+        pluginLoadTimes.remove( canonicalName );
+    }
+
+    /**
+     * Creates a class loader for a plugin that does not have a parent plugin. This opens all JAR files of the plugin,
+     * which is why it is done outside the lock that is held while loading the plugin.
+     *
+     * @param pluginDir the plugin directory.
+     * @return the class loader.
+     */
+    static PluginClassLoader createClassLoader( Path pluginDir )
+    {
+        final PluginClassLoader pluginLoader = new PluginClassLoader();
+        pluginLoader.addDirectory( pluginDir.toFile() );
+        return pluginLoader;
+    }
+
     /**
      * Loads a plugin.
      *
      * @param pluginDir the plugin directory.
      */
-    synchronized boolean loadPlugin( String canonicalName, Path pluginDir )
+    boolean loadPlugin( String canonicalName, Path pluginDir )
     {
+        return loadPlugin( canonicalName, pluginDir, null );
+    }
+
+    /**
+     * Loads a plugin, using a class loader that has been created for it already, if one is provided. The class loader
+     * is used only if the plugin does not have a parent plugin, and it is not used if loading of the plugin is skipped.
+     * The caller should check if the plugin has been loaded after this method returns, and dispose of the class loader
+     * if it has not.
+     *
+     * @param pluginDir the plugin directory.
+     * @param preparedLoader a class loader created by {@link #createClassLoader(Path)}, or null.
+     */
+    synchronized boolean loadPlugin( String canonicalName, Path pluginDir, PluginClassLoader preparedLoader )
+    {
+        final long start = System.nanoTime();
         final PluginMetadata metadata = PluginMetadata.getInstance( pluginDir );
         pluginMetadata.put( canonicalName, metadata );
 
@@ -556,16 +625,21 @@ public class PluginManager
                     return false;
                 }
                 pluginLoader = classloaders.get( parentPlugin );
+
+                // Add the plugin sources to the classloaded.
+                pluginLoader.addDirectory( pluginDir.toFile() );
+            }
+            else if ( preparedLoader != null )
+            {
+                // This is not a child plugin, and a class loader has been created for it already.
+                pluginLoader = preparedLoader;
             }
             else
             {
                 // This is not a child plugin, so create a new class loader.
-                pluginLoader = new PluginClassLoader();
+                pluginLoader = createClassLoader( pluginDir );
             }
 
-            // Add the plugin sources to the classloaded.
-            pluginLoader.addDirectory( pluginDir.toFile() );
-
             // Initialise a logging context, if necessary
             final Path path = pluginDir.resolve("classes/log4j2.xml");
             if (Files.isRegularFile(path)) {
@@ -691,10 +765,11 @@ public class PluginManager
                 AdminConsole.addModel( canonicalName, adminElement );
             }
             firePluginCreatedEvent( canonicalName, plugin );
+            addPluginLoadTime( canonicalName, Duration.ofNanos( System.nanoTime() - start ) );
             if (metadata.getVersion() != null) {
-                Log.info( "Successfully loaded plugin '{}-{}'.", canonicalName, metadata.getVersion());
+                Log.info( "Successfully loaded plugin '{}-{}' in {} ms.", canonicalName, metadata.getVersion(), pluginLoadTimes.get( canonicalName ).toMillis() );
             } else {
-                Log.info( "Successfully loaded plugin '{}'.", canonicalName);
+                Log.info( "Successfully loaded plugin '{}' in {} ms.", canonicalName, pluginLoadTimes.get( canonicalName ).toMillis() );
             }
             return true;
         }
@@ -823,6 +898,7 @@ public class PluginManager
         Log.debug( "Unloading plugin '{}'...", canonicalName );
 
         failureToLoadCount.remove( canonicalName );
+        removePluginLoadTime( canonicalName );
 
         Plugin plugin = pluginsLoaded.get( canonicalName );
         if ( plugin != null )
@@ -18,6 +18,7 @@ package org.jivesoftware.openfire.container;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
@@ -25,8 +26,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipFile;
@@ -36,6 +41,7 @@ import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.NamedThreadFactory;
 import org.jivesoftware.util.PropertyEventDispatcher;
 import org.jivesoftware.util.PropertyEventListener;
+import org.jivesoftware.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,12 +50,21 @@ import org.slf4j.LoggerFactory;
  * extracts them if they haven't already been extracted. Then, any new plugin directories are loaded, using the
  * PluginManager.
  *
+ * When a plugin JAR file is extracted, its checksum is stored in the plugin directory. A directory is reused when the
+ * JAR file is modified later, but its checksum did not change. Independent plugins are extracted, and their class
+ * loaders created, in parallel. Child plugins are loaded as soon as their parent plugin has been loaded.
+ *
  * @author Guus der Kinderen, guus.der.kinderen@gmail.com
  */
 public class PluginMonitor implements PropertyEventListener
 {
     private static final Logger Log = LoggerFactory.getLogger( PluginMonitor.class );
 
+    /**
+     * The name of the file, in the directory of an extracted plugin, that holds the checksum of the plugin JAR file.
+     */
+    static final String CHECKSUM_FILENAME = ".plugin-archive.sha256";
+
     private final PluginManager pluginManager;
 
     private ScheduledExecutorService executor;
@@ -206,6 +221,13 @@ public class PluginMonitor implements PropertyEventListener
             synchronized ( PluginMonitor.this )
             {
                 isTaskRunning = true;
+
+                // Plugins could be processed in parallel. This is likely to be beneficial during the first execution
+                // of this monitor, as during later executions, most plugins will likely already be loaded.
+                final int parallelProcessMax = JiveGlobals.getIntProperty("plugins.loading.max-parallel", 4);
+                final int parallelProcessCount = (pluginManager.isExecuted() ? 1 : parallelProcessMax);
+                final ThreadFactory threadFactory = new NamedThreadFactory("PluginMonitorExec-", Executors.defaultThreadFactory(), false, Thread.NORM_PRIORITY);
+                final ExecutorService executorService = Executors.newFixedThreadPool(parallelProcessCount, threadFactory);
                 try
                 {
                     // The directory that contains all plugins.
@@ -219,6 +241,9 @@ public class PluginMonitor implements PropertyEventListener
                     // Turn the list of JAR/WAR files into a set so that we can do lookups.
                     final Set<String> jarSet = new HashSet<>();
 
+                    // The plugin files that need to be exploded.
+                    final Collection<Callable<Boolean>> extractions = new ArrayList<>();
+
                     // Explode all plugin files that have not yet been exploded (or need to be re-exploded).
                     try ( final DirectoryStream<Path> ds = Files.newDirectoryStream( pluginsDirectory, new DirectoryStream.Filter<Path>()
                     {
@@ -248,8 +273,12 @@ public class PluginMonitor implements PropertyEventListener
                             // See if the JAR is newer than the directory. If so, the plugin needs to be unloaded and then reloaded.
                             if ( Files.exists( dir ) && Files.getLastModifiedTime( jarFile ).toMillis() > Files.getLastModifiedTime( dir ).toMillis() )
                             {
+                                if ( reuseExtractedDirectory( dir, jarFile ) )
+                                {
+                                    Log.debug( "Plugin file '{}' has been modified, but its content did not change. Reusing its extracted directory.", fileName );
+                                }
                                 // If this is the first time that the monitor process is running, then plugins won't be loaded yet. Therefore, just delete the directory.
-                                if ( !pluginManager.isExecuted() )
+                                else if ( !pluginManager.isExecuted() )
                                 {
                                     int count = 0;
                                     // Attempt to delete the folder for up to 5 seconds.
@@ -268,18 +297,22 @@ public class PluginMonitor implements PropertyEventListener
                             // If the JAR needs to be exploded, do so.
                             if ( Files.notExists( dir ) )
                             {
-                                if (!unzipPlugin( canonicalPluginName, jarFile, dir ) )
-                                {
-                                    // the 'continue' statement is strictly unneeded here, as this
-                                    // is the last statement at the time of writing. It's left in
-                                    // to avoid future additions to this code from progressing
-                                    // beyond this point.
-                                    continue;
-                                }
+                                extractions.add( () -> {
+                                    final long start = System.nanoTime();
+                                    final boolean extracted = unzipPlugin( canonicalPluginName, jarFile, dir );
+                                    if ( extracted )
+                                    {
+                                        pluginManager.addPluginLoadTime( canonicalPluginName, Duration.ofNanos( System.nanoTime() - start ) );
+                                    }
+                                    return extracted;
+                                } );
                             }
                         }
                     }
 
+                    // Blocks until all plugin files have been exploded.
+                    executorService.invokeAll( extractions );
+
                     // See if any currently running plugins need to be unloaded due to the JAR file being deleted. Note
                     // that unloading a parent plugin might cause more than one plugin to disappear. Don't reuse the
                     // directory stream afterwards!
@@ -360,55 +393,27 @@ public class PluginMonitor implements PropertyEventListener
                         // Prevent trying to read properties from the database while we're still in setup mode.
                         if (!XMPPServer.getInstance().isSetupMode())
                         {
-                            // Hierarchy processing could be parallel.
-                            final Collection<Callable<Integer>> parallelProcesses = new ArrayList<>();
-                            for ( final List<Path> hierarchy : dirs )
+                            // Every plugin is loaded as soon as its parent plugin (if any) has been loaded. During the
+                            // first execution of this monitor, the class loaders of plugins that do not have a parent
+                            // are created in parallel, as that opens all of their JAR files.
+                            final boolean createClassLoaders = !pluginManager.isExecuted();
+                            final long start = System.nanoTime();
+                            final Map<String, CompletableFuture<Boolean>> loading = scheduleLoading( dirs,
+                                canonicalName -> pluginManager.getPlugin( canonicalName ) != null,
+                                ( canonicalName, path, hasParent ) -> loadPlugin( canonicalName, path, createClassLoaders && !hasParent ),
+                                executorService );
+
+                            // Unless nothing happened, report that we're done loading plugins.
+                            int pluginsLoaded = 0;
+                            for ( final CompletableFuture<Boolean> future : loading.values() )
                             {
-                                parallelProcesses.add( new Callable<Integer>()
+                                if ( future.get() )
                                 {
-
-                                    @Override
-                                    public Integer call() throws Exception
-                                    {
-                                        int loaded = 0;
-                                        for ( final Path path : hierarchy )
-                                        {
-                                            // If the plugin hasn't already been started, start it.
-                                            final String canonicalName = PluginMetadataHelper.getCanonicalName( path );
-                                            if ( pluginManager.getPlugin( canonicalName ) == null )
-                                            {
-                                                if ( pluginManager.loadPlugin( canonicalName, path ) )
-                                                {
-                                                    loaded++;
-                                                }
-                                            }
-                                        }
-
-                                        return loaded;
-                                    }
-                                } );
-                            }
-
-                            // Hierarchies could be processed in parallel. This is likely to be beneficial during the first
-                            // execution of this monitor, as during later executions, most plugins will likely already be loaded.
-                            final int parallelProcessMax = JiveGlobals.getIntProperty("plugins.loading.max-parallel", 4);
-                            final int parallelProcessCount = (pluginManager.isExecuted() ? 1 : parallelProcessMax);
-                            final ThreadFactory threadFactory = new NamedThreadFactory("PluginMonitorExec-", Executors.defaultThreadFactory(), false, Thread.NORM_PRIORITY);
-                            final ExecutorService executorService = Executors.newFixedThreadPool(parallelProcessCount, threadFactory);
-                            try {
-                                // Blocks until ready
-                                final List<Future<Integer>> futures = executorService.invokeAll(parallelProcesses);
-
-                                // Unless nothing happened, report that we're done loading plugins.
-                                int pluginsLoaded = 0;
-                                for (Future<Integer> future : futures) {
-                                    pluginsLoaded += future.get();
-                                }
-                                if (pluginsLoaded > 0) {
-                                    Log.info("Finished processing all plugins.");
+                                    pluginsLoaded++;
                                 }
-                            } finally {
-                                executorService.shutdown();
+                            }
+                            if (pluginsLoaded > 0) {
+                                Log.info("Finished processing all plugins. Loaded {} plugins in {} ms.", pluginsLoaded, Duration.ofNanos( System.nanoTime() - start ).toMillis());
                             }
                         }
 
@@ -422,82 +427,49 @@ public class PluginMonitor implements PropertyEventListener
                 }
                 finally
                 {
+                    executorService.shutdown();
                     isTaskRunning = false;
                 }
             }
         }
 
         /**
-         * Unzips a plugin from a JAR file into a directory. If the JAR file
-         * isn't a plugin, this method will do nothing.
+         * Loads a plugin, and disposes of the class loader that was created for it if the plugin was not loaded.
          *
-         * @param pluginName the name of the plugin.
-         * @param file       the JAR file
-         * @param dir        the directory to extract the plugin to.
+         * @param canonicalName     the canonical name of the plugin.
+         * @param path              the plugin directory.
+         * @param createClassLoader {@code true} to create the class loader of the plugin before acquiring the lock
+         *                          of the plugin manager, otherwise {@code false}.
          * @return A boolean indicating success.
          */
-        private boolean unzipPlugin( String pluginName, Path file, Path dir )
+        private boolean loadPlugin( final String canonicalName, final Path path, final boolean createClassLoader )
         {
-            try ( ZipFile zipFile = new JarFile( file.toFile() ) )
+            PluginClassLoader pluginLoader = null;
+            if ( createClassLoader )
             {
-                // Ensure that this JAR is a plugin.
-                if ( zipFile.getEntry( "plugin.xml" ) == null )
-                {
-                    return false;
-                }
-
-                // Protect against zip-slip (before applying any file-system modifications).
-                if ( JiveGlobals.getBooleanProperty( "plugins.loading.zipslipDetection.enabled", true ) )
-                {
-                    for ( Enumeration e = zipFile.entries(); e.hasMoreElements(); )
-                    {
-                        JarEntry entry = (JarEntry) e.nextElement();
-                        Path entryFile = dir.resolve( entry.getName() );
-                        if ( !entryFile.normalize().toAbsolutePath().startsWith( dir.normalize().toAbsolutePath() ) )
-                        {
-                            throw new RuntimeException( "Plugin contains content that is outside of target plugin directory (possible zipslip attack)" );
-                        }
-                    }
-                }
+                final long start = System.nanoTime();
+                pluginLoader = PluginManager.createClassLoader( path );
+                pluginManager.addPluginLoadTime( canonicalName, Duration.ofNanos( System.nanoTime() - start ) );
+            }
 
-                Files.createDirectory( dir );
-                // OF-1973: Prevent future-timestamped jar files from restarting the installation process.
-                if ( Files.getLastModifiedTime( file ).toMillis() > System.currentTimeMillis() )
-                {
-                    final FileTime now = FileTime.fromMillis(System.currentTimeMillis());
-                    Files.setLastModifiedTime(file, now);
-                }
-                // Set the date of the JAR file to the newly created folder
-                Files.setLastModifiedTime( dir, Files.getLastModifiedTime( file ) );
-                Log.debug( "Extracting plugin '{}'...", pluginName );
-                for ( Enumeration e = zipFile.entries(); e.hasMoreElements(); )
+            final boolean loaded = pluginManager.loadPlugin( canonicalName, path, pluginLoader );
+            if ( !loaded )
+            {
+                pluginManager.removePluginLoadTime( canonicalName );
+                if ( pluginLoader != null && pluginManager.getPlugin( canonicalName ) == null )
                 {
-                    JarEntry entry = (JarEntry) e.nextElement();
-                    Path entryFile = dir.resolve( entry.getName() ); /* lgtm[java/zipslip] */
-                    // The line above ignores LGTM alert for ZipSlip as this is sanitized for if property is enabled.
-
-                    // Ignore any manifest.mf entries.
-                    if ( entry.getName().toLowerCase().endsWith( "manifest.mf" ) )
+                    pluginLoader.unloadJarFiles();
+                    try
                     {
-                        continue;
+                        pluginLoader.close();
                     }
-                    if ( !entry.isDirectory() )
+                    catch ( IOException e )
                     {
-                        Files.createDirectories( entryFile.getParent() );
-                        try ( InputStream zin = zipFile.getInputStream( entry ) )
-                        {
-                            Files.copy( zin, entryFile, StandardCopyOption.REPLACE_EXISTING );
-                        }
+                        Log.warn( "Closing plugin loader failed for '{}':", canonicalName, e );
                     }
                 }
-                Log.debug( "Successfully extracted plugin '{}'.", pluginName );
-                return true;
-            }
-            catch ( Exception e )
-            {
-                Log.error( "An exception occurred while trying to extract plugin '{}':", pluginName, e );
-                return false;
             }
+            return loaded;
         }
 
         /**
@@ -633,6 +605,222 @@ public class PluginMonitor implements PropertyEventListener
         }
     }
 
+    /**
+     * Loads a plugin from its directory.
+     */
+    @FunctionalInterface
+    interface PluginLoader
+    {
+        /**
+         * Loads a plugin.
+         *
+         * @param canonicalName the canonical name of the plugin.
+         * @param path          the plugin directory.
+         * @param hasParent     {@code true} if the plugin is the child of another plugin, otherwise {@code false}.
+         * @return A boolean indicating success.
+         */
+        boolean load( String canonicalName, Path path, boolean hasParent );
+    }
+
+    /**
+     * Starts loading all plugins that have not been loaded yet. Every plugin is loaded as soon as its parent plugin
+     * (if any) has been loaded. A plugin is not loaded when its parent plugin fails to load.
+     *
+     * @param hierarchies the plugin directories, as lists in which parent plugins precede their children.
+     * @param isLoaded    tests if the plugin with the provided canonical name has already been loaded.
+     * @param loader      loads a plugin.
+     * @param executor    the executor used to load plugins.
+     * @return the result of loading each plugin, by canonical name.
+     */
+    // Package protected to be able to unit test this method.
+    static Map<String, CompletableFuture<Boolean>> scheduleLoading( final Iterable<List<Path>> hierarchies, final Predicate<String> isLoaded, final PluginLoader loader, final Executor executor )
+    {
+        final Map<String, CompletableFuture<Boolean>> loading = new HashMap<>();
+        for ( final List<Path> hierarchy : hierarchies )
+        {
+            for ( final Path path : hierarchy )
+            {
+                // If the plugin hasn't already been started, start it.
+                final String canonicalName = PluginMetadataHelper.getCanonicalName( path );
+                if ( isLoaded.test( canonicalName ) )
+                {
+                    continue;
+                }
+
+                final String parentName = PluginMetadataHelper.getParentPlugin( path );
+                final CompletableFuture<Boolean> future;
+                if ( parentName == null )
+                {
+                    future = CompletableFuture.supplyAsync( () -> loader.load( canonicalName, path, false ), executor );
+                }
+                else
+                {
+                    // A parent that is not being loaded now, was loaded earlier.
+                    future = loading.getOrDefault( parentName, CompletableFuture.completedFuture( true ) )
+                        .thenApplyAsync( parentLoaded -> parentLoaded && loader.load( canonicalName, path, true ), executor );
+                }
+                loading.put( canonicalName, future );
+            }
+        }
+        return loading;
+    }
+
+    /**
+     * Reuses the directory to which a plugin was extracted if the JAR file was touched, or replaced by an identical
+     * copy, after which the directory is no longer considered to be older than the JAR file.
+     *
+     * @param dir  the directory to which the plugin was extracted.
+     * @param file the JAR file.
+     * @return {@code true} if the directory was reused, {@code false} if the plugin needs to be extracted again.
+     * @throws IOException if the modification time of the directory could not be updated.
+     */
+    // Package protected to be able to unit test this method.
+    static boolean reuseExtractedDirectory( Path dir, Path file ) throws IOException
+    {
+        if ( !isExtractedFrom( dir, file ) )
+        {
+            return false;
+        }
+        Files.setLastModifiedTime( dir, Files.getLastModifiedTime( file ) );
+        return true;
+    }
+
+    /**
+     * Checks if a plugin directory was extracted from a JAR file with the same content as the provided file.
+     *
+     * @param dir  the directory to which the plugin was extracted.
+     * @param file the JAR file.
+     * @return {@code true} if the checksum of the JAR file equals the checksum that was stored when the directory was
+     * extracted, otherwise {@code false}.
+     */
+    // Package protected to be able to unit test this method.
+    static boolean isExtractedFrom( Path dir, Path file )
+    {
+        final Path checksumFile = dir.resolve( CHECKSUM_FILENAME );
+        if ( !JiveGlobals.getBooleanProperty( "plugins.loading.checksum.enabled", true ) || !Files.isRegularFile( checksumFile ) )
+        {
+            return false;
+        }
+        try
+        {
+            final String expected = new String( Files.readAllBytes( checksumFile ), StandardCharsets.US_ASCII ).trim();
+            return expected.equals( calculateChecksum( file ) );
+        }
+        catch ( IOException e )
+        {
+            Log.debug( "Unable to compare the checksum of '{}' with the checksum stored in '{}'.", file, dir, e );
+            return false;
+        }
+    }
+
+    /**
+     * Unzips a plugin from a JAR file into a directory. If the JAR file
+     * isn't a plugin, this method will do nothing.
+     *
+     * @param pluginName the name of the plugin.
+     * @param file       the JAR file
+     * @param dir        the directory to extract the plugin to.
+     * @return A boolean indicating success.
+     */
+    // Package protected to be able to unit test this method.
+    static boolean unzipPlugin( String pluginName, Path file, Path dir )
+    {
+        try ( ZipFile zipFile = new JarFile( file.toFile() ) )
+        {
+            // Ensure that this JAR is a plugin.
+            if ( zipFile.getEntry( "plugin.xml" ) == null )
+            {
+                return false;
+            }
+
+            // Protect against zip-slip (before applying any file-system modifications).
+            if ( JiveGlobals.getBooleanProperty( "plugins.loading.zipslipDetection.enabled", true ) )
+            {
+                for ( Enumeration e = zipFile.entries(); e.hasMoreElements(); )
+                {
+                    JarEntry entry = (JarEntry) e.nextElement();
+                    Path entryFile = dir.resolve( entry.getName() );
+                    if ( !entryFile.normalize().toAbsolutePath().startsWith( dir.normalize().toAbsolutePath() ) )
+                    {
+                        throw new RuntimeException( "Plugin contains content that is outside of target plugin directory (possible zipslip attack)" );
+                    }
+                }
+            }
+
+            Files.createDirectory( dir );
+            // OF-1973: Prevent future-timestamped jar files from restarting the installation process.
+            if ( Files.getLastModifiedTime( file ).toMillis() > System.currentTimeMillis() )
+            {
+                final FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+                Files.setLastModifiedTime(file, now);
+            }
+            // Set the date of the JAR file to the newly created folder
+            Files.setLastModifiedTime( dir, Files.getLastModifiedTime( file ) );
+            Log.debug( "Extracting plugin '{}'...", pluginName );
+            for ( Enumeration e = zipFile.entries(); e.hasMoreElements(); )
+            {
+                JarEntry entry = (JarEntry) e.nextElement();
+                Path entryFile = dir.resolve( entry.getName() ); /* lgtm[java/zipslip] */
+                // The line above ignores LGTM alert for ZipSlip as this is sanitized for if property is enabled.
+
+                // Ignore any manifest.mf entries.
+                if ( entry.getName().toLowerCase().endsWith( "manifest.mf" ) )
+                {
+                    continue;
+                }
+                if ( !entry.isDirectory() )
+                {
+                    Files.createDirectories( entryFile.getParent() );
+                    try ( InputStream zin = zipFile.getInputStream( entry ) )
+                    {
+                        Files.copy( zin, entryFile, StandardCopyOption.REPLACE_EXISTING );
+                    }
+                }
+            }
+            if ( JiveGlobals.getBooleanProperty( "plugins.loading.checksum.enabled", true ) )
+            {
+                Files.write( dir.resolve( CHECKSUM_FILENAME ), calculateChecksum( file ).getBytes( StandardCharsets.US_ASCII ) );
+            }
+            Log.debug( "Successfully extracted plugin '{}'.", pluginName );
+            return true;
+        }
+        catch ( Exception e )
+        {
+            Log.error( "An exception occurred while trying to extract plugin '{}':", pluginName, e );
+            return false;
+        }
+    }
+
+    /**
+     * Calculates the checksum of a file.
+     *
+     * @param file the file.
+     * @return the hex-encoded SHA-256 hash of the content of the file.
+     * @throws IOException if the file could not be read.
+     */
+    static String calculateChecksum( final Path file ) throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( "Unable to calculate the checksum of " + file, e );
+        }
+        try ( final InputStream in = Files.newInputStream( file ) )
+        {
+            final byte[] buffer = new byte[ 8192 ];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        return StringUtils.encodeHex( digest.digest() );
+    }
+
     /**
      * Two plugins are considered "equal" if they share the same canonical name, <strong>or</strong> the same
      * name from the plugin.xml file. This class represents a plugin that could be loaded to encapsulate this concept
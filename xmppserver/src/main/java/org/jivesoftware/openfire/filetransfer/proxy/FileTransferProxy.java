@@ -21,6 +21,7 @@ import org.dom4j.Element;
 import org.jivesoftware.openfire.*;
 import org.jivesoftware.openfire.auth.UnauthorizedException;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.disco.*;
 import org.jivesoftware.openfire.filetransfer.FileTransferManager;
 import org.jivesoftware.util.JiveGlobals;
@@ -240,6 +241,12 @@ public class FileTransferProxy extends BasicModule
         return server.getFileTransferManager();
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Binding the proxy socket does not affect other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() {
         super.start();
@@ -116,12 +116,17 @@ public class GroupManager {
 
     private static void initProvider(final Class clazz) {
         if (provider == null || !clazz.equals(provider.getClass())) {
+            final GroupProvider previous = provider;
             try {
                 provider = (GroupProvider) clazz.newInstance();
             } catch (Exception e) {
                 Log.error("Error loading group provider: " + clazz.getName(), e);
                 provider = new DefaultGroupProvider();
             }
+            provider.initialize();
+            if (previous != null) {
+                previous.shutdown();
+            }
         }
     }
 
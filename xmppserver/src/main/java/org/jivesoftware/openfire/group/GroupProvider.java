@@ -278,5 +278,18 @@ public interface GroupProvider {
      * @return The properties for the given group
      */
     PersistableMap<String,String> loadProperties(Group group);
-    
+
+    /**
+     * Invoked by {@link GroupManager} when it starts to use this provider. Providers that perform background tasks
+     * should start these here, rather than in their constructor.
+     */
+    default void initialize() {
+    }
+
+    /**
+     * Invoked by {@link GroupManager} when this provider is no longer used (for example, because it was replaced by
+     * another provider). Background tasks that were started in {@link #initialize()} should be stopped here.
+     */
+    default void shutdown() {
+    }
 }
@@ -21,6 +21,7 @@ import gnu.inet.encoding.IDNAException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.jivesoftware.openfire.IQHandlerInfo;
@@ -33,6 +34,7 @@ import org.jivesoftware.openfire.disco.ServerFeaturesProvider;
 import org.jivesoftware.openfire.roster.Roster;
 import org.jivesoftware.openfire.roster.RosterItem;
 import org.jivesoftware.openfire.roster.RosterManager;
+import org.jivesoftware.openfire.roster.RosterVersionJournal;
 import org.jivesoftware.openfire.user.UserAlreadyExistsException;
 import org.jivesoftware.openfire.user.UserManager;
 import org.jivesoftware.openfire.user.UserNotFoundException;
@@ -189,15 +191,25 @@ public class IQRosterHandler extends IQHandler implements ServerFeaturesProvider
             Roster cachedRoster = userManager.getUser(sender.getNode()).getRoster();
             if (IQ.Type.get == type) {
 
+                List<org.xmpp.packet.Roster> interimPushes = Collections.emptyList();
                 if (RosterManager.isRosterVersioningEnabled()) {
+                    final RosterVersionJournal journal = localServer.getRosterManager().getRosterVersionJournal();
                     String clientVersion = packet.getChildElement().attributeValue("ver");
-                    String latestVersion = String.valueOf( cachedRoster.hashCode() );
+                    String latestVersion = journal.getVersion(sender.getNode());
                     // Whether or not the roster has been modified since the version ID enumerated by the client, ...
                     if (!latestVersion.equals(clientVersion)) {
-                        // ... the server MUST either return the complete roster
-                        // (including a 'ver' attribute that signals the latest version)
-                        returnPacket = cachedRoster.getReset();
-                        returnPacket.getChildElement().addAttribute("ver", latestVersion );
+                        final List<org.xmpp.packet.Roster> missedPushes = journal.getPushesSince(sender.getNode(), clientVersion);
+                        if (missedPushes != null) {
+                            // ... the server MUST either return an empty IQ-result and send the modifications
+                            // as roster pushes (when the journal still holds all of them), ...
+                            returnPacket = new org.xmpp.packet.IQ();
+                            interimPushes = missedPushes;
+                        } else {
+                            // ... or return the complete roster
+                            // (including a 'ver' attribute that signals the latest version)
+                            returnPacket = cachedRoster.getReset();
+                            returnPacket.getChildElement().addAttribute("ver", latestVersion );
+                        }
                     } else {
                         // ... or return an empty IQ-result
                         returnPacket = new org.xmpp.packet.IQ();
@@ -212,6 +224,10 @@ public class IQRosterHandler extends IQHandler implements ServerFeaturesProvider
                 // a presence probe from all contacts
                 deliverer.deliver(returnPacket);
                 returnPacket = null;
+                for (final org.xmpp.packet.Roster push : interimPushes) {
+                    push.setTo(sender);
+                    deliverer.deliver(push);
+                }
             }
             else if (IQ.Type.set == type) {
                 returnPacket = IQ.createResultIQ(packet);
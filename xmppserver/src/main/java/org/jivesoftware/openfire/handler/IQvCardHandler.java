@@ -133,14 +133,14 @@ public class IQvCardHandler extends IQHandler {
             if (recipient != null) {
                 if (recipient.getNode() != null && server.isLocal(recipient)) {
                     VCardManager vManager = VCardManager.getInstance();
-                    Element userVCard = vManager.getVCard(recipient.getNode());
+                    Element userVCard = vManager.getVCardReadOnly(recipient.getNode());
                     if (userVCard != null) {
+                        // Create a single copy, as the cached vCard is shared and cannot be added to the result.
+                        userVCard = userVCard.createCopy();
                         // Check if the requester wants to ignore some vCard's fields
                         Element filter = packet.getChildElement()
                                 .element(QName.get("filter", "vcard-temp-filter"));
                         if (filter != null) {
-                            // Create a copy so we don't modify the original vCard
-                            userVCard = userVCard.createCopy();
                             // Ignore fields requested by the user
                             for (Iterator toFilter = filter.elementIterator(); toFilter.hasNext();)
                             {
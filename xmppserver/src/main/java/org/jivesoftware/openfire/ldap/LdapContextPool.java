@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.ldap;
+
+import org.jivesoftware.util.JiveInitialLdapContext;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Deque;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of LDAP contexts that are bound with the administrative credentials of {@link LdapManager}.
+ *
+ * Contexts that are obtained through {@link LdapManager#getContext(LdapName)} are returned to this pool when they are
+ * closed, and re-used by later invocations for the same base DN. This avoids establishing (and, when StartTLS is used,
+ * negotiating) a new LDAP connection for every lookup. Unlike the pooling that is provided by JNDI, this pool can be
+ * used in combination with StartTLS.
+ *
+ * A context is not returned to the pool (but closed instead) when its environment was modified while it was in use,
+ * when it has been in use for longer than {@link #MAX_LIFETIME}, or when the maximum number of idle contexts for its
+ * base DN has been reached. A context that has been idle for longer than {@link #VALIDATION_INTERVAL} is validated by
+ * performing a cheap search before it is handed out again. The same validation is periodically applied to all idle
+ * contexts in the background.
+ *
+ * New connections are distributed over all configured LDAP hosts: for each new connection, the list of hosts is
+ * rotated, so that every host is the first to be tried in turn. The remaining hosts are still used for fail-over.
+ */
+public class LdapContextPool
+{
+    private static final Logger Log = LoggerFactory.getLogger(LdapContextPool.class);
+
+    /**
+     * Enables pooling of LDAP contexts.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("ldap.pool.enabled")
+        .setDefaultValue(false)
+        .setDynamic(true)
+        .addListener(enabled -> {
+            if (!enabled) {
+                LdapManager.getInstance().getContextPool().clear();
+            }
+        })
+        .build();
+
+    /**
+     * The maximum number of idle contexts that is retained for each base DN.
+     */
+    public static final SystemProperty<Integer> MAX_IDLE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("ldap.pool.max-idle")
+        .setDefaultValue(8)
+        .setMinValue(0)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The duration after which an idle context is validated before it is used again.
+     */
+    public static final SystemProperty<Duration> VALIDATION_INTERVAL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("ldap.pool.validation-interval")
+        .setDefaultValue(Duration.ofSeconds(30))
+        .setMinValue(Duration.ofSeconds(1))
+        .setChronoUnit(java.time.temporal.ChronoUnit.MILLIS)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum duration that a pooled context is used, after which it is closed.
+     */
+    public static final SystemProperty<Duration> MAX_LIFETIME = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("ldap.pool.max-lifetime")
+        .setDefaultValue(Duration.ofMinutes(10))
+        .setMinValue(Duration.ofSeconds(1))
+        .setChronoUnit(java.time.temporal.ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    private final LdapManager manager;
+
+    /**
+     * Idle contexts by base DN, most recently used first.
+     */
+    private final Map<LdapName, Deque<PooledLdapContext>> idle = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextHost = new AtomicInteger();
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    private final TimerTask maintenanceTask = new TimerTask() {
+        @Override
+        public void run() {
+            validateIdleContexts();
+        }
+    };
+
+    LdapContextPool(@Nonnull final LdapManager manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Returns a context for the specified base DN: an idle context from the pool if one is available, or a new one.
+     *
+     * @param baseDN the base DN of the context.
+     * @return a context, that is returned to the pool when it is closed.
+     * @throws NamingException if a new context cannot be created.
+     */
+    @Nonnull
+    LdapContext borrow(@Nonnull final LdapName baseDN) throws NamingException
+    {
+        if (maintenanceScheduled.compareAndSet(false, true)) {
+            TaskEngine.getInstance().schedule(maintenanceTask, VALIDATION_INTERVAL.getValue(), VALIDATION_INTERVAL.getValue());
+        }
+
+        final Deque<PooledLdapContext> contexts = idle.get(baseDN);
+        if (contexts != null) {
+            PooledLdapContext context;
+            while ((context = contexts.pollFirst()) != null) {
+                if (context.isExpired()) {
+                    discard(context);
+                    continue;
+                }
+                if (context.getIdleDuration().compareTo(VALIDATION_INTERVAL.getValue()) >= 0 && !isValid(context)) {
+                    validationFailureCount.incrementAndGet();
+                    discard(context);
+                    continue;
+                }
+                context.inUse = true;
+                reusedCount.incrementAndGet();
+                return context;
+            }
+        }
+
+        final String providerURL = manager.getProviderURL(baseDN, Math.floorMod(nextHost.getAndIncrement(), Math.max(1, manager.getHosts().size())));
+        final PooledLdapContext context = (PooledLdapContext) manager.createContext(baseDN, providerURL, env -> new PooledLdapContext(env, baseDN));
+        createdCount.incrementAndGet();
+        return context;
+    }
+
+    /**
+     * Returns a context to the pool, or closes it if it cannot be re-used.
+     */
+    private void release(@Nonnull final PooledLdapContext context) throws NamingException
+    {
+        if (!context.inUse) {
+            return;
+        }
+        context.inUse = false;
+        context.lastUsed = Instant.now();
+
+        try {
+            context.setRequestControls(null);
+        } catch (NamingException e) {
+            Log.debug("Unable to reset the request controls of a pooled LDAP context. It will be closed.", e);
+            discard(context);
+            return;
+        }
+
+        if (!ENABLED.getValue() || context.isExpired() || context.isEnvironmentModified()) {
+            discard(context);
+            return;
+        }
+
+        final Deque<PooledLdapContext> contexts = idle.computeIfAbsent(context.baseDN, k -> new ConcurrentLinkedDeque<>());
+        if (contexts.size() >= MAX_IDLE.getValue()) {
+            discard(context);
+            return;
+        }
+        contexts.offerFirst(context);
+    }
+
+    /**
+     * Validates all idle contexts, discarding those that are no longer usable.
+     */
+    void validateIdleContexts()
+    {
+        for (final Deque<PooledLdapContext> contexts : idle.values()) {
+            final Iterator<PooledLdapContext> iterator = contexts.iterator();
+            while (iterator.hasNext()) {
+                final PooledLdapContext context = iterator.next();
+                if (context.getIdleDuration().compareTo(VALIDATION_INTERVAL.getValue()) < 0) {
+                    continue;
+                }
+                // Take the context out of the pool, to prevent it from being used while it is validated.
+                if (!contexts.removeFirstOccurrence(context)) {
+                    continue;
+                }
+                if (context.isExpired()) {
+                    discard(context);
+                } else if (!isValid(context)) {
+                    validationFailureCount.incrementAndGet();
+                    discard(context);
+                } else {
+                    context.lastUsed = Instant.now();
+                    contexts.offerLast(context);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all idle contexts, and stops the background validation. Contexts that are in use are closed when they are
+     * released.
+     */
+    public void clear()
+    {
+        if (maintenanceScheduled.compareAndSet(true, false)) {
+            TaskEngine.getInstance().cancelScheduledTask(maintenanceTask);
+        }
+        for (final Deque<PooledLdapContext> contexts : idle.values()) {
+            PooledLdapContext context;
+            while ((context = contexts.pollFirst()) != null) {
+                discard(context);
+            }
+        }
+    }
+
+    private boolean isValid(@Nonnull final PooledLdapContext context)
+    {
+        final SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        searchControls.setReturningAttributes(new String[] { "1.1" });
+        searchControls.setCountLimit(1);
+        try {
+            final NamingEnumeration<SearchResult> answer = context.search("", "(objectClass=*)", searchControls);
+            answer.close();
+            return true;
+        } catch (NamingException e) {
+            Log.debug("Pooled LDAP context for base DN '{}' failed validation.", context.baseDN, e);
+            return false;
+        }
+    }
+
+    private void discard(@Nonnull final PooledLdapContext context)
+    {
+        discardedCount.incrementAndGet();
+        try {
+            context.closeConnection();
+        } catch (Exception e) {
+            Log.debug("An exception occurred while closing a pooled LDAP context for base DN '{}'.", context.baseDN, e);
+        }
+    }
+
+    /**
+     * @return the number of contexts that were created by this pool.
+     */
+    public long getCreatedCount()
+    {
+        return createdCount.get();
+    }
+
+    /**
+     * @return the number of times that an idle context was re-used.
+     */
+    public long getReusedCount()
+    {
+        return reusedCount.get();
+    }
+
+    /**
+     * @return the number of idle contexts that were discarded because they failed validation.
+     */
+    public long getValidationFailureCount()
+    {
+        return validationFailureCount.get();
+    }
+
+    /**
+     * @return the number of contexts that were closed by this pool.
+     */
+    public long getDiscardedCount()
+    {
+        return discardedCount.get();
+    }
+
+    /**
+     * @return the number of contexts that currently are idle in the pool.
+     */
+    public int getIdleCount()
+    {
+        return idle.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    /**
+     * A context that is returned to the pool when it is closed.
+     */
+    private class PooledLdapContext extends JiveInitialLdapContext
+    {
+        private final LdapName baseDN;
+        private final Object providerURL;
+        private final Object principal;
+        private final Instant created = Instant.now();
+        private volatile Instant lastUsed = created;
+        private volatile boolean inUse = true;
+
+        PooledLdapContext(@Nonnull final Hashtable<?, ?> env, @Nonnull final LdapName baseDN) throws NamingException
+        {
+            super(env, null);
+            this.baseDN = baseDN;
+            this.providerURL = env.get(Context.PROVIDER_URL);
+            this.principal = env.get(Context.SECURITY_PRINCIPAL);
+        }
+
+        boolean isExpired()
+        {
+            return Duration.between(created, Instant.now()).compareTo(MAX_LIFETIME.getValue()) > 0;
+        }
+
+        Duration getIdleDuration()
+        {
+            return Duration.between(lastUsed, Instant.now());
+        }
+
+        /**
+         * Checks if the address or credentials of this context were changed after it was created. When StartTLS is
+         * used, credentials are added after the context was created, which is accounted for.
+         */
+        boolean isEnvironmentModified() throws NamingException
+        {
+            final Hashtable<?, ?> env = getEnvironment();
+            if (!Objects.equals(providerURL, env.get(Context.PROVIDER_URL))) {
+                return true;
+            }
+            final Object currentPrincipal = env.get(Context.SECURITY_PRINCIPAL);
+            return !Objects.equals(principal, currentPrincipal) && !(getTlsResponse() != null && principal == null && Objects.equals(manager.getAdminDN(), currentPrincipal));
+        }
+
+        @Override
+        public void close() throws NamingException
+        {
+            release(this);
+        }
+
+        void closeConnection() throws Exception
+        {
+            try {
+                if (getTlsResponse() != null) {
+                    getTlsResponse().close();
+                }
+            } finally {
+                super.close();
+            }
+        }
+    }
+}
@@ -62,6 +62,17 @@ public class LdapGroupProvider extends AbstractGroupProvider {
     private int groupCount = -1;
     private Instant expiresStamp = Instant.now();
 
+    /**
+     * The names of the groups that have a particular member (a DN, or a UID in Posix mode), as used to determine the
+     * groups of a user, and the groups that contain those groups.
+     */
+    private final LdapResultCache<String, Collection<String>> groupNamesByMember = new LdapResultCache<>("group membership", this::loadGroupNamesByMember);
+
+    /**
+     * Snapshot of all groups, used to answer lookups when {@link LdapGroupSnapshot#ENABLED} is set.
+     */
+    private final LdapGroupSnapshot snapshot;
+
     public static SystemProperty<Boolean> PROCESSBIGGROUPS = SystemProperty.Builder.ofType(Boolean.class)
             .setKey("ldap.useRangeRetrieval")
             .setDefaultValue(false)
@@ -79,10 +90,57 @@ public class LdapGroupProvider extends AbstractGroupProvider {
         standardAttributes[0] = manager.getGroupNameField();
         standardAttributes[1] = manager.getGroupDescriptionField();
         standardAttributes[2] = manager.getGroupMemberField();
+        LdapManager.initStatistics();
+        snapshot = new LdapGroupSnapshot(manager, this::loadGroup);
+    }
+
+    /**
+     * Starts refreshing the snapshot of LDAP groups, when {@link LdapGroupSnapshot#ENABLED} is set.
+     */
+    @Override
+    public void initialize() {
+        if (LdapGroupSnapshot.ENABLED.getValue()) {
+            snapshot.start();
+        }
+    }
+
+    /**
+     * Stops refreshing the snapshot of LDAP groups.
+     */
+    @Override
+    public void shutdown() {
+        snapshot.stop();
+    }
+
+    /**
+     * Returns the snapshot of LDAP groups that is used to answer lookups when {@link LdapGroupSnapshot#ENABLED} is set.
+     *
+     * @return the snapshot.
+     */
+    public LdapGroupSnapshot getSnapshot() {
+        return snapshot;
     }
 
     @Override
     public Group getGroup(String groupName) throws GroupNotFoundException {
+        if (snapshot.isReady()) {
+            final Group group = snapshot.getGroup(groupName);
+            if (group == null) {
+                throw new GroupNotFoundException("Group with name " + groupName + " not found.");
+            }
+            return group;
+        }
+        return loadGroup(groupName);
+    }
+
+    /**
+     * Loads a group from LDAP.
+     *
+     * @param groupName the name of the group.
+     * @return the group.
+     * @throws GroupNotFoundException if the group could not be loaded.
+     */
+    private Group loadGroup(String groupName) throws GroupNotFoundException {
         try {
             LdapName groupDN = manager.findGroupAbsoluteDN(groupName);
             return getGroupByDN(groupDN, new HashSet<>(Collections.singleton(groupDN.toString())));
@@ -277,6 +335,9 @@ public class LdapGroupProvider extends AbstractGroupProvider {
         if (manager.isDebugEnabled()) {
             Log.debug("LdapGroupProvider: Trying to get the number of groups in the system.");
         }
+        if (snapshot.isReady()) {
+            return snapshot.getGroupNames().size();
+        }
         // Cache user count for 5 minutes.
         if (groupCount != -1 && Instant.now().isBefore(expiresStamp)) {
             return groupCount;
@@ -296,6 +357,12 @@ public class LdapGroupProvider extends AbstractGroupProvider {
 
     @Override
     public Collection<String> getGroupNames(int startIndex, int numResults) {
+        if (snapshot.isReady()) {
+            final List<String> groupNames = snapshot.getGroupNames();
+            final int fromIndex = Math.min(Math.max(startIndex, 0), groupNames.size());
+            final int toIndex = numResults < 0 ? groupNames.size() : Math.min(groupNames.size(), fromIndex + numResults);
+            return new ArrayList<>(groupNames.subList(fromIndex, toIndex));
+        }
         return manager.retrieveList(
                 manager.getGroupNameField(),
                 MessageFormat.format(manager.getGroupSearchFilter(), "*"),
@@ -307,6 +374,9 @@ public class LdapGroupProvider extends AbstractGroupProvider {
 
     @Override
     public Collection<String> getGroupNames(JID user) {
+        if (snapshot.isReady()) {
+            return new LinkedHashSet<>(snapshot.getGroupNames(user));
+        }
         // Get DN of specified user
         XMPPServer server = XMPPServer.getInstance();
         String username;
@@ -337,7 +407,14 @@ public class LdapGroupProvider extends AbstractGroupProvider {
             return Collections.emptyList();
         }
 
-        Set<String> groupNames = new LinkedHashSet<>(search(manager.getGroupMemberField(), username));
+        Set<String> groupNames;
+        try {
+            groupNames = new LinkedHashSet<>(groupNamesByMember.get(username));
+        }
+        catch (LdapPagedSearch.SearchFailedException e) {
+            Log.error("Unable to look up the groups of user '{}'", username, e.getCause());
+            return Collections.emptyList();
+        }
 
         if (manager.isFlattenNestedGroups()) {
             // search groups that contain the given groups
@@ -365,7 +442,7 @@ public class LdapGroupProvider extends AbstractGroupProvider {
                         group = groupDN.toString();
                     }
                     // search for groups that have the given group (DN normal, UID posix) as member
-                    Collection<String> containingGroupNames = search(manager.getGroupMemberField(), group);
+                    Collection<String> containingGroupNames = groupNamesByMember.get(group);
                     // add the found groups to the result and to the groups to be checked transitively
                     todo.addAll(containingGroupNames);
                     groupNames.addAll(containingGroupNames);
@@ -384,29 +461,49 @@ public class LdapGroupProvider extends AbstractGroupProvider {
             return super.search(key,value);
         }
 
+        // Perform the LDAP query
+        return manager.retrieveList(
+                manager.getGroupNameField(),
+                getGroupSearchFilter(key, value),
+                -1,
+                -1,
+                null);
+    }
+
+    /**
+     * Looks up the names of the groups that have a particular member. Unlike {@link #search(String, String)}, this
+     * throws an exception when the LDAP server cannot be queried, rather than returning incomplete results, so that
+     * those are not cached.
+     *
+     * @param member the member (a DN, or a UID in Posix mode).
+     * @return the names of the groups that have the member, sorted.
+     * @throws LdapPagedSearch.SearchFailedException when the LDAP server could not be queried.
+     */
+    private Collection<String> loadGroupNamesByMember(String member) {
+        final String attribute = manager.getGroupNameField();
+        final List<String> groupNames = new ArrayList<>();
+        try (final LdapPagedSearch search = new LdapPagedSearch(manager, getGroupSearchFilter(manager.getGroupMemberField(), member), attribute)) {
+            while (search.hasNext()) {
+                groupNames.add((String) search.next().getAttributes().get(attribute).get());
+            }
+        }
+        catch (NamingException e) {
+            throw new LdapPagedSearch.SearchFailedException(e);
+        }
+        Collections.sort(groupNames);
+        return Collections.unmodifiableList(groupNames);
+    }
+
+    private String getGroupSearchFilter(String key, String value) {
         StringBuilder filter = new StringBuilder();
         filter.append("(&");
         filter.append(MessageFormat.format(manager.getGroupSearchFilter(), "*"));
         filter.append('(').append(key).append('=').append(LdapManager.sanitizeSearchFilter(value, false));
         filter.append("))");
-        
-        if (!PROCESSBIGGROUPS.getValue())
-        {
-            if (Log.isDebugEnabled()) {
-                Log.debug("Trying to find group names using query: " + filter.toString());
-            }
 
-            // Perform the LDAP query
-            return manager.retrieveList(
-                    manager.getGroupNameField(),
-                    filter.toString(),
-                    -1,
-                    -1,
-                    null);
-        }
-        else
+        String ldapfilter = filter.toString();
+        if (PROCESSBIGGROUPS.getValue())
         {
-            String ldapfilter = filter.toString();
             String searchRangeStr = ";range=";
             if (ldapfilter.contains(searchRangeStr))
             {
@@ -414,17 +511,10 @@ public class LdapGroupProvider extends AbstractGroupProvider {
                         ldapfilter.substring(ldapfilter.indexOf("=",
                                 ldapfilter.indexOf(searchRangeStr)+searchRangeStr.length()));
             }
-
-            Log.debug("Trying to find group names using query: {}", ldapfilter);
-
-            // Perform the LDAP query
-            return manager.retrieveList(
-                    manager.getGroupNameField(),
-                    ldapfilter,
-                    -1,
-                    -1,
-                    null);
         }
+
+        Log.debug("Trying to find group names using query: {}", ldapfilter);
+        return ldapfilter;
     }
 
     @Override
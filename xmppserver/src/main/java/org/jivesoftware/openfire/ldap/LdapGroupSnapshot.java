@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.ldap;
+
+import org.jivesoftware.openfire.cluster.ClusterManager;
+import org.jivesoftware.openfire.group.Group;
+import org.jivesoftware.openfire.group.GroupManager;
+import org.jivesoftware.openfire.group.GroupNotFoundException;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.SearchResult;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory copy of all LDAP groups and their members, that is periodically refreshed in the background. When
+ * enabled, {@link LdapGroupProvider} answers lookups of groups and group membership from this snapshot, which removes
+ * LDAP latency from user logins and roster loading.
+ *
+ * Each refresh lists the names of all groups together with an attribute that changes whenever a group is modified
+ * ({@link #CHANGE_ATTRIBUTE}: typically {@code modifyTimestamp}, or {@code uSNChanged} for Active Directory). Only the
+ * groups that were added, or of which that attribute has changed, are loaded again. All groups are loaded again at
+ * the {@link #FULL_REFRESH_INTERVAL}, when the change attribute is not available, and whenever a group changes while
+ * nested groups are being flattened (as a change to a nested group is not reflected in the change attribute of the
+ * groups that contain it).
+ *
+ * A refresh replaces the snapshot as a whole: lookups either see the state before, or after a refresh. After a
+ * refresh, the changes are applied to the caches of {@link GroupManager}, and the corresponding group events are
+ * dispatched (by the senior cluster member only), so that shared rosters reflect the changes.
+ */
+public class LdapGroupSnapshot
+{
+    private static final Logger Log = LoggerFactory.getLogger(LdapGroupSnapshot.class);
+
+    /**
+     * Enables answering group lookups from a periodically refreshed snapshot of LDAP group membership.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("ldap.groups.snapshot.enabled")
+        .setDefaultValue(false)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The interval in which the snapshot is refreshed.
+     */
+    public static final SystemProperty<Duration> REFRESH_INTERVAL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("ldap.groups.snapshot.interval")
+        .setDefaultValue(Duration.ofMinutes(5))
+        .setMinValue(Duration.ofSeconds(10))
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The interval in which all groups are loaded, regardless of the value of their change attribute.
+     */
+    public static final SystemProperty<Duration> FULL_REFRESH_INTERVAL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("ldap.groups.snapshot.full-refresh-interval")
+        .setDefaultValue(Duration.ofHours(6))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The LDAP attribute of a group that changes whenever the group is modified.
+     */
+    public static final SystemProperty<String> CHANGE_ATTRIBUTE = SystemProperty.Builder.ofType(String.class)
+        .setKey("ldap.groups.snapshot.change-attribute")
+        .setDefaultValue("modifyTimestamp")
+        .setDynamic(true)
+        .build();
+
+    /**
+     * Loads a group from LDAP.
+     */
+    @FunctionalInterface
+    interface GroupLoader
+    {
+        Group load(String groupName) throws GroupNotFoundException;
+    }
+
+    /**
+     * Lists all groups in LDAP.
+     */
+    @FunctionalInterface
+    interface GroupLister
+    {
+        /**
+         * @return the value of the change attribute by group name (an empty string if the group has no such attribute).
+         * @throws LdapPagedSearch.SearchFailedException if the groups could not be listed.
+         */
+        Map<String, String> list();
+    }
+
+    /**
+     * The contents of a snapshot. Instances are immutable.
+     */
+    private static final class State
+    {
+        final Map<String, Group> groups;
+        final Map<String, String> changeMarkers;
+        final Map<JID, Set<String>> groupNamesByMember;
+        final List<String> groupNames;
+        final Instant lastFullRefresh;
+
+        State(@Nonnull final Map<String, Group> groups, @Nonnull final Map<String, String> changeMarkers, @Nonnull final Instant lastFullRefresh)
+        {
+            this.groups = Collections.unmodifiableMap(groups);
+            this.changeMarkers = Collections.unmodifiableMap(changeMarkers);
+            this.lastFullRefresh = lastFullRefresh;
+
+            final List<String> groupNames = new ArrayList<>(groups.keySet());
+            Collections.sort(groupNames);
+            this.groupNames = Collections.unmodifiableList(groupNames);
+
+            final Map<JID, Set<String>> groupNamesByMember = new HashMap<>();
+            for (final String groupName : groupNames) {
+                final Group group = groups.get(groupName);
+                for (final JID member : group.getMembers()) {
+                    groupNamesByMember.computeIfAbsent(member.asBareJID(), k -> new LinkedHashSet<>()).add(groupName);
+                }
+                for (final JID admin : group.getAdmins()) {
+                    groupNamesByMember.computeIfAbsent(admin.asBareJID(), k -> new LinkedHashSet<>()).add(groupName);
+                }
+            }
+            groupNamesByMember.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+            this.groupNamesByMember = groupNamesByMember;
+        }
+    }
+
+    private final LdapManager manager;
+    private final GroupLoader loader;
+    private final GroupLister lister;
+    private final Supplier<GroupManager> groupManagerSupplier;
+    private volatile State state;
+
+    /**
+     * Set when the snapshot is no longer refreshed. A refresh that completes after {@link #stop()} does not apply its
+     * changes to the caches of {@link GroupManager}, as the provider that uses the snapshot has been replaced.
+     */
+    private volatile boolean stopped;
+
+    private volatile Instant lastRefresh;
+    private volatile Duration lastRefreshDuration;
+    private volatile int lastLoadedCount;
+
+    private final TimerTask refreshTask = new TimerTask() {
+        @Override
+        public void run() {
+            refresh();
+        }
+    };
+
+    LdapGroupSnapshot(@Nonnull final LdapManager manager, @Nonnull final GroupLoader loader)
+    {
+        this(manager, loader, () -> listGroups(manager), GroupManager::getInstance);
+    }
+
+    // Package protected to be able to unit test this class.
+    LdapGroupSnapshot(@Nonnull final LdapManager manager, @Nonnull final GroupLoader loader, @Nonnull final GroupLister lister, @Nonnull final Supplier<GroupManager> groupManagerSupplier)
+    {
+        this.manager = manager;
+        this.loader = loader;
+        this.lister = lister;
+        this.groupManagerSupplier = groupManagerSupplier;
+    }
+
+    /**
+     * Starts refreshing the snapshot periodically. The first refresh is started immediately. Until it completes, the
+     * snapshot is not {@link #isReady() ready}.
+     */
+    public void start()
+    {
+        stopped = false;
+        TaskEngine.getInstance().schedule(refreshTask, Duration.ZERO, REFRESH_INTERVAL.getValue());
+    }
+
+    /**
+     * Stops refreshing the snapshot.
+     */
+    public void stop()
+    {
+        stopped = true;
+        TaskEngine.getInstance().cancelScheduledTask(refreshTask);
+    }
+
+    /**
+     * @return true if the snapshot has been loaded, and can be used to answer lookups.
+     */
+    public boolean isReady()
+    {
+        return state != null;
+    }
+
+    /**
+     * Returns a group from the snapshot.
+     *
+     * @param groupName the name of the group.
+     * @return the group, or null if the group does not exist (or the snapshot is not ready).
+     */
+    @Nullable
+    public Group getGroup(@Nonnull final String groupName)
+    {
+        final State current = state;
+        return current == null ? null : current.groups.get(groupName);
+    }
+
+    /**
+     * @return the names of all groups, sorted (an empty list if the snapshot is not ready).
+     */
+    @Nonnull
+    public List<String> getGroupNames()
+    {
+        final State current = state;
+        return current == null ? Collections.emptyList() : current.groupNames;
+    }
+
+    /**
+     * Returns the names of the groups of which an entity is a member or an administrator.
+     *
+     * @param member the address of the entity.
+     * @return the names of the groups (an empty collection if the snapshot is not ready).
+     */
+    @Nonnull
+    public Collection<String> getGroupNames(@Nonnull final JID member)
+    {
+        final State current = state;
+        return current == null ? Collections.emptySet() : current.groupNamesByMember.getOrDefault(member.asBareJID(), Collections.emptySet());
+    }
+
+    /**
+     * @return the moment at which the last refresh completed, or null if no refresh has completed.
+     */
+    @Nullable
+    public Instant getLastRefresh()
+    {
+        return lastRefresh;
+    }
+
+    /**
+     * @return the duration of the last refresh, or null if no refresh has completed.
+     */
+    @Nullable
+    public Duration getLastRefreshDuration()
+    {
+        return lastRefreshDuration;
+    }
+
+    /**
+     * @return the number of groups that were loaded from LDAP during the last refresh.
+     */
+    public int getLastLoadedCount()
+    {
+        return lastLoadedCount;
+    }
+
+    /**
+     * Refreshes the snapshot. When the groups cannot be listed, the current snapshot is retained.
+     */
+    synchronized void refresh()
+    {
+        final Instant start = Instant.now();
+        final State previous = state;
+
+        final Map<String, String> changeMarkers;
+        try {
+            changeMarkers = lister.list();
+        } catch (LdapPagedSearch.SearchFailedException e) {
+            Log.warn("Unable to list LDAP groups. The snapshot of LDAP group membership is not refreshed.", e.getCause());
+            return;
+        }
+
+        boolean full = previous == null || !start.isBefore(previous.lastFullRefresh.plus(FULL_REFRESH_INTERVAL.getValue()));
+        if (!full && manager.isFlattenNestedGroups()) {
+            // A change to any group can affect the (flattened) members of other groups.
+            full = !changeMarkers.equals(previous.changeMarkers);
+        }
+
+        final Map<String, Group> groups = new HashMap<>();
+        int loaded = 0;
+        for (final Map.Entry<String, String> entry : changeMarkers.entrySet()) {
+            final String groupName = entry.getKey();
+            final Group previousGroup = previous == null ? null : previous.groups.get(groupName);
+            if (!full && previousGroup != null && !entry.getValue().isEmpty() && entry.getValue().equals(previous.changeMarkers.get(groupName))) {
+                groups.put(groupName, previousGroup);
+                continue;
+            }
+            try {
+                groups.put(groupName, loader.load(groupName));
+                loaded++;
+            } catch (GroupNotFoundException e) {
+                Log.debug("LDAP group '{}' could not be loaded. It was likely removed while the snapshot was refreshed.", groupName, e);
+            } catch (Exception e) {
+                Log.warn("Unable to load LDAP group '{}'. The snapshot retains its previous state, if any.", groupName, e);
+                if (previousGroup != null) {
+                    groups.put(groupName, previousGroup);
+                }
+            }
+        }
+
+        final State updated = new State(groups, changeMarkers, full ? start : previous.lastFullRefresh);
+        state = updated;
+        lastRefresh = Instant.now();
+        lastRefreshDuration = Duration.between(start, lastRefresh);
+        lastLoadedCount = loaded;
+        Log.debug("Refreshed snapshot of LDAP group membership ({} refresh) in {}: {} groups, of which {} were loaded.", full ? "full" : "incremental", lastRefreshDuration, groups.size(), loaded);
+
+        if (previous != null && !stopped && ClusterManager.isSeniorClusterMember()) {
+            applyChanges(previous, updated);
+        }
+    }
+
+    /**
+     * Lists all groups.
+     *
+     * @param manager the manager used to query LDAP.
+     * @return the value of the change attribute by group name (an empty string if the group has no such attribute).
+     */
+    @Nonnull
+    private static Map<String, String> listGroups(@Nonnull final LdapManager manager)
+    {
+        final String nameField = manager.getGroupNameField();
+        final String changeAttribute = CHANGE_ATTRIBUTE.getValue();
+        final Map<String, String> result = new HashMap<>();
+        try (final LdapPagedSearch search = new LdapPagedSearch(manager, MessageFormat.format(manager.getGroupSearchFilter(), "*"), nameField, changeAttribute)) {
+            while (search.hasNext()) {
+                final SearchResult searchResult = search.next();
+                final Attributes attributes = searchResult.getAttributes();
+                final Attribute name = attributes.get(nameField);
+                if (name == null) {
+                    continue;
+                }
+                final Attribute marker = attributes.get(changeAttribute);
+                result.put((String) name.get(), marker == null ? "" : String.valueOf(marker.get()));
+            }
+        } catch (NamingException e) {
+            throw new LdapPagedSearch.SearchFailedException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the caches of {@link GroupManager}, and dispatches group events, for the differences between two states.
+     */
+    private void applyChanges(@Nonnull final State previous, @Nonnull final State updated)
+    {
+        final GroupManager groupManager = groupManagerSupplier.get();
+        for (final Map.Entry<String, Group> entry : previous.groups.entrySet()) {
+            final Group previousGroup = entry.getValue();
+            final Group updatedGroup = updated.groups.get(entry.getKey());
+            if (updatedGroup == previousGroup) {
+                continue;
+            }
+            if (updatedGroup == null) {
+                groupManager.deleteGroupPreProcess(previousGroup);
+                groupManager.deleteGroupPostProcess(previousGroup);
+                continue;
+            }
+            for (final JID member : updatedGroup.getMembers()) {
+                if (!previousGroup.getMembers().contains(member)) {
+                    groupManager.memberAddedPostProcess(updatedGroup, member, false);
+                }
+            }
+            for (final JID member : previousGroup.getMembers()) {
+                if (!updatedGroup.getMembers().contains(member)) {
+                    groupManager.memberRemovedPostProcess(updatedGroup, member);
+                }
+            }
+            if (!Objects.equals(previousGroup.getDescription(), updatedGroup.getDescription())) {
+                groupManager.redescribeGroupPostProcess(updatedGroup, previousGroup.getDescription());
+            }
+        }
+        for (final String groupName : updated.groups.keySet()) {
+            if (!previous.groups.containsKey(groupName)) {
+                try {
+                    // Replace the negative cache entry that may exist for the group.
+                    groupManager.getGroup(groupName, true);
+                } catch (GroupNotFoundException e) {
+                    Log.debug("Group '{}' that was added to the LDAP snapshot could not be found.", groupName, e);
+                }
+            }
+        }
+    }
+}
@@ -18,6 +18,9 @@ package org.jivesoftware.openfire.ldap;
 
 import org.jivesoftware.admin.LdapUserTester;
 import org.jivesoftware.openfire.group.GroupNotFoundException;
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.jivesoftware.openfire.stats.i18nStatistic;
 import org.jivesoftware.openfire.user.UserNotFoundException;
 import org.jivesoftware.util.*;
 import org.jivesoftware.util.cache.Cache;
@@ -36,6 +39,7 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Centralized administration of LDAP connections. The {@link #getInstance()} method
@@ -211,6 +215,76 @@ public class LdapManager {
 
     private Cache<String, CacheableOptional<DNCacheEntry>> userDNCache = null;
 
+    private final LdapContextPool contextPool = new LdapContextPool(this);
+
+    /**
+     * Instantiates an LDAP context from its environment.
+     */
+    @FunctionalInterface
+    interface ContextConstructor {
+        JiveInitialLdapContext create(Hashtable<?, ?> env) throws NamingException;
+    }
+
+    private static final AtomicBoolean statisticsInitialized = new AtomicBoolean();
+
+    /**
+     * Adds statistics of the LDAP connection pool and result caches to the statistics manager. This is invoked by the
+     * LDAP providers when they are instantiated. Invocations after the first have no effect.
+     */
+    public static void initStatistics() {
+        if (!statisticsInitialized.compareAndSet(false, true)) {
+            return;
+        }
+        StatisticsManager.getInstance().addStatistic("ldap_connections_created", new i18nStatistic("ldap.connections_created", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                final long total = getInstance().getContextPool().getCreatedCount();
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+        StatisticsManager.getInstance().addStatistic("ldap_connections_reused", new i18nStatistic("ldap.connections_reused", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                final long total = getInstance().getContextPool().getReusedCount();
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+        StatisticsManager.getInstance().addStatistic("ldap_cache_misses", new i18nStatistic("ldap.cache_misses", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                final long total = LdapResultCache.getInstances().stream().mapToLong(LdapResultCache::getMissCount).sum();
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+    }
+
     /**
      * Provides singleton access to an instance of the LdapManager class.
      *
@@ -595,6 +669,16 @@ public class LdapManager {
         return result.toArray(new Rdn[0]);
     }
 
+    /**
+     * Returns the pool of LDAP contexts that is used by {@link #getContext(LdapName)} when
+     * {@link LdapContextPool#ENABLED} is set.
+     *
+     * @return the context pool.
+     */
+    public LdapContextPool getContextPool() {
+        return contextPool;
+    }
+
     /**
      * Returns a DirContext for the LDAP server that can be used to perform
      * lookups and searches using the default base DN. The alternate DN will be used
@@ -621,12 +705,31 @@ public class LdapManager {
      * Returns a DirContext for the LDAP server that can be used to perform
      * lookups and searches using the specified base DN. The context uses the
      * admin login that is defined by {@code adminDN} and {@code adminPassword}.
+     * When {@link LdapContextPool#ENABLED pooling} is enabled, the context is
+     * taken from the pool, and returned to it when it is closed.
      *
      * @param baseDN the base DN to use for the context.
      * @return a connection to the LDAP server.
      * @throws NamingException if there is an error making the LDAP connection.
      */
     public LdapContext getContext(LdapName baseDN) throws NamingException {
+        if (LdapContextPool.ENABLED.getValue()) {
+            return contextPool.borrow(baseDN);
+        }
+        return createContext(baseDN, getProviderURL(baseDN), env -> new JiveInitialLdapContext(env, null));
+    }
+
+    /**
+     * Creates a new DirContext for the LDAP server, that uses the admin login that is defined by {@code adminDN} and
+     * {@code adminPassword}.
+     *
+     * @param baseDN the base DN to use for the context.
+     * @param providerURL the URL(s) of the LDAP server(s), as obtained from {@link #getProviderURL(LdapName, int)}.
+     * @param constructor instantiates the context from its environment.
+     * @return a connection to the LDAP server.
+     * @throws NamingException if there is an error making the LDAP connection.
+     */
+    LdapContext createContext(LdapName baseDN, String providerURL, ContextConstructor constructor) throws NamingException {
         Log.debug("Creating a DirContext in LdapManager.getContext() for baseDN '{}'...", baseDN);
         if (!sslEnabled && !startTlsEnabled) {
             Log.warn("Using unencrypted connection to LDAP service!");
@@ -635,7 +738,7 @@ public class LdapManager {
         // Set up the environment for creating the initial context
         Hashtable<String, Object> env = new Hashtable<>();
         env.put(Context.INITIAL_CONTEXT_FACTORY, initialContextFactory);
-        env.put(Context.PROVIDER_URL, getProviderURL(baseDN));
+        env.put(Context.PROVIDER_URL, providerURL);
 
         // SSL
         if (sslEnabled) {
@@ -663,7 +766,7 @@ public class LdapManager {
         if (ldapDebugEnabled) {
             env.put("com.sun.jndi.ldap.trace.ber", System.err);
         }
-        if (connectionPoolEnabled) {
+        if (connectionPoolEnabled && !LdapContextPool.ENABLED.getValue()) {
             if (!startTlsEnabled) {
                 env.put("com.sun.jndi.ldap.connect.pool", "true");
                 System.setProperty("com.sun.jndi.ldap.connect.pool.protocol", "plain ssl");
@@ -694,7 +797,7 @@ public class LdapManager {
         Log.debug("Created hashtable with context values, attempting to create context...");
 
         // Create new initial context
-        JiveInitialLdapContext context = new JiveInitialLdapContext(env, null);
+        JiveInitialLdapContext context = constructor.create(env);
 
         // TLS http://www.ietf.org/rfc/rfc2830.txt ("1.3.6.1.4.1.1466.20037")
         if (startTlsEnabled && !sslEnabled) {
@@ -1374,12 +1477,30 @@ public class LdapManager {
      * @return the properly encoded URL for use in as PROVIDER_URL.
      */
     String getProviderURL(LdapName baseDN) throws NamingException
+    {
+        return getProviderURL(baseDN, 0);
+    }
+
+    /**
+     * Returns a properly encoded URL for use as the PROVIDER_URL, in which the hosts are listed starting with a
+     * particular host. JNDI tries the hosts in the order in which they are listed, which allows connections to be
+     * distributed over all hosts.
+     *
+     * @param baseDN the base dn to use in the URL.
+     * @param firstHost the index of the host to list first.
+     * @return the properly encoded URL for use in as PROVIDER_URL.
+     */
+    String getProviderURL(LdapName baseDN, int firstHost) throws NamingException
     {
         StringBuffer ldapURL = new StringBuffer();
 
         try
         {
-            for ( String host : hosts )
+            final List<String> orderedHosts = new ArrayList<>(hosts);
+            if (!orderedHosts.isEmpty()) {
+                Collections.rotate(orderedHosts, -(firstHost % orderedHosts.size()));
+            }
+            for ( String host : orderedHosts )
             {
                 // Create a correctly-encoded ldap URL for the PROVIDER_URL
                 final URI uri = new URI(sslEnabled ? "ldaps" : "ldap", null, host, port, "/" + baseDN.toString(), null, null);
@@ -1426,6 +1547,7 @@ public class LdapManager {
             hostProperty.setLength(hostProperty.length()-1);
         }
         properties.put("ldap.host", hostProperty.toString());
+        contextPool.clear();
     }
 
     /**
@@ -1447,6 +1569,7 @@ public class LdapManager {
     public void setPort(int port) {
         this.port = port;
         properties.put("ldap.port", Integer.toString(port));
+        contextPool.clear();
     }
 
     /**
@@ -1489,6 +1612,7 @@ public class LdapManager {
     public void setSslEnabled(boolean sslEnabled) {
         this.sslEnabled = sslEnabled;
         properties.put("ldap.sslEnabled", Boolean.toString(sslEnabled));
+        contextPool.clear();
     }
 
     /**
@@ -1508,6 +1632,7 @@ public class LdapManager {
     public void setStartTlsEnabled(boolean startTlsEnabled) {
         this.startTlsEnabled = startTlsEnabled;
         properties.put("ldap.startTlsEnabled", Boolean.toString(startTlsEnabled));
+        contextPool.clear();
     }
 
 
@@ -1778,6 +1903,7 @@ public class LdapManager {
     public void setAdminDN(String adminDN) {
         this.adminDN = adminDN;
         properties.put("ldap.adminDN", adminDN);
+        contextPool.clear();
     }
 
     /**
@@ -1799,6 +1925,7 @@ public class LdapManager {
     public void setAdminPassword(String adminPassword) {
         this.adminPassword = adminPassword;
         properties.put("ldap.adminPassword", adminPassword);
+        contextPool.clear();
     }
 
     /**
@@ -2434,123 +2561,19 @@ public class LdapManager {
      * @return The number of entries that match the filter.
      */
     public Integer retrieveListCount(String attribute, String searchFilter) {
-        final int pageSize = LDAP_PAGE_SIZE.getValue();
-        LdapContext ctx = null;
-        LdapContext ctx2 = null;
-        Integer count = 0;
-        try {
-            ctx = getContext(baseDN);
-
-            // Set up request controls, if appropriate.
-            List<Control> baseTmpRequestControls = new ArrayList<>();
-            if (pageSize > 0) {
-                // Server side paging.
-                baseTmpRequestControls.add(new PagedResultsControl(pageSize, Control.NONCRITICAL));
-            }
-            Control[] baseRequestControls = baseTmpRequestControls.toArray(new Control[0]);
-            ctx.setRequestControls(baseRequestControls);
-
-            SearchControls searchControls = new SearchControls();
-            // See if recursive searching is enabled. Otherwise, only search one level.
-            if (isSubTreeSearch()) {
-                searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-            }
-            else {
-                searchControls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
-            }
-            searchControls.setReturningAttributes(new String[] { attribute });
-            byte[] cookie;
-            // Run through all pages of results (one page is also possible  ;)  )
-            do {
-                cookie = null;
-                NamingEnumeration<SearchResult> answer = ctx.search("", searchFilter, searchControls);
-
-                // Examine all of the results on this page
-                while (answer.hasMoreElements()) {
-                    answer.next();
-                    count++;
-                }
-                // Examine the paged results control response
-                Control[] controls = ctx.getResponseControls();
-                if (controls != null) {
-                    for (Control control : controls) {
-                        if (control instanceof PagedResultsResponseControl) {
-                            PagedResultsResponseControl prrc = (PagedResultsResponseControl) control;
-                            cookie = prrc.getCookie();
-                        }
-                    }
-                }
-                // Close the enumeration.
-                answer.close();
-                // Re-activate paged results; affects nothing if no paging support
-                List<Control> tmpRequestControls = new ArrayList<>();
-                if (pageSize > 0) {
-                    // Server side paging.
-                    tmpRequestControls.add(new PagedResultsControl(pageSize, cookie, Control.CRITICAL));
-                }
-                Control[] requestControls = tmpRequestControls.toArray(new Control[0]);
-                ctx.setRequestControls(requestControls);
-            } while (cookie != null);
-
-            // Add groups found in alternate DN
-            if (alternateBaseDN != null) {
-                ctx2 = getContext(alternateBaseDN);
-                ctx2.setRequestControls(baseRequestControls);
-
-                // Run through all pages of results (one page is also possible  ;)  )
-                do {
-                    cookie = null;
-                    NamingEnumeration<SearchResult> answer = ctx2.search("", searchFilter, searchControls);
-
-                    // Examine all of the results on this page
-                    while (answer.hasMoreElements()) {
-                        answer.next();
-                        count++;
-                    }
-                    // Examine the paged results control response
-                    Control[] controls = ctx2.getResponseControls();
-                    if (controls != null) {
-                        for (Control control : controls) {
-                            if (control instanceof PagedResultsResponseControl) {
-                                PagedResultsResponseControl prrc = (PagedResultsResponseControl) control;
-                                cookie = prrc.getCookie();
-                            }
-                        }
-                    }
-                    // Close the enumeration.
-                    answer.close();
-                    // Re-activate paged results; affects nothing if no paging support
-                    List<Control> tmpRequestControls = new ArrayList<>();
-                    if (pageSize > 0) {
-                        // Server side paging.
-                        tmpRequestControls.add(new PagedResultsControl(pageSize, cookie, Control.CRITICAL));
-                    }
-                    Control[] requestControls = tmpRequestControls.toArray(new Control[0]);
-                    ctx2.setRequestControls(requestControls);
-                } while (cookie != null);
+        int count = 0;
+        try (final LdapPagedSearch search = new LdapPagedSearch(this, searchFilter, attribute)) {
+            while (search.hasNext()) {
+                search.next();
+                count++;
             }
         }
-        catch (Exception e) {
-            Log.error("An exception occurred while trying to retrieve a list count for attribute: {}", attribute, e);
-        }
-        finally {
-            try {
-                if (ctx != null) {
-                    ctx.setRequestControls(null);
-                    ctx.close();
-                }
-                if (ctx2 != null) {
-                    ctx2.setRequestControls(null);
-                    ctx2.close();
-                }
-            }
-            catch (Exception e) {
-                Log.debug("An exception occurred while trying to close contexts after retrieving a list count for attribute: {}", attribute, e);
-            }
+        catch (LdapPagedSearch.SearchFailedException e) {
+            Log.error("An exception occurred while trying to retrieve a list count for attribute: {}", attribute, e.getCause());
         }
         return count;
     }
-    
+
     /**
      * Escapes any special chars (RFC 4515) from a string representing
      * a search filter assertion value.
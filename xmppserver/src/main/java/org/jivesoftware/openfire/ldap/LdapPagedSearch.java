@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.ldap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the results of an LDAP search, one page at a time, in the base DN and (if configured) the alternate
+ * base DN of {@link LdapManager}.
+ *
+ * Only one page of results is retrieved from the LDAP server at any time, and the next page is requested only when
+ * all results of the current page have been consumed. This allows large result sets to be processed without holding
+ * them in memory. The LDAP contexts that are used are closed when all results have been consumed, or when the search
+ * is {@link #close() closed}, whichever comes first. Instances are not thread safe.
+ */
+public class LdapPagedSearch implements Iterator<SearchResult>, AutoCloseable
+{
+    private static final Logger Log = LoggerFactory.getLogger(LdapPagedSearch.class);
+
+    private final LdapManager manager;
+    private final String searchFilter;
+    private final SearchControls searchControls;
+    private final int pageSize;
+    private final Deque<LdapName> remainingBaseDNs = new ArrayDeque<>();
+
+    private LdapContext ctx;
+    private NamingEnumeration<SearchResult> answer;
+    private byte[] cookie;
+    private boolean firstPage;
+    private SearchResult next;
+
+    /**
+     * Prepares a paged search. No request is sent to the LDAP server until results are requested.
+     *
+     * @param manager the manager that provides the LDAP contexts.
+     * @param searchFilter the filter to use to perform the search.
+     * @param returningAttributes the attributes to be returned for each result.
+     */
+    LdapPagedSearch(@Nonnull final LdapManager manager, @Nonnull final String searchFilter, @Nonnull final String... returningAttributes)
+    {
+        this.manager = manager;
+        this.searchFilter = searchFilter;
+        this.pageSize = LdapManager.LDAP_PAGE_SIZE.getValue();
+        this.searchControls = new SearchControls();
+        // See if recursive searching is enabled. Otherwise, only search one level.
+        searchControls.setSearchScope(manager.isSubTreeSearch() ? SearchControls.SUBTREE_SCOPE : SearchControls.ONELEVEL_SCOPE);
+        searchControls.setReturningAttributes(returningAttributes);
+        remainingBaseDNs.add(manager.getBaseDN());
+        if (manager.getAlternateBaseDN() != null) {
+            remainingBaseDNs.add(manager.getAlternateBaseDN());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws SearchFailedException if the next page of results could not be retrieved.
+     */
+    @Override
+    public boolean hasNext()
+    {
+        if (next != null) {
+            return true;
+        }
+        try {
+            while (true) {
+                if (answer != null && answer.hasMore()) {
+                    next = answer.next();
+                    return true;
+                }
+                if (answer != null) {
+                    // The current page is exhausted: determine if there is a next one.
+                    answer.close();
+                    answer = null;
+                    cookie = getCookie();
+                    if (cookie == null) {
+                        closeContext();
+                    }
+                }
+                if (ctx == null) {
+                    final LdapName baseDN = remainingBaseDNs.pollFirst();
+                    if (baseDN == null) {
+                        return false;
+                    }
+                    ctx = manager.getContext(baseDN);
+                    firstPage = true;
+                }
+                answer = searchNextPage();
+            }
+        } catch (NamingException e) {
+            close();
+            throw new SearchFailedException(e);
+        }
+    }
+
+    @Override
+    public SearchResult next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final SearchResult result = next;
+        next = null;
+        return result;
+    }
+
+    private NamingEnumeration<SearchResult> searchNextPage() throws NamingException
+    {
+        if (pageSize > 0) {
+            try {
+                // The first page is requested with a non-critical control, to support servers that do not page.
+                ctx.setRequestControls(new Control[] { firstPage
+                    ? new PagedResultsControl(pageSize, Control.NONCRITICAL)
+                    : new PagedResultsControl(pageSize, cookie, Control.CRITICAL) });
+            } catch (IOException e) {
+                throw new NamingException("Unable to create paged results control: " + e.getMessage());
+            }
+        }
+        firstPage = false;
+        return ctx.search("", searchFilter, searchControls);
+    }
+
+    private byte[] getCookie() throws NamingException
+    {
+        if (pageSize <= 0) {
+            return null;
+        }
+        final Control[] controls = ctx.getResponseControls();
+        if (controls != null) {
+            for (final Control control : controls) {
+                if (control instanceof PagedResultsResponseControl) {
+                    final byte[] result = ((PagedResultsResponseControl) control).getCookie();
+                    return result == null || result.length == 0 ? null : result;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void closeContext()
+    {
+        if (ctx != null) {
+            try {
+                ctx.setRequestControls(null);
+                ctx.close();
+            } catch (Exception e) {
+                Log.debug("An exception occurred while trying to close a context after a paged search.", e);
+            }
+            ctx = null;
+        }
+    }
+
+    /**
+     * Stops the search, releasing all resources. Results that have not been consumed are discarded.
+     */
+    @Override
+    public void close()
+    {
+        next = null;
+        remainingBaseDNs.clear();
+        if (answer != null) {
+            try {
+                answer.close();
+            } catch (NamingException e) {
+                Log.debug("An exception occurred while trying to close the results of a paged search.", e);
+            }
+            answer = null;
+        }
+        closeContext();
+    }
+
+    /**
+     * Indicates that the results of a paged search could not be retrieved.
+     */
+    public static class SearchFailedException extends RuntimeException
+    {
+        SearchFailedException(@Nonnull final NamingException cause)
+        {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized NamingException getCause()
+        {
+            return (NamingException) super.getCause();
+        }
+    }
+}
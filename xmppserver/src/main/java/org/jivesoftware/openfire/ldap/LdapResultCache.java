@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.ldap;
+
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A cache for the results of LDAP lookups, that are retained for a limited duration.
+ *
+ * An entry that is used after half of its time to live has passed is refreshed in the background, while the current
+ * value continues to be returned. Entries that are used regularly are therefore never waited for, after they have been
+ * loaded once. Entries that have expired are loaded again by the thread that uses them. When a lookup fails, nothing is
+ * cached: an expired entry is then kept and used until a lookup succeeds, while a failing background refresh leaves the
+ * current entry in place. When the cache is full, the entry that was used least recently is removed.
+ *
+ * This cache is local to a cluster node: the data that it holds is obtained from the LDAP server, which is shared by
+ * all cluster nodes.
+ *
+ * @param <K> the type of the keys of the lookups.
+ * @param <V> the type of the results of the lookups.
+ */
+public class LdapResultCache<K, V>
+{
+    private static final Logger Log = LoggerFactory.getLogger(LdapResultCache.class);
+
+    /**
+     * The duration for which results of LDAP lookups are cached. A zero duration disables caching.
+     */
+    public static final SystemProperty<Duration> TTL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("ldap.cache.ttl")
+        .setDefaultValue(Duration.ofMinutes(5))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum number of results that are cached by each LDAP result cache.
+     */
+    public static final SystemProperty<Integer> MAX_ENTRIES = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("ldap.cache.max-entries")
+        .setDefaultValue(10000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * All caches that were created, used to report statistics.
+     */
+    private static final Set<LdapResultCache<?, ?>> INSTANCES = ConcurrentHashMap.newKeySet();
+
+    private final String name;
+    private final Function<K, V> loader;
+    private final Executor refreshExecutor;
+    private final Clock clock;
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+            if (size() > MAX_ENTRIES.getValue()) {
+                evictionCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a cache that refreshes entries using the task engine.
+     *
+     * @param name a name for the cache, used in logging.
+     * @param loader performs the LDAP lookup for a key, throwing an exception (rather than returning an incomplete result)
+     *               when the lookup fails.
+     */
+    public LdapResultCache(@Nonnull final String name, @Nonnull final Function<K, V> loader)
+    {
+        this(name, loader, task -> TaskEngine.getInstance().submit(task), Clock.systemUTC());
+        INSTANCES.add(this);
+    }
+
+    LdapResultCache(@Nonnull final String name, @Nonnull final Function<K, V> loader, @Nonnull final Executor refreshExecutor, @Nonnull final Clock clock)
+    {
+        this.name = name;
+        this.loader = loader;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the result of the lookup for a key, from cache if available.
+     *
+     * @param key the key of the lookup.
+     * @return the result of the lookup.
+     * @throws RuntimeException the exception thrown by the loader, when the lookup fails and no (expired) result is
+     *                          cached.
+     */
+    public V get(@Nonnull final K key)
+    {
+        final Duration ttl = TTL.getValue();
+        if (ttl.isZero()) {
+            missCount.incrementAndGet();
+            return loader.apply(key);
+        }
+
+        final Instant now = clock.instant();
+        final Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && now.isBefore(entry.loaded.plus(ttl))) {
+            hitCount.incrementAndGet();
+            if (!now.isBefore(entry.loaded.plus(ttl.dividedBy(2))) && entry.refreshing.compareAndSet(false, true)) {
+                refreshExecutor.execute(() -> refresh(key, entry));
+            }
+            return entry.value;
+        }
+
+        missCount.incrementAndGet();
+        final V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            if (entry == null) {
+                throw e;
+            }
+            Log.warn("Unable to reload expired entry '{}' of LDAP result cache '{}'. Using the expired entry instead.", key, name, e);
+            return entry.value;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, now));
+        }
+        return value;
+    }
+
+    private void refresh(@Nonnull final K key, @Nonnull final Entry<V> entry)
+    {
+        try {
+            final Entry<V> refreshed = new Entry<>(loader.apply(key), clock.instant());
+            // Do not resurrect an entry that was invalidated while it was being refreshed.
+            final boolean replaced;
+            synchronized (entries) {
+                replaced = entries.replace(key, entry, refreshed);
+            }
+            if (replaced) {
+                refreshCount.incrementAndGet();
+            }
+        } catch (Exception e) {
+            // Keep the current entry, which is reloaded by the thread that uses it once it has expired.
+            Log.warn("Unable to refresh entry '{}' of LDAP result cache '{}'.", key, name, e);
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Removes the result of the lookup for a key, causing it to be looked up again when it is next used.
+     *
+     * @param key the key of the lookup.
+     */
+    public void invalidate(@Nonnull final K key)
+    {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear()
+    {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the name of this cache.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the number of cached results.
+     */
+    public int size()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups that were answered from cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that were performed on the LDAP server, because no usable result was cached.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of results that were refreshed in the background.
+     */
+    public long getRefreshCount()
+    {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return the number of results that were removed to make room for others.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return all caches that were created with the public constructor.
+     */
+    public static Collection<LdapResultCache<?, ?>> getInstances()
+    {
+        return Collections.unmodifiableSet(INSTANCES);
+    }
+
+    private static final class Entry<V>
+    {
+        final V value;
+        final Instant loaded;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(final V value, @Nonnull final Instant loaded)
+        {
+            this.value = value;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -63,6 +63,7 @@ public class LdapUserProvider implements UserProvider {
         JiveGlobals.migrateProperty("ldap.searchFields");
 
         manager = LdapManager.getInstance();
+        LdapManager.initStatistics();
         searchFields = new LinkedHashMap<>();
         String fieldList = JiveGlobals.getProperty("ldap.searchFields");
         // If the value isn't present, default to to username, name, and email.
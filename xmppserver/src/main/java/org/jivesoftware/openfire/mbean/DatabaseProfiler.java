@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.mbean;
+
+import org.jivesoftware.database.ConnectionProvider;
+import org.jivesoftware.database.DbConnectionManager;
+import org.jivesoftware.database.DefaultConnectionProvider;
+import org.jivesoftware.database.LatencyHistogram;
+import org.jivesoftware.database.StatementProfiler;
+
+import java.time.Duration;
+
+/**
+ * Exposes the statistics that are collected by {@link StatementProfiler} as an MBean.
+ */
+public class DatabaseProfiler implements DatabaseProfilerMBean
+{
+    private static final int TOP_STATEMENTS = 20;
+
+    @Override
+    public int getStatementCount() {
+        return StatementProfiler.getStatementStatistics().size();
+    }
+
+    @Override
+    public long getExecutionCount() {
+        return StatementProfiler.getStatementStatistics().stream().mapToLong(s -> s.getLatency().getCount()).sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return StatementProfiler.getStatementStatistics().stream().mapToLong(StatementProfiler.StatementStatistics::getErrorCount).sum();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return StatementProfiler.getSlowQueryCount();
+    }
+
+    @Override
+    public String[] getTopStatements() {
+        return StatementProfiler.getStatementStatistics().stream()
+            .limit(TOP_STATEMENTS)
+            .map(s -> {
+                final LatencyHistogram latency = s.getLatency();
+                return String.format("count=%d errors=%d total=%dms mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms %s",
+                    latency.getCount(), s.getErrorCount(), latency.getTotal().toMillis(), toMillis(latency.getMean()),
+                    toMillis(latency.getPercentile(50)), toMillis(latency.getPercentile(99)), toMillis(latency.getMax()), s.getSql());
+            })
+            .toArray(String[]::new);
+    }
+
+    @Override
+    public String[] getSlowQueries() {
+        return StatementProfiler.getSlowQueries().stream().map(StatementProfiler.SlowQuery::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public double getPoolWaitMeanMillis() {
+        return toMillis(StatementProfiler.getPoolWait().getMean());
+    }
+
+    @Override
+    public double getPoolWait99thPercentileMillis() {
+        return toMillis(StatementProfiler.getPoolWait().getPercentile(99));
+    }
+
+    @Override
+    public long getPoolMeanBorrowWaitMillis() {
+        final ConnectionProvider provider = DbConnectionManager.getConnectionProvider();
+        return provider instanceof DefaultConnectionProvider ? ((DefaultConnectionProvider) provider).getMeanBorrowWaitTime().toMillis() : -1;
+    }
+
+    @Override
+    public long getPoolMaxBorrowWaitMillis() {
+        final ConnectionProvider provider = DbConnectionManager.getConnectionProvider();
+        return provider instanceof DefaultConnectionProvider ? ((DefaultConnectionProvider) provider).getMaxBorrowWaitTime().toMillis() : -1;
+    }
+
+    @Override
+    public void reset() {
+        StatementProfiler.reset();
+    }
+
+    private static double toMillis(final Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+}
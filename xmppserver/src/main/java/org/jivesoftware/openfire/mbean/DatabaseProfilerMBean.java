@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.mbean;
+
+/**
+ * MBean definition for the statistics that are collected by {@link org.jivesoftware.database.StatementProfiler}.
+ */
+public interface DatabaseProfilerMBean
+{
+    String OBJECT_NAME = "org.igniterealtime.openfire:type=Database,name=StatementProfiler";
+
+    /**
+     * Returns the number of distinct statements for which statistics are kept.
+     *
+     * @return the number of statements
+     */
+    int getStatementCount();
+
+    /**
+     * Returns the number of profiled statement executions.
+     *
+     * @return the number of executions
+     */
+    long getExecutionCount();
+
+    /**
+     * Returns the number of profiled statement executions that threw an exception.
+     *
+     * @return the number of failed executions
+     */
+    long getErrorCount();
+
+    /**
+     * Returns the number of statement executions that exceeded the slow query threshold.
+     *
+     * @return the number of slow queries
+     */
+    long getSlowQueryCount();
+
+    /**
+     * Returns a description of the statements that took the most time in total, most expensive first, including their
+     * execution count and latency percentiles.
+     *
+     * @return descriptions of the statements
+     */
+    String[] getTopStatements();
+
+    /**
+     * Returns a description of the most recent slow queries, oldest first.
+     *
+     * @return descriptions of the slow queries
+     */
+    String[] getSlowQueries();
+
+    /**
+     * Returns the average time spent waiting for a connection, as measured by the profiler.
+     *
+     * @return the average wait time in milliseconds
+     */
+    double getPoolWaitMeanMillis();
+
+    /**
+     * Returns the 99th percentile of the time spent waiting for a connection, as measured by the profiler.
+     *
+     * @return the wait time in milliseconds
+     */
+    double getPoolWait99thPercentileMillis();
+
+    /**
+     * Returns the average time spent waiting for a connection, as reported by the connection pool, or -1 when the
+     * connection provider does not report this.
+     *
+     * @return the average wait time in milliseconds
+     */
+    long getPoolMeanBorrowWaitMillis();
+
+    /**
+     * Returns the longest time spent waiting for a connection, as reported by the connection pool, or -1 when the
+     * connection provider does not report this.
+     *
+     * @return the longest wait time in milliseconds
+     */
+    long getPoolMaxBorrowWaitMillis();
+
+    /**
+     * Removes all collected statistics.
+     */
+    void reset();
+}
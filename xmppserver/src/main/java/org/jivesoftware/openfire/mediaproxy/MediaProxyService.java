@@ -22,6 +22,7 @@ import org.dom4j.Element;
 import org.jivesoftware.openfire.*;
 import org.jivesoftware.openfire.auth.UnauthorizedException;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.disco.*;
 import org.jivesoftware.util.JiveGlobals;
 import org.slf4j.Logger;
@@ -90,6 +91,12 @@ public class MediaProxyService extends BasicModule
         initMediaProxy();
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Starting the media proxy does not affect other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() {
         if (isEnabled()) {
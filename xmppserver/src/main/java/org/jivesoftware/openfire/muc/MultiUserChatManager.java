@@ -22,6 +22,7 @@ import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.cluster.ClusterEventListener;
 import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.event.UserEventDispatcher;
 import org.jivesoftware.openfire.event.UserEventListener;
 import org.jivesoftware.openfire.muc.cluster.ServiceAddedEvent;
@@ -54,9 +55,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -97,6 +100,12 @@ public class MultiUserChatManager extends BasicModule implements MUCServicePrope
         super("Multi user chat manager");
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Starting the chat services depends only on the modules that are started before this one.
+        return Collections.emptySet();
+    }
+
     /**
      * Called when manager starts up, to initialize things.
      */
@@ -27,6 +27,7 @@ import org.jivesoftware.openfire.muc.MUCRoom;
 import org.jivesoftware.openfire.muc.MultiUserChatService;
 import org.jivesoftware.openfire.session.Session;
 import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.jivesoftware.openfire.vcard.CachedVCard;
 import org.jivesoftware.openfire.vcard.VCardManager;
 import org.jivesoftware.util.*;
 import org.slf4j.Logger;
@@ -122,7 +123,9 @@ public class IQMUCvCardHandler extends IQHandler
                                     sendConfigChangeNotification(room);
 
                                     // Mimic a client that broadcasts a vCard update. Converse seems to need this.
-                                    final String hash = calculatePhotoHash(vcard);
+                                    // Use the hash of the vCard as it was stored, which is retained in the cache after it was first computed.
+                                    final String storedHash = VCardManager.getInstance().getPhotoHash(room.getJID().toString());
+                                    final String hash = storedHash != null ? storedHash : calculatePhotoHash(vcard);
                                     sendVCardUpdateNotification(room, hash);
                                     Log.debug("vCard update request from: '{}', for: '{}' processed successfully.", packet.getFrom(), packet.getTo());
                                 }
@@ -192,15 +195,15 @@ public class IQMUCvCardHandler extends IQHandler
                     if ( room != null && mucService.canDiscoverRoom(room, packet.getFrom()) )
                     {
                         VCardManager vManager = VCardManager.getInstance();
-                        Element userVCard = vManager.getVCard(room.getJID().toString());
+                        Element userVCard = vManager.getVCardReadOnly(room.getJID().toString());
                         if ( userVCard != null )
                         {
+                            // Create a single copy, as the cached vCard is shared and cannot be added to the result.
+                            userVCard = userVCard.createCopy();
                             // Check if the requester wants to ignore some vCard's fields
                             Element filter = packet.getChildElement().element(QName.get("filter", "vcard-temp-filter"));
                             if ( filter != null )
                             {
-                                // Create a copy so we don't modify the original vCard
-                                userVCard = userVCard.createCopy();
                                 // Ignore fields requested by the user
                                 for ( Iterator<Element> toFilter = filter.elementIterator(); toFilter.hasNext(); )
                                 {
@@ -275,18 +278,7 @@ public class IQMUCvCardHandler extends IQHandler
 
     public static String calculatePhotoHash( Element vcard )
     {
-        if ( vcard.element("PHOTO") == null )
-        {
-            return "";
-        }
-        final Element element = vcard.element("PHOTO").element("BINVAL");
-        if ( element == null )
-        {
-            return "";
-        }
-
-        final byte[] photo = Base64.decode(element.getTextTrim());
-        return StringUtils.hash(photo, "SHA-1");
+        return CachedVCard.calculatePhotoHash(vcard);
     }
 
     @Override
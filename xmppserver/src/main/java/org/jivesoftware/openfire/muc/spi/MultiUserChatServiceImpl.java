@@ -55,6 +55,7 @@ import javax.annotation.Nullable;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -87,6 +88,16 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
 {
     private static final Logger Log = LoggerFactory.getLogger(MultiUserChatServiceImpl.class);
 
+    /**
+     * Controls if persistent rooms are preloaded in a background task when the service starts, instead of delaying
+     * the startup of the server until all rooms have been loaded.
+     */
+    public static final SystemProperty<Boolean> PRELOAD_IN_BACKGROUND = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.muc.preload.background")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
     /**
      * The time to elapse between clearing of idle chat users.
      */
@@ -140,6 +151,13 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
      */
     private final LocalMUCRoomManager localMUCRoomManager;
 
+    /**
+     * The names of the rooms that were removed from memory (for example, because they were destroyed) while rooms are
+     * being preloaded, or null when no rooms are being preloaded. The preload does not add these rooms, as its copy of
+     * them, which was read from the database before they were removed, is stale.
+     */
+    private volatile Set<String> roomsRemovedDuringPreload;
+
     /**
      * Responsible for maintaining the in-memory collection of MUCUsers for this service.
      */
@@ -2042,6 +2060,10 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
         lock.lock();
         try {
             final MUCRoom room = localMUCRoomManager.remove(roomName);
+            final Set<String> removedDuringPreload = roomsRemovedDuringPreload;
+            if (removedDuringPreload != null) {
+                removedDuringPreload.add(roomName);
+            }
             if (room != null) {
                 Log.info("removing chat room:" + roomName + "|" + room.getClass().getName());
                 totalChatTime += room.getChatLength();
@@ -2682,13 +2704,54 @@ public class MultiUserChatServiceImpl implements Component, MultiUserChatService
             }
             // Load all the persistent rooms to memory
             final Instant cutoff = Instant.now().minus(Duration.ofDays(preloadDays));
+            if (PRELOAD_IN_BACKGROUND.getValue()) {
+                TaskEngine.getInstance().submit(() -> {
+                    try {
+                        preloadRooms(cutoff);
+                    } catch (final Exception e) {
+                        Log.error("An exception occurred while preloading the rooms of service '{}'.", getServiceDomain(), e);
+                    }
+                });
+            } else {
+                preloadRooms(cutoff);
+            }
+        }
+    }
+
+    /**
+     * Loads the persistent rooms that have had activity since a point in time into memory. Rooms that are in memory
+     * already, for example because they were loaded on demand while this method executes, are not replaced. Rooms that
+     * are removed from memory (for example, because they are destroyed) while this method executes are not added, as
+     * the data that was read for them is stale. These are loaded on demand instead, if they still exist.
+     *
+     * @param cutoff the point in time since which the rooms to load must have had activity.
+     */
+    private void preloadRooms(@Nonnull final Instant cutoff) {
+        final long start = System.nanoTime();
+        int count = 0;
+        final Set<String> removedDuringPreload = ConcurrentHashMap.newKeySet();
+        roomsRemovedDuringPreload = removedDuringPreload; // Before reading from the database, to not miss any removal.
+        try {
             for (final MUCRoom room : MUCPersistenceManager.loadRoomsFromDB(this, Date.from(cutoff))) {
-                localMUCRoomManager.add(room);
+                final Lock lock = localMUCRoomManager.getLock(room.getName());
+                lock.lock();
+                try {
+                    if (localMUCRoomManager.get(room.getName()) != null || removedDuringPreload.contains(room.getName())) {
+                        continue;
+                    }
+                    localMUCRoomManager.add(room);
+                    count++;
+                } finally {
+                    lock.unlock();
+                }
 
                 // Start FMUC, if desired.
                 room.getFmucHandler().applyConfigurationChanges();
             }
+        } finally {
+            roomsRemovedDuringPreload = null;
         }
+        Log.debug("Preloaded {} rooms of service '{}' in {} ms.", count, getServiceDomain(), Duration.ofNanos(System.nanoTime() - start).toMillis());
     }
 
     private void stop() {
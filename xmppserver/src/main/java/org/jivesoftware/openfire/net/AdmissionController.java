@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.jivesoftware.openfire.stats.i18nStatistic;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Controls the rate in which new client connections are admitted to the server.
+ *
+ * Admission is controlled in several stages that each represent a resource-intensive step in the life cycle of a new
+ * client session: accepting the socket, the TLS handshake, SASL authentication and resource binding. For each stage, a
+ * global rate, as well as a rate per remote IP address can be configured. Both are enforced by a {@link TokenBucket}.
+ *
+ * When no capacity is immediately available, a request is preferably queued (delayed) instead of rejected. Only when
+ * the delay would exceed a configurable maximum, the request is rejected. This prevents a large amount of clients that
+ * simultaneously reconnect (eg: after an outage) from overloading the server, while still admitting all of them, given
+ * some time.
+ *
+ * @see org.jivesoftware.openfire.nio.NettyAdmissionHandler
+ */
+public class AdmissionController
+{
+    private static final Logger Log = LoggerFactory.getLogger(AdmissionController.class);
+
+    /**
+     * Enables or disables admission control for client connections.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.client.admission.enabled")
+        .setDefaultValue(false)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum duration that a request is queued while waiting for capacity to become available. Requests that
+     * cannot be admitted within this period are rejected.
+     */
+    public static final SystemProperty<Duration> MAX_QUEUE_DURATION = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.client.admission.max-queue-duration")
+        .setDefaultValue(Duration.ofSeconds(10))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The duration of traffic (at the configured rate) that can be admitted in a burst. Combined with a rate, this
+     * defines the capacity of each token bucket.
+     */
+    public static final SystemProperty<Duration> BURST_DURATION = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.client.admission.burst-duration")
+        .setDefaultValue(Duration.ofSeconds(2))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The stages of the life cycle of a client session for which admission is controlled.
+     */
+    public enum Stage
+    {
+        /**
+         * Acceptance of a newly established socket connection.
+         */
+        ACCEPT("accept", 200.0, 5.0),
+
+        /**
+         * The TLS handshake (after a STARTTLS request).
+         */
+        TLS("tls", 200.0, 5.0),
+
+        /**
+         * SASL authentication.
+         */
+        SASL("sasl", 100.0, 5.0),
+
+        /**
+         * Resource binding, which adds the session to the routing table.
+         */
+        BIND("bind", 100.0, 5.0);
+
+        /**
+         * The maximum amount of requests per second, for all remote addresses combined. Zero or negative values disable the limit.
+         */
+        private final SystemProperty<Double> globalRate;
+
+        /**
+         * The maximum amount of requests per second, per remote address. Zero or negative values disable the limit.
+         */
+        private final SystemProperty<Double> perAddressRate;
+
+        Stage(final String key, final double defaultGlobalRate, final double defaultPerAddressRate)
+        {
+            globalRate = SystemProperty.Builder.ofType(Double.class)
+                .setKey("xmpp.client.admission." + key + ".global-rate")
+                .setDefaultValue(defaultGlobalRate)
+                .setDynamic(true)
+                .build();
+            perAddressRate = SystemProperty.Builder.ofType(Double.class)
+                .setKey("xmpp.client.admission." + key + ".per-address-rate")
+                .setDefaultValue(defaultPerAddressRate)
+                .setDynamic(true)
+                .build();
+        }
+
+        public SystemProperty<Double> getGlobalRate()
+        {
+            return globalRate;
+        }
+
+        public SystemProperty<Double> getPerAddressRate()
+        {
+            return perAddressRate;
+        }
+    }
+
+    // Wrap this guy up so we can mock out the AdmissionController class.
+    private static class AdmissionControllerContainer {
+        private static final AdmissionController instance = new AdmissionController();
+    }
+
+    /**
+     * Returns a singleton instance of AdmissionController.
+     *
+     * @return an AdmissionController instance.
+     */
+    public static AdmissionController getInstance() {
+        return AdmissionControllerContainer.instance;
+    }
+
+    private final Map<Stage, TokenBucket> globalBuckets = new EnumMap<>(Stage.class);
+    private final Map<Stage, Map<String, TokenBucket>> perAddressBuckets = new EnumMap<>(Stage.class);
+    private final Map<Stage, StageStatistics> statistics = new EnumMap<>(Stage.class);
+
+    private AdmissionController()
+    {
+        this(TaskEngine.getInstance());
+    }
+
+    /**
+     * Constructs a new admission controller. Exposed for test use only.
+     */
+    AdmissionController(@Nullable final TaskEngine taskEngine)
+    {
+        final long now = System.nanoTime();
+        for (final Stage stage : Stage.values()) {
+            globalBuckets.put(stage, new TokenBucket(getCapacity(stage.getGlobalRate().getValue()), now));
+            perAddressBuckets.put(stage, new ConcurrentHashMap<>());
+            statistics.put(stage, new StageStatistics());
+        }
+
+        if (taskEngine != null) {
+            taskEngine.scheduleAtFixedRate(new PurgeIdleBucketsTask(), Duration.ofMinutes(1), Duration.ofMinutes(1));
+        }
+    }
+
+    /**
+     * Requests admission for a particular stage of the life cycle of a client session.
+     *
+     * The returned value indicates if, and when, the request can be processed. A value of zero indicates that the
+     * request can be processed immediately. A positive value is the duration (in nanoseconds) after which the request
+     * can be processed. A negative value indicates that the request is to be rejected.
+     *
+     * @param stage The stage for which admission is requested.
+     * @param address The remote address (typically an IP address) of the peer, or null if that address is unknown.
+     * @return a duration (in nanoseconds) or -1.
+     */
+    public long requestAdmission(@Nonnull final Stage stage, @Nullable final String address)
+    {
+        if (!ENABLED.getValue()) {
+            return 0;
+        }
+
+        final long now = System.nanoTime();
+        final long maxWait = MAX_QUEUE_DURATION.getValue().toNanos();
+        final StageStatistics stats = statistics.get(stage);
+
+        // Reserve a token from the per-address bucket first, to prevent a single address from depleting the global bucket.
+        long addressWait = 0;
+        if (address != null) {
+            final double rate = stage.getPerAddressRate().getValue();
+            if (rate > 0) {
+                final TokenBucket bucket = perAddressBuckets.get(stage).computeIfAbsent(address, a -> new TokenBucket(getCapacity(rate), now));
+                addressWait = bucket.reserve(rate, getCapacity(rate), now, maxWait);
+                if (addressWait < 0) {
+                    Log.debug("Rejecting '{}' request from address '{}': per-address capacity is exhausted.", stage, address);
+                    stats.rejected.increment();
+                    return -1;
+                }
+            }
+        }
+
+        // Both reservations are made at the current time, and run concurrently: the request can be processed once both
+        // tokens are usable. Note that a rejection by the global bucket does not return the per-address token: repeated
+        // attempts from the same address during overload are penalized.
+        final double rate = stage.getGlobalRate().getValue();
+        final long globalWait = globalBuckets.get(stage).reserve(rate, getCapacity(rate), now, maxWait);
+        if (globalWait < 0) {
+            Log.debug("Rejecting '{}' request from address '{}': global capacity is exhausted.", stage, address);
+            stats.rejected.increment();
+            return -1;
+        }
+
+        final long wait = Math.max(addressWait, globalWait);
+        if (wait > 0) {
+            Log.trace("Delaying '{}' request from address '{}' by {}ms.", stage, address, wait / 1_000_000);
+            stats.delayed.increment();
+            stats.delayedNanos.add(wait);
+        } else {
+            stats.admitted.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Returns the amount of requests for a particular stage that were admitted without delay.
+     *
+     * @param stage The stage for which to return a statistic.
+     * @return a request count.
+     */
+    public long getAdmittedCount(@Nonnull final Stage stage)
+    {
+        return statistics.get(stage).admitted.sum();
+    }
+
+    /**
+     * Returns the amount of requests for a particular stage that were admitted after a delay.
+     *
+     * @param stage The stage for which to return a statistic.
+     * @return a request count.
+     */
+    public long getDelayedCount(@Nonnull final Stage stage)
+    {
+        return statistics.get(stage).delayed.sum();
+    }
+
+    /**
+     * Returns the amount of requests for a particular stage that were rejected.
+     *
+     * @param stage The stage for which to return a statistic.
+     * @return a request count.
+     */
+    public long getRejectedCount(@Nonnull final Stage stage)
+    {
+        return statistics.get(stage).rejected.sum();
+    }
+
+    /**
+     * Returns the average delay of requests for a particular stage that were admitted after a delay.
+     *
+     * @param stage The stage for which to return a statistic.
+     * @return an average delay.
+     */
+    public Duration getAverageDelay(@Nonnull final Stage stage)
+    {
+        final StageStatistics stats = statistics.get(stage);
+        final long delayed = stats.delayed.sum();
+        return delayed == 0 ? Duration.ZERO : Duration.ofNanos(stats.delayedNanos.sum() / delayed);
+    }
+
+    /**
+     * Returns the amount of remote addresses for which admission state is currently retained for a particular stage.
+     *
+     * @param stage The stage for which to return a statistic.
+     * @return an amount of addresses.
+     */
+    public int getTrackedAddressCount(@Nonnull final Stage stage)
+    {
+        return perAddressBuckets.get(stage).size();
+    }
+
+    /**
+     * Creates and adds statistics to statistic manager.
+     */
+    public static void initStatistics()
+    {
+        final AdmissionController controller = getInstance();
+        StatisticsManager.getInstance().addStatistic("admission_delayed", new i18nStatistic("admission.delayed", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                long total = 0;
+                for (final Stage stage : Stage.values()) {
+                    total += controller.getDelayedCount(stage);
+                }
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+        StatisticsManager.getInstance().addStatistic("admission_rejected", new i18nStatistic("admission.rejected", Statistic.Type.rate) {
+            private long previous = 0;
+
+            @Override
+            public synchronized double sample() {
+                long total = 0;
+                for (final Stage stage : Stage.values()) {
+                    total += controller.getRejectedCount(stage);
+                }
+                final long result = total - previous;
+                previous = total;
+                return result;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return true;
+            }
+        });
+    }
+
+    private static double getCapacity(final double rate)
+    {
+        // A bucket should always be able to hold at least one token, or no request will ever be admitted.
+        return Math.max(1, rate * BURST_DURATION.getValue().toMillis() / 1000d);
+    }
+
+    private static class StageStatistics
+    {
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder delayed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder delayedNanos = new LongAdder();
+    }
+
+    /**
+     * Removes state for remote addresses that have not recently requested admission.
+     */
+    private class PurgeIdleBucketsTask extends TimerTask
+    {
+        @Override
+        public void run()
+        {
+            final long now = System.nanoTime();
+            for (final Stage stage : Stage.values()) {
+                final double rate = stage.getPerAddressRate().getValue();
+                perAddressBuckets.get(stage).values().removeIf(bucket -> bucket.isFull(rate, getCapacity(rate), now));
+            }
+        }
+    }
+}
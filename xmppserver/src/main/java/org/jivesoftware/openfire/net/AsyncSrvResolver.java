@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.jivesoftware.util.cache.CacheSizes;
+import org.jivesoftware.util.cache.Cacheable;
+import org.jivesoftware.util.cache.CannotCalculateSizeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.naming.NameNotFoundException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Performs DNS SRV lookups without blocking the calling thread.
+ *
+ * Answers are cached for the duration of their TTL. When a cached answer is requested after a configurable fraction
+ * of its TTL has passed, the cached answer is returned while the query is repeated in the background, so that
+ * frequently used answers are refreshed before they expire (refresh-ahead). Failed lookups and empty answers are
+ * cached for a (typically shorter) negative TTL. Concurrent lookups of the same query share one DNS query.
+ *
+ * The DNS queries themselves are performed by a {@link SrvLookupBackend}, which is configurable through the
+ * {@link #BACKEND_CLASS} property.
+ */
+public class AsyncSrvResolver
+{
+    private static final Logger Log = LoggerFactory.getLogger(AsyncSrvResolver.class);
+
+    public static final SystemProperty<Class> BACKEND_CLASS = SystemProperty.Builder.ofType(Class.class)
+        .setKey("dnsutil.resolver.backend.className")
+        .setBaseClass(SrvLookupBackend.class)
+        .setDefaultValue(JndiSrvLookupBackend.class)
+        .addListener(AsyncSrvResolver::initBackend)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The duration for which an answer is cached, when the backend does not report a TTL for it.
+     */
+    public static final SystemProperty<Duration> DEFAULT_TTL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("dnsutil.cache.ttl")
+        .setDefaultValue(Duration.ofMinutes(1))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.SECONDS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The duration for which failed lookups and empty answers are cached.
+     */
+    public static final SystemProperty<Duration> NEGATIVE_TTL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("dnsutil.cache.negative-ttl")
+        .setDefaultValue(Duration.ofMinutes(1))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.SECONDS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The fraction of the TTL of a cached answer after which the answer is refreshed in the background when it is
+     * used. A value of 1 or more disables refresh-ahead.
+     */
+    public static final SystemProperty<Double> REFRESH_AHEAD_FACTOR = SystemProperty.Builder.ofType(Double.class)
+        .setKey("dnsutil.cache.refresh-ahead-factor")
+        .setDefaultValue(0.8)
+        .setMinValue(0.0)
+        .setDynamic(true)
+        .build();
+
+    private static AsyncSrvResolver INSTANCE;
+
+    public static synchronized AsyncSrvResolver getInstance()
+    {
+        if (INSTANCE == null) {
+            INSTANCE = new AsyncSrvResolver(CacheFactory.createCache("DNS Records"), TaskEngine.getInstance()::submit, System::currentTimeMillis);
+            initBackend(BACKEND_CLASS.getValue());
+        }
+        return INSTANCE;
+    }
+
+    private static void initBackend(final Class clazz)
+    {
+        final AsyncSrvResolver instance;
+        synchronized (AsyncSrvResolver.class) {
+            instance = INSTANCE;
+        }
+        if (instance == null) {
+            // Will be initialized when the instance is created.
+            return;
+        }
+        if (instance.backend == null || !clazz.equals(instance.backend.getClass())) {
+            try {
+                instance.setBackend((SrvLookupBackend) clazz.getDeclaredConstructor().newInstance());
+            } catch (final Exception e) {
+                Log.error("Error while initializing DNS SRV lookup backend: " + clazz.getName(), e);
+            }
+        }
+    }
+
+    private final Map<String, CachedAnswer> cache;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final Map<String, CompletableFuture<DNSUtil.WeightedHostAddress[]>> inFlight = new ConcurrentHashMap<>();
+    private volatile SrvLookupBackend backend;
+
+    // Package protected to be able to unit test this class.
+    AsyncSrvResolver(@Nonnull final Map<String, CachedAnswer> cache, @Nonnull final Executor executor, @Nonnull final LongSupplier clock)
+    {
+        this.cache = cache;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Replaces the backend that is used to perform DNS queries. Answers that are already cached are retained.
+     *
+     * @param backend the new backend.
+     */
+    public void setBackend(@Nonnull final SrvLookupBackend backend)
+    {
+        Log.debug("Using DNS SRV lookup backend: {}", backend.getClass().getName());
+        this.backend = backend;
+    }
+
+    /**
+     * Returns the (unprioritized) records for a DNS SRV query.
+     *
+     * The returned future is completed immediately when a cached answer is available. It is never completed
+     * exceptionally: failed lookups yield an empty array.
+     *
+     * @param query the fully qualified query, as constructed by {@link DNSUtil#constructLookup(String, String, String)}
+     * @return a future that is completed with the records (possibly empty, never null).
+     */
+    @Nonnull
+    public CompletableFuture<DNSUtil.WeightedHostAddress[]> lookup(@Nonnull final String query)
+    {
+        final long now = clock.getAsLong();
+        final CachedAnswer cached = cache.get(query);
+        if (cached != null && now < cached.getExpiresAt()) {
+            if (cached.isNegative()) {
+                Log.debug("DNS SRV lookup previously failed for '{}' (negative cache result)", query);
+                return CompletableFuture.completedFuture(new DNSUtil.WeightedHostAddress[0]);
+            }
+            if (now >= cached.getRefreshAt()) {
+                Log.trace("Refreshing cached answer for '{}' ahead of its expiry.", query);
+                query(query);
+            }
+            Log.trace("{} SRV record(s) found for '{}' (cached result)", cached.getRecords().length, query);
+            return CompletableFuture.completedFuture(cached.getRecords());
+        }
+        return query(query);
+    }
+
+    /**
+     * Queries the backend, unless a query for the same name is already in progress, in which case the result of
+     * that query is shared.
+     */
+    private CompletableFuture<DNSUtil.WeightedHostAddress[]> query(@Nonnull final String query)
+    {
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> future = new CompletableFuture<>();
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> existing = inFlight.putIfAbsent(query, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(queryBackend(query));
+                } catch (final Throwable t) {
+                    Log.warn("Unexpected exception while performing DNS SRV lookup for '{}'", query, t);
+                    future.complete(new DNSUtil.WeightedHostAddress[0]);
+                } finally {
+                    inFlight.remove(query, future);
+                }
+            });
+        } catch (final RuntimeException e) {
+            inFlight.remove(query, future);
+            Log.warn("Unable to schedule DNS SRV lookup for '{}'", query, e);
+            future.complete(new DNSUtil.WeightedHostAddress[0]);
+        }
+        return future;
+    }
+
+    private DNSUtil.WeightedHostAddress[] queryBackend(@Nonnull final String query)
+    {
+        final SrvLookupBackend backend = this.backend;
+        try {
+            if (backend == null) {
+                throw new IllegalStateException("No DNS SRV lookup backend is configured.");
+            }
+            final SrvLookupBackend.Answer answer = backend.lookup(query);
+            final DNSUtil.WeightedHostAddress[] records = answer.getRecords();
+            if (records.length == 0) {
+                Log.debug("No SRV record found for '{}'", query);
+                store(query, records, NEGATIVE_TTL.getValue());
+            } else {
+                Log.trace("{} SRV record(s) found for '{}'", records.length, query);
+                store(query, records, answer.getTimeToLive() != null ? answer.getTimeToLive() : DEFAULT_TTL.getValue());
+            }
+            return records;
+        } catch (final NameNotFoundException e) {
+            Log.debug("No SRV record found for '{}'", query, e);
+            store(query, new DNSUtil.WeightedHostAddress[0], NEGATIVE_TTL.getValue());
+            return new DNSUtil.WeightedHostAddress[0];
+        } catch (final Exception e) {
+            Log.info("DNS SRV lookup was unsuccessful for '{}': {}", query, e.getMessage());
+            final CachedAnswer previous = cache.get(query);
+            if (previous != null && !previous.isNegative() && clock.getAsLong() < previous.getExpiresAt()) {
+                // A refresh-ahead failed. Keep using the previous answer until it expires.
+                return previous.getRecords();
+            }
+            store(query, null, NEGATIVE_TTL.getValue());
+            return new DNSUtil.WeightedHostAddress[0];
+        }
+    }
+
+    private void store(@Nonnull final String query, @Nullable final DNSUtil.WeightedHostAddress[] records, @Nonnull final Duration ttl)
+    {
+        final long now = clock.getAsLong();
+        final long ttlMillis = ttl.toMillis();
+        final double factor = REFRESH_AHEAD_FACTOR.getValue();
+        final long refreshAt = factor >= 1.0 ? Long.MAX_VALUE : now + (long) (ttlMillis * factor);
+        cache.put(query, new CachedAnswer(records, now + ttlMillis, refreshAt));
+    }
+
+    /**
+     * A cached DNS SRV answer. An answer without records (null) represents a failed lookup, which is different from
+     * a successful lookup that yielded no records (an empty array).
+     */
+    static class CachedAnswer implements Cacheable
+    {
+        private final DNSUtil.WeightedHostAddress[] records;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        CachedAnswer(@Nullable final DNSUtil.WeightedHostAddress[] records, final long expiresAt, final long refreshAt)
+        {
+            this.records = records;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        boolean isNegative()
+        {
+            return records == null;
+        }
+
+        DNSUtil.WeightedHostAddress[] getRecords()
+        {
+            return records == null ? new DNSUtil.WeightedHostAddress[0] : records;
+        }
+
+        long getExpiresAt()
+        {
+            return expiresAt;
+        }
+
+        long getRefreshAt()
+        {
+            return refreshAt;
+        }
+
+        @Override
+        public int getCachedSize() throws CannotCalculateSizeException
+        {
+            int size = CacheSizes.sizeOfObject() + (2 * CacheSizes.sizeOfLong());
+            if (records != null) {
+                size += CacheSizes.sizeOfAnything(records);
+            }
+            return size;
+        }
+    }
+}
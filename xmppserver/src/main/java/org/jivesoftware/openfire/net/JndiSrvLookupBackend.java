@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.util.Hashtable;
+
+/**
+ * A {@link SrvLookupBackend} that uses the JNDI DNS service provider of the JRE.
+ *
+ * By default, the DNS servers configured for the host are used. The {@link #PROVIDER_URL} property can be used to
+ * point this backend at other DNS servers, such as a local stub resolver.
+ *
+ * The JNDI DNS service provider does not expose the TTL of records. The answers provided by this backend therefore
+ * use the TTL that is configured by {@link AsyncSrvResolver#DEFAULT_TTL}.
+ */
+public class JndiSrvLookupBackend implements SrvLookupBackend
+{
+    private static final Logger Log = LoggerFactory.getLogger(JndiSrvLookupBackend.class);
+
+    /**
+     * The DNS server(s) to query, as a space-separated list of DNS URLs (eg: <tt>dns://127.0.0.1:5353</tt>). When
+     * empty, the DNS servers configured for the host are used.
+     */
+    public static final SystemProperty<String> PROVIDER_URL = SystemProperty.Builder.ofType(String.class)
+        .setKey("dnsutil.resolver.jndi.url")
+        .setDefaultValue("")
+        .setDynamic(false)
+        .build();
+
+    private final DirContext context;
+
+    public JndiSrvLookupBackend() throws NamingException
+    {
+        final Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+        final String providerUrl = PROVIDER_URL.getValue();
+        if (providerUrl != null && !providerUrl.isBlank()) {
+            Log.info("Using DNS server(s) '{}' for DNS SRV lookups.", providerUrl);
+            env.put(Context.PROVIDER_URL, providerUrl.trim());
+        }
+        context = new InitialDirContext(env);
+    }
+
+    @Nonnull
+    @Override
+    public Answer lookup(@Nonnull final String query) throws NamingException
+    {
+        final Attributes dnsLookup = context.getAttributes(query, new String[]{"SRV"});
+        final Attribute srvRecords = dnsLookup.get("SRV");
+        if (srvRecords == null) {
+            return new Answer(new DNSUtil.WeightedHostAddress[0], null);
+        }
+
+        final DNSUtil.WeightedHostAddress[] result = new DNSUtil.WeightedHostAddress[srvRecords.size()];
+        final boolean directTLS = query.startsWith("_xmpps-"); // XEP-0368
+        for (int i = 0; i < srvRecords.size(); i++) {
+            result[i] = DNSUtil.WeightedHostAddress.fromSrvRecord((String) srvRecords.get(i), directTLS);
+        }
+        return new Answer(result, null);
+    }
+}
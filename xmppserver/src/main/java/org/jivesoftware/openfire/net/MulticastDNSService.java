@@ -19,6 +19,7 @@ package org.jivesoftware.openfire.net;
 import org.jivesoftware.openfire.ConnectionManager;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.spi.ConnectionType;
 import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.PropertyEventDispatcher;
@@ -31,7 +32,9 @@ import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceInfo;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
 
 /**
@@ -94,6 +97,12 @@ public class MulticastDNSService extends BasicModule {
        
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Advertising the server on the local network does not affect other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         // If the service isn't enabled, return.
@@ -53,6 +53,7 @@ public class RespondingServerStanzaHandler extends StanzaHandler {
     private final DomainPair domainPair;
     private final CompletableFuture<Void> isSessionAuthenticated = new CompletableFuture<>();
     private final CompletableFuture<Void> attemptedAllAuthenticationMethods = new CompletableFuture<>();
+    private final boolean skipTLS;
 
     /**
      * Creates a dedicated reader for a socket.
@@ -62,8 +63,21 @@ public class RespondingServerStanzaHandler extends StanzaHandler {
      * @param domainPair the local and remote domains
      */
     public RespondingServerStanzaHandler(PacketRouter router, Connection connection, DomainPair domainPair) {
+        this(router, connection, domainPair, false);
+    }
+
+    /**
+     * Creates a dedicated reader for a socket.
+     *
+     * @param router     the router for sending packets that were read.
+     * @param connection the connection being read.
+     * @param domainPair the local and remote domains
+     * @param skipTLS    true if STARTTLS should not be negotiated, even if offered by the remote server.
+     */
+    public RespondingServerStanzaHandler(PacketRouter router, Connection connection, DomainPair domainPair, boolean skipTLS) {
         super(router, connection);
         this.domainPair = domainPair;
+        this.skipTLS = skipTLS;
     }
 
     private static boolean remoteFeaturesContainsStartTLS(Element doc) {
@@ -171,6 +185,11 @@ public class RespondingServerStanzaHandler extends StanzaHandler {
         // Handle features
         if ("features".equals(rootTagName)) {
 
+            // Record if additional domain pairs can be authenticated over this stream using dialback (piggybacking).
+            if (session instanceof LocalOutgoingServerSession) {
+                ((LocalOutgoingServerSession) session).setDialbackOffered(isDialbackOffered(doc));
+            }
+
             // Prevent falling back to dialback if we are already authenticated
             if (session.isAuthenticated()) {
                 return true;
@@ -226,6 +245,12 @@ public class RespondingServerStanzaHandler extends StanzaHandler {
 
         // Handle dialback result
         if ("db".equals(doc.getNamespacePrefix()) && "result".equals(rootTagName)) {
+            // An answer for an additional domain that is being authenticated over an already established session (piggybacking).
+            if (isSessionAuthenticated.isDone() && session instanceof LocalOutgoingServerSession && ((LocalOutgoingServerSession) session).processDialbackResult(doc)) {
+                LOG.debug("Processed dialback result for an additional domain: {}", doc.asXML());
+                return true;
+            }
+
             if ("valid".equals(doc.attributeValue("type"))) {
                 LOG.debug("Authentication succeeded!");
                 LOG.debug("Dialback was successful.");
@@ -318,6 +343,9 @@ public class RespondingServerStanzaHandler extends StanzaHandler {
     }
 
     private boolean shouldUseTls() {
+        if (skipTLS) {
+            return false;
+        }
         return connection.getConfiguration().getTlsPolicy() == Connection.TLSPolicy.optional || connection.getConfiguration().getTlsPolicy() == Connection.TLSPolicy.required;
     }
 
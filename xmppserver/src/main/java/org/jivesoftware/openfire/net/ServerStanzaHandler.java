@@ -82,9 +82,13 @@ public class ServerStanzaHandler extends StanzaHandler {
     boolean processUnknowPacket(Element doc) throws UnauthorizedException {
         // Handle subsequent db:result packets
         if ("db".equals(doc.getNamespacePrefix()) && "result".equals(doc.getName())) {
-            if (!((LocalIncomingServerSession) session).validateSubsequentDomain(doc)) {
-                throw new UnauthorizedException("Failed to validate domain when using piggyback.");
-            }
+            // Validation requires a round-trip to the Authoritative Server. Do not wait for that to complete.
+            ((LocalIncomingServerSession) session).validateSubsequentDomainAsync(doc).thenAccept(valid -> {
+                if (!valid) {
+                    Log.debug("Failed to validate domain when using piggyback. Closing connection: {}", connection);
+                    connection.close();
+                }
+            });
             return true;
         }
         else if ("db".equals(doc.getNamespacePrefix()) && "verify".equals(doc.getName())) {
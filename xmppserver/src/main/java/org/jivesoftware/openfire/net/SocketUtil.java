@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -38,15 +39,14 @@ public class SocketUtil
      * @param port The port to connect to when DNS resolution fails.
      * @return a Socket instance that is connected, or null.
      * @see DNSUtil#resolveXMPPDomain(String, int)
+     * @deprecated Server-to-server connections are established using Netty. Use {@link org.jivesoftware.openfire.nio.NettySocketUtil#connectToXmppDomain(String, int, java.util.function.Function)} instead.
      */
+    @Deprecated
     public static Map.Entry<Socket, Boolean> createSocketToXmppDomain( String xmppDomain, int port )
     {
         Log.debug( "Creating a socket connection to XMPP domain '{}' ...", xmppDomain );
 
-        Log.debug( "Use DNS to resolve remote hosts for the provided XMPP domain '{}' (default port: {}) ...", xmppDomain, port );
-        final List<DNSUtil.HostAddress> remoteHosts = DNSUtil.resolveXMPPDomain( xmppDomain, port );
-        Log.debug( "Found {} host(s) for XMPP domain '{}'.", remoteHosts.size(), xmppDomain );
-        remoteHosts.forEach( remoteHost -> Log.debug( "- {} ({})", remoteHost.toString(), (remoteHost.isDirectTLS() ? "direct TLS" : "no direct TLS" ) ) );
+        final List<DNSUtil.HostAddress> remoteHosts = getApplicableRemoteHosts( xmppDomain, port );
 
         Socket socket = null;
         final int socketTimeout = RemoteServerManager.getSocketTimeout();
@@ -56,16 +56,6 @@ public class SocketUtil
             final int realPort = remoteHost.getPort();
             final boolean directTLS = remoteHost.isDirectTLS();
 
-            if (!JiveGlobals.getBooleanProperty(ConnectionSettings.Server.ENABLE_OLD_SSLPORT, true) && directTLS) {
-                Log.debug("Skipping directTLS host, as we're ourselves not accepting directTLS S2S");
-                continue;
-            }
-
-            if (!JiveGlobals.getBooleanProperty(ConnectionSettings.Server.SOCKET_ACTIVE, true) && !directTLS) {
-                Log.debug("Skipping non direct TLS host, as we're ourselves not accepting non direct S2S");
-                continue;
-            }
-
             try
             {
                 // (re)initialize the socket.
@@ -98,4 +88,54 @@ public class SocketUtil
         Log.warn( "Unable to create a socket connection to XMPP domain '{}': Unable to connect to any of its remote hosts.", xmppDomain );
         return null;
     }
+
+    /**
+     * Resolves the remote hosts for an XMPP domain, in the order in which connections to them should be attempted.
+     *
+     * This implementation uses DNS SRV records to find a list of remote hosts for the XMPP domain (as implemented by
+     * {@link DNSUtil#resolveXMPPDomain(String, int)}. Hosts that use a type of connection (direct TLS or not) that
+     * is disabled for server-to-server connections by configuration are omitted.
+     *
+     * Note that this method blocks while performing DNS lookups.
+     *
+     * @param xmppDomain The XMPP domain to connect to.
+     * @param port The port to connect to when DNS resolution fails.
+     * @return the hosts to connect to (possibly empty, never null).
+     */
+    public static List<DNSUtil.HostAddress> getApplicableRemoteHosts( String xmppDomain, int port )
+    {
+        Log.debug( "Use DNS to resolve remote hosts for the provided XMPP domain '{}' (default port: {}) ...", xmppDomain, port );
+        return filterApplicableRemoteHosts( xmppDomain, DNSUtil.resolveXMPPDomain( xmppDomain, port ) );
+    }
+
+    /**
+     * Omits the hosts from a list of remote hosts that use a type of connection (direct TLS or not) that is disabled
+     * for server-to-server connections by configuration.
+     *
+     * @param xmppDomain The XMPP domain that the hosts were resolved for (used for logging).
+     * @param remoteHosts The remote hosts, as resolved by {@link DNSUtil#resolveXMPPDomain(String, int)}.
+     * @return the hosts to connect to (possibly empty, never null).
+     */
+    public static List<DNSUtil.HostAddress> filterApplicableRemoteHosts( String xmppDomain, List<DNSUtil.HostAddress> remoteHosts )
+    {
+        Log.debug( "Found {} host(s) for XMPP domain '{}'.", remoteHosts.size(), xmppDomain );
+        remoteHosts.forEach( remoteHost -> Log.debug( "- {} ({})", remoteHost.toString(), (remoteHost.isDirectTLS() ? "direct TLS" : "no direct TLS" ) ) );
+
+        final List<DNSUtil.HostAddress> result = new ArrayList<>();
+        for ( DNSUtil.HostAddress remoteHost : remoteHosts )
+        {
+            final boolean directTLS = remoteHost.isDirectTLS();
+            if (!JiveGlobals.getBooleanProperty(ConnectionSettings.Server.ENABLE_OLD_SSLPORT, true) && directTLS) {
+                Log.debug("Skipping directTLS host, as we're ourselves not accepting directTLS S2S");
+                continue;
+            }
+
+            if (!JiveGlobals.getBooleanProperty(ConnectionSettings.Server.SOCKET_ACTIVE, true) && !directTLS) {
+                Log.debug("Skipping non direct TLS host, as we're ourselves not accepting non direct S2S");
+                continue;
+            }
+            result.add( remoteHost );
+        }
+        return result;
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.naming.NamingException;
+import java.time.Duration;
+
+/**
+ * Performs the actual DNS SRV queries on behalf of {@link AsyncSrvResolver}.
+ *
+ * Implementations are expected to block while querying DNS. They are invoked from a thread pool, never from a Netty
+ * event loop. Implementations must provide a public, no-argument constructor, as they are instantiated based on the
+ * value of the {@link AsyncSrvResolver#BACKEND_CLASS} property.
+ *
+ * @see JndiSrvLookupBackend
+ */
+public interface SrvLookupBackend
+{
+    /**
+     * Performs a DNS SRV lookup.
+     *
+     * When the queried name does not exist, implementations may either return an answer without records, or throw a
+     * {@link javax.naming.NameNotFoundException}. Both are treated as an (authoritative) empty answer. Any other
+     * exception is treated as a failed lookup.
+     *
+     * @param query the fully qualified query, as constructed by {@link DNSUtil#constructLookup(String, String, String)} (eg: <tt>_xmpp-server._tcp.example.org.</tt>)
+     * @return the answer to the query (never null).
+     * @throws NamingException when the lookup failed.
+     */
+    @Nonnull
+    Answer lookup(@Nonnull final String query) throws NamingException;
+
+    /**
+     * The (unprioritized) records found by a DNS SRV lookup.
+     */
+    class Answer
+    {
+        private final DNSUtil.WeightedHostAddress[] records;
+        private final Duration timeToLive;
+
+        /**
+         * Creates a new answer.
+         *
+         * @param records the records that were found (possibly empty, never null).
+         * @param timeToLive the TTL of the records as reported by DNS, or null if that's not known to the backend.
+         */
+        public Answer(@Nonnull final DNSUtil.WeightedHostAddress[] records, @Nullable final Duration timeToLive)
+        {
+            this.records = records;
+            this.timeToLive = timeToLive;
+        }
+
+        @Nonnull
+        public DNSUtil.WeightedHostAddress[] getRecords()
+        {
+            return records;
+        }
+
+        @Nullable
+        public Duration getTimeToLive()
+        {
+            return timeToLive;
+        }
+    }
+}
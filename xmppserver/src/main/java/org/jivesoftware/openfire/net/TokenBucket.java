@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A token bucket that hands out reservations rather than plain yes/no answers.
+ *
+ * Tokens are replenished at a fixed rate, up to a maximum capacity. When a token is requested while the bucket is
+ * empty, the bucket can go into 'debt': the caller is told how long it needs to wait before its token becomes
+ * available. This allows callers to queue work instead of rejecting it, as long as the wait does not exceed a limit
+ * that is supplied by the caller.
+ *
+ * Rate and capacity are supplied on every invocation, rather than on construction. This allows for the configuration
+ * to be changed at runtime without having to recreate (and thus reset) existing buckets.
+ */
+@ThreadSafe
+public class TokenBucket
+{
+    /**
+     * The amount of tokens that are available. Negative values represent tokens that have been reserved ahead of time.
+     */
+    private double tokens;
+
+    /**
+     * Timestamp (as obtained from {@link System#nanoTime()}) of the last time that tokens were added to the bucket.
+     */
+    private long lastRefill;
+
+    /**
+     * Creates a new bucket that is full.
+     *
+     * @param capacity the initial amount of tokens in the bucket.
+     * @param now the current time, as obtained from {@link System#nanoTime()}.
+     */
+    public TokenBucket(final double capacity, final long now)
+    {
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Reserves one token.
+     *
+     * @param ratePerSecond the amount of tokens that are added to the bucket per second. Zero or negative values disable rate limiting.
+     * @param capacity the maximum amount of tokens that the bucket can hold.
+     * @param now the current time, as obtained from {@link System#nanoTime()}.
+     * @param maxWaitNanos the maximum duration (in nanoseconds) that the caller is willing to wait for a token to become available.
+     * @return the duration in nanoseconds that the caller needs to wait before using the token (zero when it can be used immediately), or -1 if a token cannot be made available within the maximum wait time (no token is reserved in that case).
+     */
+    public synchronized long reserve(final double ratePerSecond, final double capacity, final long now, final long maxWaitNanos)
+    {
+        if (ratePerSecond <= 0) {
+            return 0;
+        }
+
+        refill(ratePerSecond, capacity, now);
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+
+        final long wait = (long) Math.ceil((1 - tokens) / ratePerSecond * 1_000_000_000L);
+        if (wait > maxWaitNanos) {
+            return -1;
+        }
+        tokens -= 1;
+        return wait;
+    }
+
+    /**
+     * Checks if this bucket is full, which indicates that it has not been used for a while (and it no longer needs to
+     * be retained).
+     *
+     * @param ratePerSecond the amount of tokens that are added to the bucket per second.
+     * @param capacity the maximum amount of tokens that the bucket can hold.
+     * @param now the current time, as obtained from {@link System#nanoTime()}.
+     * @return true if the bucket is full, otherwise false.
+     */
+    public synchronized boolean isFull(final double ratePerSecond, final double capacity, final long now)
+    {
+        if (ratePerSecond <= 0) {
+            return true;
+        }
+        refill(ratePerSecond, capacity, now);
+        return tokens >= capacity;
+    }
+
+    /**
+     * Returns the amount of tokens that are currently available. Negative values indicate that tokens have been
+     * reserved ahead of time.
+     *
+     * @return an amount of tokens.
+     */
+    public synchronized double getTokens()
+    {
+        return tokens;
+    }
+
+    private void refill(final double ratePerSecond, final double capacity, final long now)
+    {
+        final long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * ratePerSecond / 1_000_000_000L);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import org.jivesoftware.openfire.spi.ConnectionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Executes tasks on behalf of sessions, using a fixed number of threads that is shared by all sessions.
+ *
+ * Tasks are submitted through an executor that is obtained for each session by
+ * {@link #newSessionExecutor(SchedulingClass)}. Tasks of the same session are executed one at a time, in the order in
+ * which they were submitted. Between sessions, tasks are scheduled fairly:
+ * <ul>
+ *     <li>Each session belongs to a {@link SchedulingClass}. When sessions of more than one class have tasks that are
+ *     waiting for execution, the threads are shared by the classes in proportion to their weights (weighted
+ *     round-robin). A class that has no waiting tasks does not use its share.</li>
+ *     <li>Within a class, sessions take turns: after one task of a session has been executed, the session waits for
+ *     all other sessions of the same class that have waiting tasks to have one task executed.</li>
+ * </ul>
+ * As a result, a session that submits many tasks cannot delay the tasks of other sessions by more than one task per
+ * session, and a type of connection that generates many tasks cannot starve other types of connections.
+ */
+public class FairProcessingScheduler
+{
+    private static final Logger Log = LoggerFactory.getLogger(FairProcessingScheduler.class);
+
+    /**
+     * The classes between which processing capacity is shared.
+     */
+    public enum SchedulingClass
+    {
+        CLIENT,
+        SERVER,
+        COMPONENT;
+
+        /**
+         * Returns the scheduling class for a type of connection.
+         *
+         * @param type a type of connection.
+         * @return the scheduling class of the connection type.
+         */
+        @Nonnull
+        public static SchedulingClass of(@Nonnull final ConnectionType type)
+        {
+            switch (type) {
+                case SOCKET_S2S:
+                    return SERVER;
+                case COMPONENT:
+                case CONNECTION_MANAGER:
+                    return COMPONENT;
+                default:
+                    return CLIENT;
+            }
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition ready = lock.newCondition();
+
+    /**
+     * Sessions that have tasks waiting for execution, and that are not currently being executed, by class.
+     */
+    private final Map<SchedulingClass, Deque<SessionExecutor>> readySessions = new EnumMap<>(SchedulingClass.class);
+
+    /**
+     * The number of tasks waiting for execution, by class.
+     */
+    private final Map<SchedulingClass, Integer> queuedTasks = new EnumMap<>(SchedulingClass.class);
+
+    @Nonnull
+    private final ToIntFunction<SchedulingClass> weights;
+
+    /**
+     * The class from which tasks are currently taken, and the number of tasks that can be taken from it before it is
+     * another class' turn.
+     */
+    private SchedulingClass currentClass = SchedulingClass.COMPONENT;
+    private int remainingTurns;
+
+    private boolean shutdown;
+
+    /**
+     * Creates a new scheduler, and starts its threads.
+     *
+     * @param threadCount the number of threads that execute tasks.
+     * @param threadFactory the factory of these threads.
+     * @param weights provides the (relative) weight of each class. Values smaller than one are treated as one.
+     */
+    public FairProcessingScheduler(final int threadCount, @Nonnull final ThreadFactory threadFactory, @Nonnull final ToIntFunction<SchedulingClass> weights)
+    {
+        this.weights = weights;
+        for (final SchedulingClass schedulingClass : SchedulingClass.values()) {
+            readySessions.put(schedulingClass, new ArrayDeque<>());
+            queuedTasks.put(schedulingClass, 0);
+        }
+        for (int i = 0; i < threadCount; i++) {
+            threadFactory.newThread(this::runWorker).start();
+        }
+    }
+
+    /**
+     * Creates an executor for the tasks of one session.
+     *
+     * @param schedulingClass the class of the session.
+     * @return a new executor.
+     */
+    @Nonnull
+    public Executor newSessionExecutor(@Nonnull final SchedulingClass schedulingClass)
+    {
+        return new SessionExecutor(schedulingClass);
+    }
+
+    /**
+     * @param schedulingClass a scheduling class.
+     * @return the number of tasks of sessions in the class that are waiting for execution.
+     */
+    public int getQueuedTaskCount(@Nonnull final SchedulingClass schedulingClass)
+    {
+        lock.lock();
+        try {
+            return queuedTasks.get(schedulingClass);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting new tasks. The threads of this scheduler terminate after all tasks that were already submitted
+     * have been executed.
+     */
+    public void shutdown()
+    {
+        lock.lock();
+        try {
+            shutdown = true;
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isShutdown()
+    {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker()
+    {
+        while (true) {
+            final SessionExecutor session;
+            lock.lock();
+            try {
+                SessionExecutor next;
+                while ((next = nextSession()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    ready.awaitUninterruptibly();
+                }
+                session = next;
+            } finally {
+                lock.unlock();
+            }
+            runTask(session);
+        }
+    }
+
+    /**
+     * Executes one task, if a task is waiting for execution, on the calling thread.
+     *
+     * @return true if a task was executed, otherwise false.
+     */
+    // Package protected to be able to unit test this class.
+    boolean runNextTask()
+    {
+        final SessionExecutor session;
+        lock.lock();
+        try {
+            session = nextSession();
+        } finally {
+            lock.unlock();
+        }
+        if (session == null) {
+            return false;
+        }
+        runTask(session);
+        return true;
+    }
+
+    /**
+     * Selects the session of which a task is to be executed next, and removes that task from the session's queue.
+     * Must be invoked while holding the lock.
+     *
+     * @return the selected session (of which {@link SessionExecutor#current} is the task to execute), or null when no task is waiting for execution.
+     */
+    @Nullable
+    private SessionExecutor nextSession()
+    {
+        final SchedulingClass[] classes = SchedulingClass.values();
+        for (int i = 0; i <= classes.length; i++) {
+            if (remainingTurns > 0 && !readySessions.get(currentClass).isEmpty()) {
+                remainingTurns--;
+                final SessionExecutor session = readySessions.get(currentClass).poll();
+                session.current = session.tasks.poll();
+                queuedTasks.merge(currentClass, -1, Integer::sum);
+                return session;
+            }
+            // Give the next class its turn.
+            currentClass = classes[(currentClass.ordinal() + 1) % classes.length];
+            remainingTurns = Math.max(1, weights.applyAsInt(currentClass));
+        }
+        return null;
+    }
+
+    private void runTask(@Nonnull final SessionExecutor session)
+    {
+        try {
+            session.current.run();
+        } catch (final Throwable t) {
+            Log.error("An unexpected exception occurred while executing a task for a session.", t);
+        } finally {
+            lock.lock();
+            try {
+                session.current = null;
+                if (session.tasks.isEmpty()) {
+                    session.scheduled = false;
+                } else {
+                    // Take turns with the other sessions of the same class.
+                    readySessions.get(session.schedulingClass).add(session);
+                    ready.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Queues the tasks of one session. All state is guarded by the lock of the scheduler.
+     */
+    private class SessionExecutor implements Executor
+    {
+        private final SchedulingClass schedulingClass;
+
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        /**
+         * True if this session is either waiting for its turn, or if one of its tasks is being executed.
+         */
+        private boolean scheduled;
+
+        private Runnable current;
+
+        private SessionExecutor(@Nonnull final SchedulingClass schedulingClass)
+        {
+            this.schedulingClass = schedulingClass;
+        }
+
+        @Override
+        public void execute(@Nonnull final Runnable task)
+        {
+            lock.lock();
+            try {
+                if (shutdown) {
+                    throw new RejectedExecutionException("The scheduler has been shut down.");
+                }
+                tasks.add(task);
+                queuedTasks.merge(schedulingClass, 1, Integer::sum);
+                if (!scheduled) {
+                    scheduled = true;
+                    readySessions.get(schedulingClass).add(this);
+                    ready.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.jivesoftware.openfire.net.AdmissionController;
+import org.jivesoftware.openfire.net.AdmissionController.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.StreamError;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import static org.jivesoftware.openfire.nio.NettyConnectionHandler.CONNECTION;
+
+/**
+ * Applies admission control to a newly accepted client connection, by consulting the {@link AdmissionController} when
+ * the connection is accepted, and when the peer requests TLS, SASL authentication or resource binding.
+ *
+ * When admission is delayed, reading from the channel is suspended (see {@link NettyReadSuspension}), and any stanzas
+ * that were already decoded are queued (in order) until the delay has passed. When admission is rejected, the
+ * connection is closed.
+ *
+ * After resource binding has been admitted, this handler removes itself from the pipeline.
+ *
+ * This handler keeps state for one channel and must not be shared.
+ */
+public class NettyAdmissionHandler extends ChannelInboundHandlerAdapter
+{
+    private static final Logger Log = LoggerFactory.getLogger(NettyAdmissionHandler.class);
+
+    public static final String ADMISSION_HANDLER_NAME = "admissionHandler";
+
+    private final AdmissionController admissionController;
+
+    /**
+     * Stanzas that have been received while admission was delayed. Only accessed from the channel's event loop.
+     */
+    private final Deque<Object> pending = new ArrayDeque<>();
+
+    /**
+     * Indicates that processing is suspended, pending a delayed admission. Only accessed from the channel's event loop.
+     */
+    private boolean suspended = false;
+
+    /**
+     * Indicates that this handler has suspended reading from the channel. Only accessed from the channel's event loop.
+     */
+    private boolean readSuspended = false;
+
+    /**
+     * A stanza that has been admitted with a delay, and is to be processed when that delay has passed. Only accessed
+     * from the channel's event loop.
+     */
+    private Object delayedStanza = null;
+
+    public NettyAdmissionHandler()
+    {
+        this(AdmissionController.getInstance());
+    }
+
+    NettyAdmissionHandler(final AdmissionController admissionController)
+    {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception
+    {
+        final long wait = admissionController.requestAdmission(Stage.ACCEPT, getRemoteAddress(ctx));
+        if (wait < 0) {
+            Log.debug("Closing newly accepted connection from {}: admission rejected.", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        if (wait > 0) {
+            // Do not read any data until admitted. Disabling auto-read here prevents the initial read that follows channel activation.
+            suspended = true;
+            suspendReads(ctx);
+            ctx.executor().schedule(() -> resume(ctx), wait, TimeUnit.NANOSECONDS);
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception
+    {
+        if (suspended) {
+            pending.add(msg);
+            return;
+        }
+        process(ctx, msg);
+    }
+
+    private void process(final ChannelHandlerContext ctx, final Object msg)
+    {
+        final Stage stage = getStage(msg);
+        if (stage == null) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        final long wait = admissionController.requestAdmission(stage, getRemoteAddress(ctx));
+        if (wait < 0) {
+            Log.debug("Closing connection from {}: admission of stage {} rejected.", ctx.channel().remoteAddress(), stage);
+            final NettyConnection connection = ctx.channel().attr(CONNECTION).get();
+            if (connection != null) {
+                connection.close(new StreamError(StreamError.Condition.policy_violation, "Server is too busy to process this request. Please try again later."));
+            } else {
+                ctx.close();
+            }
+            return;
+        }
+        if (wait > 0) {
+            suspended = true;
+            suspendReads(ctx);
+            delayedStanza = msg;
+            ctx.executor().schedule(() -> resume(ctx), wait, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        admitted(ctx, msg, stage);
+    }
+
+    /**
+     * Passes on a stanza that has been admitted. When this is the last stage, all queued stanzas are passed on without
+     * further inspection, and this handler is removed from the pipeline.
+     */
+    private void admitted(final ChannelHandlerContext ctx, final Object msg, final Stage stage)
+    {
+        ctx.fireChannelRead(msg);
+        if (stage == Stage.BIND) {
+            while (!pending.isEmpty()) {
+                ctx.fireChannelRead(pending.poll());
+            }
+            ctx.pipeline().remove(this);
+        }
+    }
+
+    /**
+     * Resumes processing after a delayed admission, by processing queued stanzas (which can cause processing to be
+     * suspended again) and re-enabling reading from the channel.
+     */
+    private void resume(final ChannelHandlerContext ctx)
+    {
+        if (!ctx.channel().isOpen()) {
+            delayedStanza = null;
+            pending.clear();
+            return;
+        }
+
+        suspended = false;
+        if (delayedStanza != null) {
+            // This stanza has been admitted already, when the delay was issued.
+            final Object msg = delayedStanza;
+            delayedStanza = null;
+            admitted(ctx, msg, getStage(msg));
+        }
+
+        while (!suspended && !pending.isEmpty()) {
+            process(ctx, pending.poll());
+        }
+
+        if (!suspended) {
+            resumeReads(ctx);
+        }
+    }
+
+    private void suspendReads(final ChannelHandlerContext ctx)
+    {
+        if (!readSuspended) {
+            readSuspended = true;
+            NettyReadSuspension.suspend(ctx.channel());
+        }
+    }
+
+    private void resumeReads(final ChannelHandlerContext ctx)
+    {
+        if (readSuspended) {
+            readSuspended = false;
+            NettyReadSuspension.resume(ctx.channel());
+        }
+    }
+
+    /**
+     * Determines what stage of the client session life cycle the (raw) stanza is part of.
+     *
+     * @param msg a decoded stanza.
+     * @return the admission stage, or null if the stanza is not subject to admission control.
+     */
+    static Stage getStage(final Object msg)
+    {
+        if (!(msg instanceof String)) {
+            return null;
+        }
+        final String stanza = (String) msg;
+        if (stanza.startsWith("<starttls")) {
+            return Stage.TLS;
+        }
+        if (stanza.startsWith("<auth") && stanza.length() > 5) {
+            // Do not confuse with other elements that start with the same characters (eg: 'authenticate').
+            final char next = stanza.charAt(5);
+            if (next == ' ' || next == '>' || next == '/') {
+                return Stage.SASL;
+            }
+        }
+        if (stanza.startsWith("<iq") && stanza.contains("urn:ietf:params:xml:ns:xmpp-bind")) {
+            return Stage.BIND;
+        }
+        return null;
+    }
+
+    private static String getRemoteAddress(final ChannelHandlerContext ctx)
+    {
+        final SocketAddress remoteAddress = ctx.channel().remoteAddress();
+        if (remoteAddress instanceof InetSocketAddress && ((InetSocketAddress) remoteAddress).getAddress() != null) {
+            return ((InetSocketAddress) remoteAddress).getAddress().getHostAddress();
+        }
+        return null;
+    }
+}
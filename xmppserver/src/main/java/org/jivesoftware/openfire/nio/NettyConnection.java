@@ -387,6 +387,15 @@ public class NettyConnection extends AbstractConnection
         return channelHandlerContext.channel().pipeline().get(JZlibDecoder.class) != null;
     }
 
+    /**
+     * Returns the number of stanzas that were received on this connection, but that have not yet been processed.
+     *
+     * @return the number of stanzas awaiting processing.
+     */
+    public int getInFlightStanzaCount() {
+        return NettyConnectionHandler.getInFlightStanzaCount(channelHandlerContext.channel());
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "{state: " + state + ", session: " + session + ", Netty channel handler context name: " + channelHandlerContext.name() + "}";
@@ -16,6 +16,7 @@
 
 package org.jivesoftware.openfire.nio;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.ssl.SslHandshakeCompletionEvent;
@@ -33,6 +34,10 @@ import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 import org.xmpp.packet.StreamError;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.jivesoftware.openfire.spi.NettyServerInitializer.TRAFFIC_HANDLER_NAME;
 
 /**
@@ -53,6 +58,8 @@ public abstract class NettyConnectionHandler extends SimpleChannelInboundHandler
     public static final AttributeKey<Long> READ_BYTES = AttributeKey.valueOf("READ_BYTES");
     public static final AttributeKey<Long> WRITTEN_BYTES = AttributeKey.valueOf("WRITTEN_BYTES");
     static final AttributeKey<StanzaHandler> HANDLER = AttributeKey.valueOf("HANDLER");
+    static final AttributeKey<Executor> PROCESSING_EXECUTOR = AttributeKey.valueOf("PROCESSING-EXECUTOR");
+    static final AttributeKey<ProcessingBacklog> BACKLOG = AttributeKey.valueOf("BACKLOG");
 
 
     protected static final ThreadLocal<XMPPPacketReader> PARSER_CACHE = new ThreadLocal<XMPPPacketReader>()
@@ -95,6 +102,16 @@ public abstract class NettyConnectionHandler extends SimpleChannelInboundHandler
 
     abstract StanzaHandler createStanzaHandler(NettyConnection connection);
 
+    /**
+     * Indicates if data received on the channel can be processed by the shared pool of processing threads (see
+     * {@link NettyProcessingExecutors}), rather than by the thread that performs network I/O.
+     *
+     * @return true if processing can be offloaded to the shared pool.
+     */
+    boolean isProcessingOffloadable() {
+        return true;
+    }
+
     /**
      * Returns the max number of seconds a connection can be idle (both ways) before
      * being closed.<p>
@@ -116,6 +133,14 @@ public abstract class NettyConnectionHandler extends SimpleChannelInboundHandler
         ctx.channel().attr(READ_BYTES).set(0L);
 
         ctx.channel().attr(HANDLER).set(createStanzaHandler(nettyConnection));
+
+        // Data received on this channel is processed by a dedicated executor (if configured), to prevent blocking
+        // operations from delaying network I/O of other channels.
+        final Executor processingExecutor = isProcessingOffloadable() ? NettyProcessingExecutors.newChannelExecutor(configuration) : null;
+        if (processingExecutor != null) {
+            ctx.channel().attr(PROCESSING_EXECUTOR).set(processingExecutor);
+            ctx.channel().attr(BACKLOG).set(new ProcessingBacklog(NettyProcessingExecutors.getCredits(configuration)));
+        }
     }
 
     @Override
@@ -125,16 +150,70 @@ public abstract class NettyConnectionHandler extends SimpleChannelInboundHandler
 
     @Override
     public void channelRead0(ChannelHandlerContext ctx, String message) {
-        // Get the parser to use to process stanza. For optimization there is going
-        // to be a parser for each running thread. Each Filter will be executed
-        // by the Executor placed as the first Filter. So we can have a parser associated
-        // to each Thread
-        final XMPPPacketReader parser = PARSER_CACHE.get();
-
         // Update counter of read bytes
         updateReadBytesCounter(ctx);
 
         Log.trace("Handler on {} received: {}", ctx.channel().remoteAddress() == null ? ctx.channel().localAddress() : ctx.channel().localAddress() + "--" + ctx.channel().remoteAddress(), message);
+
+        final Executor processingExecutor = ctx.channel().attr(PROCESSING_EXECUTOR).get();
+        if (processingExecutor == null) {
+            process(ctx, message);
+            return;
+        }
+
+        final ProcessingBacklog backlog = ctx.channel().attr(BACKLOG).get();
+        final int size = backlog.size.incrementAndGet();
+        if (size >= backlog.credits && !backlog.readSuspended) {
+            Log.debug("Suspending reads on {}: {} stanzas are awaiting processing.", ctx.channel().remoteAddress() == null ? ctx.channel().localAddress() : ctx.channel().localAddress() + "--" + ctx.channel().remoteAddress(), size);
+            backlog.readSuspended = true;
+            NettyReadSuspension.suspend(ctx.channel());
+            NettyProcessingExecutors.recordSuspendedRead();
+        }
+
+        try {
+            processingExecutor.execute(() -> {
+                try {
+                    process(ctx, message);
+                } finally {
+                    if (backlog.size.decrementAndGet() <= backlog.credits / 2 && backlog.readSuspended) {
+                        ctx.channel().eventLoop().execute(() -> resumeReads(ctx, backlog));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down (which happens when the server is shutting down).
+            backlog.size.decrementAndGet();
+            Log.debug("Unable to process data received on {}, as its executor is shutting down.", ctx.channel().remoteAddress() == null ? ctx.channel().localAddress() : ctx.channel().localAddress() + "--" + ctx.channel().remoteAddress(), e);
+        }
+
+        // The backlog might have been processed before reads were suspended, in which case no task remains to resume them.
+        resumeReads(ctx, backlog);
+    }
+
+    /**
+     * Resumes reading from a channel of which reading was suspended, if its backlog has been sufficiently reduced.
+     * Must be invoked by the event loop of the channel.
+     */
+    private static void resumeReads(ChannelHandlerContext ctx, ProcessingBacklog backlog) {
+        if (backlog.readSuspended && backlog.size.get() <= backlog.credits / 2) {
+            Log.debug("Resuming reads on {}.", ctx.channel().remoteAddress() == null ? ctx.channel().localAddress() : ctx.channel().localAddress() + "--" + ctx.channel().remoteAddress());
+            backlog.readSuspended = false;
+            NettyReadSuspension.resume(ctx.channel());
+        }
+    }
+
+    /**
+     * Lets the stanza handler of the channel process data that was received on it.
+     *
+     * @param ctx the context of the channel on which the data was received.
+     * @param message the received data.
+     */
+    private void process(ChannelHandlerContext ctx, String message) {
+        // Get the parser to use to process stanza. For optimization there is going
+        // to be a parser for each running thread. So we can have a parser associated
+        // to each Thread
+        final XMPPPacketReader parser = PARSER_CACHE.get();
+
         // Let the stanza handler process the received stanza
         try {
             ctx.channel().attr(HANDLER).get().process(message, parser);
@@ -158,7 +237,18 @@ public abstract class NettyConnectionHandler extends SimpleChannelInboundHandler
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
         Connection connection = ctx.channel().attr(CONNECTION).get();
         if (connection != null) {
-            connection.close(); // clean up resources (connection and session) when channel is unregistered.
+            // clean up resources (connection and session) when channel is unregistered. When data is processed by a
+            // dedicated executor, this is done after all data that was received earlier has been processed.
+            final Executor processingExecutor = ctx.channel().attr(PROCESSING_EXECUTOR).get();
+            if (processingExecutor == null) {
+                connection.close();
+            } else {
+                try {
+                    processingExecutor.execute(connection::close);
+                } catch (RejectedExecutionException e) {
+                    connection.close();
+                }
+            }
         }
         super.channelUnregistered(ctx);
     }
@@ -204,6 +294,39 @@ public abstract class NettyConnectionHandler extends SimpleChannelInboundHandler
         }
     }
 
+    /**
+     * Returns the number of stanzas that were received on a channel, but that have not yet been processed.
+     *
+     * @param channel the channel.
+     * @return the number of stanzas awaiting processing (always zero when data is not processed by a dedicated executor).
+     */
+    public static int getInFlightStanzaCount(Channel channel) {
+        final ProcessingBacklog backlog = channel.attr(BACKLOG).get();
+        return backlog == null ? 0 : backlog.size.get();
+    }
+
+    /**
+     * Tracks the stanzas that were received on a channel, but that have not yet been processed.
+     */
+    static final class ProcessingBacklog {
+        /**
+         * The number of stanzas that can be awaiting processing, before reading from the channel is suspended.
+         */
+        final int credits;
+
+        final AtomicInteger size = new AtomicInteger();
+
+        ProcessingBacklog(int credits) {
+            this.credits = credits;
+        }
+
+        /**
+         * Indicates that reading from the channel was suspended because of the size of the backlog. Modified only by
+         * the event loop of the channel.
+         */
+        volatile boolean readSuspended;
+    }
+
     @Override
     public String toString()
     {
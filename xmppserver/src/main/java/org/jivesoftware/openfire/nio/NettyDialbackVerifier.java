@@ -0,0 +1,448 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.handler.ssl.NotSslRecordException;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.dom4j.*;
+import org.jivesoftware.openfire.StreamID;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.net.DNSUtil;
+import org.jivesoftware.openfire.server.RemoteServerManager;
+import org.jivesoftware.openfire.session.ConnectionSettings;
+import org.jivesoftware.openfire.spi.ConnectionConfiguration;
+import org.jivesoftware.openfire.spi.ConnectionType;
+import org.jivesoftware.openfire.spi.EncryptionArtifactFactory;
+import org.jivesoftware.util.JiveGlobals;
+import org.jivesoftware.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.StreamError;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.jivesoftware.openfire.nio.NettyConnection.SSL_HANDLER_NAME;
+
+/**
+ * Verifies a Server Dialback key with an Authoritative Server, on behalf of a Receiving Server (as described in
+ * section 2.3 of XEP-0220).
+ *
+ * Verification is performed on a short-lived connection to the Authoritative Server. Unlike the socket-based
+ * implementation that it replaces, this implementation does not block any threads while waiting for the network: all
+ * connections are handled by the event loop group that is shared by all outbound server-to-server connections (see
+ * {@link NettyOutboundEventLoopGroup}).
+ *
+ * When the Authoritative Server offers STARTTLS, encryption is negotiated before the key is verified. When TLS
+ * negotiation fails, verification is retried on a new connection that is not encrypted. When a plain-text response is
+ * detected on a connection that was started using direct TLS, verification is retried on a new connection that does
+ * not use direct TLS (if allowed by configuration).
+ */
+public class NettyDialbackVerifier
+{
+    private static final Logger Log = LoggerFactory.getLogger(NettyDialbackVerifier.class);
+
+    private enum State {
+        /**
+         * Waiting for the Authoritative Server to open its stream.
+         */
+        HEADER,
+
+        /**
+         * Waiting for the Authoritative Server to send its stream features.
+         */
+        FEATURES,
+
+        /**
+         * Waiting for the Authoritative Server to accept a request for STARTTLS.
+         */
+        PROCEED,
+
+        /**
+         * Waiting for the Authoritative Server to respond to the request for verification of the key.
+         */
+        VERIFY
+    }
+
+    private final String recipient;
+    private final String remoteDomain;
+    private final StreamID streamID;
+    private final String key;
+    private final Logger log;
+
+    /**
+     * Creates a new instance that verifies one dialback key.
+     *
+     * @param recipient the local domain that is the Receiving Server.
+     * @param remoteDomain the remote domain that is being authenticated, and the domain of the Authoritative Server.
+     * @param streamID the stream id that was generated by the Receiving Server for the Originating Server.
+     * @param key the dialback key that was received from the Originating Server.
+     */
+    public NettyDialbackVerifier(final String recipient, final String remoteDomain, final StreamID streamID, final String key)
+    {
+        this.recipient = recipient;
+        this.remoteDomain = remoteDomain;
+        this.streamID = streamID;
+        this.key = key;
+        this.log = LoggerFactory.getLogger( Log.getName() + "[Acting as Receiving Server: Verify key with AS: " + remoteDomain + " for OS: " + recipient + " (id " + streamID + ")]" );
+    }
+
+    /**
+     * Verifies the key with the Authoritative Server.
+     *
+     * The returned future is completed with the 'db:verify' element that is received from the Authoritative Server.
+     * It is up to the caller to inspect that answer. When verification did not complete (eg: the Authoritative Server
+     * did not answer in time, or did not comply with the protocol), the future is completed with {@code null}. When
+     * no connection can be established with any of the hosts of the remote domain, the future is completed
+     * exceptionally.
+     *
+     * @param port The port to connect to when DNS resolution fails.
+     * @return a future that is completed with the answer of the Authoritative Server.
+     */
+    public CompletableFuture<Element> verify(final int port)
+    {
+        log.debug( "Verifying key ..." );
+        final CompletableFuture<Element> result = new CompletableFuture<>();
+        NettySocketUtil.connectToXmppDomain( remoteDomain, port, remoteHost -> createBootstrap(remoteHost.isDirectTLS(), false).connect(remoteHost.getHost(), remoteHost.getPort()) )
+            .whenComplete( (connected, t) -> {
+                if ( t != null ) {
+                    log.debug( "Unable to verify key: no connection could be established with the Authoritative Server.", t );
+                    result.completeExceptionally( t );
+                } else {
+                    final DNSUtil.HostAddress remoteHost = connected.getValue();
+                    log.debug( "Opening a new connection to {} {}.", connected.getKey().remoteAddress(), remoteHost.isDirectTLS() ? "using directTLS" : "that is initially not encrypted" );
+                    awaitAnswer( connected.getKey(), remoteHost, remoteHost.isDirectTLS(), false, result );
+                }
+            });
+        return result;
+    }
+
+    private void awaitAnswer(final Channel channel, final DNSUtil.HostAddress remoteHost, final boolean directTLS, final boolean skipTLS, final CompletableFuture<Element> result)
+    {
+        final VerifierHandler handler = channel.pipeline().get(VerifierHandler.class);
+        if ( handler == null ) {
+            // The pipeline has already been torn down.
+            log.debug( "Unable to verify key: the connection to the Authoritative Server was closed." );
+            result.complete( null );
+            return;
+        }
+        handler.answer.whenComplete( (answer, t) -> {
+            if ( t == null ) {
+                result.complete( answer );
+            } else if ( t instanceof SSLHandshakeException && !directTLS && !skipTLS ) {
+                log.debug( "Verification of dialback key failed due to TLS failure. Retry without StartTLS...", t );
+                reconnect( remoteHost, false, true, result );
+            } else if ( t instanceof SSLException && directTLS && isPlainTextDetected( (SSLException) t )
+                && JiveGlobals.getBooleanProperty(ConnectionSettings.Server.TLS_ON_PLAIN_DETECTION_ALLOW_NONDIRECTTLS_FALLBACK, true) ) {
+                log.warn( "Plaintext detected on a new connection that is was started in DirectTLS mode (remote host: {}). Attempting to restart the connection in non-DirectTLS mode.", remoteHost );
+                reconnect( remoteHost, false, false, result );
+            } else {
+                log.debug( "Unable to verify key: An error occurred.", t );
+                result.complete( null );
+            }
+        });
+    }
+
+    private void reconnect(final DNSUtil.HostAddress remoteHost, final boolean directTLS, final boolean skipTLS, final CompletableFuture<Element> result)
+    {
+        createBootstrap(directTLS, skipTLS).connect(remoteHost.getHost(), remoteHost.getPort()).addListener( (ChannelFutureListener) future -> {
+            if ( future.isSuccess() ) {
+                awaitAnswer( future.channel(), remoteHost, directTLS, skipTLS, result );
+            } else {
+                log.debug( "Unable to verify key: Unable to re-establish a connection with {}.", remoteHost, future.cause() );
+                result.complete( null );
+            }
+        });
+    }
+
+    private Bootstrap createBootstrap(final boolean directTLS, final boolean skipTLS)
+    {
+        final int socketTimeout = RemoteServerManager.getSocketTimeout();
+        final Bootstrap bootstrap = NettyOutboundEventLoopGroup.createBootstrap();
+        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, socketTimeout);
+        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel ch) throws Exception {
+                NettyOutboundEventLoopGroup.registerChannel(ch);
+                ch.attr(NettyConnectionHandler.XML_PARSER).set(new XMLLightweightParser());
+                ch.pipeline().addLast(new NettyXMPPDecoder());
+                ch.pipeline().addLast(new StringEncoder(StandardCharsets.UTF_8));
+                ch.pipeline().addLast(new ReadTimeoutHandler(socketTimeout, TimeUnit.MILLISECONDS));
+                ch.pipeline().addLast(new VerifierHandler(directTLS, skipTLS));
+                if (directTLS) {
+                    ch.pipeline().addFirst(SSL_HANDLER_NAME, createSslHandler(ch, true));
+                }
+            }
+        });
+        return bootstrap;
+    }
+
+    private static SslHandler createSslHandler(final Channel channel, final boolean directTLS) throws Exception
+    {
+        final ConnectionConfiguration configuration = XMPPServer.getInstance().getConnectionManager().getListener(ConnectionType.SOCKET_S2S, directTLS).generateConnectionConfiguration();
+        return new EncryptionArtifactFactory(configuration).createClientModeSslContext().newHandler(channel.alloc());
+    }
+
+    private static boolean isPlainTextDetected(final SSLException e)
+    {
+        return e instanceof NotSslRecordException || (e.getMessage() != null && e.getMessage().contains("plaintext connection?"));
+    }
+
+    /**
+     * Implements the protocol that is used on a connection to the Authoritative Server. This handler keeps state for
+     * one channel and must not be shared.
+     */
+    private class VerifierHandler extends ChannelInboundHandlerAdapter
+    {
+        /**
+         * Completed with the answer of the Authoritative Server, or exceptionally when TLS negotiation failed.
+         */
+        private final CompletableFuture<Element> answer = new CompletableFuture<>();
+        private final boolean directTLS;
+        private final boolean skipTLS;
+        private boolean encrypted;
+        private State state = State.HEADER;
+        private String streamHeader;
+        private Element stream;
+
+        VerifierHandler(final boolean directTLS, final boolean skipTLS)
+        {
+            this.directTLS = directTLS;
+            this.skipTLS = skipTLS;
+        }
+
+        @Override
+        public void channelActive(final ChannelHandlerContext ctx) throws Exception
+        {
+            if (!directTLS) {
+                sendStreamHeader(ctx);
+            }
+            // When using direct TLS, the stream header is sent after the TLS handshake has completed.
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception
+        {
+            if (evt instanceof SslHandshakeCompletionEvent) {
+                final SslHandshakeCompletionEvent event = (SslHandshakeCompletionEvent) evt;
+                if (event.isSuccess()) {
+                    log.debug( "Successfully negotiated TLS with AS... " );
+                    encrypted = true;
+                    state = State.HEADER;
+                    sendStreamHeader(ctx);
+                } else {
+                    fail(ctx, event.cause());
+                }
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg)
+        {
+            if (answer.isDone()) {
+                return;
+            }
+            final String stanza = (String) msg;
+            try {
+                process(ctx, stanza);
+            } catch (DocumentException e) {
+                log.warn( "Unable to verify key: XML Error!", e );
+                complete(ctx, null);
+            }
+        }
+
+        private void process(final ChannelHandlerContext ctx, final String stanza) throws DocumentException
+        {
+            if (stanza.startsWith("</stream:stream")) {
+                log.debug( "Unable to verify key: the Authoritative Server closed the stream." );
+                complete(ctx, null);
+                return;
+            }
+
+            final int streamStart = stanza.indexOf("<stream:stream");
+            if (state == State.HEADER) {
+                if (streamStart < 0) {
+                    // Ignore <?xml version="1.0"?>
+                    return;
+                }
+                log.debug( "Got a response." );
+                streamHeader = stanza.substring(streamStart);
+                stream = DocumentHelper.parseText(streamHeader + "</stream:stream>").getRootElement();
+                if ("1.0".equals(stream.attributeValue("version"))) {
+                    log.debug( "The remote server is XMPP 1.0 compliant (or at least reports to be).");
+                    state = State.FEATURES;
+                } else {
+                    requestVerification(ctx);
+                }
+                return;
+            }
+
+            // Re-establish the namespace prefixes that were defined on the stream element (eg: 'db').
+            final Element doc = DocumentHelper.parseText(streamHeader + stanza + "</stream:stream>").getRootElement().elements().get(0);
+            if ("error".equals(doc.getName()) && "stream".equals(doc.getNamespacePrefix())) {
+                log.debug( "Unable to verify key: the Authoritative Server sent a stream error: {}", doc.asXML() );
+                complete(ctx, null);
+                return;
+            }
+
+            switch (state) {
+                case FEATURES:
+                    if (!directTLS && !skipTLS && !encrypted && doc.element("starttls") != null) {
+                        ctx.writeAndFlush("<starttls xmlns='urn:ietf:params:xml:ns:xmpp-tls'/>");
+                        state = State.PROCEED;
+                    } else {
+                        requestVerification(ctx);
+                    }
+                    break;
+
+                case PROCEED:
+                    if (!"proceed".equals(doc.getName())) {
+                        log.warn( "Unable to verify key: Got {} instead of proceed for starttls", doc.getName() );
+                        log.debug( "Like this: {}", doc.asXML() );
+                        complete(ctx, null);
+                        return;
+                    }
+                    log.debug( "Negotiating StartTLS with AS... " );
+                    try {
+                        ctx.channel().attr(NettyConnectionHandler.XML_PARSER).set(new XMLLightweightParser());
+                        ctx.pipeline().addFirst(SSL_HANDLER_NAME, createSslHandler(ctx.channel(), false));
+                        state = State.HEADER;
+                    } catch (Exception e) {
+                        log.warn( "Unable to verify key: TLS negotiation failed to start.", e );
+                        complete(ctx, null);
+                    }
+                    break;
+
+                case VERIFY:
+                    if ("db".equals(doc.getNamespacePrefix()) && "verify".equals(doc.getName())) {
+                        complete(ctx, doc);
+                    } else {
+                        log.debug( "db:verify answer was: {}", doc.asXML() );
+                        complete(ctx, null);
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        private void requestVerification(final ChannelHandlerContext ctx)
+        {
+            final Namespace db = stream.getNamespaceForPrefix("db");
+            if (db == null || !"jabber:server:dialback".equals(db.getURI())) {
+                log.debug( "Unable to verify key: the Authoritative Server does not support dialback (invalid namespace)." );
+                ctx.write(new StreamError(StreamError.Condition.invalid_namespace).toXML());
+                complete(ctx, null);
+                return;
+            }
+
+            log.debug( "Request for verification of the key and wait for response" );
+            final Element verify = DocumentHelper.createElement(QName.get("verify", "db", "jabber:server:dialback"));
+            verify.addAttribute("from", recipient);
+            verify.addAttribute("to", remoteDomain);
+            verify.addAttribute("id", streamID.getID());
+            verify.addText(key);
+
+            // The namespace was already defined on the stream element. Strip it from the XML.
+            ctx.writeAndFlush(verify.asXML().replace(" " + verify.getNamespace().asXML(), ""));
+            state = State.VERIFY;
+        }
+
+        private void sendStreamHeader(final ChannelHandlerContext ctx)
+        {
+            log.debug( "Send the Authoritative Server a stream header and wait for answer." );
+            final Element stream = DocumentHelper.createElement(QName.get("stream", "stream", "http://etherx.jabber.org/streams"));
+            final Document document = DocumentHelper.createDocument(stream);
+            document.setXMLEncoding(StandardCharsets.UTF_8.toString());
+            stream.add(Namespace.get("", "jabber:server"));
+            stream.add(Namespace.get("db", "jabber:server:dialback"));
+            stream.addAttribute("to", remoteDomain);
+            stream.addAttribute("from", recipient);
+            stream.addAttribute("version", "1.0");
+
+            ctx.writeAndFlush(StringUtils.asUnclosedStream(document));
+        }
+
+        @Override
+        public void channelInactive(final ChannelHandlerContext ctx) throws Exception
+        {
+            if (!answer.isDone()) {
+                log.debug( "Unable to verify key: the connection to the Authoritative Server was closed." );
+                answer.complete(null);
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause)
+        {
+            final Throwable t = cause instanceof DecoderException && cause.getCause() != null ? cause.getCause() : cause;
+            if (t instanceof ReadTimeoutException) {
+                log.debug( "Unable to verify key: Time out waiting for the Authoritative Server." );
+                complete(ctx, null);
+            } else {
+                fail(ctx, t);
+            }
+        }
+
+        /**
+         * Ends verification with an answer (which can be null), closing the stream and the connection.
+         */
+        private void complete(final ChannelHandlerContext ctx, final Element result)
+        {
+            if (answer.isDone()) {
+                return;
+            }
+            if (ctx.channel().isActive()) {
+                ctx.writeAndFlush("</stream:stream>").addListener(ChannelFutureListener.CLOSE);
+            }
+            answer.complete(result);
+        }
+
+        /**
+         * Ends verification due to an unexpected problem, closing the connection without sending any more data.
+         */
+        private void fail(final ChannelHandlerContext ctx, final Throwable cause)
+        {
+            if (answer.isDone()) {
+                return;
+            }
+            // When TLS negotiation failed, the peer is expected to close the connection *without* sending any more data
+            // (<failure/> nor </stream>). It is probably (see OF-794) best if we don't send any data either.
+            ctx.close();
+            if (cause instanceof SSLException) {
+                answer.completeExceptionally(cause);
+            } else {
+                log.debug( "Unable to verify key: An error occurred.", cause );
+                answer.complete(null);
+            }
+        }
+    }
+}
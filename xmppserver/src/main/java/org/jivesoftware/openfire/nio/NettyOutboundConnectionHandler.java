@@ -27,8 +27,9 @@ import org.jivesoftware.openfire.net.StanzaHandler;
 import org.jivesoftware.openfire.server.ServerDialback;
 import org.jivesoftware.openfire.session.ConnectionSettings;
 import org.jivesoftware.openfire.session.DomainPair;
-import org.jivesoftware.openfire.session.LocalOutgoingServerSession;
 import org.jivesoftware.openfire.spi.ConnectionConfiguration;
+import org.jivesoftware.openfire.spi.ConnectionListener;
+import org.jivesoftware.openfire.spi.ConnectionType;
 import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.StringUtils;
 import org.slf4j.Logger;
@@ -48,11 +49,17 @@ public class NettyOutboundConnectionHandler extends NettyConnectionHandler {
     private static final Logger Log = LoggerFactory.getLogger(NettyOutboundConnectionHandler.class);
     private final DomainPair domainPair;
     private final int port;
+    private final boolean skipTLS;
 
     public NettyOutboundConnectionHandler(ConnectionConfiguration configuration, DomainPair domainPair, int port) {
+        this(configuration, domainPair, port, false);
+    }
+
+    public NettyOutboundConnectionHandler(ConnectionConfiguration configuration, DomainPair domainPair, int port, boolean skipTLS) {
         super(configuration);
         this.domainPair = domainPair;
         this.port = port;
+        this.skipTLS = skipTLS;
     }
 
     @Override
@@ -68,7 +75,18 @@ public class NettyOutboundConnectionHandler extends NettyConnectionHandler {
 
     @Override
     StanzaHandler createStanzaHandler(NettyConnection connection) {
-        return new RespondingServerStanzaHandler( XMPPServer.getInstance().getPacketRouter(), connection, domainPair );
+        return new RespondingServerStanzaHandler( XMPPServer.getInstance().getPacketRouter(), connection, domainPair, skipTLS );
+    }
+
+    /**
+     * Processes data on the thread that performs network I/O. Threads of the shared processing pool can block in
+     * {@link org.jivesoftware.openfire.session.LocalOutgoingServerSession#authenticateSubdomain} until the dialback
+     * result is received on this channel. If that result had to be processed by the same pool, all of its threads
+     * could end up waiting for it.
+     */
+    @Override
+    boolean isProcessingOffloadable() {
+        return false;
     }
 
     private static boolean configRequiresStrictCertificateValidation() {
@@ -149,23 +167,31 @@ public class NettyOutboundConnectionHandler extends NettyConnectionHandler {
                 }
 
                 // fall back to dialback
-                if (ServerDialback.isEnabled() && connectionConfigDoesNotRequireTls()) {
+                if (!skipTLS && ServerDialback.isEnabled() && connectionConfigDoesNotRequireTls()) {
                     Log.debug("Unable to create a new TLS session. Going to try connecting using server dialback as a fallback.");
 
-                    // Use server dialback (pre XMPP 1.0) over a plain connection
-                    final LocalOutgoingServerSession outgoingSession = new ServerDialback(domainPair).createOutgoingSession(port);
-                    if (outgoingSession != null) {
-                        Log.debug("Successfully created new session (using dialback as a fallback)!");
-                        stanzaHandler.setSession(outgoingSession);
-                        stanzaHandler.setSessionAuthenticated();
+                    // Use server dialback over a new connection, on which no TLS is negotiated.
+                    final ConnectionListener listener = XMPPServer.getInstance().getConnectionManager().getListener(ConnectionType.SOCKET_S2S, false);
+                    final NettySessionInitializer fallback = new NettySessionInitializer(domainPair, port, true);
+                    fallback.init(listener).whenComplete((outgoingSession, t) -> {
+                        if (outgoingSession != null) {
+                            Log.debug("Successfully created new session (using dialback as a fallback)!");
+                            stanzaHandler.setSession(outgoingSession);
+                            stanzaHandler.setSessionAuthenticated();
+                        } else {
+                            Log.warn("Unable to create a new session: Dialback (as a fallback) failed.", t);
+                            fallback.stop();
+                        }
+                        stanzaHandler.setAttemptedAllAuthenticationMethods();
+                    });
+                } else {
+                    if (skipTLS) {
+                        Log.warn("Unable to create a new session: exhausted all options (TLS failed on a connection that was established as a fallback).");
                     } else {
-                        Log.warn("Unable to create a new session: Dialback (as a fallback) failed.");
+                        Log.warn("Unable to create a new session: exhausted all options (not trying dialback as a fallback, as server dialback is disabled by configuration.");
                     }
-                } else {
-                    Log.warn("Unable to create a new session: exhausted all options (not trying dialback as a fallback, as server dialback is disabled by configuration.");
+                    stanzaHandler.setAttemptedAllAuthenticationMethods();
                 }
-
-                stanzaHandler.setAttemptedAllAuthenticationMethods();
             }
         }
 
@@ -206,6 +232,7 @@ public class NettyOutboundConnectionHandler extends NettyConnectionHandler {
         return "NettyOutboundConnectionHandler{" +
             "domainPair=" + domainPair +
             ", port=" + port +
+            ", skipTLS=" + skipTLS +
             ", sslInitDone=" + sslInitDone +
             ", configuration=" + configuration +
             '}';
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.DefaultAddressResolverGroup;
+import io.netty.resolver.dns.DnsAddressResolverGroup;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.resolver.dns.DnsServerAddressStreamProviders;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.jivesoftware.openfire.nio.NettySessionInitializer.GRACEFUL_SHUTDOWN_QUIET_PERIOD;
+import static org.jivesoftware.openfire.nio.NettySessionInitializer.GRACEFUL_SHUTDOWN_TIMEOUT;
+
+/**
+ * Provides the Netty resources that are shared by all outbound server-to-server connections: one event loop group,
+ * of which the size is configurable, and one resolver that translates host names to addresses without blocking the
+ * threads of that group.
+ *
+ * Sharing these resources causes the number of threads that are used for outbound connections to remain constant,
+ * rather than to grow with the number of connections. Both are created when first used, and re-created when used
+ * after {@link #shutdown()} was invoked.
+ *
+ * This class also collects statistics on outbound connections: the number of channels that are open, and the time
+ * it takes to set up a session on a new connection.
+ */
+public final class NettyOutboundEventLoopGroup
+{
+    private static final Logger Log = LoggerFactory.getLogger(NettyOutboundEventLoopGroup.class);
+
+    /**
+     * The number of threads in the event loop group that is shared by all outbound server-to-server connections.
+     */
+    public static final SystemProperty<Integer> THREADS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.server.outgoing.netty.threads")
+        .setDefaultValue(Runtime.getRuntime().availableProcessors())
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * Controls if host names of remote servers are resolved by Netty's asynchronous DNS resolver. When disabled,
+     * the resolver of the JVM is used, which blocks a thread of the event loop group for the duration of the lookup.
+     */
+    public static final SystemProperty<Boolean> ASYNC_DNS_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.server.outgoing.netty.async-dns.enabled")
+        .setDefaultValue(true)
+        .setDynamic(false)
+        .build();
+
+    private static EventLoopGroup eventLoopGroup;
+
+    private static AddressResolverGroup<? extends SocketAddress> resolverGroup;
+
+    /**
+     * All open outbound channels. Closed channels are automatically removed.
+     */
+    private static final ChannelGroup activeChannels = new DefaultChannelGroup("s2s-outbound", GlobalEventExecutor.INSTANCE);
+
+    private static final AtomicLong setupAttempts = new AtomicLong();
+
+    private static final AtomicLong setupFailures = new AtomicLong();
+
+    private static final AtomicLong setupSuccesses = new AtomicLong();
+
+    private static final AtomicLong setupTotalNanos = new AtomicLong();
+
+    private static final AtomicLong setupMaxNanos = new AtomicLong();
+
+    private NettyOutboundEventLoopGroup() {}
+
+    /**
+     * Returns the event loop group that is shared by all outbound server-to-server connections.
+     *
+     * @return an event loop group (never null).
+     */
+    @Nonnull
+    public static synchronized EventLoopGroup getEventLoopGroup()
+    {
+        if (eventLoopGroup == null || eventLoopGroup.isShuttingDown()) {
+            final int threads = THREADS.getValue();
+            Log.debug("Creating event loop group for outbound server-to-server connections, using {} thread(s).", threads);
+            eventLoopGroup = NettyTransport.getActive().newEventLoopGroup(threads, new DefaultThreadFactory("s2s-outbound", true));
+        }
+        return eventLoopGroup;
+    }
+
+    /**
+     * Returns the resolver that is shared by all outbound server-to-server connections.
+     *
+     * @return a resolver group (never null).
+     */
+    @Nonnull
+    public static synchronized AddressResolverGroup<? extends SocketAddress> getResolverGroup()
+    {
+        if (resolverGroup == null) {
+            if (ASYNC_DNS_ENABLED.getValue()) {
+                resolverGroup = new DnsAddressResolverGroup(new DnsNameResolverBuilder()
+                    .channelType(NettyTransport.getActive().getDatagramChannelClass())
+                    .nameServerProvider(DnsServerAddressStreamProviders.platformDefault()));
+            } else {
+                resolverGroup = DefaultAddressResolverGroup.INSTANCE;
+            }
+        }
+        return resolverGroup;
+    }
+
+    /**
+     * Creates a bootstrap for an outbound connection that uses the shared event loop group and resolver.
+     *
+     * @return a new bootstrap, to which a handler is yet to be added.
+     */
+    @Nonnull
+    public static Bootstrap createBootstrap()
+    {
+        final Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(getEventLoopGroup());
+        bootstrap.channel(NettyTransport.getActive().getSocketChannelClass());
+        bootstrap.resolver(getResolverGroup());
+        return bootstrap;
+    }
+
+    /**
+     * Registers a new outbound channel, so that it is included in the statistics of this class for as long as it
+     * is open.
+     *
+     * @param channel the channel to register.
+     */
+    public static void registerChannel(@Nonnull final Channel channel)
+    {
+        activeChannels.add(channel);
+    }
+
+    /**
+     * Registers the start of an attempt to set up a session on a new outbound connection.
+     *
+     * @return the moment (as defined by {@link System#nanoTime()}) at which the attempt started.
+     */
+    public static long recordSetupStarted()
+    {
+        setupAttempts.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Registers the outcome of an attempt to set up a session on a new outbound connection.
+     *
+     * @param startedAt the value that was returned by {@link #recordSetupStarted()} for this attempt.
+     * @param success true if a session was established, otherwise false.
+     */
+    public static void recordSetupCompleted(final long startedAt, final boolean success)
+    {
+        if (!success) {
+            setupFailures.incrementAndGet();
+            return;
+        }
+        final long elapsed = System.nanoTime() - startedAt;
+        setupSuccesses.incrementAndGet();
+        setupTotalNanos.addAndGet(elapsed);
+        setupMaxNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * @return the number of threads in the event loop group, or zero if the group has not been created.
+     */
+    public static synchronized int getThreadCount()
+    {
+        return eventLoopGroup instanceof MultithreadEventLoopGroup && !eventLoopGroup.isShuttingDown() ? ((MultithreadEventLoopGroup) eventLoopGroup).executorCount() : 0;
+    }
+
+    /**
+     * @return the number of outbound channels that are currently open.
+     */
+    public static int getActiveChannelCount()
+    {
+        return activeChannels.size();
+    }
+
+    /**
+     * @return the number of attempts to set up a session on a new outbound connection since the server started.
+     */
+    public static long getSetupAttempts()
+    {
+        return setupAttempts.get();
+    }
+
+    /**
+     * @return the number of attempts to set up a session on a new outbound connection that failed since the server started.
+     */
+    public static long getSetupFailures()
+    {
+        return setupFailures.get();
+    }
+
+    /**
+     * @return the average duration of successful attempts to set up a session on a new outbound connection, or Duration.ZERO if there were none.
+     */
+    @Nonnull
+    public static Duration getAverageSetupTime()
+    {
+        final long successes = setupSuccesses.get();
+        return successes == 0 ? Duration.ZERO : Duration.ofNanos(setupTotalNanos.get() / successes);
+    }
+
+    /**
+     * @return the longest duration of a successful attempt to set up a session on a new outbound connection.
+     */
+    @Nonnull
+    public static Duration getMaximumSetupTime()
+    {
+        return Duration.ofNanos(setupMaxNanos.get());
+    }
+
+    /**
+     * Releases the resolver (if it was created by this class) and shuts down the event loop group. Connections that are still open are closed.
+     */
+    public static synchronized void shutdown()
+    {
+        if (resolverGroup != null) {
+            // The default resolver group is shared by the entire JVM, and must not be closed.
+            if (resolverGroup != DefaultAddressResolverGroup.INSTANCE) {
+                resolverGroup.close();
+            }
+            resolverGroup = null;
+        }
+        if (eventLoopGroup != null && !eventLoopGroup.isShuttingDown()) {
+            eventLoopGroup.shutdownGracefully(GRACEFUL_SHUTDOWN_QUIET_PERIOD.getValue().toMillis(), GRACEFUL_SHUTDOWN_TIMEOUT.getValue().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
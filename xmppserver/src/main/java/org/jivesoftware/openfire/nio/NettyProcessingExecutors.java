@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.jivesoftware.openfire.nio.FairProcessingScheduler.SchedulingClass;
+import org.jivesoftware.openfire.spi.ConnectionConfiguration;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manages the processing of the data that is received on Netty channels, so that processing (which can involve
+ * blocking operations, such as database queries) does not take place on the threads that perform network I/O.
+ *
+ * Data is processed by a pool of threads that is shared by all channels. Each channel is given an executor that
+ * processes the stanzas that are received on the channel in the order in which they were received. Processing
+ * capacity is shared fairly between channels, and between client, server and component connections in proportion
+ * to their configured weights (see {@link FairProcessingScheduler}). Outbound server-to-server channels do not use
+ * this pool, as threads of this pool can wait for the dialback results that are received on them.
+ *
+ * Each channel is given a number of credits. Every stanza that is received on a channel, but that has not yet been
+ * processed, uses one credit. When a channel runs out of credits, reading from that channel is suspended until half
+ * of its credits have been returned.
+ */
+public final class NettyProcessingExecutors
+{
+    private static final Logger Log = LoggerFactory.getLogger(NettyProcessingExecutors.class);
+
+    /**
+     * Controls if data that is received on Netty channels is processed by a dedicated pool of threads, rather than by
+     * the thread that performs network I/O. Changes apply to new connections.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.socket.netty.processing.offload.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The number of threads that process data received on Netty channels.
+     */
+    public static final SystemProperty<Integer> THREADS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.threads")
+        .setDefaultValue(Math.max(16, 2 * Runtime.getRuntime().availableProcessors()))
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    public static final SystemProperty<Integer> CLIENT_WEIGHT = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.weight.client")
+        .setDefaultValue(2)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    public static final SystemProperty<Integer> SERVER_WEIGHT = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.weight.server")
+        .setDefaultValue(1)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    public static final SystemProperty<Integer> COMPONENT_WEIGHT = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.weight.component")
+        .setDefaultValue(1)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    public static final SystemProperty<Integer> CLIENT_CREDITS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.credits.client")
+        .setDefaultValue(50)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    public static final SystemProperty<Integer> SERVER_CREDITS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.credits.server")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    public static final SystemProperty<Integer> COMPONENT_CREDITS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.processing.credits.component")
+        .setDefaultValue(500)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    private static FairProcessingScheduler scheduler;
+
+    private static final AtomicLong suspendedReads = new AtomicLong();
+
+    private NettyProcessingExecutors() {}
+
+    /**
+     * Returns an executor for a new channel, or null if data is to be processed by the thread that performs network
+     * I/O.
+     *
+     * @param configuration the configuration of the connection that is established on the channel.
+     * @return an executor, or null.
+     */
+    @Nullable
+    public static synchronized Executor newChannelExecutor(@Nonnull final ConnectionConfiguration configuration)
+    {
+        if (!ENABLED.getValue()) {
+            return null;
+        }
+        if (scheduler == null || scheduler.isShutdown()) {
+            final int threads = THREADS.getValue();
+            Log.debug("Creating scheduler for processing data received on network connections, using {} thread(s).", threads);
+            scheduler = new FairProcessingScheduler(threads, new DefaultThreadFactory("netty-processing", true), NettyProcessingExecutors::getWeight);
+        }
+        return scheduler.newSessionExecutor(SchedulingClass.of(configuration.getType()));
+    }
+
+    static int getWeight(@Nonnull final SchedulingClass schedulingClass)
+    {
+        switch (schedulingClass) {
+            case SERVER:
+                return SERVER_WEIGHT.getValue();
+            case COMPONENT:
+                return COMPONENT_WEIGHT.getValue();
+            default:
+                return CLIENT_WEIGHT.getValue();
+        }
+    }
+
+    /**
+     * Returns the number of stanzas that can be awaiting processing for one channel, before reading from that
+     * channel is suspended.
+     *
+     * @param configuration the configuration of the connection that is established on the channel.
+     * @return the number of credits of a new channel.
+     */
+    static int getCredits(@Nonnull final ConnectionConfiguration configuration)
+    {
+        switch (SchedulingClass.of(configuration.getType())) {
+            case SERVER:
+                return SERVER_CREDITS.getValue();
+            case COMPONENT:
+                return COMPONENT_CREDITS.getValue();
+            default:
+                return CLIENT_CREDITS.getValue();
+        }
+    }
+
+    static void recordSuspendedRead()
+    {
+        suspendedReads.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of stanzas that are awaiting processing for a class of connections.
+     *
+     * @param schedulingClass the class of connections.
+     * @return the number of stanzas awaiting processing.
+     */
+    public static synchronized int getQueuedTaskCount(@Nonnull final SchedulingClass schedulingClass)
+    {
+        return scheduler == null ? 0 : scheduler.getQueuedTaskCount(schedulingClass);
+    }
+
+    /**
+     * @return the number of times that reading from a channel was suspended because it ran out of credits.
+     */
+    public static long getSuspendedReadCount()
+    {
+        return suspendedReads.get();
+    }
+
+    /**
+     * Stops processing of new data. Data that was already received is processed before the threads terminate.
+     */
+    public static synchronized void shutdown()
+    {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
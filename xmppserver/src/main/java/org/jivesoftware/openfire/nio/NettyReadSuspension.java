@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Suspends and resumes reading from a channel on behalf of several independent parties (such as admission control and
+ * the processing backlog), by counting how many of them currently require reading to be suspended. Reading is resumed
+ * only when none of them does.
+ *
+ * Each party must invoke {@link #resume(Channel)} exactly once for every invocation of {@link #suspend(Channel)}. All
+ * methods must be invoked by the event loop of the channel.
+ */
+final class NettyReadSuspension
+{
+    static final AttributeKey<Integer> SUSPENSIONS = AttributeKey.valueOf("READ-SUSPENSIONS");
+
+    private NettyReadSuspension() {}
+
+    /**
+     * Suspends reading from a channel, until this suspension (and any other) is resumed.
+     *
+     * @param channel the channel to stop reading from.
+     */
+    static void suspend(@Nonnull final Channel channel)
+    {
+        final Integer suspensions = channel.attr(SUSPENSIONS).get();
+        channel.attr(SUSPENSIONS).set(suspensions == null ? 1 : suspensions + 1);
+        channel.config().setAutoRead(false);
+    }
+
+    /**
+     * Resumes a suspension of reading from a channel. Reading is resumed if no other suspension is in effect.
+     *
+     * @param channel the channel to resume reading from.
+     */
+    static void resume(@Nonnull final Channel channel)
+    {
+        final Integer suspensions = channel.attr(SUSPENSIONS).get();
+        if (suspensions == null || suspensions <= 0) {
+            throw new IllegalStateException("Reading from channel " + channel + " is not suspended.");
+        }
+        channel.attr(SUSPENSIONS).set(suspensions - 1);
+        if (suspensions == 1) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * @param channel a channel.
+     * @return true if reading from the channel is suspended by at least one party.
+     */
+    static boolean isSuspended(@Nonnull final Channel channel)
+    {
+        final Integer suspensions = channel.attr(SUSPENSIONS).get();
+        return suspensions != null && suspensions > 0;
+    }
+}
@@ -18,14 +18,12 @@ package org.jivesoftware.openfire.nio;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.handler.timeout.IdleStateHandler;
 import org.dom4j.*;
 import org.jivesoftware.openfire.net.RespondingServerStanzaHandler;
-import org.jivesoftware.openfire.net.SocketUtil;
+import org.jivesoftware.openfire.server.RemoteServerManager;
 import org.jivesoftware.openfire.server.ServerDialback;
 import org.jivesoftware.openfire.session.ConnectionSettings;
 import org.jivesoftware.openfire.session.DomainPair;
@@ -40,15 +38,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLException;
-import java.net.Socket;
-import java.net.SocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.jivesoftware.openfire.nio.NettyConnectionHandler.CONNECTION;
@@ -82,105 +75,135 @@ public class NettySessionInitializer {
     private static final Logger Log = LoggerFactory.getLogger(NettySessionInitializer.class);
     private final DomainPair domainPair;
     private final int port;
-    private boolean directTLS = false;
+    private final boolean skipTLS;
+    private volatile boolean directTLS = false;
     private final AtomicBoolean isStopped = new AtomicBoolean(false);
-    private final EventLoopGroup workerGroup;
     private Channel channel;
 
     public NettySessionInitializer(DomainPair domainPair, int port) {
+        this(domainPair, port, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param domainPair the local and remote domain for which a session is to be established.
+     * @param port default port to use to establish the connection.
+     * @param skipTLS true if STARTTLS should not be negotiated (eg: when falling back to dialback after TLS failed), otherwise false.
+     */
+    public NettySessionInitializer(DomainPair domainPair, int port, boolean skipTLS) {
         this.domainPair = domainPair;
         this.port = port;
-        this.workerGroup = new NioEventLoopGroup();
+        this.skipTLS = skipTLS;
     }
 
-    public Future<LocalSession> init(ConnectionListener listener) {
+    /**
+     * Establishes a connection to the remote domain, and initiates the session on it.
+     *
+     * This method does not block: both the connection and the session are established asynchronously.
+     *
+     * @param listener the listener that defines the configuration of the connection.
+     * @return a future that is completed with the session (or null when the session could not be authenticated), or that is completed exceptionally when no connection could be established.
+     */
+    public CompletableFuture<LocalSession> init(ConnectionListener listener) {
         // Connect to remote server using XMPP 1.0 (TLS + SASL EXTERNAL or TLS + server dialback or server dialback)
-        Log.debug( "Creating plain socket connection to a host that belongs to the remote XMPP domain." );
-        final Map.Entry<Socket, Boolean> socketToXmppDomain = SocketUtil.createSocketToXmppDomain(domainPair.getRemote(), port );
+        Log.debug( "Creating a connection to a host that belongs to the remote XMPP domain." );
+        final CompletableFuture<LocalSession> result = new CompletableFuture<>();
+        final long setupStartedAt = NettyOutboundEventLoopGroup.recordSetupStarted();
+        result.whenComplete((session, t) -> NettyOutboundEventLoopGroup.recordSetupCompleted(setupStartedAt, t == null && session != null));
+        NettySocketUtil.connectToXmppDomain(domainPair.getRemote(), port, remoteHost -> {
+                // Read by the channel initializer of the bootstrap. Connection attempts are made one after the other.
+                this.directTLS = remoteHost.isDirectTLS();
+                return createBootstrap(listener).connect(remoteHost.getHost(), remoteHost.getPort());
+            })
+            .whenComplete((connected, t) -> {
+                if (t != null) {
+                    Log.debug("Unable to create new session: Cannot create a connection with any applicable remote host.", t);
+                    stop();
+                    result.completeExceptionally(t);
+                    return;
+                }
 
-        if ( socketToXmppDomain == null ) {
-            throw new RuntimeException("Unable to create new session: Cannot create a plain socket connection with any applicable remote host.");
-        }
-        Socket socket = socketToXmppDomain.getKey();
-        this.directTLS = socketToXmppDomain.getValue();
-
-        final SocketAddress socketAddress = socket.getRemoteSocketAddress();
-        Log.debug( "Opening a new connection to {} {}.", socketAddress, directTLS ? "using directTLS" : "that is initially not encrypted" );
-
-        try {
-            Bootstrap b = new Bootstrap();
-            b.group(workerGroup);
-            b.channel(NioSocketChannel.class);
-            b.option(ChannelOption.SO_KEEPALIVE, true);
-            b.handler(new ChannelInitializer<SocketChannel>() {
-                @Override
-                public void initChannel(SocketChannel ch) throws Exception {
-                    NettyConnectionHandler businessLogicHandler = new NettyOutboundConnectionHandler(listener.generateConnectionConfiguration(), domainPair, port);
-                    int maxIdleTimeBeforeClosing = businessLogicHandler.getMaxIdleTime() > -1 ? businessLogicHandler.getMaxIdleTime() : 0;
-                    int maxIdleTimeBeforePinging = maxIdleTimeBeforeClosing / 2;
-
-                    ch.pipeline().addLast(new NettyXMPPDecoder());
-                    ch.pipeline().addLast(new StringEncoder(StandardCharsets.UTF_8));
-                    ch.pipeline().addLast("idleStateHandler", new IdleStateHandler(maxIdleTimeBeforeClosing, maxIdleTimeBeforePinging, 0));
-                    ch.pipeline().addLast("keepAliveHandler", new NettyIdleStateKeepAliveHandler(false));
-                    ch.pipeline().addLast(businessLogicHandler);
-
-                    final ConnectionAcceptor connectionAcceptor = listener.getConnectionAcceptor();
-                    if (connectionAcceptor instanceof NettyConnectionAcceptor) {
-                        ((NettyConnectionAcceptor) connectionAcceptor).getChannelHandlerFactories().forEach(factory -> {
-                            try {
-                                factory.addNewHandlerTo(ch.pipeline());
-                            } catch (Throwable t) {
-                                Log.warn("Unable to add ChannelHandler from '{}' to pipeline of new channel: {}", factory, ch, t);
-                            }
-                        });
-                    }
+                this.channel = connected.getKey();
+                Log.debug( "Opened a new connection to {} {}.", channel.remoteAddress(), directTLS ? "using directTLS" : "that is initially not encrypted" );
 
-                    // Should have a connection
-                    if (directTLS) {
-                        ch.attr(CONNECTION).get().startTLS(true, true);
-                    }
-                }
+                // Make sure we free up resources when the channel is closed
+                this.channel.closeFuture().addListener(future -> stop());
 
-                @Override
-                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-                    super.exceptionCaught(ctx, cause);
-                    if (exceptionOccurredForDirectTLS(cause)) {
-                        if (directTLS &&
-                            JiveGlobals.getBooleanProperty(ConnectionSettings.Server.TLS_ON_PLAIN_DETECTION_ALLOW_NONDIRECTTLS_FALLBACK, true) &&
-                            cause.getMessage().contains("plaintext connection?")
-                        ) {
-                            Log.warn("Plaintext detected on a new connection that is was started in DirectTLS mode (socket address: {}). Attempting to restart the connection in non-DirectTLS mode.", domainPair.getRemote());
-                            directTLS = false;
-                            Log.info("Re-establishing connection to {}. Proceeding without directTLS.", domainPair.getRemote());
-                            init(listener);
-                        }
-                    }
+                // When using directTLS a Netty SSLHandler is added to the pipeline from instantiation. This initiates the TLS handshake, and as such we do not need to send an opening stream element.
+                // The opening stream element will be sent by the StanzaHandler once TLS has been negotiated.
+                if (!directTLS) {
+                    // Start the session negotiation for startTLS
+                    sendOpeningStreamHeader(channel);
                 }
 
-                public boolean exceptionOccurredForDirectTLS(Throwable cause) {
-                    return cause instanceof SSLException;
-                }
+                waitForSession(channel).whenComplete((session, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(session);
+                    }
+                });
             });
+        return result;
+    }
 
-            this.channel = b.connect(socketAddress).sync().channel();
+    private Bootstrap createBootstrap(ConnectionListener listener) {
+        Bootstrap b = NettyOutboundEventLoopGroup.createBootstrap();
+        b.option(ChannelOption.SO_KEEPALIVE, true);
+        b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, RemoteServerManager.getSocketTimeout());
+        b.handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel ch) throws Exception {
+                NettyOutboundEventLoopGroup.registerChannel(ch);
+                NettyConnectionHandler businessLogicHandler = new NettyOutboundConnectionHandler(listener.generateConnectionConfiguration(), domainPair, port, skipTLS);
+                int maxIdleTimeBeforeClosing = businessLogicHandler.getMaxIdleTime() > -1 ? businessLogicHandler.getMaxIdleTime() : 0;
+                int maxIdleTimeBeforePinging = maxIdleTimeBeforeClosing / 2;
 
-            // Make sure we free up resources (worker group NioEventLoopGroup) when the channel is closed
-            this.channel.closeFuture().addListener(future -> stop());
+                ch.pipeline().addLast(new NettyXMPPDecoder());
+                ch.pipeline().addLast(new StringEncoder(StandardCharsets.UTF_8));
+                ch.pipeline().addLast("idleStateHandler", new IdleStateHandler(maxIdleTimeBeforeClosing, maxIdleTimeBeforePinging, 0));
+                ch.pipeline().addLast("keepAliveHandler", new NettyIdleStateKeepAliveHandler(false));
+                ch.pipeline().addLast(businessLogicHandler);
 
-            // When using directTLS a Netty SSLHandler is added to the pipeline from instantiation. This initiates the TLS handshake, and as such we do not need to send an opening stream element.
-            // The opening stream element will be sent by the StanzaHandler once TLS has been negotiated.
-            if (!directTLS) {
-                // Start the session negotiation for startTLS
-                sendOpeningStreamHeader(channel);
+                final ConnectionAcceptor connectionAcceptor = listener.getConnectionAcceptor();
+                if (connectionAcceptor instanceof NettyConnectionAcceptor) {
+                    ((NettyConnectionAcceptor) connectionAcceptor).getChannelHandlerFactories().forEach(factory -> {
+                        try {
+                            factory.addNewHandlerTo(ch.pipeline());
+                        } catch (Throwable t) {
+                            Log.warn("Unable to add ChannelHandler from '{}' to pipeline of new channel: {}", factory, ch, t);
+                        }
+                    });
+                }
+
+                // Should have a connection
+                if (directTLS) {
+                    ch.attr(CONNECTION).get().startTLS(true, true);
+                }
             }
 
-            return waitForSession(channel);
-        } catch (InterruptedException e) {
-            Log.error("Error establishing Netty client session", e);
-            stop();
-            throw new RuntimeException(e);
-        }
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+                super.exceptionCaught(ctx, cause);
+                if (exceptionOccurredForDirectTLS(cause)) {
+                    if (directTLS &&
+                        JiveGlobals.getBooleanProperty(ConnectionSettings.Server.TLS_ON_PLAIN_DETECTION_ALLOW_NONDIRECTTLS_FALLBACK, true) &&
+                        cause.getMessage().contains("plaintext connection?")
+                    ) {
+                        Log.warn("Plaintext detected on a new connection that is was started in DirectTLS mode (socket address: {}). Attempting to restart the connection in non-DirectTLS mode.", domainPair.getRemote());
+                        directTLS = false;
+                        Log.info("Re-establishing connection to {}. Proceeding without directTLS.", domainPair.getRemote());
+                        init(listener);
+                    }
+                }
+            }
+
+            public boolean exceptionOccurredForDirectTLS(Throwable cause) {
+                return cause instanceof SSLException;
+            }
+        });
+        return b;
     }
 
     public void stop() {
@@ -195,10 +218,9 @@ public class NettySessionInitializer {
             }
             channel.close();
         }
-        workerGroup.shutdownGracefully(GRACEFUL_SHUTDOWN_QUIET_PERIOD.getValue().toMillis(), GRACEFUL_SHUTDOWN_TIMEOUT.getValue().toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    private Future<LocalSession> waitForSession(Channel channel) {
+    private CompletableFuture<LocalSession> waitForSession(Channel channel) {
         RespondingServerStanzaHandler stanzaHandler = (RespondingServerStanzaHandler) channel.attr(NettyConnectionHandler.HANDLER).get();
         return CompletableFuture.anyOf(stanzaHandler.isSessionAuthenticated(), stanzaHandler.haveAttemptedAllAuthenticationMethods())
             .thenApply(o -> stanzaHandler.getSession());
@@ -229,8 +251,8 @@ public class NettySessionInitializer {
         return "NettySessionInitializer{" +
             "domainPair=" + domainPair +
             ", port=" + port +
+            ", skipTLS=" + skipTLS +
             ", directTLS=" + directTLS +
-            ", workerGroup=" + workerGroup +
             ", channel=" + channel +
             '}';
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import org.jivesoftware.openfire.RemoteConnectionFailedException;
+import org.jivesoftware.openfire.net.DNSUtil;
+import org.jivesoftware.openfire.net.SocketUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Utility class to create Netty channels to XMPP domains.
+ *
+ * This is the non-blocking counterpart of {@link SocketUtil}: none of the methods in this class block the calling
+ * thread, which makes them safe to use from a Netty event loop.
+ */
+public class NettySocketUtil
+{
+    private final static Logger Log = LoggerFactory.getLogger( NettySocketUtil.class );
+
+    /**
+     * Resolves the remote hosts for an XMPP domain, as defined by {@link SocketUtil#getApplicableRemoteHosts(String, int)}.
+     *
+     * DNS lookups are performed asynchronously (and are typically answered from cache), not by the calling thread.
+     *
+     * @param xmppDomain The XMPP domain to connect to.
+     * @param port The port to connect to when DNS resolution fails.
+     * @return a future that is completed with the hosts to connect to (possibly empty, never null).
+     */
+    public static CompletableFuture<List<DNSUtil.HostAddress>> resolveXmppDomain( final String xmppDomain, final int port )
+    {
+        Log.debug( "Use DNS to resolve remote hosts for the provided XMPP domain '{}' (default port: {}) ...", xmppDomain, port );
+        return DNSUtil.resolveXMPPDomainAsync( xmppDomain, port )
+            .thenApply( remoteHosts -> SocketUtil.filterApplicableRemoteHosts( xmppDomain, remoteHosts ) );
+    }
+
+    /**
+     * Creates a channel to an XMPP domain.
+     *
+     * The remote hosts for the XMPP domain are resolved using {@link #resolveXmppDomain(String, int)}. A connection
+     * is attempted to each of them in turn, until one succeeds. The connection attempts themselves are performed by
+     * the provided connector, which typically invokes {@link io.netty.bootstrap.Bootstrap#connect(String, int)} on a
+     * bootstrap that is configured for the host (eg: to use direct TLS). That bootstrap is expected to configure a
+     * connection timeout.
+     *
+     * @param xmppDomain The XMPP domain to connect to.
+     * @param port The port to connect to when DNS resolution fails.
+     * @param connector Starts a connection attempt to one remote host.
+     * @return a future that is completed with the connected channel and the host that it is connected to, or that is completed exceptionally when no connection could be established.
+     */
+    public static CompletableFuture<Map.Entry<Channel, DNSUtil.HostAddress>> connectToXmppDomain( final String xmppDomain, final int port, final Function<DNSUtil.HostAddress, ChannelFuture> connector )
+    {
+        Log.debug( "Creating a channel to XMPP domain '{}' ...", xmppDomain );
+        final CompletableFuture<Map.Entry<Channel, DNSUtil.HostAddress>> result = new CompletableFuture<>();
+        resolveXmppDomain( xmppDomain, port ).whenComplete( ( remoteHosts, t ) -> {
+            if ( t != null ) {
+                result.completeExceptionally( t );
+            } else {
+                connect( xmppDomain, remoteHosts.iterator(), connector, result );
+            }
+        });
+        return result;
+    }
+
+    private static void connect( final String xmppDomain, final Iterator<DNSUtil.HostAddress> remoteHosts, final Function<DNSUtil.HostAddress, ChannelFuture> connector, final CompletableFuture<Map.Entry<Channel, DNSUtil.HostAddress>> result )
+    {
+        if ( !remoteHosts.hasNext() ) {
+            Log.warn( "Unable to create a channel to XMPP domain '{}': Unable to connect to any of its remote hosts.", xmppDomain );
+            result.completeExceptionally( new RemoteConnectionFailedException( "Unable to connect to any of the remote hosts of XMPP domain '" + xmppDomain + "'." ) );
+            return;
+        }
+
+        final DNSUtil.HostAddress remoteHost = remoteHosts.next();
+        Log.debug( "Trying to create a channel to XMPP domain '{}' using remote host: {}:{} ...", xmppDomain, remoteHost.getHost(), remoteHost.getPort() );
+        final ChannelFuture channelFuture;
+        try {
+            channelFuture = connector.apply( remoteHost );
+        } catch ( Exception e ) {
+            result.completeExceptionally( e );
+            return;
+        }
+        channelFuture.addListener( future -> {
+            if ( future.isSuccess() ) {
+                Log.debug( "Successfully created a channel to XMPP domain '{}' using remote host: {}:{}!", xmppDomain, remoteHost.getHost(), remoteHost.getPort() );
+                result.complete( new AbstractMap.SimpleImmutableEntry<>( channelFuture.channel(), remoteHost ) );
+            } else {
+                Log.debug( "An exception occurred while trying to create a channel to XMPP domain '{}' using remote host {}:{}", xmppDomain, remoteHost.getHost(), remoteHost.getPort(), future.cause() );
+                Log.warn( "Unable to create a channel to XMPP domain '{}' using remote host: {}:{}. Cause: {} (a full stacktrace is logged on debug level)", xmppDomain, remoteHost.getHost(), remoteHost.getPort(), future.cause().getMessage() );
+                connect( xmppDomain, remoteHosts, connector, result );
+            }
+        });
+    }
+}
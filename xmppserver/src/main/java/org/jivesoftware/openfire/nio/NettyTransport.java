@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.jivesoftware.util.SystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The transport that is used by Netty to perform network I/O.
+ *
+ * Netty's native epoll transport is available on Linux only. Compared to the transport that is based on Java NIO, it
+ * uses less CPU per connection and supports additional socket options, such as SO_REUSEPORT (which allows more than
+ * one thread to accept connections on the same port) and TCP_QUICKACK. When the native transport is configured, but
+ * is not available, the NIO transport is used instead.
+ */
+public enum NettyTransport
+{
+    /**
+     * Uses the native epoll transport when it is available, and the NIO transport otherwise.
+     */
+    AUTO,
+
+    /**
+     * The native epoll transport (Linux only).
+     */
+    EPOLL,
+
+    /**
+     * The transport that is based on Java NIO, which is available on all platforms.
+     */
+    NIO;
+
+    private static final Logger Log = LoggerFactory.getLogger(NettyTransport.class);
+
+    /**
+     * The transport that is to be used by Netty. Changes take effect after a restart.
+     */
+    public static final SystemProperty<NettyTransport> TRANSPORT = SystemProperty.Builder.ofType(NettyTransport.class)
+        .setKey("xmpp.socket.netty.transport")
+        .setDefaultValue(NIO)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The number of server channels that are bound to the port of each listener when the native transport is used.
+     * Values larger than one cause SO_REUSEPORT to be enabled, which allows the kernel to distribute incoming
+     * connections over more than one accepting thread.
+     */
+    public static final SystemProperty<Integer> ACCEPTORS = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.socket.netty.epoll.acceptors")
+        .setDefaultValue(1)
+        .setMinValue(1)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * Controls if the native transport is used in edge-triggered (as opposed to level-triggered) mode.
+     */
+    public static final SystemProperty<Boolean> EDGE_TRIGGERED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.socket.netty.epoll.edge-triggered")
+        .setDefaultValue(true)
+        .setDynamic(false)
+        .build();
+
+    /**
+     * Controls if TCP_QUICKACK is enabled on connections when the native transport is used.
+     */
+    public static final SystemProperty<Boolean> TCP_QUICKACK = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.socket.netty.epoll.tcp-quickack")
+        .setDefaultValue(false)
+        .setDynamic(false)
+        .build();
+
+    private static NettyTransport active;
+
+    /**
+     * Returns the transport that is used, based on the configured transport and the availability of the native
+     * transport. The returned value is determined when this method is first invoked.
+     *
+     * @return the transport in use (either {@link #EPOLL} or {@link #NIO}).
+     */
+    @Nonnull
+    public static synchronized NettyTransport getActive()
+    {
+        if (active == null) {
+            final NettyTransport configured = TRANSPORT.getValue();
+            if (configured == NIO) {
+                active = NIO;
+            } else if (Epoll.isAvailable()) {
+                active = EPOLL;
+            } else {
+                if (configured == EPOLL) {
+                    Log.warn("The native epoll transport is configured, but is not available on this system. Falling back to the NIO transport.", Epoll.unavailabilityCause());
+                } else {
+                    Log.debug("The native epoll transport is not available on this system: {}", String.valueOf(Epoll.unavailabilityCause()));
+                }
+                active = NIO;
+            }
+            Log.info("Using the {} transport for network I/O.", active);
+        }
+        return active;
+    }
+
+    /**
+     * @return true if this is the native epoll transport.
+     */
+    public boolean isNative()
+    {
+        return this == EPOLL;
+    }
+
+    /**
+     * Creates an event loop group for this transport.
+     *
+     * @param threads the number of threads, or zero to use Netty's default.
+     * @param threadFactory the factory of the threads of the group, or null to use Netty's default.
+     * @return a new event loop group.
+     */
+    @Nonnull
+    public EventLoopGroup newEventLoopGroup(final int threads, final ThreadFactory threadFactory)
+    {
+        return isNative() ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    @Nonnull
+    public Class<? extends ServerSocketChannel> getServerSocketChannelClass()
+    {
+        return isNative() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    @Nonnull
+    public Class<? extends SocketChannel> getSocketChannelClass()
+    {
+        return isNative() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    @Nonnull
+    public Class<? extends DatagramChannel> getDatagramChannelClass()
+    {
+        return isNative() ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+}
@@ -49,8 +49,12 @@ public class NettyXMPPDecoder extends ByteToMessageDecoder {
             // no need to call in.release() as this will cause an IllegalReferenceCountException.
             in.clear();
             NettyConnection connection = ctx.channel().attr(CONNECTION).get();
-            Log.warn("Maximum buffer size was exceeded, closing connection: " + connection);
-            connection.close(new StreamError(StreamError.Condition.policy_violation, "Maximum stanza length exceeded"));
+            Log.warn("Maximum buffer size was exceeded, closing connection: " + (connection != null ? connection : ctx.channel()));
+            if (connection != null) {
+                connection.close(new StreamError(StreamError.Condition.policy_violation, "Maximum stanza length exceeded"));
+            } else {
+                ctx.close();
+            }
             return;
         }
 
@@ -67,6 +71,11 @@ public class NettyXMPPDecoder extends ByteToMessageDecoder {
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         NettyConnection connection = ctx.channel().attr(CONNECTION).get();
+        if (connection == null) {
+            // Channels that are not backed by a connection (eg: those used for dialback verification) handle their own errors.
+            ctx.fireExceptionCaught(cause);
+            return;
+        }
         Log.warn("Error occurred while decoding XMPP stanza, closing connection: " + connection, cause);
         connection.close(new StreamError(StreamError.Condition.internal_server_error, "An error occurred in XMPP Decoder"));
     }
@@ -248,17 +248,37 @@ public class PrivacyItem implements Cacheable, Comparable<PrivacyItem> {
             return true;
         }
         Class<? extends Packet> packetClass = packet.getClass();
+        boolean filterablePresence = false;
+        if (Presence.class.equals(packetClass)) {
+            Presence.Type presenceType = ((Presence) packet).getType();
+            filterablePresence = presenceType == null || presenceType == Presence.Type.unavailable;
+        }
+        // Calculate if packet is being received by the user
+        JID to = packet.getTo();
+        boolean incoming = to != null && to.toBareJID().equals(userJID.toBareJID());
+        return matchesPacketTypeCondition(packetClass, filterablePresence, incoming);
+    }
+
+    /**
+     * Returns true if a packet with the specified characteristics is of a type that is filtered by this rule.
+     *
+     * @param packetClass the class of the packet.
+     * @param filterablePresence true if the packet is a presence of type available or unavailable.
+     * @param incoming true if the packet is addressed to the owner of the privacy list.
+     * @return true if packets with the specified characteristics are filtered by this rule.
+     */
+    boolean matchesPacketTypeCondition(Class<? extends Packet> packetClass, boolean filterablePresence, boolean incoming) {
+        if (filterEverything) {
+            // This includes all type of packets (including subscription-related presences)
+            return true;
+        }
         if (Message.class.equals(packetClass)) {
             return filterMessage;
         }
         else if (Presence.class.equals(packetClass)) {
-            Presence.Type presenceType = ((Presence) packet).getType();
             // Only filter presences of type available or unavailable
             // (ignore subscription-related presences)
-            if (presenceType == null || presenceType == Presence.Type.unavailable) {
-                // Calculate if packet is being received by the user
-                JID to = packet.getTo();
-                boolean incoming = to != null && to.toBareJID().equals(userJID.toBareJID());
+            if (filterablePresence) {
                 if (incoming) {
                     return filterPresence_in;
                 }
@@ -273,6 +293,24 @@ public class PrivacyItem implements Cacheable, Comparable<PrivacyItem> {
         return false;
     }
 
+    /**
+     * Returns true if this rule compares the value of its type (jid, group or subscription) with the address of a packet
+     * with the specified characteristics. When this returns false, the rule does not match such packets (unless this is
+     * the "fall-through" rule, which has no type).
+     *
+     * The address that is compared is the recipient for outgoing packets, and the sender for incoming packets.
+     *
+     * @param isPresence true if the packet is a presence.
+     * @param incoming true if the packet was not sent by the owner of the privacy list.
+     * @return true if this rule verifies the address of such packets.
+     */
+    boolean verifiesAddress(boolean isPresence, boolean incoming) {
+        if (!incoming) {
+            return isPresence && (filterEverything || filterPresence_out);
+        }
+        return filterEverything || filterPresence_in || filterIQ || filterMessage;
+    }
+
     @Override
     public int getCachedSize() {
         // Approximate the size of the object in bytes by calculating the size
@@ -30,6 +30,7 @@ import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.net.MXParser;
 import org.jivesoftware.openfire.roster.Roster;
 import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.jivesoftware.util.SystemProperty;
 import org.jivesoftware.util.cache.CacheSizes;
 import org.jivesoftware.util.cache.Cacheable;
 import org.jivesoftware.util.cache.CannotCalculateSizeException;
@@ -57,6 +58,16 @@ public class PrivacyList implements Cacheable, Externalizable {
 
     private static final Logger Log = LoggerFactory.getLogger(PrivacyList.class);
 
+    /**
+     * Controls if packets are evaluated against a compiled form of the privacy list. When disabled, every item of the
+     * list is evaluated in turn.
+     */
+    public static final SystemProperty<Boolean> COMPILED_EVALUATION_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.privacy.compiled-evaluation.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
     /**
      * Reuse the same factory for all the connections.
      */
@@ -87,6 +98,7 @@ public class PrivacyList implements Cacheable, Externalizable {
     private String name;
     private boolean isDefault;
     private List<PrivacyItem> items = new ArrayList<>();
+    private volatile PrivacyListMatcher matcher = new PrivacyListMatcher(items);
 
     /**
      * Constructor added for Externalizable. Do not use this constructor.
@@ -156,6 +168,16 @@ public class PrivacyList implements Cacheable, Externalizable {
             // Sender is the server so it's not denied
             return false;
         }
+        if (COMPILED_EVALUATION_ENABLED.getValue()) {
+            final PrivacyItem item = matcher.findFirstMatch(packet, userJID, this::getRoster);
+            if (item == null || item.isAllow()) {
+                return false;
+            }
+            if (Log.isDebugEnabled()) {
+                Log.debug("PrivacyList: Packet was blocked: " + packet);
+            }
+            return true;
+        }
         // Iterate over the rules and check each rule condition
         Roster roster = getRoster();
         for (PrivacyItem item : items) {
@@ -260,6 +282,7 @@ public class PrivacyList implements Cacheable, Externalizable {
         }
         // Sort items collections
         Collections.sort(items);
+        matcher = new PrivacyListMatcher(items);
         if (notify) {
             // Trigger event that this list has been modified
             PrivacyListManager.getInstance().dispatchModifiedEvent(this);
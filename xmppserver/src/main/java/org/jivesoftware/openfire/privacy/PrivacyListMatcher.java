@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.privacy;
+
+import org.jivesoftware.openfire.roster.Roster;
+import org.jivesoftware.openfire.roster.RosterItem;
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.xmpp.packet.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A compiled form of the items of a privacy list, that finds the first item that matches a packet without evaluating
+ * every item.
+ *
+ * Whether an item can match a packet depends on a few characteristics of the packet only: its class, if it is sent by
+ * the owner of the list, if it is addressed to the owner of the list and (for presences) if it is of type available or
+ * unavailable. For each combination of these characteristics, the items that can match are indexed by their value:
+ * by full JID, bare JID or domain for 'jid' items, by roster group name for 'group' items and by subscription state
+ * for 'subscription' items. Each index maps to the position of the first item (in list order) with that value. To
+ * evaluate a packet, the positions of the items that match its address are looked up, and the item with the lowest
+ * position is the one that applies.
+ *
+ * Roster data is not compiled: the roster item of the address is looked up (once per packet) when the list contains
+ * 'group' or 'subscription' items that precede any other matching item. Roster changes therefore never require the
+ * matcher to be recompiled. Changes to the list itself are applied by replacing the matcher.
+ */
+final class PrivacyListMatcher
+{
+    /**
+     * The number of distinct combinations of packet characteristics (see {@link #kindOf}).
+     */
+    private static final int KINDS = 32;
+
+    /**
+     * The items of the privacy list, in the order in which they are to be evaluated.
+     */
+    private final List<PrivacyItem> items;
+
+    /**
+     * The compiled rules for each combination of packet characteristics. Compiled when first used.
+     */
+    private final AtomicReferenceArray<Rules> rulesByKind = new AtomicReferenceArray<>(KINDS);
+
+    /**
+     * The items that apply to packets with one combination of characteristics, indexed by value.
+     */
+    private static final class Rules
+    {
+        /**
+         * The address of the packet that is compared with the values of the items: the sender (for incoming packets),
+         * the recipient (for outgoing presences) or none.
+         */
+        final boolean verifySender;
+        final boolean verifyRecipient;
+
+        /**
+         * The position of the first "fall-through" item (one without a type), or {@link Integer#MAX_VALUE}.
+         */
+        final int fallThrough;
+
+        final Map<JID, Integer> byFullJID;
+        final Map<String, Integer> byBareJID;
+        final Map<String, Integer> byDomain;
+        final Map<String, Integer> byGroup;
+        final Map<RosterItem.SubType, Integer> bySubscription;
+
+        /**
+         * The lowest position of any 'group' or 'subscription' item, or {@link Integer#MAX_VALUE}.
+         */
+        final int firstRosterRule;
+
+        Rules(@Nonnull final List<PrivacyItem> items, @Nonnull final Class<? extends Packet> packetClass, final boolean incoming, final boolean filterablePresence, final boolean addressedToOwner)
+        {
+            final boolean isPresence = Presence.class.equals(packetClass);
+            this.verifySender = incoming;
+            this.verifyRecipient = !incoming && isPresence;
+
+            int fallThrough = Integer.MAX_VALUE;
+            int firstRosterRule = Integer.MAX_VALUE;
+            final Map<JID, Integer> byFullJID = new HashMap<>();
+            final Map<String, Integer> byBareJID = new HashMap<>();
+            final Map<String, Integer> byDomain = new HashMap<>();
+            final Map<String, Integer> byGroup = new HashMap<>();
+            final Map<RosterItem.SubType, Integer> bySubscription = new HashMap<>();
+            for (int position = 0; position < items.size(); position++) {
+                final PrivacyItem item = items.get(position);
+                if (!item.matchesPacketTypeCondition(packetClass, filterablePresence, addressedToOwner)) {
+                    continue;
+                }
+                if (item.getType() == null) {
+                    // Items that follow a fall-through item are never evaluated.
+                    fallThrough = position;
+                    break;
+                }
+                if (!item.verifiesAddress(isPresence, incoming)) {
+                    continue;
+                }
+                switch (item.getType()) {
+                    case jid:
+                        final JID value = item.getJID();
+                        if (value.getResource() != null) {
+                            byFullJID.putIfAbsent(value, position);
+                        } else if (value.getNode() != null) {
+                            byBareJID.putIfAbsent(value.toBareJID(), position);
+                        } else {
+                            byDomain.putIfAbsent(value.getDomain(), position);
+                        }
+                        break;
+                    case group:
+                        byGroup.putIfAbsent(item.getGroup(), position);
+                        firstRosterRule = Math.min(firstRosterRule, position);
+                        break;
+                    case subscription:
+                        bySubscription.putIfAbsent(item.getSubscription(), position);
+                        firstRosterRule = Math.min(firstRosterRule, position);
+                        break;
+                }
+            }
+            this.fallThrough = fallThrough;
+            this.firstRosterRule = firstRosterRule;
+            this.byFullJID = byFullJID.isEmpty() ? Collections.emptyMap() : byFullJID;
+            this.byBareJID = byBareJID.isEmpty() ? Collections.emptyMap() : byBareJID;
+            this.byDomain = byDomain.isEmpty() ? Collections.emptyMap() : byDomain;
+            this.byGroup = byGroup.isEmpty() ? Collections.emptyMap() : byGroup;
+            this.bySubscription = bySubscription.isEmpty() ? Collections.emptyMap() : bySubscription;
+        }
+
+        /**
+         * Returns the position of the first item that matches an address.
+         *
+         * @param address the address of the packet that is verified (null if there is none).
+         * @param rosterSupplier provides the roster of the owner of the privacy list.
+         * @return the position of the first matching item, or {@link Integer#MAX_VALUE} if no item matches.
+         */
+        int findFirstMatch(@Nullable final JID address, @Nonnull final Supplier<Roster> rosterSupplier)
+        {
+            int result = fallThrough;
+            if (address == null) {
+                return result;
+            }
+            if (!byFullJID.isEmpty()) {
+                result = min(result, byFullJID.get(address));
+            }
+            if (!byBareJID.isEmpty()) {
+                result = min(result, byBareJID.get(address.toBareJID()));
+            }
+            if (!byDomain.isEmpty()) {
+                result = min(result, byDomain.get(address.getDomain()));
+            }
+            if (firstRosterRule < result) {
+                RosterItem.SubType subscription = RosterItem.SUB_NONE;
+                Collection<String> groups = Collections.emptyList();
+                final Roster roster = rosterSupplier.get();
+                if (roster != null) {
+                    try {
+                        final RosterItem rosterItem = roster.getRosterItem(address);
+                        subscription = rosterItem.getSubStatus();
+                        groups = rosterItem.getGroups();
+                    } catch (UserNotFoundException e) {
+                        // Address is not in the user's roster
+                    }
+                }
+                if (!bySubscription.isEmpty()) {
+                    result = min(result, bySubscription.get(subscription));
+                }
+                if (!byGroup.isEmpty()) {
+                    for (final String group : groups) {
+                        result = min(result, byGroup.get(group));
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static int min(final int current, @Nullable final Integer candidate)
+        {
+            return candidate != null && candidate < current ? candidate : current;
+        }
+    }
+
+    /**
+     * Compiles the items of a privacy list.
+     *
+     * @param items the items of the list, sorted in the order in which they are to be evaluated.
+     */
+    PrivacyListMatcher(@Nonnull final List<PrivacyItem> items)
+    {
+        this.items = new ArrayList<>(items);
+    }
+
+    /**
+     * Returns the first item of the privacy list that matches a packet.
+     *
+     * @param packet the packet to evaluate.
+     * @param userJID the owner of the privacy list.
+     * @param rosterSupplier provides the roster of the owner of the privacy list. Invoked only when needed.
+     * @return the first matching item, or null if no item matches.
+     */
+    @Nullable
+    PrivacyItem findFirstMatch(@Nonnull final Packet packet, @Nonnull final JID userJID, @Nonnull final Supplier<Roster> rosterSupplier)
+    {
+        final Class<? extends Packet> packetClass = packet.getClass();
+        final JID from = packet.getFrom();
+        final JID to = packet.getTo();
+        final boolean incoming = from == null || !userJID.toBareJID().equals(from.toBareJID());
+        final boolean addressedToOwner = to != null && to.toBareJID().equals(userJID.toBareJID());
+        boolean filterablePresence = false;
+        if (Presence.class.equals(packetClass)) {
+            final Presence.Type presenceType = ((Presence) packet).getType();
+            filterablePresence = presenceType == null || presenceType == Presence.Type.unavailable;
+        }
+
+        final int kind = kindOf(packetClass, incoming, filterablePresence, addressedToOwner);
+        Rules rules = rulesByKind.get(kind);
+        if (rules == null) {
+            rules = new Rules(items, packetClass, incoming, filterablePresence, addressedToOwner);
+            rulesByKind.compareAndSet(kind, null, rules);
+        }
+
+        final JID address = rules.verifySender ? from : rules.verifyRecipient ? to : null;
+        final int position = rules.findFirstMatch(address, rosterSupplier);
+        return position == Integer.MAX_VALUE ? null : items.get(position);
+    }
+
+    private static int kindOf(final Class<? extends Packet> packetClass, final boolean incoming, final boolean filterablePresence, final boolean addressedToOwner)
+    {
+        final int classIndex;
+        if (Message.class.equals(packetClass)) {
+            classIndex = 0;
+        } else if (Presence.class.equals(packetClass)) {
+            classIndex = 1;
+        } else if (IQ.class.equals(packetClass)) {
+            classIndex = 2;
+        } else {
+            classIndex = 3;
+        }
+        return classIndex | (incoming ? 4 : 0) | (filterablePresence ? 8 : 0) | (addressedToOwner ? 16 : 0);
+    }
+}
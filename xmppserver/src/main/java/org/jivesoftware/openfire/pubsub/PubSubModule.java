@@ -22,11 +22,13 @@ import org.jivesoftware.openfire.*;
 import org.jivesoftware.openfire.commands.AdHocCommandManager;
 import org.jivesoftware.openfire.component.InternalComponentManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.disco.*;
 import org.jivesoftware.openfire.entitycaps.EntityCapabilities;
 import org.jivesoftware.openfire.entitycaps.EntityCapabilitiesListener;
 import org.jivesoftware.openfire.pubsub.models.AccessModel;
 import org.jivesoftware.openfire.pubsub.models.PublisherModel;
+import org.jivesoftware.openfire.spi.RoutingTableImpl;
 import org.jivesoftware.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -458,6 +460,12 @@ public class PubSubModule extends BasicModule implements ServerItemsProvider, Di
         XMPPServer.getInstance().getEntityCapabilitiesManager().addListener(this);
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Starting the service adds a route for it to the routing table.
+        return Set.of(RoutingTableImpl.class);
+    }
+
     @Override
     public void start() {
         // Check that the service is enabled
@@ -298,7 +298,8 @@ public class DefaultRosterItemProvider implements RosterItemProvider {
                 pstmt.setString(1, username);
                 rs = pstmt.executeQuery();
                 while (rs.next()) {
-                    itemsByID.get(rs.getLong(1)).getGroups().add(rs.getString(2));
+                    // Group names are shared by many roster items: keep a single instance of each in memory.
+                    itemsByID.get(rs.getLong(1)).getGroups().add(rs.getString(2).intern());
                 }
             }
 
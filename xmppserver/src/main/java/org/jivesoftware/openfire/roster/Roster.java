@@ -678,13 +678,32 @@ public class Roster implements Cacheable, Externalizable {
     }
 
     private void broadcast(org.xmpp.packet.Roster roster) {
+        final SharedGroupRosterPushQueue pushQueue = XMPPServer.getInstance().getRosterManager().getSharedGroupRosterPushQueue();
+        if (SharedGroupRosterPushQueue.isDeferring()) {
+            // The push results from a change to a shared group. Deliver it later, together with other pushes.
+            pushQueue.queuePush(username, roster);
+            return;
+        }
+        // A queued push for the same contact would overwrite the more recent state that is being pushed now.
+        pushQueue.discardSuperseded(username, roster);
+        sendPush(username, roster);
+    }
+
+    /**
+     * Sends a roster push to all the connected resources of a user.
+     *
+     * @param username the user to which the push is sent.
+     * @param roster the roster push.
+     */
+    static void sendPush(String username, org.xmpp.packet.Roster roster) {
         JID recipient = XMPPServer.getInstance().createJID(username, null, true);
         roster.setTo(recipient);
 
         // When roster versioning is enabled, the server MUST include
         // the updated roster version with each roster push.
         if (RosterManager.isRosterVersioningEnabled()) {
-            roster.getChildElement().addAttribute("ver", String.valueOf( roster.hashCode() ) );
+            final String version = XMPPServer.getInstance().getRosterManager().getRosterVersionJournal().recordPush(username, roster);
+            roster.getChildElement().addAttribute("ver", version);
         }
         SessionManager.getInstance().userBroadcast(username, roster);
     }
@@ -726,6 +745,21 @@ public class Roster implements Cacheable, Externalizable {
      * Sends a presence probe to the probee for each connected resource of this user.
      */
     private void probePresence(JID probee) {
+        if (SharedGroupRosterPushQueue.isDeferring()) {
+            // The probe results from a change to a shared group. Send it later, at a limited rate.
+            XMPPServer.getInstance().getRosterManager().getSharedGroupRosterPushQueue().queueProbe(username, probee);
+            return;
+        }
+        sendProbes(username, probee);
+    }
+
+    /**
+     * Sends a presence probe to the probee for each connected resource of a user.
+     *
+     * @param username the user on behalf of whose connected resources the probe is sent.
+     * @param probee the entity of which the presence is probed.
+     */
+    static void sendProbes(String username, JID probee) {
         final PresenceManager presenceManager = XMPPServer.getInstance().getPresenceManager();
         for (ClientSession session : SessionManager.getInstance().getSessions(username)) {
             presenceManager.probePresence(session.getAddress(), probee);
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.dom4j.Element;
+import org.jivesoftware.util.cache.CacheSizes;
+import org.jivesoftware.util.cache.Cacheable;
+import org.jivesoftware.util.cache.CannotCalculateSizeException;
+import org.jivesoftware.util.cache.ExternalizableUtil;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+/**
+ * The roster pushes that were sent to a user, each identified by the roster version that it represents.
+ *
+ * A roster version consists of an epoch and a sequence number. The epoch is chosen randomly when the log is created
+ * (which happens when the roster of the user is loaded). The sequence number is incremented for every roster push.
+ * A client that presents a version of the current epoch that is not older than the oldest retained push can be
+ * brought up to date by sending it the pushes that followed that version (as defined in RFC 6121, section 2.6).
+ */
+public class RosterChangeLog implements Cacheable, Externalizable
+{
+    /**
+     * The epoch of the versions in this log.
+     */
+    private String epoch;
+
+    /**
+     * The sequence number of the latest version.
+     */
+    private volatile long sequence;
+
+    /**
+     * The sequence numbers of the retained pushes, oldest first. Each is the version that the roster had after the push.
+     */
+    private final LinkedList<Long> sequences = new LinkedList<>();
+
+    /**
+     * The (single) item of each retained push, in the same order as {@link #sequences}.
+     */
+    private final LinkedList<Element> items = new LinkedList<>();
+
+    /**
+     * Constructor used for deserialization.
+     */
+    public RosterChangeLog() {
+    }
+
+    /**
+     * Creates an empty log.
+     *
+     * @param epoch the epoch of the versions in this log.
+     */
+    public RosterChangeLog(@Nonnull final String epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * @return the latest roster version.
+     */
+    @Nonnull
+    public String getVersion() {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * Records a roster push.
+     *
+     * @param item the item of the roster push.
+     * @param maxRetained the maximum number of pushes that is retained. Older pushes are removed.
+     * @return the roster version after the push.
+     */
+    @Nonnull
+    public String add(@Nonnull final Element item, final int maxRetained) {
+        sequence++;
+        sequences.add(sequence);
+        items.add(item.createCopy());
+        while (sequences.size() > maxRetained) {
+            sequences.removeFirst();
+            items.removeFirst();
+        }
+        return getVersion();
+    }
+
+    /**
+     * Returns the items of the roster pushes that followed a roster version, each associated with the version that the
+     * roster had after the push. When an item for the same contact was pushed more than once, only the last push is
+     * returned.
+     *
+     * @param version the version that the client has (can be null).
+     * @return the items by version, oldest first, or null if the log cannot be used to bring the client up to date.
+     */
+    @Nullable
+    public LinkedHashMap<String, Element> getItemsSince(@Nullable final String version) {
+        if (version == null || !version.startsWith(epoch + "-")) {
+            return null;
+        }
+        final long since;
+        try {
+            since = Long.parseLong(version.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (since > sequence) {
+            return null;
+        }
+        if (since < sequence && (sequences.isEmpty() || sequences.getFirst() > since + 1)) {
+            // Some of the pushes that followed the version are no longer retained.
+            return null;
+        }
+
+        // Retain only the last push for each contact, maintaining the order in which the pushes were sent.
+        final Map<String, Long> lastPushByContact = new HashMap<>();
+        final Iterator<Long> sequenceIterator = sequences.iterator();
+        final Iterator<Element> itemIterator = items.iterator();
+        while (sequenceIterator.hasNext()) {
+            final long pushSequence = sequenceIterator.next();
+            final Element item = itemIterator.next();
+            if (pushSequence > since) {
+                lastPushByContact.put(item.attributeValue("jid"), pushSequence);
+            }
+        }
+        final LinkedHashMap<String, Element> result = new LinkedHashMap<>();
+        final Iterator<Long> sequenceIterator2 = sequences.iterator();
+        final Iterator<Element> itemIterator2 = items.iterator();
+        while (sequenceIterator2.hasNext()) {
+            final long pushSequence = sequenceIterator2.next();
+            final Element item = itemIterator2.next();
+            if (pushSequence > since && lastPushByContact.get(item.attributeValue("jid")) == pushSequence) {
+                result.put(epoch + "-" + pushSequence, item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of retained roster pushes.
+     */
+    public int size() {
+        return sequences.size();
+    }
+
+    @Override
+    public int getCachedSize() throws CannotCalculateSizeException {
+        int size = 0;
+        size += CacheSizes.sizeOfObject();                  // overhead of object
+        size += CacheSizes.sizeOfString(epoch);             // epoch
+        size += CacheSizes.sizeOfLong();                    // sequence
+        size += CacheSizes.sizeOfCollection(sequences);     // sequences
+        for (final Element item : items) {
+            size += CacheSizes.sizeOfString(item.asXML());  // items
+        }
+        return size;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ExternalizableUtil.getInstance().writeSafeUTF(out, epoch);
+        ExternalizableUtil.getInstance().writeLong(out, sequence);
+        ExternalizableUtil.getInstance().writeInt(out, sequences.size());
+        final Iterator<Element> itemIterator = items.iterator();
+        for (final Long pushSequence : sequences) {
+            ExternalizableUtil.getInstance().writeLong(out, pushSequence);
+            ExternalizableUtil.getInstance().writeXML(out, itemIterator.next());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        epoch = ExternalizableUtil.getInstance().readSafeUTF(in);
+        sequence = ExternalizableUtil.getInstance().readLong(in);
+        final int count = ExternalizableUtil.getInstance().readInt(in);
+        for (int i = 0; i < count; i++) {
+            sequences.add(ExternalizableUtil.getInstance().readLong(in));
+            items.add(ExternalizableUtil.getInstance().readXML(in));
+        }
+    }
+}
@@ -649,6 +649,7 @@ public class RosterItem implements Cacheable, Externalizable {
         }
         this.groups = new LinkedList<>();
         ExternalizableUtil.getInstance().readStrings(in, groups);
+        groups.replaceAll(String::intern);
         ExternalizableUtil.getInstance().readStrings(in, sharedGroups);
         ExternalizableUtil.getInstance().readStrings(in, invisibleSharedGroups);
         recvStatus = RecvType.getTypeFromInt(ExternalizableUtil.getInstance().readInt(in));
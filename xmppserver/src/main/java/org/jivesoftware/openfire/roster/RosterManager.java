@@ -21,6 +21,7 @@ import org.jivesoftware.openfire.RoutingTable;
 import org.jivesoftware.openfire.SharedGroupException;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.event.GroupEventDispatcher;
 import org.jivesoftware.openfire.event.GroupEventListener;
 import org.jivesoftware.openfire.event.UserEventDispatcher;
@@ -99,6 +100,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
     private RoutingTable routingTable;
     private RosterItemProvider provider;
     private ThreadPoolExecutor executor;
+    private final SharedGroupVisibilityIndex sharedGroupVisibilityIndex = new SharedGroupVisibilityIndex();
+    private final RosterVersionJournal rosterVersionJournal = new RosterVersionJournal();
+    private final SharedGroupRosterPushQueue sharedGroupRosterPushQueue = new SharedGroupRosterPushQueue(Roster::sendPush, Roster::sendProbes);
 
     /**
      * Object name used to register delegate MBean (JMX) for the thread pool executor.
@@ -165,6 +169,8 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
                 if (roster == null) {
                     // Not in cache so load a new one:
                     roster = new Roster(username);
+                    // Roster versions handed out earlier do not account for changes made while the roster was not loaded.
+                    rosterVersionJournal.reset(username);
                     rosterCache.put(username, roster);
                 }
             } finally {
@@ -201,6 +207,7 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
             }
             // Remove the cached roster from memory
             rosterCache.remove(username);
+            rosterVersionJournal.reset(username);
 
             // Get the rosters that have a reference to the deleted user
             Iterator<String> usernames = provider.getUsernames(user.toBareJID());
@@ -238,6 +245,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
      * @return a collection with all the groups that the user may include in his roster.
      */
     public Collection<Group> getSharedGroups(String username) {
+        if (SharedGroupVisibilityIndex.ENABLED.getValue()) {
+            return parseGroups(sharedGroupVisibilityIndex.getVisibleGroupNames(server.createJID(username, null, true)));
+        }
         Collection<Group> answer = new HashSet<>();
         Collection<Group> groups = GroupManager.getInstance().getSharedGroups(username);
         for (Group group : groups) {
@@ -328,7 +338,8 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
 
     @Override
     public void groupCreated(Group group, Map params) {
-        //Do nothing
+        sharedGroupVisibilityIndex.groupCreated(group.getName());
+        CacheFactory.doClusterTask(new SharedGroupVisibilityIndexTask(group.getName(), false));
     }
 
     @Override
@@ -342,16 +353,30 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
         for (JID deletedUser : users) {
             groupUserDeleted(group, affectedUsers, deletedUser);
         }
+        if (isAffectedUsersLimitedToLoadedRosters(group.getSharedWith())) {
+            unloadRosters(users);
+        }
+        sharedGroupVisibilityIndex.groupDeleted(group.getName());
+        CacheFactory.doClusterTask(new SharedGroupVisibilityIndexTask(group.getName(), true));
     }
 
     @Override
     public void groupModified(final Group group, Map params) {
+        String keyChanged = (String) params.get("propertyKey");
+        String originalValue = (String) params.get("originalValue");
+
+        if ("nameModified".equals(params.get("type"))
+            || "*".equals(keyChanged)
+            || Group.SHARED_ROSTER_SHOW_IN_ROSTER_PROPERTY_KEY.equals(keyChanged)
+            || Group.SHARED_ROSTER_GROUP_LIST_PROPERTY_KEY.equals(keyChanged)) {
+            // The sharing configuration may have changed.
+            invalidateSharedGroupVisibilityIndex();
+        }
+
         // Do nothing if no group property has been modified
         if ("propertyDeleted".equals(params.get("type"))) {
              return;
         }
-        String keyChanged = (String) params.get("propertyKey");
-        String originalValue = (String) params.get("originalValue");
 
 
         if (Group.SHARED_ROSTER_SHOW_IN_ROSTER_PROPERTY_KEY.equals(keyChanged)) {
@@ -385,6 +410,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
                     for (JID user : users) {
                         groupUserAdded(group, user);
                     }
+                    if (isAffectedUsersLimitedToLoadedRosters(SharedGroupVisibility.fromDatabaseValue(originalValue))) {
+                        unloadRosters(users);
+                    }
                     return true;
                 }
             });
@@ -434,18 +462,20 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
             }
             // Get all the affected users
             Collection<JID> users = getAffectedUsers(group);
-            // Iterate on all the affected users and update their rosters
-            for (JID updatedUser : users) {
-                // Get the roster to update.
-                Roster roster = null;
-                if (server.isLocal(updatedUser)) {
-                    roster = rosterCache.get(updatedUser.getNode());
-                }
-                if (roster != null) {
-                    // Update the roster with the new group display name
-                    roster.shareGroupRenamed(users);
+            SharedGroupRosterPushQueue.defer(() -> {
+                // Iterate on all the affected users and update their rosters
+                for (JID updatedUser : users) {
+                    // Get the roster to update.
+                    Roster roster = null;
+                    if (server.isLocal(updatedUser)) {
+                        roster = rosterCache.get(updatedUser.getNode());
+                    }
+                    if (roster != null) {
+                        // Update the roster with the new group display name
+                        roster.shareGroupRenamed(users);
+                    }
                 }
-            }
+            });
         }
     }
 
@@ -515,6 +545,7 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
     @Override
     public void memberAdded(Group group, Map params) {
         JID addedUser = new JID((String) params.get("member"));
+        invalidateSharedGroupVisibilityIndex(addedUser);
         // Do nothing if the user was an admin that became a member
         if (group.getAdmins().contains(addedUser)) {
             return;
@@ -539,6 +570,7 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
             return;
         }
         JID deletedUser = new JID(member);
+        invalidateSharedGroupVisibilityIndex(deletedUser);
         // Do nothing if the user is still an admin
         if (group.getAdmins().contains(deletedUser)) {
             return;
@@ -559,6 +591,7 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
     @Override
     public void adminAdded(Group group, Map params) {
         JID addedUser = new JID((String) params.get("admin"));
+        invalidateSharedGroupVisibilityIndex(addedUser);
         // Do nothing if the user was a member that became an admin
         if (group.getMembers().contains(addedUser)) {
             return;
@@ -579,6 +612,7 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
     @Override
     public void adminRemoved(Group group, Map params) {
         JID deletedUser = new JID((String) params.get("admin"));
+        invalidateSharedGroupVisibilityIndex(deletedUser);
         // Do nothing if the user is still a member
         if (group.getMembers().contains(deletedUser)) {
             return;
@@ -608,38 +642,40 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
     @Override
     public void userCreated(User newUser, Map<String,Object> params) {
         JID newUserJID = server.createJID(newUser.getUsername(), null);
-        // Shared public groups that are public should have a presence subscription
-        // of type FROM for the new user
-        for (Group group : getPublicSharedGroups()) {
-            // Get group members of public group
-            Collection<JID> users = new HashSet<>(group.getMembers());
-            users.addAll(group.getAdmins());
-            // Update the roster of each group member to include a subscription of type FROM
-            for (JID userToUpdate : users) {
-                // Get the roster to update
-                Roster roster = null;
-                if (server.isLocal(userToUpdate)) {
-                    // Check that the user exists, if not then continue with the next user
-                    try {
-                        UserManager.getInstance().getUser(userToUpdate.getNode());
+        SharedGroupRosterPushQueue.defer(() -> {
+            // Shared public groups that are public should have a presence subscription
+            // of type FROM for the new user
+            for (Group group : getPublicSharedGroups()) {
+                // Get group members of public group
+                Collection<JID> users = new HashSet<>(group.getMembers());
+                users.addAll(group.getAdmins());
+                // Update the roster of each group member to include a subscription of type FROM
+                for (JID userToUpdate : users) {
+                    // Get the roster to update
+                    Roster roster = null;
+                    if (server.isLocal(userToUpdate)) {
+                        // Check that the user exists, if not then continue with the next user
+                        try {
+                            UserManager.getInstance().getUser(userToUpdate.getNode());
+                        }
+                        catch (UserNotFoundException e) {
+                            continue;
+                        }
+                        roster = rosterCache.get(userToUpdate.getNode());
                     }
-                    catch (UserNotFoundException e) {
-                        continue;
+                    // Only update rosters in memory
+                    if (roster != null) {
+                        roster.addSharedUser(group, newUserJID);
+                    }
+                    if (!server.isLocal(userToUpdate)) {
+                        // Susbcribe to the presence of the remote user. This is only necessary for
+                        // remote users and may only work with remote users that **automatically**
+                        // accept presence subscription requests
+                        sendSubscribeRequest(newUserJID, userToUpdate, true);
                     }
-                    roster = rosterCache.get(userToUpdate.getNode());
-                }
-                // Only update rosters in memory
-                if (roster != null) {
-                    roster.addSharedUser(group, newUserJID);
-                }
-                if (!server.isLocal(userToUpdate)) {
-                    // Susbcribe to the presence of the remote user. This is only necessary for
-                    // remote users and may only work with remote users that **automatically**
-                    // accept presence subscription requests
-                    sendSubscribeRequest(newUserJID, userToUpdate, true);
                 }
             }
-        }
+        });
     }
 
     @Override
@@ -647,40 +683,44 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
         // Shared public groups that have a presence subscription of type FROM
         // for the deleted user should no longer have a reference to the deleted user
         JID userJID = server.createJID(user.getUsername(), null);
-        // Shared public groups that are public should have a presence subscription
-        // of type FROM for the new user
-        for (Group group : getPublicSharedGroups()) {
-            // Get group members of public group
-            Collection<JID> users = new HashSet<>(group.getMembers());
-            users.addAll(group.getAdmins());
-            // Update the roster of each group member to include a subscription of type FROM
-            for (JID userToUpdate : users) {
-                // Get the roster to update
-                Roster roster = null;
-                if (server.isLocal(userToUpdate)) {
-                    // Check that the user exists, if not then continue with the next user
-                    try {
-                        UserManager.getInstance().getUser(userToUpdate.getNode());
+        SharedGroupRosterPushQueue.defer(() -> {
+            // Shared public groups that are public should have a presence subscription
+            // of type FROM for the new user
+            for (Group group : getPublicSharedGroups()) {
+                // Get group members of public group
+                Collection<JID> users = new HashSet<>(group.getMembers());
+                users.addAll(group.getAdmins());
+                // Update the roster of each group member to include a subscription of type FROM
+                for (JID userToUpdate : users) {
+                    // Get the roster to update
+                    Roster roster = null;
+                    if (server.isLocal(userToUpdate)) {
+                        // Check that the user exists, if not then continue with the next user
+                        try {
+                            UserManager.getInstance().getUser(userToUpdate.getNode());
+                        }
+                        catch (UserNotFoundException e) {
+                            continue;
+                        }
+                        roster = rosterCache.get(userToUpdate.getNode());
                     }
-                    catch (UserNotFoundException e) {
-                        continue;
+                    // Only update rosters in memory
+                    if (roster != null) {
+                        roster.deleteSharedUser(group, userJID);
+                    }
+                    if (!server.isLocal(userToUpdate)) {
+                        // Unsusbcribe from the presence of the remote user. This is only necessary for
+                        // remote users and may only work with remote users that **automatically**
+                        // accept presence subscription requests
+                        sendSubscribeRequest(userJID, userToUpdate, false);
                     }
-                    roster = rosterCache.get(userToUpdate.getNode());
-                }
-                // Only update rosters in memory
-                if (roster != null) {
-                    roster.deleteSharedUser(group, userJID);
-                }
-                if (!server.isLocal(userToUpdate)) {
-                    // Unsusbcribe from the presence of the remote user. This is only necessary for
-                    // remote users and may only work with remote users that **automatically**
-                    // accept presence subscription requests
-                    sendSubscribeRequest(userJID, userToUpdate, false);
                 }
             }
-        }
+        });
 
         deleteRoster(userJID);
+        // The user is removed from its groups without group events being dispatched.
+        invalidateSharedGroupVisibilityIndex(userJID);
     }
 
     @Override
@@ -707,6 +747,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
      */
     private void groupUserAdded(Group group, JID addedUser) {
         groupUserAdded(group, getAffectedUsers(group), addedUser);
+        if (isAffectedUsersLimitedToLoadedRosters(group.getSharedWith())) {
+            unloadRosters(Collections.singleton(addedUser));
+        }
     }
 
     /**
@@ -717,55 +760,57 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
      * @param addedUser the username of the user that has been added to the group.
      */
     private void groupUserAdded(Group group, Collection<JID> users, JID addedUser) {
-        // Get the roster of the added user.
-        Roster addedUserRoster = null;
-        if (server.isLocal(addedUser)) {
-            addedUserRoster = rosterCache.get(addedUser.getNode());
-        }
+        SharedGroupRosterPushQueue.defer(() -> {
+            // Get the roster of the added user.
+            Roster addedUserRoster = null;
+            if (server.isLocal(addedUser)) {
+                addedUserRoster = rosterCache.get(addedUser.getNode());
+            }
 
-        // Iterate on all the affected users and update their rosters
-        for (JID userToUpdate : users) {
-            if (!addedUser.equals(userToUpdate)) {
-                // Get the roster to update
-                Roster roster = null;
-                if (server.isLocal(userToUpdate)) {
-                    // Check that the user exists, if not then continue with the next user
-                    try {
-                        UserManager.getInstance().getUser(userToUpdate.getNode());
+            // Iterate on all the affected users and update their rosters
+            for (JID userToUpdate : users) {
+                if (!addedUser.equals(userToUpdate)) {
+                    // Get the roster to update
+                    Roster roster = null;
+                    if (server.isLocal(userToUpdate)) {
+                        // Check that the user exists, if not then continue with the next user
+                        try {
+                            UserManager.getInstance().getUser(userToUpdate.getNode());
+                        }
+                        catch (UserNotFoundException e) {
+                            continue;
+                        }
+                        roster = rosterCache.get(userToUpdate.getNode());
                     }
-                    catch (UserNotFoundException e) {
-                        continue;
+                    // Only update rosters in memory
+                    if (roster != null) {
+                        roster.addSharedUser(group, addedUser);
+                    }
+                    // Check if the roster is still not in memory
+                    if (addedUserRoster == null && server.isLocal(addedUser)) {
+                        addedUserRoster =
+                                rosterCache.get(addedUser.getNode());
+                    }
+                    // Update the roster of the newly added group user.
+                    if (addedUserRoster != null) {
+                        Collection<Group> groups = GroupManager.getInstance().getGroups(userToUpdate);
+                        addedUserRoster.addSharedUser(userToUpdate, groups, group);
+                    }
+                    if (!server.isLocal(addedUser)) {
+                        // Susbcribe to the presence of the remote user. This is only necessary for
+                        // remote users and may only work with remote users that **automatically**
+                        // accept presence subscription requests
+                        sendSubscribeRequest(userToUpdate, addedUser, true);
+                    }
+                    if (!server.isLocal(userToUpdate)) {
+                        // Susbcribe to the presence of the remote user. This is only necessary for
+                        // remote users and may only work with remote users that **automatically**
+                        // accept presence subscription requests
+                        sendSubscribeRequest(addedUser, userToUpdate, true);
                     }
-                    roster = rosterCache.get(userToUpdate.getNode());
-                }
-                // Only update rosters in memory
-                if (roster != null) {
-                    roster.addSharedUser(group, addedUser);
-                }
-                // Check if the roster is still not in memory
-                if (addedUserRoster == null && server.isLocal(addedUser)) {
-                    addedUserRoster =
-                            rosterCache.get(addedUser.getNode());
-                }
-                // Update the roster of the newly added group user.
-                if (addedUserRoster != null) {
-                    Collection<Group> groups = GroupManager.getInstance().getGroups(userToUpdate);
-                    addedUserRoster.addSharedUser(userToUpdate, groups, group);
-                }
-                if (!server.isLocal(addedUser)) {
-                    // Susbcribe to the presence of the remote user. This is only necessary for
-                    // remote users and may only work with remote users that **automatically**
-                    // accept presence subscription requests
-                    sendSubscribeRequest(userToUpdate, addedUser, true);
-                }
-                if (!server.isLocal(userToUpdate)) {
-                    // Susbcribe to the presence of the remote user. This is only necessary for
-                    // remote users and may only work with remote users that **automatically**
-                    // accept presence subscription requests
-                    sendSubscribeRequest(addedUser, userToUpdate, true);
                 }
             }
-        }
+        });
     }
 
     /**
@@ -776,6 +821,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
      */
     private void groupUserDeleted(Group group, JID deletedUser) {
         groupUserDeleted(group, getAffectedUsers(group), deletedUser);
+        if (isAffectedUsersLimitedToLoadedRosters(group.getSharedWith())) {
+            unloadRosters(Collections.singleton(deletedUser));
+        }
     }
 
     /**
@@ -786,52 +834,54 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
      * @param deletedUser the username of the user that has been deleted from the group.
      */
     private void groupUserDeleted(Group group, Collection<JID> users, JID deletedUser) {
-        // Get the roster of the deleted user.
-        Roster deletedUserRoster = null;
-        if (server.isLocal(deletedUser)) {
-            deletedUserRoster = rosterCache.get(deletedUser.getNode());
-        }
+        SharedGroupRosterPushQueue.defer(() -> {
+            // Get the roster of the deleted user.
+            Roster deletedUserRoster = null;
+            if (server.isLocal(deletedUser)) {
+                deletedUserRoster = rosterCache.get(deletedUser.getNode());
+            }
 
-        // Iterate on all the affected users and update their rosters
-        for (JID userToUpdate : users) {
-            // Get the roster to update
-            Roster roster = null;
-            if (server.isLocal(userToUpdate)) {
-                // Check that the user exists, if not then continue with the next user
-                try {
-                    UserManager.getInstance().getUser(userToUpdate.getNode());
+            // Iterate on all the affected users and update their rosters
+            for (JID userToUpdate : users) {
+                // Get the roster to update
+                Roster roster = null;
+                if (server.isLocal(userToUpdate)) {
+                    // Check that the user exists, if not then continue with the next user
+                    try {
+                        UserManager.getInstance().getUser(userToUpdate.getNode());
+                    }
+                    catch (UserNotFoundException e) {
+                        continue;
+                    }
+                    roster = rosterCache.get(userToUpdate.getNode());
                 }
-                catch (UserNotFoundException e) {
-                    continue;
+                // Only update rosters in memory
+                if (roster != null) {
+                    roster.deleteSharedUser(group, deletedUser);
+                }
+                // Check if the roster is still not in memory
+                if (deletedUserRoster == null && server.isLocal(deletedUser)) {
+                    deletedUserRoster =
+                            rosterCache.get(deletedUser.getNode());
+                }
+                // Update the roster of the newly deleted group user.
+                if (deletedUserRoster != null) {
+                    deletedUserRoster.deleteSharedUser(userToUpdate, group);
+                }
+                if (!server.isLocal(deletedUser)) {
+                    // Unsusbcribe from the presence of the remote user. This is only necessary for
+                    // remote users and may only work with remote users that **automatically**
+                    // accept presence subscription requests
+                    sendSubscribeRequest(userToUpdate, deletedUser, false);
+                }
+                if (!server.isLocal(userToUpdate)) {
+                    // Unsusbcribe from the presence of the remote user. This is only necessary for
+                    // remote users and may only work with remote users that **automatically**
+                    // accept presence subscription requests
+                    sendSubscribeRequest(deletedUser, userToUpdate, false);
                 }
-                roster = rosterCache.get(userToUpdate.getNode());
-            }
-            // Only update rosters in memory
-            if (roster != null) {
-                roster.deleteSharedUser(group, deletedUser);
-            }
-            // Check if the roster is still not in memory
-            if (deletedUserRoster == null && server.isLocal(deletedUser)) {
-                deletedUserRoster =
-                        rosterCache.get(deletedUser.getNode());
-            }
-            // Update the roster of the newly deleted group user.
-            if (deletedUserRoster != null) {
-                deletedUserRoster.deleteSharedUser(userToUpdate, group);
-            }
-            if (!server.isLocal(deletedUser)) {
-                // Unsusbcribe from the presence of the remote user. This is only necessary for
-                // remote users and may only work with remote users that **automatically**
-                // accept presence subscription requests
-                sendSubscribeRequest(userToUpdate, deletedUser, false);
-            }
-            if (!server.isLocal(userToUpdate)) {
-                // Unsusbcribe from the presence of the remote user. This is only necessary for
-                // remote users and may only work with remote users that **automatically**
-                // accept presence subscription requests
-                sendSubscribeRequest(deletedUser, userToUpdate, false);
             }
-        }
+        });
     }
 
     private void sendSubscribeRequest(JID sender, JID recipient, boolean isSubscribe) {
@@ -848,6 +898,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
     }
 
     private Collection<Group> getVisibleGroups(Group groupToCheck) {
+        if (SharedGroupVisibilityIndex.ENABLED.getValue()) {
+            return parseGroups(sharedGroupVisibilityIndex.getGroupNamesVisibleToMembersOf(groupToCheck.getName()));
+        }
         return GroupManager.getInstance().getVisibleGroups(groupToCheck);
     }
 
@@ -868,6 +921,9 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
             if (group.isUser(user)) {
                  return true;
             }
+            if (SharedGroupVisibilityIndex.ENABLED.getValue()) {
+                return sharedGroupVisibilityIndex.isVisible(group.getName(), user);
+            }
             // Check if the user belongs to a group that may see this group
             Collection<Group> groupList = parseGroups(group.getSharedWithUsersInGroupNames());
             for (Group groupInList : groupList) {
@@ -909,7 +965,14 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
         Collection<JID> users = new HashSet<>(group.getMembers());
         users.addAll(group.getAdmins());
         // Check if anyone can see this shared group
-        if (SharedGroupVisibility.everybody == showInRoster) {
+        if (isAffectedUsersLimitedToLoadedRosters(showInRoster)) {
+            // Add the users of which the roster is loaded. Other local users are not affected, as their roster will
+            // include the group when it is loaded.
+            for (String username : rosterCache.keySet()) {
+                users.add(server.createJID(username, null, true));
+            }
+        }
+        else if (SharedGroupVisibility.everybody == showInRoster) {
             // Add all users in the system
             for (String username : UserManager.getInstance().getUsernames()) {
                 users.add(server.createJID(username, null, true));
@@ -929,6 +992,78 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
         return users;
     }
 
+    /**
+     * Returns true if the users that are affected by a change to a group that is shared with everybody are limited to
+     * the users of which the roster is loaded (and the users of the group), rather than all users in the system.
+     *
+     * When this is the case, the roster of a user of the group that is loaded is not brought up to date with the users
+     * of which the roster is not loaded. Such rosters need to be unloaded (see {@link #unloadRosters(Collection)}).
+     *
+     * @param showInRoster the visibility of the group.
+     * @return true if the affected users are limited to the users of which the roster is loaded.
+     */
+    private static boolean isAffectedUsersLimitedToLoadedRosters(SharedGroupVisibility showInRoster) {
+        return SharedGroupVisibility.everybody == showInRoster && SharedGroupVisibilityIndex.ENABLED.getValue();
+    }
+
+    /**
+     * Removes the rosters of local users from the cache, causing them to be reloaded when they are next used.
+     *
+     * @param users the users of which to unload the roster.
+     */
+    private void unloadRosters(Collection<JID> users) {
+        for (JID user : users) {
+            if (server.isLocal(user)) {
+                rosterCache.remove(user.getNode());
+            }
+        }
+    }
+
+    /**
+     * Invalidates all data in the shared group visibility index, on this and all other cluster nodes.
+     */
+    private void invalidateSharedGroupVisibilityIndex() {
+        sharedGroupVisibilityIndex.invalidate();
+        CacheFactory.doClusterTask(new SharedGroupVisibilityIndexTask());
+    }
+
+    /**
+     * Invalidates the data of one user in the shared group visibility index, on this and all other cluster nodes.
+     *
+     * @param user the user of which the group membership changed.
+     */
+    private void invalidateSharedGroupVisibilityIndex(JID user) {
+        sharedGroupVisibilityIndex.invalidate(user);
+        CacheFactory.doClusterTask(new SharedGroupVisibilityIndexTask(user));
+    }
+
+    /**
+     * Returns the index that is used to determine the visibility of shared groups.
+     *
+     * @return the shared group visibility index of this cluster node.
+     */
+    public SharedGroupVisibilityIndex getSharedGroupVisibilityIndex() {
+        return sharedGroupVisibilityIndex;
+    }
+
+    /**
+     * Returns the queue that is used to deliver roster pushes and presence probes that result from changes to shared groups.
+     *
+     * @return the shared group roster push queue of this cluster node.
+     */
+    public SharedGroupRosterPushQueue getSharedGroupRosterPushQueue() {
+        return sharedGroupRosterPushQueue;
+    }
+
+    /**
+     * Returns the journal that is used to bring clients that present an outdated roster version up to date.
+     *
+     * @return the roster version journal.
+     */
+    public RosterVersionJournal getRosterVersionJournal() {
+        return rosterVersionJournal;
+    }
+
     Collection<JID> getSharedUsersForRoster(Group group, Roster roster) {
         SharedGroupVisibility showInRoster = group.getSharedWith();
         List<String> groupNames = group.getSharedWithUsersInGroupNames();
@@ -1040,6 +1175,12 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
         return false;
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Registering listeners and creating the roster worker pool do not depend on other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
@@ -1065,6 +1206,8 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
             final ThreadPoolExecutorDelegateMBean mBean = new ThreadPoolExecutorDelegate(executor);
             objectName = JMXManager.tryRegister(mBean, ThreadPoolExecutorDelegateMBean.BASE_OBJECT_NAME + "roster");
         }
+
+        sharedGroupRosterPushQueue.start();
     }
 
     @Override
@@ -1079,6 +1222,7 @@ public class RosterManager extends BasicModule implements GroupEventListener, Us
             objectName = null;
         }
         executor.shutdown();
+        sharedGroupRosterPushQueue.stop();
     }
 
     public static RosterItemProvider getRosterItemProvider() {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.dom4j.Element;
+import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.cache.Cache;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.xmpp.packet.IQ;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps track of the roster version of each user, and of the roster pushes that were sent to the user, so that a
+ * client that requests the roster with an outdated version (RFC 6121, section 2.6) can be sent the roster pushes that
+ * it missed, instead of the full roster.
+ *
+ * The journal of a user is reset whenever the roster of the user is loaded from the database. Any roster version that
+ * a client obtained before that is no longer recognized, which causes the full roster to be sent to the client. This
+ * ensures that changes that were made while the roster was not loaded (and for which no roster pushes were sent) are
+ * never missed.
+ *
+ * The journal is stored in a cache that is shared by all cluster nodes.
+ */
+public class RosterVersionJournal
+{
+    /**
+     * The maximum number of roster pushes that is retained for each user. Clients that missed more pushes than this
+     * receive the full roster. A value of zero causes the full roster to be sent whenever it has changed.
+     */
+    public static final SystemProperty<Integer> MAX_RETAINED = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.client.roster.versioning.journal.size")
+        .setDefaultValue(100)
+        .setMinValue(0)
+        .setDynamic(true)
+        .build();
+
+    private final Cache<String, RosterChangeLog> changeLogCache = CacheFactory.createCache("Roster Versions");
+
+    /**
+     * Returns the current roster version of a user.
+     *
+     * @param username the user.
+     * @return the roster version.
+     */
+    @Nonnull
+    public String getVersion(@Nonnull final String username) {
+        final RosterChangeLog changeLog = changeLogCache.get(username);
+        if (changeLog != null) {
+            return changeLog.getVersion();
+        }
+        final Lock lock = changeLogCache.getLock(username);
+        lock.lock();
+        try {
+            return getOrCreate(username).getVersion();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a roster push that is about to be sent to a user.
+     *
+     * @param username the user.
+     * @param push the roster push.
+     * @return the roster version after the push, to be included in the push.
+     */
+    @Nonnull
+    public String recordPush(@Nonnull final String username, @Nonnull final org.xmpp.packet.Roster push) {
+        final Lock lock = changeLogCache.getLock(username);
+        lock.lock();
+        try {
+            final RosterChangeLog changeLog = getOrCreate(username);
+            String version = changeLog.getVersion();
+            for (final Element item : push.getChildElement().elements("item")) {
+                version = changeLog.add(item, MAX_RETAINED.getValue());
+            }
+            // Put the log in the cache again, so that other cluster nodes see the change.
+            changeLogCache.put(username, changeLog);
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the roster pushes that bring a client that has a particular version of the roster of a user up to date.
+     *
+     * @param username the user.
+     * @param version the roster version that the client has.
+     * @return the roster pushes (without addressing), oldest first, or null if the client cannot be brought up to date
+     *         this way (in which case the full roster is to be sent).
+     */
+    @Nullable
+    public List<org.xmpp.packet.Roster> getPushesSince(@Nonnull final String username, @Nullable final String version) {
+        final LinkedHashMap<String, Element> items;
+        final Lock lock = changeLogCache.getLock(username);
+        lock.lock();
+        try {
+            final RosterChangeLog changeLog = changeLogCache.get(username);
+            if (changeLog == null) {
+                return null;
+            }
+            items = changeLog.getItemsSince(version);
+        } finally {
+            lock.unlock();
+        }
+        if (items == null) {
+            return null;
+        }
+        final List<org.xmpp.packet.Roster> result = new ArrayList<>(items.size());
+        for (final Map.Entry<String, Element> entry : items.entrySet()) {
+            final org.xmpp.packet.Roster push = new org.xmpp.packet.Roster(IQ.Type.set);
+            push.getChildElement().add(entry.getValue().createCopy());
+            push.getChildElement().addAttribute("ver", entry.getKey());
+            result.add(push);
+        }
+        return result;
+    }
+
+    /**
+     * Discards the journal of a user. This is to be invoked when the roster of the user is loaded, or deleted.
+     *
+     * @param username the user.
+     */
+    public void reset(@Nonnull final String username) {
+        changeLogCache.remove(username);
+    }
+
+    @Nonnull
+    private RosterChangeLog getOrCreate(@Nonnull final String username) {
+        RosterChangeLog changeLog = changeLogCache.get(username);
+        if (changeLog == null) {
+            changeLog = new RosterChangeLog(StringUtils.randomString(8));
+            changeLogCache.put(username, changeLog);
+        }
+        return changeLog;
+    }
+}
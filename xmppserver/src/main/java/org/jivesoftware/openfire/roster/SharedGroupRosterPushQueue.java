@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the roster pushes and presence probes that result from changes to shared groups, and delivers them
+ * periodically, at a limited rate.
+ *
+ * A change to a shared group can affect the rosters of a large number of users. Rather than sending the resulting
+ * roster pushes and presence probes immediately (and one by one), these are queued while the change is being
+ * processed (see {@link #defer(Runnable)}), and delivered by a task that runs periodically. This has the following
+ * effects:
+ * <ul>
+ *     <li>Roster pushes for the same contact in the same roster are coalesced: when a contact is updated more than
+ *     once before the queue is flushed (for example because several group changes were made in quick succession),
+ *     only the last state of the contact is pushed.</li>
+ *     <li>All queued roster pushes of a user are delivered together. RFC 6121 requires each roster push to contain
+ *     exactly one item, so each item is delivered in a separate stanza.</li>
+ *     <li>Duplicate presence probes are sent only once.</li>
+ *     <li>The number of roster pushes and presence probes that is sent per second is limited.</li>
+ * </ul>
+ *
+ * Roster pushes that are sent immediately (for example in response to a roster change requested by a client) cause
+ * any queued push for the same contact in the same roster to be discarded, as the immediate push reflects a more
+ * recent state.
+ */
+public class SharedGroupRosterPushQueue
+{
+    private static final Logger Log = LoggerFactory.getLogger(SharedGroupRosterPushQueue.class);
+
+    /**
+     * Controls if roster pushes and presence probes that result from changes to shared groups are queued. When
+     * disabled, these are sent immediately.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.client.roster.shared-group-push.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The interval at which queued roster pushes and presence probes are delivered.
+     */
+    public static final SystemProperty<Duration> INTERVAL = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.client.roster.shared-group-push.interval")
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDefaultValue(Duration.ofMillis(250))
+        .setMinValue(Duration.ofMillis(10))
+        .setDynamic(false)
+        .build();
+
+    /**
+     * The maximum number of roster pushes that are delivered per second. All pushes queued for one user are delivered
+     * together, which can cause this limit to be exceeded briefly.
+     */
+    public static final SystemProperty<Integer> PUSHES_PER_SECOND = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.client.roster.shared-group-push.pushes-per-second")
+        .setDefaultValue(5000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The maximum number of presence probes that are sent per second.
+     */
+    public static final SystemProperty<Integer> PROBES_PER_SECOND = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.client.roster.shared-group-push.probes-per-second")
+        .setDefaultValue(1000)
+        .setMinValue(1)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * Indicates (by a value larger than zero) that the current thread is processing a change to a shared group.
+     */
+    private static final ThreadLocal<int[]> DEFERRING = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * A presence probe that is to be sent on behalf of all connected resources of a user.
+     */
+    private static final class Probe
+    {
+        final String username;
+        final JID probee;
+
+        Probe(@Nonnull final String username, @Nonnull final JID probee) {
+            this.username = username;
+            this.probee = probee;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Probe probe = (Probe) o;
+            return username.equals(probe.username) && probee.equals(probe.probee);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, probee);
+        }
+    }
+
+    private final BiConsumer<String, org.xmpp.packet.Roster> pushSender;
+
+    private final BiConsumer<String, JID> probeSender;
+
+    /**
+     * Queued roster pushes, by username, by bare JID of the contact. Guarded by 'this'.
+     */
+    private final Map<String, Map<String, org.xmpp.packet.Roster>> pendingPushes = new LinkedHashMap<>();
+
+    /**
+     * The number of roster pushes in {@link #pendingPushes}. Guarded by 'this'.
+     */
+    private int pendingPushCount;
+
+    /**
+     * Queued presence probes. Guarded by 'this'.
+     */
+    private final Set<Probe> pendingProbes = new LinkedHashSet<>();
+
+    private final AtomicLong queuedPushes = new AtomicLong();
+    private final AtomicLong coalescedPushes = new AtomicLong();
+    private final AtomicLong sentPushes = new AtomicLong();
+    private final AtomicLong queuedProbes = new AtomicLong();
+    private final AtomicLong coalescedProbes = new AtomicLong();
+    private final AtomicLong sentProbes = new AtomicLong();
+
+    private volatile Instant lastFlush;
+
+    private TimerTask flushTask;
+
+    /**
+     * Creates a queue.
+     *
+     * @param pushSender sends a roster push to all connected resources of a user.
+     * @param probeSender sends a presence probe on behalf of all connected resources of a user.
+     */
+    public SharedGroupRosterPushQueue(@Nonnull final BiConsumer<String, org.xmpp.packet.Roster> pushSender, @Nonnull final BiConsumer<String, JID> probeSender)
+    {
+        this.pushSender = pushSender;
+        this.probeSender = probeSender;
+    }
+
+    /**
+     * Runs a task that processes a change to a shared group. Roster pushes and presence probes that are generated by
+     * the task are queued rather than sent immediately (when queueing is enabled).
+     *
+     * @param task the task to run.
+     */
+    public static void defer(@Nonnull final Runnable task)
+    {
+        final int[] depth = DEFERRING.get();
+        depth[0]++;
+        try {
+            task.run();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * @return true if roster pushes and presence probes that are generated by the current thread are to be queued.
+     */
+    public static boolean isDeferring()
+    {
+        return DEFERRING.get()[0] > 0 && ENABLED.getValue();
+    }
+
+    /**
+     * Queues a roster push. A push for the same contact that is already queued for the user is replaced.
+     *
+     * @param username the user to which the push is to be sent.
+     * @param roster the roster push, which contains one item.
+     */
+    public synchronized void queuePush(@Nonnull final String username, @Nonnull final org.xmpp.packet.Roster roster)
+    {
+        queuedPushes.incrementAndGet();
+        final Map<String, org.xmpp.packet.Roster> pushes = pendingPushes.computeIfAbsent(username, k -> new LinkedHashMap<>());
+        for (final org.xmpp.packet.Roster.Item item : roster.getItems()) {
+            // Remove the previous push (if any), so that the order in which pushes are delivered reflects the order of the changes.
+            if (pushes.remove(item.getJID().toBareJID()) != null) {
+                coalescedPushes.incrementAndGet();
+                pendingPushCount--;
+            }
+            pushes.put(item.getJID().toBareJID(), roster);
+            pendingPushCount++;
+        }
+    }
+
+    /**
+     * Discards queued roster pushes that are superseded by a roster push that is sent immediately.
+     *
+     * @param username the user to which the push is sent.
+     * @param roster the roster push that is sent immediately.
+     */
+    public synchronized void discardSuperseded(@Nonnull final String username, @Nonnull final org.xmpp.packet.Roster roster)
+    {
+        final Map<String, org.xmpp.packet.Roster> pushes = pendingPushes.get(username);
+        if (pushes == null) {
+            return;
+        }
+        for (final org.xmpp.packet.Roster.Item item : roster.getItems()) {
+            if (pushes.remove(item.getJID().toBareJID()) != null) {
+                coalescedPushes.incrementAndGet();
+                pendingPushCount--;
+            }
+        }
+        if (pushes.isEmpty()) {
+            pendingPushes.remove(username);
+        }
+    }
+
+    /**
+     * Queues a presence probe, unless an identical probe is already queued.
+     *
+     * @param username the user on behalf of whose connected resources the probe is to be sent.
+     * @param probee the entity of which the presence is to be probed.
+     */
+    public synchronized void queueProbe(@Nonnull final String username, @Nonnull final JID probee)
+    {
+        queuedProbes.incrementAndGet();
+        if (!pendingProbes.add(new Probe(username, probee))) {
+            coalescedProbes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Delivers queued roster pushes and presence probes, up to the number that is allowed per interval.
+     */
+    // Package protected to be able to unit test this class.
+    void flush()
+    {
+        final long intervalMillis = INTERVAL.getValue().toMillis();
+        final int pushBudget = (int) Math.max(1, PUSHES_PER_SECOND.getValue() * intervalMillis / 1000);
+        final int probeBudget = (int) Math.max(1, PROBES_PER_SECOND.getValue() * intervalMillis / 1000);
+
+        // Take the work out of the queue while holding the lock, but deliver it without holding the lock.
+        final Map<String, Collection<org.xmpp.packet.Roster>> pushes = new LinkedHashMap<>();
+        final List<Probe> probes = new ArrayList<>();
+        synchronized (this) {
+            int pushCount = 0;
+            final Iterator<Map.Entry<String, Map<String, org.xmpp.packet.Roster>>> users = pendingPushes.entrySet().iterator();
+            while (pushCount < pushBudget && users.hasNext()) {
+                final Map.Entry<String, Map<String, org.xmpp.packet.Roster>> entry = users.next();
+                pushes.put(entry.getKey(), entry.getValue().values());
+                pushCount += entry.getValue().size();
+                users.remove();
+            }
+            pendingPushCount -= pushCount;
+
+            final Iterator<Probe> pending = pendingProbes.iterator();
+            while (probes.size() < probeBudget && pending.hasNext()) {
+                probes.add(pending.next());
+                pending.remove();
+            }
+        }
+
+        for (final Map.Entry<String, Collection<org.xmpp.packet.Roster>> entry : pushes.entrySet()) {
+            for (final org.xmpp.packet.Roster roster : entry.getValue()) {
+                try {
+                    pushSender.accept(entry.getKey(), roster);
+                    sentPushes.incrementAndGet();
+                } catch (final Exception e) {
+                    Log.warn("Unable to deliver a queued roster push to user '{}'.", entry.getKey(), e);
+                }
+            }
+        }
+        for (final Probe probe : probes) {
+            try {
+                probeSender.accept(probe.username, probe.probee);
+                sentProbes.incrementAndGet();
+            } catch (final Exception e) {
+                Log.warn("Unable to send a queued presence probe on behalf of user '{}' to '{}'.", probe.username, probe.probee, e);
+            }
+        }
+        if (!pushes.isEmpty() || !probes.isEmpty()) {
+            lastFlush = Instant.now();
+            Log.trace("Delivered queued roster pushes to {} user(s) and {} presence probe(s).", pushes.size(), probes.size());
+        }
+    }
+
+    /**
+     * Starts the task that periodically delivers queued roster pushes and presence probes.
+     */
+    public synchronized void start()
+    {
+        if (flushTask != null) {
+            return;
+        }
+        flushTask = new TimerTask() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        TaskEngine.getInstance().scheduleAtFixedRate(flushTask, INTERVAL.getValue(), INTERVAL.getValue());
+    }
+
+    /**
+     * Stops the task that periodically delivers queued roster pushes and presence probes, after delivering all that is
+     * queued.
+     */
+    public void stop()
+    {
+        synchronized (this) {
+            if (flushTask == null) {
+                return;
+            }
+            TaskEngine.getInstance().cancelScheduledTask(flushTask);
+            flushTask = null;
+        }
+        while (getPendingPushCount() > 0 || getPendingProbeCount() > 0) {
+            flush();
+        }
+    }
+
+    /**
+     * @return the number of roster pushes that are queued.
+     */
+    public synchronized int getPendingPushCount()
+    {
+        return pendingPushCount;
+    }
+
+    /**
+     * @return the number of users for which roster pushes are queued.
+     */
+    public synchronized int getPendingUserCount()
+    {
+        return pendingPushes.size();
+    }
+
+    /**
+     * @return the number of presence probes that are queued.
+     */
+    public synchronized int getPendingProbeCount()
+    {
+        return pendingProbes.size();
+    }
+
+    /**
+     * @return the number of roster pushes that were queued since the server started.
+     */
+    public long getQueuedPushCount()
+    {
+        return queuedPushes.get();
+    }
+
+    /**
+     * @return the number of queued roster pushes that were replaced or discarded before being delivered, since the server started.
+     */
+    public long getCoalescedPushCount()
+    {
+        return coalescedPushes.get();
+    }
+
+    /**
+     * @return the number of queued roster pushes that were delivered since the server started.
+     */
+    public long getSentPushCount()
+    {
+        return sentPushes.get();
+    }
+
+    /**
+     * @return the number of presence probes that were queued since the server started.
+     */
+    public long getQueuedProbeCount()
+    {
+        return queuedProbes.get();
+    }
+
+    /**
+     * @return the number of queued presence probes that were duplicates of a probe that was already queued, since the server started.
+     */
+    public long getCoalescedProbeCount()
+    {
+        return coalescedProbes.get();
+    }
+
+    /**
+     * @return the number of queued presence probes that were sent since the server started.
+     */
+    public long getSentProbeCount()
+    {
+        return sentProbes.get();
+    }
+
+    /**
+     * @return the moment at which queued roster pushes or presence probes were last delivered, or null if that never happened.
+     */
+    public Instant getLastFlush()
+    {
+        return lastFlush;
+    }
+}
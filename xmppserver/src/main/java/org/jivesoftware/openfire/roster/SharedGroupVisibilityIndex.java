@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.jivesoftware.openfire.group.Group;
+import org.jivesoftware.openfire.group.GroupManager;
+import org.jivesoftware.openfire.group.SharedGroupVisibility;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.cache.Cache;
+import org.jivesoftware.util.cache.CacheFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An index of the visibility of shared groups, which allows the shared groups that a user can see, and the groups
+ * of which the members can see a shared group, to be determined without iterating over all groups or all users.
+ *
+ * The index consists of two parts:
+ * <ul>
+ *     <li>The sharing configuration of all shared groups: the groups that are shared with everybody, and for each
+ *     group that is shared with the users of specific groups, the names of those groups (the group itself included),
+ *     as well as the reverse mapping. This part is rebuilt (when next used) after the sharing configuration of any
+ *     group changed, or after a group was deleted or renamed.</li>
+ *     <li>For each user for which it was requested, the names of the shared groups that the user can see. This part
+ *     is maintained per user: the entry of a user is removed when the user is added to or removed from a group, and
+ *     all entries are removed when the sharing configuration changes. It is kept in a local cache, which limits its
+ *     size and the time for which entries are retained.</li>
+ * </ul>
+ *
+ * Group membership itself is not part of this index: it is obtained from {@link GroupManager}, which caches it.
+ *
+ * This index is local to a cluster node. Its {@link RosterManager} keeps it up to date based on the events that are
+ * dispatched by {@link org.jivesoftware.openfire.event.GroupEventDispatcher}, and instructs other cluster nodes to
+ * invalidate the affected parts of their index by means of a {@link SharedGroupVisibilityIndexTask}.
+ */
+public class SharedGroupVisibilityIndex
+{
+    private static final Logger Log = LoggerFactory.getLogger(SharedGroupVisibilityIndex.class);
+
+    /**
+     * Controls if the index is used. When disabled, the visibility of shared groups is evaluated by querying the group
+     * provider for every request.
+     */
+    public static final SystemProperty<Boolean> ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.client.roster.shared-group-index.enabled")
+        .setDefaultValue(true)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The name of the (local) cache that holds the shared groups that are visible to each user.
+     */
+    public static final String VISIBLE_GROUPS_CACHE_NAME = "Shared Group Visibility";
+
+    /**
+     * An immutable representation of the sharing configuration of all shared groups.
+     */
+    static final class Configuration
+    {
+        /**
+         * Names of the groups that are shared with everybody.
+         */
+        final Set<String> sharedWithEverybody;
+
+        /**
+         * For each group that is shared with the users of specific groups, the names of those groups.
+         */
+        final Map<String, Set<String>> viewersBySharedGroup;
+
+        /**
+         * For each group, the names of the groups that are shared with its users (excluding the groups that are shared
+         * with everybody).
+         */
+        final Map<String, Set<String>> sharedGroupsByViewer;
+
+        Configuration(@Nonnull final Collection<Group> sharedGroups, @Nonnull final Set<String> deletedGroups)
+        {
+            final Set<String> everybody = new HashSet<>();
+            final Map<String, Set<String>> viewers = new HashMap<>();
+            final Map<String, Set<String>> shared = new HashMap<>();
+            for (final Group group : sharedGroups) {
+                if (deletedGroups.contains(group.getName())) {
+                    continue;
+                }
+                final SharedGroupVisibility sharedWith = group.getSharedWith();
+                if (SharedGroupVisibility.everybody == sharedWith) {
+                    everybody.add(group.getName());
+                } else if (SharedGroupVisibility.usersOfGroups == sharedWith) {
+                    final Set<String> viewerNames = new HashSet<>(group.getSharedWithUsersInGroupNames());
+                    viewerNames.removeAll(deletedGroups);
+                    viewerNames.add(group.getName());
+                    viewers.put(group.getName(), Collections.unmodifiableSet(viewerNames));
+                    for (final String viewerName : viewerNames) {
+                        shared.computeIfAbsent(viewerName, k -> new HashSet<>()).add(group.getName());
+                    }
+                }
+            }
+            this.sharedWithEverybody = Collections.unmodifiableSet(everybody);
+            this.viewersBySharedGroup = Collections.unmodifiableMap(viewers);
+            shared.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+            this.sharedGroupsByViewer = Collections.unmodifiableMap(shared);
+        }
+    }
+
+    /**
+     * Provides the shared groups of which the configuration is indexed.
+     */
+    private final Supplier<Collection<Group>> sharedGroupsSupplier;
+
+    /**
+     * Provides the groups of which a user is a member or an administrator.
+     */
+    private final Function<JID, Collection<Group>> userGroupsSupplier;
+
+    /**
+     * The sharing configuration, or null if it is to be rebuilt.
+     */
+    private volatile Configuration configuration;
+
+    /**
+     * The names of the shared groups that a user (identified by bare JID) can see, excluding the groups that are shared
+     * with everybody.
+     */
+    private final Map<String, Set<String>> visibleGroupsByUser;
+
+    /**
+     * Incremented by every invalidation, to detect entries that were computed concurrently with an invalidation.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Names of groups that are being, or have been, deleted. These are excluded from the index, as the group provider
+     * may still return them while the deletion is in progress.
+     */
+    private final Set<String> deletedGroups = ConcurrentHashMap.newKeySet();
+
+    public SharedGroupVisibilityIndex()
+    {
+        this(() -> GroupManager.getInstance().getSharedGroups(), user -> GroupManager.getInstance().getGroups(user), createVisibleGroupsCache());
+    }
+
+    // Package protected to be able to unit test this class.
+    SharedGroupVisibilityIndex(@Nonnull final Supplier<Collection<Group>> sharedGroupsSupplier, @Nonnull final Function<JID, Collection<Group>> userGroupsSupplier, @Nonnull final Map<String, Set<String>> visibleGroupsByUser)
+    {
+        this.sharedGroupsSupplier = sharedGroupsSupplier;
+        this.userGroupsSupplier = userGroupsSupplier;
+        this.visibleGroupsByUser = visibleGroupsByUser;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Set<String>> createVisibleGroupsCache()
+    {
+        // The sets that are stored are serializable, even though that is not expressed by their type.
+        final Cache cache = CacheFactory.createLocalCache(VISIBLE_GROUPS_CACHE_NAME);
+        return cache;
+    }
+
+    @Nonnull
+    private Configuration getConfiguration()
+    {
+        Configuration result = configuration;
+        if (result == null) {
+            synchronized (this) {
+                result = configuration;
+                if (result == null) {
+                    final long start = System.nanoTime();
+                    result = new Configuration(sharedGroupsSupplier.get(), deletedGroups);
+                    configuration = result;
+                    Log.debug("Indexed the sharing configuration of {} shared group(s) in {} ms.", result.sharedWithEverybody.size() + result.viewersBySharedGroup.size(), (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the shared groups that a user can see: the groups that are shared with everybody, and the
+     * groups that are shared with the users of a group of which the user is a member or an administrator.
+     *
+     * @param user the user (only the bare JID is used).
+     * @return the names of the groups that the user can see (an unmodifiable set).
+     */
+    @Nonnull
+    public Set<String> getVisibleGroupNames(@Nonnull final JID user)
+    {
+        final long invalidationsBefore = invalidations.get();
+        final Configuration config = getConfiguration();
+        final Set<String> visible = visibleGroupsByUser.computeIfAbsent(user.toBareJID(), k -> {
+            final Set<String> result = new HashSet<>();
+            for (final Group group : userGroupsSupplier.apply(user.asBareJID())) {
+                result.addAll(config.sharedGroupsByViewer.getOrDefault(group.getName(), Collections.emptySet()));
+            }
+            return result.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(result);
+        });
+        if (invalidations.get() != invalidationsBefore) {
+            // The entry may have been computed from data that was invalidated in the meantime. Do not keep it.
+            visibleGroupsByUser.remove(user.toBareJID(), visible);
+        }
+        if (config.sharedWithEverybody.isEmpty()) {
+            return visible;
+        }
+        final Set<String> result = new HashSet<>(config.sharedWithEverybody);
+        result.addAll(visible);
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Returns true if a user can see a group.
+     *
+     * @param groupName the name of the group.
+     * @param user the user.
+     * @return true if the group is shared with everybody, or with the users of a group of which the user is a member or an administrator.
+     */
+    public boolean isVisible(@Nonnull final String groupName, @Nonnull final JID user)
+    {
+        return getConfiguration().sharedWithEverybody.contains(groupName) || getVisibleGroupNames(user).contains(groupName);
+    }
+
+    /**
+     * Returns the names of the shared groups that can be seen by the members of a group: the groups that are shared
+     * with everybody, and the groups that are shared with the users of the group.
+     *
+     * @param groupName the name of the group.
+     * @return the names of the shared groups that are visible to the members of the group (an unmodifiable set).
+     */
+    @Nonnull
+    public Set<String> getGroupNamesVisibleToMembersOf(@Nonnull final String groupName)
+    {
+        final Configuration config = getConfiguration();
+        final Set<String> shared = config.sharedGroupsByViewer.getOrDefault(groupName, Collections.emptySet());
+        if (config.sharedWithEverybody.isEmpty()) {
+            return shared;
+        }
+        final Set<String> result = new HashSet<>(config.sharedWithEverybody);
+        result.addAll(shared);
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Returns the names of the groups of which the users can see a group that is shared with the users of specific
+     * groups. This includes the group itself.
+     *
+     * @param groupName the name of the shared group.
+     * @return the names of the groups (empty if the group is not shared, or shared with everybody).
+     */
+    @Nonnull
+    public Set<String> getViewerGroupNames(@Nonnull final String groupName)
+    {
+        return getConfiguration().viewersBySharedGroup.getOrDefault(groupName, Collections.emptySet());
+    }
+
+    /**
+     * @return the names of the groups that are shared with everybody (an unmodifiable set).
+     */
+    @Nonnull
+    public Set<String> getGroupNamesSharedWithEverybody()
+    {
+        return getConfiguration().sharedWithEverybody;
+    }
+
+    /**
+     * Removes the shared groups that are visible to one user from the index. This is to be invoked after the user was
+     * added to, or removed from, a group.
+     *
+     * @param user the user of which the group membership changed.
+     */
+    public void invalidate(@Nonnull final JID user)
+    {
+        invalidations.incrementAndGet();
+        visibleGroupsByUser.remove(user.toBareJID());
+    }
+
+    /**
+     * Removes all data from the index. This is to be invoked after the sharing configuration of a group changed, or
+     * after a group was renamed or deleted.
+     */
+    public void invalidate()
+    {
+        synchronized (this) {
+            invalidations.incrementAndGet();
+            configuration = null;
+            visibleGroupsByUser.clear();
+        }
+    }
+
+    /**
+     * Removes all data from the index, and excludes a group from it. This is to be invoked when a group is about to be
+     * deleted.
+     *
+     * @param groupName the name of the group that is being deleted.
+     */
+    public void groupDeleted(@Nonnull final String groupName)
+    {
+        synchronized (this) {
+            deletedGroups.add(groupName);
+            invalidate();
+        }
+    }
+
+    /**
+     * Ensures that a group is included in the index, even if a group with the same name was deleted earlier. This is to
+     * be invoked after a group was created.
+     *
+     * @param groupName the name of the group that was created.
+     */
+    public void groupCreated(@Nonnull final String groupName)
+    {
+        if (deletedGroups.remove(groupName)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the number of users for which the visible shared groups are currently indexed.
+     */
+    public int getIndexedUserCount()
+    {
+        return visibleGroupsByUser.size();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.util.cache.ClusterTask;
+import org.jivesoftware.util.cache.ExternalizableUtil;
+import org.xmpp.packet.JID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Task that will be executed on other cluster nodes to invalidate (part of) their {@link SharedGroupVisibilityIndex},
+ * after a group was changed on the node that sends the task.
+ */
+public class SharedGroupVisibilityIndexTask implements ClusterTask<Void>
+{
+    /**
+     * The user of which the group membership changed, if any.
+     */
+    @Nullable
+    private JID user;
+
+    /**
+     * The name of the group that was created or that is being deleted, if any.
+     */
+    @Nullable
+    private String groupName;
+
+    /**
+     * Indicates if the group identified by {@link #groupName} is being deleted (as opposed to having been created).
+     */
+    private boolean deleted;
+
+    /**
+     * Instantiates a task that invalidates all indexed data.
+     */
+    public SharedGroupVisibilityIndexTask() {
+    }
+
+    /**
+     * Instantiates a task that invalidates the indexed data of one user.
+     *
+     * @param user the user of which the group membership changed.
+     */
+    public SharedGroupVisibilityIndexTask(@Nonnull final JID user) {
+        this.user = user;
+    }
+
+    /**
+     * Instantiates a task that updates the index after a group was created, or when a group is about to be deleted.
+     *
+     * @param groupName the name of the group.
+     * @param deleted true if the group is being deleted, false if it was created.
+     */
+    public SharedGroupVisibilityIndexTask(@Nonnull final String groupName, final boolean deleted) {
+        this.groupName = groupName;
+        this.deleted = deleted;
+    }
+
+    @Override
+    public Void getResult() {
+        return null;
+    }
+
+    @Override
+    public void run() {
+        final SharedGroupVisibilityIndex index = XMPPServer.getInstance().getRosterManager().getSharedGroupVisibilityIndex();
+        if (user != null) {
+            index.invalidate(user);
+        } else if (groupName != null && deleted) {
+            index.groupDeleted(groupName);
+        } else if (groupName != null) {
+            index.groupCreated(groupName);
+        } else {
+            index.invalidate();
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ExternalizableUtil.getInstance().writeBoolean(out, user != null);
+        if (user != null) {
+            ExternalizableUtil.getInstance().writeSerializable(out, user);
+        }
+        ExternalizableUtil.getInstance().writeBoolean(out, groupName != null);
+        if (groupName != null) {
+            ExternalizableUtil.getInstance().writeSafeUTF(out, groupName);
+        }
+        ExternalizableUtil.getInstance().writeBoolean(out, deleted);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        if (ExternalizableUtil.getInstance().readBoolean(in)) {
+            user = (JID) ExternalizableUtil.getInstance().readSerializable(in);
+        }
+        if (ExternalizableUtil.getInstance().readBoolean(in)) {
+            groupName = ExternalizableUtil.getInstance().readSafeUTF(in);
+        }
+        deleted = ExternalizableUtil.getInstance().readBoolean(in);
+    }
+}
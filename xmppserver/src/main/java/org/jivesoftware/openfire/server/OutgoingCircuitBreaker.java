@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.server;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Tracks failed attempts to establish an outgoing server session to a remote domain.
+ *
+ * After a number of consecutive failures, the circuit breaker 'opens': attempts to establish a new session are not
+ * made for a while, and stanzas addressed to the remote domain are bounced immediately. Each subsequent failure
+ * doubles the period for which the circuit breaker remains open, up to a maximum. Any successful attempt closes the
+ * circuit breaker.
+ *
+ * Instances of this class are thread safe.
+ */
+public class OutgoingCircuitBreaker
+{
+    @Nonnull
+    private final String remoteDomain;
+
+    private int consecutiveFailures;
+
+    private Instant lastFailure;
+
+    private Instant openUntil;
+
+    public OutgoingCircuitBreaker(@Nonnull final String remoteDomain)
+    {
+        this.remoteDomain = remoteDomain;
+    }
+
+    /**
+     * Checks if an attempt to establish a session to the remote domain is allowed at a particular moment.
+     *
+     * @param now the moment at which to check.
+     * @return false if the circuit breaker is open, otherwise true.
+     */
+    public synchronized boolean allowsAttempt(@Nonnull final Instant now)
+    {
+        return openUntil == null || !now.isBefore(openUntil);
+    }
+
+    /**
+     * Registers that an attempt to establish a session failed.
+     *
+     * @param now the moment of the failure.
+     * @param threshold the number of consecutive failures after which the circuit breaker opens.
+     * @param openDuration the period for which the circuit breaker opens when the threshold is reached.
+     * @param maxOpenDuration the maximum period for which the circuit breaker opens.
+     */
+    public synchronized void recordFailure(@Nonnull final Instant now, final int threshold, @Nonnull final Duration openDuration, @Nonnull final Duration maxOpenDuration)
+    {
+        consecutiveFailures++;
+        lastFailure = now;
+        if (consecutiveFailures >= threshold) {
+            final int exponent = Math.min(consecutiveFailures - threshold, 30);
+            Duration duration = openDuration.multipliedBy(1L << exponent);
+            if (duration.compareTo(maxOpenDuration) > 0) {
+                duration = maxOpenDuration;
+            }
+            openUntil = now.plus(duration);
+        }
+    }
+
+    @Nonnull
+    public String getRemoteDomain()
+    {
+        return remoteDomain;
+    }
+
+    public synchronized int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return the moment of the last failure, or null if no failure has been recorded yet.
+     */
+    public synchronized Instant getLastFailure()
+    {
+        return lastFailure;
+    }
+
+    /**
+     * @return the moment until which no attempts will be made to establish a session, or null if the circuit breaker has not opened.
+     */
+    public synchronized Instant getOpenUntil()
+    {
+        return openUntil;
+    }
+}
@@ -38,6 +38,7 @@ import org.xmpp.packet.*;
 
 import javax.annotation.Nonnull;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.*;
@@ -63,7 +64,7 @@ public class OutgoingSessionPromise {
         .setKey(ConnectionSettings.Server.QUEUE_MAX_THREADS)
         .setDynamic(false)
         .setDefaultValue(20)
-        .setMinValue(0) // RejectedExecutionHandler is CallerRunsPolicy, meaning that the calling thread would execute the task.
+        .setMinValue(1)
         .build();
 
     public static final SystemProperty<Integer> QUEUE_MIN_THREADS = SystemProperty.Builder.ofType(Integer.class)
@@ -88,6 +89,67 @@ public class OutgoingSessionPromise {
         .setMinValue(Duration.ZERO)
         .build();
 
+    /**
+     * The maximum combined size (in characters) of the stanzas that are queued for one domain pair while an outgoing
+     * session is being established. A value of zero or less disables this limit.
+     */
+    public static final SystemProperty<Long> QUEUE_MAX_BYTES = SystemProperty.Builder.ofType(Long.class)
+        .setKey("xmpp.server.outgoing.queue.max-bytes")
+        .setDynamic(true)
+        .setDefaultValue(1_048_576L)
+        .build();
+
+    /**
+     * Controls if queued IQ responses are delivered before other queued stanzas.
+     */
+    public static final SystemProperty<Boolean> QUEUE_PRIORITIZE_IQ_RESPONSES = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.server.outgoing.queue.prioritize-iq-responses")
+        .setDynamic(true)
+        .setDefaultValue(true)
+        .build();
+
+    /**
+     * Controls if a queued presence update is dropped when a newer update for the same sender and recipient is queued.
+     */
+    public static final SystemProperty<Boolean> QUEUE_SUPERSEDE_PRESENCE = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.server.outgoing.queue.supersede-presence")
+        .setDynamic(true)
+        .setDefaultValue(true)
+        .build();
+
+    public static final SystemProperty<Boolean> CIRCUIT_BREAKER_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.server.outgoing.circuit-breaker.enabled")
+        .setDynamic(true)
+        .setDefaultValue(true)
+        .build();
+
+    /**
+     * The number of consecutive failures to establish an outgoing session to a remote domain after which stanzas for
+     * that domain are bounced without a new attempt being made.
+     */
+    public static final SystemProperty<Integer> CIRCUIT_BREAKER_FAILURE_THRESHOLD = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.server.outgoing.circuit-breaker.failure-threshold")
+        .setDynamic(true)
+        .setDefaultValue(2)
+        .setMinValue(1)
+        .build();
+
+    public static final SystemProperty<Duration> CIRCUIT_BREAKER_OPEN_DURATION = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.server.outgoing.circuit-breaker.open-duration")
+        .setDynamic(true)
+        .setDefaultValue(Duration.ofSeconds(30))
+        .setChronoUnit(ChronoUnit.SECONDS)
+        .setMinValue(Duration.ZERO)
+        .build();
+
+    public static final SystemProperty<Duration> CIRCUIT_BREAKER_MAX_OPEN_DURATION = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.server.outgoing.circuit-breaker.max-open-duration")
+        .setDynamic(true)
+        .setDefaultValue(Duration.ofMinutes(10))
+        .setChronoUnit(ChronoUnit.SECONDS)
+        .setMinValue(Duration.ZERO)
+        .build();
+
     private static final OutgoingSessionPromise instance = new OutgoingSessionPromise();
 
     private final Interner<DomainPair> interner = Interners.newWeakInterner();
@@ -100,6 +162,12 @@ public class OutgoingSessionPromise {
 
     private final ConcurrentMap<DomainPair, PacketsProcessor> packetsProcessors = new ConcurrentHashMap<>();
 
+    /**
+     * Circuit breakers for remote domains to which an outgoing session recently could not be established, keyed by
+     * remote domain.
+     */
+    private final ConcurrentMap<String, OutgoingCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
     /**
      * Cache (unlimited, never expire) that holds outgoing sessions to remote servers from this server.
      * Key: server domain, Value: nodeID
@@ -117,12 +185,28 @@ public class OutgoingSessionPromise {
         serversCache = CacheFactory.createCache(RoutingTableImpl.S2S_CACHE_NAME);
         routingTable = XMPPServer.getInstance().getRoutingTable();
 
-        // Create a pool of threads that will process queued packets.
-        threadPool = new ThreadPoolExecutor(QUEUE_MIN_THREADS.getValue(), QUEUE_MAX_THREADS.getValue(),
+        // Create a pool of threads that will process queued packets. When all threads are busy, processors wait for
+        // a thread to become available (their stanzas remain queued). Processors are never executed by the routing
+        // thread that creates them, as that would block routing while a connection is being established.
+        final int maxThreads = QUEUE_MAX_THREADS.getValue();
+        threadPool = new ThreadPoolExecutor(maxThreads, maxThreads,
                         QUEUE_THREAD_TIMEOUT.getValue().toMillis(), TimeUnit.MILLISECONDS,
-                        new SynchronousQueue<>(),
-                        new NamedThreadFactory("S2SOutgoingPromise-", Executors.defaultThreadFactory(), false, Thread.NORM_PRIORITY),
-                        new ThreadPoolExecutor.CallerRunsPolicy());
+                        new LinkedBlockingQueue<>(),
+                        new NamedThreadFactory("S2SOutgoingPromise-", Executors.defaultThreadFactory(), false, Thread.NORM_PRIORITY));
+        threadPool.allowCoreThreadTimeOut(QUEUE_MIN_THREADS.getValue() < maxThreads);
+
+        // Periodically forget about circuit breakers that have not seen a failure for a while.
+        TaskEngine.getInstance().scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                final Instant threshold = Instant.now().minus(CIRCUIT_BREAKER_MAX_OPEN_DURATION.getValue().multipliedBy(2));
+                circuitBreakers.values().removeIf(circuitBreaker -> {
+                    // A circuit breaker that was just created might not have recorded its first failure yet.
+                    final Instant lastFailure = circuitBreaker.getLastFailure();
+                    return lastFailure != null && lastFailure.isBefore(threshold);
+                });
+            }
+        }, Duration.ofMinutes(5), Duration.ofMinutes(5));
     }
 
     public static OutgoingSessionPromise getInstance() {
@@ -161,6 +245,13 @@ public class OutgoingSessionPromise {
             throw new IllegalArgumentException("Packet's 'to' domain ("+packet.getTo().getDomain()+") does not match domainPair's remote ("+domainPair.getRemote()+")");
         }
 
+        final OutgoingCircuitBreaker circuitBreaker = circuitBreakers.get(domainPair.getRemote());
+        if (CIRCUIT_BREAKER_ENABLED.getValue() && circuitBreaker != null && !circuitBreaker.allowsAttempt(Instant.now())) {
+            Log.debug("Not establishing a new connection for {}, as previous attempts failed. No attempts will be made until {}. Bouncing stanza: {}", domainPair, circuitBreaker.getOpenUntil(), packet);
+            returnErrorToSender(domainPair, packet);
+            return;
+        }
+
         final PacketsProcessor packetsProcessor = new PacketsProcessor(domainPair);
         if (packetsProcessors.putIfAbsent(domainPair, packetsProcessor) != null) {
             throw new IllegalStateException("Attempted to create a new PacketProcessor for " + domainPair + " but one already exists.");
@@ -222,6 +313,124 @@ public class OutgoingSessionPromise {
         return processor != null && !processor.isDone();
     }
 
+    /**
+     * Returns the queues of stanzas that are waiting for an outgoing session to be established.
+     *
+     * @return the queues, one for each domain pair for which an outgoing session is being established.
+     */
+    @Nonnull
+    public Collection<OutgoingStanzaQueue> getQueues() {
+        final List<OutgoingStanzaQueue> result = new ArrayList<>();
+        packetsProcessors.values().forEach(processor -> result.add(processor.packetQueue));
+        return result;
+    }
+
+    /**
+     * Returns the circuit breakers of remote domains to which an outgoing session recently could not be established.
+     *
+     * @return the circuit breakers.
+     */
+    @Nonnull
+    public Collection<OutgoingCircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableCollection(circuitBreakers.values());
+    }
+
+    private void recordConnectionResult(@Nonnull final DomainPair domainPair, final boolean success) {
+        if (success) {
+            circuitBreakers.remove(domainPair.getRemote());
+        } else {
+            circuitBreakers.computeIfAbsent(domainPair.getRemote(), OutgoingCircuitBreaker::new)
+                .recordFailure(Instant.now(), CIRCUIT_BREAKER_FAILURE_THRESHOLD.getValue(), CIRCUIT_BREAKER_OPEN_DURATION.getValue(), CIRCUIT_BREAKER_MAX_OPEN_DURATION.getValue());
+        }
+    }
+
+    /**
+     * Processes stanzas that could not be delivered to a remote domain, by generating error responses where
+     * appropriate.
+     *
+     * @param domainPair The domain pair over which the stanza was to be delivered.
+     * @param packet The stanza that could not be delivered.
+     */
+    private void returnErrorToSender(@Nonnull final DomainPair domainPair, @Nonnull final Packet packet) {
+        XMPPServer server = XMPPServer.getInstance();
+        JID from = packet.getFrom();
+        JID to = packet.getTo();
+        if (!server.isLocal(from) && !XMPPServer.getInstance().matchesComponent(from) &&
+                !server.isLocal(to) && !XMPPServer.getInstance().matchesComponent(to)) {
+            // Do nothing since the sender and receiver of the packet that failed to reach a remote
+            // server are not local users. This prevents endless loops if the FROM or TO address
+            // are non-existent addresses
+            return;
+        }
+
+        final Set<Packet> replies = new HashSet<>();
+
+        // TODO Send correct error condition: timeout or not_found depending on the real error
+        try {
+            if (packet instanceof IQ) {
+                if (((IQ) packet).isRequest()) {
+                    IQ reply = new IQ();
+                    reply.setID(packet.getID());
+                    reply.setTo(from);
+                    reply.setFrom(to);
+                    reply.setChildElement(((IQ) packet).getChildElement().createCopy());
+                    reply.setError(PacketError.Condition.remote_server_not_found);
+                    replies.add( reply );
+                }
+            }
+            else if (packet instanceof Presence) {
+                // workaround for OF-23. "undo" the 'setFrom' to a bare JID 
+                // by sending the error to all available resources.
+                final List<JID> routes = new ArrayList<>();
+                if (from.getResource() == null || from.getResource().trim().length() == 0) {
+                    routes.addAll(routingTable.getRoutes(from, null));
+                } else {
+                    routes.add(from);
+                }
+                
+                for (JID route : routes) {
+                    Presence reply = new Presence();
+                    reply.setID(packet.getID());
+                    reply.setTo(route);
+                    reply.setFrom(to);
+                    reply.setError(PacketError.Condition.remote_server_not_found);
+
+                    replies.add( reply );
+                }
+            }
+            else if (packet instanceof Message) {
+                Message reply = new Message();
+                reply.setID(packet.getID());
+                reply.setTo(from);
+                reply.setFrom(to);
+                reply.setType(((Message)packet).getType());
+                reply.setThread(((Message)packet).getThread());
+                reply.setError(PacketError.Condition.remote_server_not_found);
+
+                replies.add( reply );
+            }
+        }
+        catch (Exception e)
+        {
+            Log.warn( "An exception occurred while trying to generate a remote-server-not-found error (for domain '{}') to the original sender. Original packet: {}", domainPair.getRemote(), packet, e );
+        }
+
+        // Send all replies.
+        for ( final Packet reply : replies )
+        {
+            TaskEngine.getInstance().submit(() -> {
+                try
+                {
+                    XMPPServer.getInstance().getPacketRouter().route( reply );
+                }
+                catch (Exception e)
+                {
+                    Log.warn( "An exception occurred while trying to returning a remote-server-not-found error (for domain '{}') to the original sender. Original packet: {}", domainPair.getRemote(), packet, e );
+                }
+            });
+        }
+    }
+
     private class PacketsProcessor implements Runnable
     {
         private final Logger Log = LoggerFactory.getLogger( PacketsProcessor.class );
@@ -230,10 +439,11 @@ public class OutgoingSessionPromise {
         private final DomainPair domainPair;
 
         @Nonnull
-        private final Queue<Packet> packetQueue = new ArrayBlockingQueue<>( QUEUE_SIZE.getValue() );
+        private final OutgoingStanzaQueue packetQueue;
 
         public PacketsProcessor(@Nonnull final DomainPair domainPair) {
             this.domainPair = domainPair;
+            this.packetQueue = new OutgoingStanzaQueue(domainPair, QUEUE_SIZE.getValue(), QUEUE_MAX_BYTES.getValue(), QUEUE_PRIORITIZE_IQ_RESPONSES.getValue(), QUEUE_SUPERSEDE_PRESENCE.getValue());
         }
 
         @Override
@@ -246,6 +456,7 @@ public class OutgoingSessionPromise {
                 Log.warn("An exception occurred while trying to establish a connection for {}", domainPair, e);
                 channel = null;
             }
+            recordConnectionResult(domainPair, channel != null);
 
             // After the connection has been established (or failed), process all queued stanzas. Ensure that no more
             // stanzas are queued while we process the queue, by first synchronizing on the same mutex that should be
@@ -262,12 +473,12 @@ public class OutgoingSessionPromise {
                             channel.process(packet);
                         } catch (Exception e) {
                             Log.debug("Error sending packet to domain '{}': {}", domainPair.getRemote(), packet, e);
-                            returnErrorToSender(packet);
+                            returnErrorToSender(domainPair, packet);
                         }
                     } else {
                         // A connection to the remote server failed. Return an error for all queued stanzas.
                         Log.trace("Bouncing queued stanza: {}", packet);
-                        returnErrorToSender(packet);
+                        returnErrorToSender(domainPair, packet);
                     }
                 }
 
@@ -302,92 +513,6 @@ public class OutgoingSessionPromise {
             }
         }
 
-        /**
-         * Processes stanzas that could not be delivered to a remote domain, by generating error responses where
-         * appropriate.
-         *
-         * @param packet The stanza that could not be delivered.
-         */
-        private void returnErrorToSender(@Nonnull final Packet packet) {
-            XMPPServer server = XMPPServer.getInstance();
-            JID from = packet.getFrom();
-            JID to = packet.getTo();
-            if (!server.isLocal(from) && !XMPPServer.getInstance().matchesComponent(from) &&
-                    !server.isLocal(to) && !XMPPServer.getInstance().matchesComponent(to)) {
-                // Do nothing since the sender and receiver of the packet that failed to reach a remote
-                // server are not local users. This prevents endless loops if the FROM or TO address
-                // are non-existent addresses
-                return;
-            }
-
-            final Set<Packet> replies = new HashSet<>();
-
-            // TODO Send correct error condition: timeout or not_found depending on the real error
-            try {
-                if (packet instanceof IQ) {
-                    if (((IQ) packet).isRequest()) {
-                        IQ reply = new IQ();
-                        reply.setID(packet.getID());
-                        reply.setTo(from);
-                        reply.setFrom(to);
-                        reply.setChildElement(((IQ) packet).getChildElement().createCopy());
-                        reply.setError(PacketError.Condition.remote_server_not_found);
-                        replies.add( reply );
-                    }
-                }
-                else if (packet instanceof Presence) {
-                    // workaround for OF-23. "undo" the 'setFrom' to a bare JID 
-                    // by sending the error to all available resources.
-                    final List<JID> routes = new ArrayList<>();
-                    if (from.getResource() == null || from.getResource().trim().length() == 0) {
-                        routes.addAll(routingTable.getRoutes(from, null));
-                    } else {
-                        routes.add(from);
-                    }
-                    
-                    for (JID route : routes) {
-                        Presence reply = new Presence();
-                        reply.setID(packet.getID());
-                        reply.setTo(route);
-                        reply.setFrom(to);
-                        reply.setError(PacketError.Condition.remote_server_not_found);
-
-                        replies.add( reply );
-                    }
-                }
-                else if (packet instanceof Message) {
-                    Message reply = new Message();
-                    reply.setID(packet.getID());
-                    reply.setTo(from);
-                    reply.setFrom(to);
-                    reply.setType(((Message)packet).getType());
-                    reply.setThread(((Message)packet).getThread());
-                    reply.setError(PacketError.Condition.remote_server_not_found);
-
-                    replies.add( reply );
-                }
-            }
-            catch (Exception e)
-            {
-                Log.warn( "An exception occurred while trying to generate a remote-server-not-found error (for domain '{}') to the original sender. Original packet: {}", domainPair.getRemote(), packet, e );
-            }
-
-            // Send all replies.
-            for ( final Packet reply : replies )
-            {
-                TaskEngine.getInstance().submit(() -> {
-                    try
-                    {
-                        XMPPServer.getInstance().getPacketRouter().route( reply );
-                    }
-                    catch (Exception e)
-                    {
-                        Log.warn( "An exception occurred while trying to returning a remote-server-not-found error (for domain '{}') to the original sender. Original packet: {}", domainPair.getRemote(), packet, e );
-                    }
-                });
-            }
-        }
-
         void addPacket( @Nonnull final Packet packet )
         {
             if (!packet.getFrom().getDomain().equals(domainPair.getLocal())) {
@@ -404,7 +529,7 @@ public class OutgoingSessionPromise {
             if (!packetQueue.offer(packet.createCopy()))
             {
                 Log.debug("Error sending packet in the outgoing session promise for {}. (outbound queue full): {}", domainPair, packet);
-                returnErrorToSender(packet);
+                returnErrorToSender(domainPair, packet);
             }
         }
 
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.server;
+
+import org.dom4j.Element;
+import org.jivesoftware.openfire.session.DomainPair;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Packet;
+import org.xmpp.packet.Presence;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A queue of stanzas that are waiting for an outgoing server session to a remote domain to be established.
+ *
+ * The queue is bounded both by the number of stanzas and by their (approximate) size. Within those bounds:
+ * <ul>
+ *     <li>IQ responses (results and errors) are dequeued before all other stanzas, as the entity that is waiting
+ *     for them typically is blocked until they are received.</li>
+ *     <li>Presence updates replace an older, undelivered presence update that is queued for the same sender and
+ *     recipient, as only the latest presence state is relevant to the recipient.</li>
+ * </ul>
+ *
+ * Instances of this class are thread safe.
+ */
+public class OutgoingStanzaQueue
+{
+    @Nonnull
+    private final DomainPair domainPair;
+
+    private final int maxStanzas;
+
+    private final long maxBytes;
+
+    private final boolean prioritizeIQResponses;
+
+    private final boolean supersedePresences;
+
+    @Nonnull
+    private final LongSupplier clock;
+
+    private final Deque<Entry> priorityLane = new ArrayDeque<>();
+
+    private final Deque<Entry> regularLane = new ArrayDeque<>();
+
+    /**
+     * Queued presence updates that can be superseded by a newer update, keyed by sender and recipient.
+     */
+    private final Map<Map.Entry<JID, JID>, Entry> supersedablePresences = new HashMap<>();
+
+    private int stanzaCount;
+
+    private long byteSize;
+
+    private long enqueuedCount;
+
+    private long rejectedCount;
+
+    private long supersededCount;
+
+    public OutgoingStanzaQueue(@Nonnull final DomainPair domainPair, final int maxStanzas, final long maxBytes, final boolean prioritizeIQResponses, final boolean supersedePresences)
+    {
+        this(domainPair, maxStanzas, maxBytes, prioritizeIQResponses, supersedePresences, System::currentTimeMillis);
+    }
+
+    // Package protected to be able to unit test this class.
+    OutgoingStanzaQueue(@Nonnull final DomainPair domainPair, final int maxStanzas, final long maxBytes, final boolean prioritizeIQResponses, final boolean supersedePresences, @Nonnull final LongSupplier clock)
+    {
+        this.domainPair = domainPair;
+        this.maxStanzas = maxStanzas;
+        this.maxBytes = maxBytes;
+        this.prioritizeIQResponses = prioritizeIQResponses;
+        this.supersedePresences = supersedePresences;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a stanza to the queue.
+     *
+     * The stanza is not queued when that would cause the queue to exceed its bounds. A presence update that
+     * supersedes a queued presence update does not count against those bounds for the size of the update that it
+     * replaces.
+     *
+     * @param packet the stanza to queue. The queue does not make a defensive copy.
+     * @return true if the stanza was queued, false if the queue is full.
+     */
+    public synchronized boolean offer(@Nonnull final Packet packet)
+    {
+        final int size = packet.toXML().length();
+        final Map.Entry<JID, JID> presenceKey = supersedePresences ? getSupersedableKey(packet) : null;
+        final Entry superseded = presenceKey == null ? null : supersedablePresences.get(presenceKey);
+
+        final int newStanzaCount = stanzaCount + 1 - (superseded == null ? 0 : 1);
+        final long newByteSize = byteSize + size - (superseded == null ? 0 : superseded.size);
+        if (newStanzaCount > maxStanzas || (maxBytes > 0 && newByteSize > maxBytes)) {
+            rejectedCount++;
+            return false;
+        }
+
+        if (superseded != null) {
+            superseded.superseded = true;
+            supersededCount++;
+        }
+
+        final Entry entry = new Entry(packet, size, clock.getAsLong());
+        if (prioritizeIQResponses && packet instanceof IQ && (((IQ) packet).isResponse())) {
+            priorityLane.add(entry);
+        } else {
+            regularLane.add(entry);
+        }
+        if (presenceKey != null) {
+            supersedablePresences.put(presenceKey, entry);
+        }
+        stanzaCount = newStanzaCount;
+        byteSize = newByteSize;
+        enqueuedCount++;
+        return true;
+    }
+
+    /**
+     * Removes the next stanza to be delivered from the queue.
+     *
+     * @return the next stanza, or null when the queue is empty.
+     */
+    @Nullable
+    public synchronized Packet poll()
+    {
+        Entry entry;
+        do {
+            entry = priorityLane.poll();
+            if (entry == null) {
+                entry = regularLane.poll();
+            }
+        } while (entry != null && entry.superseded);
+
+        if (entry == null) {
+            return null;
+        }
+
+        final Map.Entry<JID, JID> presenceKey = supersedePresences ? getSupersedableKey(entry.packet) : null;
+        if (presenceKey != null) {
+            supersedablePresences.remove(presenceKey, entry);
+        }
+        stanzaCount--;
+        byteSize -= entry.size;
+        return entry.packet;
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return stanzaCount == 0;
+    }
+
+    @Nonnull
+    public DomainPair getDomainPair()
+    {
+        return domainPair;
+    }
+
+    /**
+     * @return the number of stanzas that are currently queued.
+     */
+    public synchronized int getStanzaCount()
+    {
+        return stanzaCount;
+    }
+
+    /**
+     * @return the approximate size (in characters) of the stanzas that are currently queued.
+     */
+    public synchronized long getByteSize()
+    {
+        return byteSize;
+    }
+
+    /**
+     * @return the number of stanzas that were queued since this queue was created.
+     */
+    public synchronized long getEnqueuedCount()
+    {
+        return enqueuedCount;
+    }
+
+    /**
+     * @return the number of stanzas that were not queued because the queue was full.
+     */
+    public synchronized long getRejectedCount()
+    {
+        return rejectedCount;
+    }
+
+    /**
+     * @return the number of presence updates that were dropped, because they were superseded by a newer update.
+     */
+    public synchronized long getSupersededCount()
+    {
+        return supersededCount;
+    }
+
+    /**
+     * @return the duration that the stanza that has been queued the longest has been waiting for delivery, or Duration.ZERO when the queue is empty.
+     */
+    @Nonnull
+    public synchronized Duration getOldestStanzaAge()
+    {
+        final long oldest = Math.min(getOldestEnqueuedAt(priorityLane), getOldestEnqueuedAt(regularLane));
+        return oldest == Long.MAX_VALUE ? Duration.ZERO : Duration.ofMillis(Math.max(0, clock.getAsLong() - oldest));
+    }
+
+    private static long getOldestEnqueuedAt(@Nonnull final Deque<Entry> lane)
+    {
+        for (final Entry entry : lane) {
+            if (!entry.superseded) {
+                return entry.enqueuedAt;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns a key that identifies presence updates that are superseded by a newer update that has the same key.
+     *
+     * Only broadcast-style presence updates (available and unavailable presence) are eligible. Presence that is used
+     * to join a multi-user chat room is excluded, as replacing it would prevent the user from joining the room.
+     *
+     * @param packet the stanza for which to return a key.
+     * @return a key, or null if the stanza cannot be superseded.
+     */
+    @Nullable
+    static Map.Entry<JID, JID> getSupersedableKey(@Nonnull final Packet packet)
+    {
+        if (!(packet instanceof Presence)) {
+            return null;
+        }
+        final Presence presence = (Presence) packet;
+        if (presence.getType() != null && presence.getType() != Presence.Type.unavailable) {
+            return null;
+        }
+        for (final Element child : presence.getElement().elements()) {
+            if ("x".equals(child.getName()) && "http://jabber.org/protocol/muc".equals(child.getNamespaceURI())) {
+                return null;
+            }
+        }
+        if (presence.getFrom() == null || presence.getTo() == null) {
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(presence.getFrom(), presence.getTo());
+    }
+
+    private static class Entry
+    {
+        final Packet packet;
+        final int size;
+        final long enqueuedAt;
+        boolean superseded;
+
+        Entry(final Packet packet, final int size, final long enqueuedAt)
+        {
+            this.packet = packet;
+            this.size = size;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -22,9 +22,9 @@ import org.jivesoftware.openfire.*;
 import org.jivesoftware.openfire.auth.AuthFactory;
 import org.jivesoftware.openfire.event.ServerSessionEventDispatcher;
 import org.jivesoftware.openfire.net.*;
+import org.jivesoftware.openfire.nio.NettyDialbackVerifier;
 import org.jivesoftware.openfire.session.*;
 import org.jivesoftware.openfire.spi.BasicStreamIDFactory;
-import org.jivesoftware.openfire.spi.ConnectionType;
 import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.StreamErrorException;
 import org.jivesoftware.util.StringUtils;
@@ -34,19 +34,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 import org.xmpp.packet.JID;
 import org.xmpp.packet.PacketError;
 import org.xmpp.packet.StreamError;
 
-import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLHandshakeException;
 import java.io.*;
-import java.net.Socket;
-import java.net.SocketAddress;
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -90,15 +84,7 @@ public class ServerDialback {
      */
     private static Cache<String, String> secretKeyCache;
 
-    private static XmlPullParserFactory FACTORY = null;
-
     static {
-        try {
-            FACTORY = XmlPullParserFactory.newInstance(MXParser.class.getName(), null);
-        }
-        catch (XmlPullParserException e) {
-            Log.error("Error creating a parser factory", e);
-        }
         secretKeyCache = CacheFactory.createCache("Secret Keys Cache");
     }
 
@@ -160,7 +146,7 @@ public class ServerDialback {
      * session used for receiving packets from the remote server. Use
      * {@link #validateRemoteDomain(org.dom4j.Element, org.jivesoftware.openfire.StreamID)} for
      * validating subsequent domains and use
-     * {@link #authenticateDomain(OutgoingServerSocketReader, String)} for
+     * {@link #createAndSendDialbackKey(String)} for
      * registering new domains that are allowed to send packets to the remote server.<p>
      *
      * For validating domains a new TCP connection will be established to the Authoritative Server.
@@ -183,118 +169,6 @@ public class ServerDialback {
         this.domainPair = domainPair;
     }
 
-    /**
-     * Creates a new connection for the domain pair, where the local domain acts as the Originating Server and the
-     * remote domain as the Receiving Server.
-     *
-     * @param port port of the Receiving Server.
-     * @return an OutgoingServerSession if the domain was authenticated or {@code null} if none.
-     */
-    public LocalOutgoingServerSession createOutgoingSession(int port) {
-        final Logger log = LoggerFactory.getLogger( Log.getName() + "[Acting as Originating Server: Create Outgoing Session from: " + domainPair.getLocal() + " to a RS in the domain of: " + domainPair.getRemote() + " (port: " + port+ ")]" );
-
-        log.debug( "Creating new outgoing session..." );
-
-        if (!ServerDialback.isEnabled() && !ServerDialback.isEnabledForSelfSigned()) {
-            log.info("Unable to create new outgoing session: Dialback has been disabled by configuration.");
-            return null;
-        }
-
-        String hostname = null;
-        int realPort = port;
-        try {
-            // Establish a TCP connection to the Receiving Server
-            final Map.Entry<Socket, Boolean> socketToXmppDomain = SocketUtil.createSocketToXmppDomain(domainPair.getRemote(), port );
-            if ( socketToXmppDomain  == null ) {
-                log.info( "Unable to create new outgoing session: Cannot create a plain socket connection with any applicable remote host." );
-                return null;
-            }
-
-            final Socket socket = socketToXmppDomain.getKey();
-            final boolean directTLS = socketToXmppDomain.getValue();
-            connection = new SocketConnection(XMPPServer.getInstance().getPacketDeliverer(), socket, false);
-            if (directTLS) {
-                connection.startTLS( false, directTLS );
-            }
-
-            log.debug( "Send the stream header and wait for response..." );
-            final Element stream = DocumentHelper.createElement(QName.get("stream", "stream", "http://etherx.jabber.org/streams"));
-            final Document document = DocumentHelper.createDocument(stream);
-            document.setXMLEncoding(StandardCharsets.UTF_8.toString());
-            stream.add(Namespace.get("", "jabber:server"));
-            stream.add(Namespace.get("db", "jabber:server:dialback"));
-            stream.addAttribute("to", domainPair.getRemote());
-            stream.addAttribute("from", domainPair.getLocal());
-
-            connection.deliverRawText(StringUtils.asUnclosedStream(document));
-
-            // Set a read timeout (of 5 seconds) so we don't keep waiting forever
-            int soTimeout = socket.getSoTimeout();
-            socket.setSoTimeout(RemoteServerManager.getSocketTimeout());
-
-            XMPPPacketReader reader = new XMPPPacketReader();
-            reader.setXPPFactory(FACTORY);
-
-            final InputStream input;
-            if (directTLS) {
-                input = ((SocketConnection)connection).getTLSStreamHandler().getInputStream();
-            } else {
-                input = socket.getInputStream();
-            }
-            reader.getXPPParser().setInput(new InputStreamReader(
-                    ServerTrafficCounter.wrapInputStream(input), CHARSET));
-            // Get the answer from the Receiving Server
-            XmlPullParser xpp = reader.getXPPParser();
-            for (int eventType = xpp.getEventType(); eventType != XmlPullParser.START_TAG;) {
-                eventType = xpp.next();
-            }
-            log.debug( "Got a response. Check if the remote server supports dialback..." );
-
-            if ("jabber:server:dialback".equals(xpp.getNamespace("db"))) {
-                log.debug( "Dialback seems to be supported by the remote server." );
-
-                // Restore default timeout
-                socket.setSoTimeout(soTimeout);
-                String id = xpp.getAttributeValue("", "id");
-                OutgoingServerSocketReader socketReader = new OutgoingServerSocketReader(reader);
-                if (authenticateDomain(socketReader, id)) {
-                    log.debug( "Successfully authenticated the connection with dialback." );
-                    // Domain was validated so create a new OutgoingServerSession
-                    StreamID streamID = BasicStreamIDFactory.createStreamID(id);
-                    LocalOutgoingServerSession session = new LocalOutgoingServerSession(domainPair.getLocal(), connection, socketReader, streamID);
-                    connection.init(session);
-                    session.setAuthenticationMethod(ServerSession.AuthenticationMethod.DIALBACK);
-                    // Set the remote domain as the address of the session.
-                    session.setAddress(new JID(null, domainPair.getRemote(), null));
-                    log.debug( "Successfully created new outgoing session!" );
-                    return session;
-                }
-                else {
-                    log.debug( "Failed to authenticate the connection with dialback." );
-                    // Close the connection
-                    connection.close();
-                }
-            }
-            else {
-                log.debug("Error! Invalid namespace in packet: '{}'. Closing connection.", xpp.getText() );
-                // Send an invalid-namespace stream error condition in the response
-                connection.deliverRawText(
-                        new StreamError(StreamError.Condition.invalid_namespace).toXML());
-                // Close the connection
-                connection.close();
-            }
-        }
-        catch (Exception e) {
-            log.error( "An exception occurred while creating outgoing session to remote server: ", e );
-            // Close the connection
-            if (connection != null) {
-                connection.close();
-            }
-        }
-        log.warn( "Unable to create a new outgoing session" );
-        return null;
-    }
-
     /**
      * Create a dialback key and send to receiving server
      *
@@ -305,65 +179,6 @@ public class ServerDialback {
         sendDialbackKey(key);
     }
 
-    /**
-     * Authenticates the Originating Server domain with the Receiving Server. Once the domain has
-     * been authenticated the Receiving Server will start accepting packets from the Originating
-     * Server.<p>
-     *
-     * The Receiving Server will connect to the Authoritative Server to verify the dialback key.
-     * Most probably the Originating Server machine will be the Authoritative Server too.
-     *
-     * @param socketReader the reader to use for reading the answer from the Receiving Server.
-     * @param id the stream id to be used for creating the dialback key.
-     * @return true if the Receiving Server authenticated the domain with the Authoritative Server.
-     */
-    public boolean authenticateDomain(OutgoingServerSocketReader socketReader, String id) {
-
-        final Logger log = LoggerFactory.getLogger( Log.getName() + "[Acting as Originating Server: Authenticate domain: " + domainPair.getLocal() + " with a RS in the domain of: " + domainPair.getRemote() + " (id: " + id + ")]" );
-
-        log.debug( "Authenticating domain ..." );
-
-        if (!ServerDialback.isEnabled() && !ServerDialback.isEnabledForSelfSigned()) {
-            log.info("Failed to authenticate domain: Dialback has been disabled by configuration.");
-            return false;
-        }
-
-        String key = AuthFactory.createDigest( id, getSecretkey() );
-
-        synchronized (socketReader) {
-            log.debug( "Sending dialback key and wait for the validation response..." );
-            sendDialbackKey(key);
-
-            // Process the answer from the Receiving Server
-            try {
-                while (socketReader.isOpen()) {
-                    Element doc = socketReader.getElement(RemoteServerManager.getSocketTimeout(), TimeUnit.MILLISECONDS);
-                    if (doc == null) {
-                        log.debug( "Failed to authenticate domain: Time out waiting for validation response." );
-                        return false;
-                    }
-                    else if ("db".equals(doc.getNamespacePrefix()) && "result".equals(doc.getName())) {
-                        if ( "valid".equals(doc.attributeValue("type")) ) {
-                            log.debug( "Authenticated succeeded!" );
-                            return true;
-                        } else {
-                            log.debug( "Failed to authenticate domain: the validation response was received, but did not grant authentication." );
-                            return false;
-                        }
-                    }
-                    else {
-                        log.warn( "Ignoring unexpected answer while waiting for dialback validation: " + doc.asXML() );
-                    }
-                }
-            }
-            catch (InterruptedException e) {
-                log.debug( "Failed to authenticate domain: An interrupt was received while waiting for validation response (is Openfire shutting down?)" );
-                return false;
-            }
-            return false;
-        }
-    }
-
     /**
      * Sends the supplied dialback key to receiving server
      *
@@ -509,7 +324,10 @@ public class ServerDialback {
      * some other machine in the Originating Server's network.<p>
      *
      * If the domain was not valid or some error occurred while validating the domain then the
-     * underlying TCP connection may be closed.
+     * underlying TCP connection may be closed.<p>
+     *
+     * This method blocks the calling thread until validation has completed. Use
+     * {@link #validateRemoteDomainAsync(Element, StreamID)} to avoid that.
      *
      * @param doc the request for validating the new domain.
      * @param streamID the stream id generated by this server for the Originating Server.
@@ -517,131 +335,153 @@ public class ServerDialback {
      */
     public void validateRemoteDomain(Element doc, StreamID streamID) throws StreamErrorException, ServerDialbackErrorException, ServerDialbackKeyInvalidException
     {
-        StringBuilder sb;
-        String recipient = doc.attributeValue("to");
-        String remoteDomain = doc.attributeValue("from");
+        final String recipient = doc.attributeValue("to");
+        final String remoteDomain = doc.attributeValue("from");
+        try {
+            validateRemoteDomainAsync(doc, streamID).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.remote_server_timeout, PacketError.Type.cancel, "Interrupted while waiting for the Authoritative server."), e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof StreamErrorException) {
+                throw (StreamErrorException) cause;
+            } else if (cause instanceof ServerDialbackErrorException) {
+                throw (ServerDialbackErrorException) cause;
+            } else if (cause instanceof ServerDialbackKeyInvalidException) {
+                throw (ServerDialbackKeyInvalidException) cause;
+            }
+            throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.remote_server_timeout, PacketError.Type.cancel, "Authoritative server failed"), cause);
+        }
+    }
+
+    /**
+     * Validates the domain requested by the remote server with the Authoritative Server, without blocking the calling
+     * thread. To validate the domain a new TCP connection will be established to the Authoritative Server (see
+     * {@link NettyDialbackVerifier}).<p>
+     *
+     * The returned future is completed normally when the domain was validated. It is completed exceptionally with
+     * a {@link StreamErrorException}, {@link ServerDialbackErrorException} or {@link ServerDialbackKeyInvalidException}
+     * when validation did not succeed.
+     *
+     * @param doc the request for validating the new domain.
+     * @param streamID the stream id generated by this server for the Originating Server.
+     * @return a future that is completed when validation has finished.
+     */
+    public CompletableFuture<Void> validateRemoteDomainAsync(Element doc, StreamID streamID)
+    {
+        final String recipient = doc.attributeValue("to");
+        final String remoteDomain = doc.attributeValue("from");
 
         final Logger log = LoggerFactory.getLogger( Log.getName() + "[Acting as Receiving Server: Validate domain: " + recipient + "(id " + streamID + ") for OS: " + remoteDomain + "]" );
 
         log.debug( "Validating domain...");
 
+        final CompletableFuture<Void> result = new CompletableFuture<>();
         if (!ServerDialback.isEnabled() && !ServerDialback.isEnabledForSelfSigned()) {
-            throw new StreamErrorException(new StreamError(StreamError.Condition.policy_violation, "Dialback has been disabled by configuration."));
+            result.completeExceptionally(new StreamErrorException(new StreamError(StreamError.Condition.policy_violation, "Dialback has been disabled by configuration.")));
+            return result;
         }
 
         if (connection.getConfiguration().getTlsPolicy() == Connection.TLSPolicy.required && !connection.isEncrypted()) {
-            throw new StreamErrorException(new StreamError(StreamError.Condition.policy_violation, "Local server configuration dictates that Server Dialback can be negotiated only after the connection has been encrypted."));
+            result.completeExceptionally(new StreamErrorException(new StreamError(StreamError.Condition.policy_violation, "Local server configuration dictates that Server Dialback can be negotiated only after the connection has been encrypted.")));
+            return result;
         }
 
         if (!RemoteServerManager.canAccess(remoteDomain)) {
-            throw new StreamErrorException(new StreamError(StreamError.Condition.policy_violation, "Remote domain is not allowed to establish a connection to this server."));
+            result.completeExceptionally(new StreamErrorException(new StreamError(StreamError.Condition.policy_violation, "Remote domain is not allowed to establish a connection to this server.")));
+            return result;
         }
         else if (isHostUnknown(recipient)) {
-            throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.item_not_found, PacketError.Type.cancel, "Service not hosted here"));
+            result.completeExceptionally(new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.item_not_found, PacketError.Type.cancel, "Service not hosted here")));
+            return result;
         }
-        else {
-            log.debug( "Check if the remote domain already has a connection to the target domain/subdomain" );
-            boolean alreadyExists = false;
-            for (IncomingServerSession session : sessionManager.getIncomingServerSessions(remoteDomain)) {
-                if (recipient.equals(session.getLocalDomain())) {
-                    alreadyExists = true;
-                }
-            }
-            if (alreadyExists && !sessionManager.isMultipleServerConnectionsAllowed()) {
-                throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.resource_constraint, PacketError.Type.cancel, "Incoming session already exists"));
-            }
-            else {
-                log.debug( "Checking to see if the remote server provides stronger authentication based on SASL. If that's the case, dialback-based authentication can be skipped." );
-                if (SASLAuthentication.verifyCertificates(connection.getPeerCertificates(), remoteDomain, true)) {
-                    log.debug( "Host authenticated based on SASL. Weaker dialback-based authentication is skipped." );
-                    log.debug( "Domain validated successfully!" );
-                    return;
-                }
 
-                log.debug( "Unable to authenticate host based on stronger SASL. Proceeding with dialback..." );
+        log.debug( "Check if the remote domain already has a connection to the target domain/subdomain" );
+        boolean alreadyExists = false;
+        for (IncomingServerSession session : sessionManager.getIncomingServerSessions(remoteDomain)) {
+            if (recipient.equals(session.getLocalDomain())) {
+                alreadyExists = true;
+            }
+        }
+        if (alreadyExists && !sessionManager.isMultipleServerConnectionsAllowed()) {
+            result.completeExceptionally(new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.resource_constraint, PacketError.Type.cancel, "Incoming session already exists")));
+            return result;
+        }
 
-                String key = doc.getTextTrim();
+        log.debug( "Checking to see if the remote server provides stronger authentication based on SASL. If that's the case, dialback-based authentication can be skipped." );
+        if (SASLAuthentication.verifyCertificates(connection.getPeerCertificates(), remoteDomain, true)) {
+            log.debug( "Host authenticated based on SASL. Weaker dialback-based authentication is skipped." );
+            log.debug( "Domain validated successfully!" );
+            result.complete(null);
+            return result;
+        }
 
-                final Map.Entry<Socket, Boolean> socketToXmppDomain = SocketUtil.createSocketToXmppDomain( remoteDomain, RemoteServerManager.getPortForServer(remoteDomain) );
+        log.debug( "Unable to authenticate host based on stronger SASL. Proceeding with dialback..." );
 
-                if ( socketToXmppDomain == null )
-                {
-                    throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.remote_server_not_found, PacketError.Type.cancel, "No server available for verifying key of remote server."));
+        final String key = doc.getTextTrim();
+        new NettyDialbackVerifier(recipient, remoteDomain, streamID, key).verify(RemoteServerManager.getPortForServer(remoteDomain))
+            .whenComplete((answer, t) -> {
+                if (t != null) {
+                    result.completeExceptionally(new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.remote_server_not_found, PacketError.Type.cancel, "No server available for verifying key of remote server."), t));
+                    return;
                 }
 
-                Socket socket = socketToXmppDomain.getKey();
-                boolean directTLS = socketToXmppDomain.getValue();
+                switch (evaluateVerifyResult(answer, streamID, remoteDomain, log)) {
+                    case valid:
+                        log.debug( "Successfully validated domain!" );
+                        result.complete(null);
+                        break;
 
-                VerifyResult result;
-                try {
-                    log.debug( "Verifying dialback key..." );
-                    final SocketAddress socketAddress = socket.getRemoteSocketAddress();
-                    log.debug( "Opening a new connection to {} {}.", socketAddress, directTLS ? "using directTLS" : "that is initially not encrypted" );
-                    try {
-                        result = verifyKey( key, streamID, recipient, remoteDomain, socket, directTLS, directTLS );
-                    }
-                    catch (SSLHandshakeException e)
-                    {
-                        result = VerifyResult.error;
-                        log.debug( "Verification of dialback key failed due to TLS failure.", e );
-
-                        // The receiving entity is expected to close the socket *without* sending any more data (<failure/> nor </stream>).
-                        // It is probably (see OF-794) best if we, as the initiating entity, therefor don't send any data either.
-                        final SocketAddress oldAddress = socket.getRemoteSocketAddress();
-                        socket.close();
-
-                        if ( !directTLS )
-                        {
-                            log.debug( "Retry without StartTLS... Re-opening socket (with the same remote peer)..." );
-
-                            // Retry, without TLS.
-                            socket = new Socket();
-                            socket.connect( oldAddress, RemoteServerManager.getSocketTimeout() );
-                            log.debug( "Successfully re-opened socket! Try to validate dialback key again (without TLS this time)..." );
-
-                            result = verifyKey( key, streamID, recipient, remoteDomain, socket, true, directTLS );
-                        }
-                    } catch ( SSLException ex ) {
-                        if ( JiveGlobals.getBooleanProperty(ConnectionSettings.Server.TLS_ON_PLAIN_DETECTION_ALLOW_NONDIRECTTLS_FALLBACK, true) && ex.getMessage().contains( "plaintext connection?" ) ) {
-                            Log.warn( "Plaintext detected on a new connection that is was started in DirectTLS mode (socket address: {}). Attempting to restart the connection in non-DirectTLS mode.", socketAddress );
-                            try {
-                                // Close old socket
-                                socket.close();
-                            } catch ( Exception e ) {
-                                Log.debug( "An exception occurred (and is ignored) while trying to close a socket that was already in an error state.", e );
-                            }
-                            socket = new Socket();
-                            socket.connect( socketAddress, RemoteServerManager.getSocketTimeout() );
-                            result = verifyKey( key, streamID, recipient, remoteDomain, socket, false, false );
-                            directTLS = false; // No error this time? directTLS apparently is 'false'. Change it's value for future usage (if any)
-                            Log.info( "Re-established connection to {}. Proceeding without directTLS.", socketAddress );
-                        } else {
-                            // Do not retry as non-DirectTLS, rethrow the exception.
-                            throw ex;
-                        }
-                    }
+                    case invalid:
+                        result.completeExceptionally(new ServerDialbackKeyInvalidException(recipient, remoteDomain));
+                        break;
 
-                    switch(result) {
-                        case valid:
-                            log.debug( "Successfully validated domain!" );
-                            return;
-
-                        case invalid:
-                            throw new ServerDialbackKeyInvalidException(recipient, remoteDomain);
-
-                        default:
-                            break;
-                    }
-                    throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError( PacketError.Condition.remote_server_timeout, PacketError.Type.cancel, "Key verification did not complete (the Authoritative Server likely returned an error or a time out occurred)."));
+                    default:
+                        result.completeExceptionally(new ServerDialbackErrorException(recipient, remoteDomain, new PacketError( PacketError.Condition.remote_server_timeout, PacketError.Type.cancel, "Key verification did not complete (the Authoritative Server likely returned an error or a time out occurred).")));
+                        break;
                 }
-                catch (ServerDialbackKeyInvalidException | ServerDialbackErrorException e) {
-                    throw e;
-                }
-                catch (Exception e) {
-                    throw new ServerDialbackErrorException(recipient, remoteDomain, new PacketError(PacketError.Condition.remote_server_timeout, PacketError.Type.cancel, "Authoritative server failed"), e);
-                }
-            }
+            });
+        return result;
+    }
+
+    /**
+     * Interprets the answer of the Authoritative Server to a request for verification of a key.
+     *
+     * @param answer the 'db:verify' element received from the Authoritative Server, or null if no answer was received.
+     * @param streamID the stream id generated by this server for the Originating Server.
+     * @param remoteDomain the domain of the Authoritative Server.
+     * @param log the logger to use.
+     * @return the result of the verification.
+     */
+    private VerifyResult evaluateVerifyResult(Element answer, StreamID streamID, String remoteDomain, Logger log)
+    {
+        if (answer == null) {
+            log.debug( "Unable to verify key: An error occurred." );
+            return VerifyResult.error;
+        }
+        if (answer.attributeValue("id") == null || !streamID.equals(BasicStreamIDFactory.createStreamID( answer.attributeValue("id") ))) {
+            log.debug( "Unable to verify key: the Authoritative Server answered using an invalid ID." );
+            return VerifyResult.error;
+        }
+        if (isHostUnknown( answer.attributeValue( "to" ) )) {
+            log.debug( "Unable to verify key: the Authoritative Server answered for an unknown host." );
+            return VerifyResult.error;
+        }
+        if (!remoteDomain.equals(answer.attributeValue("from"))) {
+            log.debug( "Unable to verify key: the Authoritative Server answered from an invalid address." );
+            return VerifyResult.error;
+        }
+        if ("valid".equals(answer.attributeValue("type"))) {
+            log.debug( "Key was VERIFIED by the Authoritative Server." );
+            return VerifyResult.valid;
         }
+        if ("invalid".equals(answer.attributeValue("type"))) {
+            log.debug( "Key was NOT VERIFIED by the Authoritative Server." );
+            return VerifyResult.invalid;
+        }
+        log.debug( "Key was ERRORED by the Authoritative Server." );
+        return VerifyResult.error;
     }
 
     private boolean isHostUnknown(String recipient) {
@@ -659,227 +499,6 @@ public class ServerDialback {
         return host_unknown;
     }
 
-    private VerifyResult sendVerifyKey(String key, StreamID streamID, String recipient, String remoteDomain, Writer writer, XMPPPacketReader reader, Socket socket, boolean skipTLS, boolean directTLS) throws IOException, XmlPullParserException, RemoteConnectionFailedException {
-        final Logger log = LoggerFactory.getLogger( Log.getName() + "[Acting as Receiving Server: Verify key with AS: " + remoteDomain + " for OS: " + recipient + " (id " + streamID + ")]" );
-
-        VerifyResult result = VerifyResult.error;
-
-        final ConnectionManager connectionManager = XMPPServer.getInstance().getConnectionManager();
-        final TLSStreamHandler tlsStreamHandler = new TLSStreamHandler( socket, connectionManager.getListener( ConnectionType.SOCKET_S2S, directTLS ).generateConnectionConfiguration(), true );
-
-        if ( directTLS ) {
-            // Start handshake
-            log.debug( "Starting Direct TLS handshake." );
-            tlsStreamHandler.start();
-
-            // Use new wrapped writers
-            writer = new BufferedWriter( new OutputStreamWriter( tlsStreamHandler.getOutputStream(), StandardCharsets.UTF_8 ) );
-            reader.getXPPParser().setInput( new InputStreamReader( tlsStreamHandler.getInputStream(), StandardCharsets.UTF_8 ) );
-        }
-
-        log.debug( "Send the Authoritative Server a stream header and wait for answer." );
-        final Element stream = DocumentHelper.createElement(QName.get("stream", "stream", "http://etherx.jabber.org/streams"));
-        final Document document = DocumentHelper.createDocument(stream);
-        document.setXMLEncoding(StandardCharsets.UTF_8.toString());
-        stream.add(Namespace.get("", "jabber:server"));
-        stream.add(Namespace.get("db", "jabber:server:dialback"));
-        stream.addAttribute("to", remoteDomain);
-        stream.addAttribute("from", recipient);
-        stream.addAttribute("version", "1.0");
-
-        final String docTxt = document.asXML(); // Strip closing element.
-        final String withoutClosing = docTxt.substring(0, docTxt.lastIndexOf("</stream:stream>"));
-
-        writer.write(withoutClosing);
-        writer.flush();
-
-        // Get the answer from the Authoritative Server
-        XmlPullParser xpp = reader.getXPPParser();
-        for (int eventType = xpp.getEventType(); eventType != XmlPullParser.START_TAG;) {
-            eventType = xpp.next();
-        }
-
-        log.debug( "Got a response." ); // TODO there's code duplication here with LocalOutgoingServerSession.
-        if ((xpp.getAttributeValue("", "version") != null) && (xpp.getAttributeValue("", "version").equals("1.0"))) {
-            log.debug( "The remote server is XMPP 1.0 compliant (or at least reports to be).");
-            Document doc;
-            try {
-                doc = reader.parseDocument();
-            } catch (DocumentException e) {
-                log.warn("Unable to verify key: XML Error!", e);
-                // Close the stream
-                writer.write("</stream:stream>");
-                writer.flush();
-                return VerifyResult.error;
-            }
-            Element features = doc.getRootElement();
-            Element starttls = features.element("starttls");
-            if (!directTLS && !skipTLS && starttls != null) {
-                writer.write("<starttls xmlns='urn:ietf:params:xml:ns:xmpp-tls'/>");
-                writer.flush();
-                try {
-                    doc = reader.parseDocument();
-                } catch (DocumentException e) {
-                    log.warn("Unable to verify key: XML Error!", e);
-                    // Close the stream
-                    writer.write("</stream:stream>");
-                    writer.flush();
-                    return VerifyResult.error;
-                }
-                if (!doc.getRootElement().getName().equals("proceed")) {
-                    log.warn("Unable to verify key: Got {} instead of proceed for starttls", doc.getRootElement().getName());
-                    log.debug("Like this: {}", doc.asXML());
-                    // Close the stream
-                    writer.write("</stream:stream>");
-                    writer.flush();
-                    return VerifyResult.error;
-                }
-
-                log.debug( "Negotiating StartTLS with AS... " );
-                // Start handshake
-                tlsStreamHandler.start();
-                // Use new wrapped writers
-                writer = new BufferedWriter( new OutputStreamWriter( tlsStreamHandler.getOutputStream(), StandardCharsets.UTF_8 ) );
-                reader.getXPPParser().setInput( new InputStreamReader( tlsStreamHandler.getInputStream(), StandardCharsets.UTF_8 ) );
-                log.debug( "Successfully negotiated StartTLS with AS... " );
-                /// Recurses!
-                return sendVerifyKey( key, streamID, recipient, remoteDomain, writer, reader, socket, skipTLS, directTLS );
-            }
-        }
-        if ("jabber:server:dialback".equals(xpp.getNamespace("db"))) {
-            log.debug("Request for verification of the key and wait for response");
-            final Element verify = DocumentHelper.createElement(QName.get("verify", "db", "jabber:server:dialback"));
-            document.getRootElement().add(verify);
-
-            verify.addAttribute("from", recipient);
-            verify.addAttribute("to", remoteDomain);
-            verify.addAttribute("id", streamID.getID());
-            verify.addText(key);
-
-            writer.write(verify.asXML());
-            writer.flush();
-
-            try {
-                Element doc = reader.parseDocument().getRootElement();
-                if ("db".equals(doc.getNamespacePrefix()) && "verify".equals(doc.getName())) {
-                    if (doc.attributeValue("id") == null || !streamID.equals(BasicStreamIDFactory.createStreamID( doc.attributeValue("id") ))) {
-                        // Include the invalid-id stream error condition in the response
-                        writer.write(new StreamError(StreamError.Condition.invalid_id).toXML());
-                        writer.write("</stream:stream>");
-                        writer.flush();
-                        // Thrown an error so <remote-connection-failed/> stream error
-                        // condition is sent to the Originating Server
-                        throw new RemoteConnectionFailedException("Invalid ID");
-                    }
-                    else if (isHostUnknown( doc.attributeValue( "to" ) )) {
-                        // Include the host-unknown stream error condition in the response
-                        writer.write(new StreamError(StreamError.Condition.host_unknown).toXML());
-                        writer.write("</stream:stream>");
-                        writer.flush();
-                        // Thrown an error so <remote-connection-failed/> stream error
-                        // condition is sent to the Originating Server
-                        throw new RemoteConnectionFailedException("Host unknown");
-                    }
-                    else if (!remoteDomain.equals(doc.attributeValue("from"))) {
-                        // Include the invalid-from stream error condition in the response
-                        writer.write(new StreamError(StreamError.Condition.invalid_from).toXML());
-                        writer.write("</stream:stream>");
-                        writer.flush();
-                        // Thrown an error so <remote-connection-failed/> stream error
-                        // condition is sent to the Originating Server
-                        throw new RemoteConnectionFailedException("Invalid From");
-                    }
-                    else if ("valid".equals(doc.attributeValue("type"))){
-                        log.debug("Key was VERIFIED by the Authoritative Server.");
-                        result = VerifyResult.valid;
-                    }
-                    else if ("invalid".equals(doc.attributeValue("type"))){
-                        log.debug("Key was NOT VERIFIED by the Authoritative Server.");
-                        result = VerifyResult.invalid;
-                    }
-                    else {
-                        log.debug("Key was ERRORED by the Authoritative Server.");
-                        result = VerifyResult.error;
-                    }
-                }
-                else {
-                    log.debug("db:verify answer was: " + doc.asXML());
-                }
-            }
-            catch (DocumentException | RuntimeException e) {
-                log.error("An error occurred while connecting to the Authoritative Server: ", e);
-                // Thrown an error so <remote-connection-failed/> stream error condition is
-                // sent to the Originating Server
-                writer.write("</stream:stream>");
-                writer.flush();
-                throw new RemoteConnectionFailedException("Error connecting to the Authoritative Server");
-            }
-
-        }
-        else {
-            // Include the invalid-namespace stream error condition in the response
-            writer.write(new StreamError(StreamError.Condition.invalid_namespace).toXML());
-            writer.write("</stream:stream>");
-            writer.flush();
-            // Thrown an error so <remote-connection-failed/> stream error condition is
-            // sent to the Originating Server
-            throw new RemoteConnectionFailedException("Invalid namespace");
-        }
-        writer.write("</stream:stream>");
-        writer.flush();
-        return result;
-    }
-
-    /**
-     * Verifies the key with the Authoritative Server.
-     */
-    private VerifyResult verifyKey(String key, StreamID streamID, String recipient, String remoteDomain, Socket socket, boolean skipTLS, boolean directTLS ) throws IOException, XmlPullParserException, RemoteConnectionFailedException {
-
-        final Logger log = LoggerFactory.getLogger( Log.getName() + "[Acting as Receiving Server: Verify key with AS: " + remoteDomain + " for OS: " + recipient + " (id " + streamID + ")]" );
-
-        log.debug( "Verifying key ..." );
-        XMPPPacketReader reader;
-        Writer writer = null;
-        // Set a read timeout
-        socket.setSoTimeout(RemoteServerManager.getSocketTimeout());
-        VerifyResult result = VerifyResult.error;
-        try {
-            reader = new XMPPPacketReader();
-            reader.setXPPFactory(FACTORY);
-
-            reader.getXPPParser().setInput(new InputStreamReader(socket.getInputStream(), CHARSET));
-            // Get a writer for sending the open stream tag
-            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), CHARSET));
-            result = sendVerifyKey(key, streamID, recipient, remoteDomain, writer, reader, socket, skipTLS, directTLS );
-        }
-        finally {
-            try {
-                // Close the TCP connection
-                socket.close();
-            }
-            catch (IOException ioe) {
-                // Do nothing
-            }
-        }
-
-        switch ( result ) {
-            case valid:
-                log.debug( "Successfully verified key!" );
-                break;
-
-            case invalid:
-                log.debug( "Unable to verify key: AS reports that the key is invalid." );
-                break;
-
-            default:
-            case decline:
-            case error:
-                log.debug( "Unable to verify key: An error occurred." );
-                break;
-        }
-        return result;
-    }
-
     /**
      * Verifies the key sent by a Receiving Server. This server will be acting as the
      * Authoritative Server when executing this method. The remote server may have established
@@ -43,6 +43,8 @@ import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 /**
@@ -252,65 +254,92 @@ public class LocalIncomingServerSession extends LocalServerSession implements In
      * the underlying TCP connection will be closed.<p>
      *
      * For optimization reasons, the same session may be servicing several domains of a
-     * remote server.
+     * remote server.<p>
+     *
+     * This method blocks the calling thread until validation has completed. Use
+     * {@link #validateSubsequentDomainAsync(Element)} to avoid that.
      *
      * @param dbResult the DOM stanza requesting the domain validation.
      * @return true if the requested domain was valid.
      */
     public boolean validateSubsequentDomain(Element dbResult) {
+        return validateSubsequentDomainAsync(dbResult).join();
+    }
+
+    /**
+     * Validates the request of a new domain, without blocking the calling thread. Sessions may receive subsequent
+     * domain validation request. The outcome of the validation is reported to the remote server. If the validation of
+     * the new domain fails then the underlying TCP connection may be closed.
+     *
+     * @param dbResult the DOM stanza requesting the domain validation.
+     * @return a future that is completed with true if the requested domain was valid, otherwise false.
+     */
+    public CompletableFuture<Boolean> validateSubsequentDomainAsync(Element dbResult) {
         final DomainPair domainPair = new DomainPair(getServerName(), fromDomain);
         ServerDialback method = new ServerDialback(getConnection(), domainPair);
-        try {
-            method.validateRemoteDomain(dbResult, getStreamID());
-
-            final String recipient = dbResult.attributeValue("to");
-            final String remoteDomain = dbResult.attributeValue("from");
-
-            // Add the validated domain as a valid domain. Do this before notifying the remote domain of success! (OF-2626)
-            setAuthenticationMethod(AuthenticationMethod.DIALBACK);
-            addValidatedDomain(remoteDomain);
-
-            // Report success to the peer.
-            final Namespace ns = Namespace.get("db", "jabber:server:dialback");
-            final Document outbound = DocumentHelper.createDocument();
-            final Element root = outbound.addElement("root");
-            root.add(ns);
-            final Element result = root.addElement(QName.get("result", ns));
-            result.addAttribute("from", recipient);
-            result.addAttribute("to", remoteDomain);
-            result.addAttribute("type", "valid");
-
-            // The namespace was already defined in a parent element that was sent earlier. Strip it from the XML.
-            final String send = result.asXML().replaceAll(ns.asXML(), "").replace("  "," ");
-            getConnection().deliverRawText(send);
-
-            return true;
-        } catch (StreamErrorException e) {
-            Log.info("Unable to validate domain '{}' (full stack trace is logged on debug level): {}", fromDomain, e.getStreamError().getText());
-            Log.debug("Unable to validate domain '{}'", fromDomain, e);
-            getConnection().deliverRawText(e.getStreamError().toXML());
-
-            // Close the underlying connection
-            getConnection().close();
-        } catch (ServerDialbackErrorException e) {
-            Log.debug( "Unable to validate domain '{}': (full stack trace is logged on debug level): {}", fromDomain, e.getError().getText());
-            Log.debug("Unable to validate domain '{}'", fromDomain, e);
-
-            // The namespace was already defined in a parent element that was sent earlier. Strip it from the XML.
-            final Namespace ns = Namespace.get("db", "jabber:server:dialback");
-            final String send = e.toXML().asXML().replaceAll(ns.asXML(), "").replace("  "," ");
-            getConnection().deliverRawText(send);
-        } catch (ServerDialbackKeyInvalidException e) {
-            Log.debug( "Dialback key is invalid. Sending verification result to remote domain." );
-
-            // The namespace was already defined in a parent element that was sent earlier. Strip it from the XML.
-            final Namespace ns = Namespace.get("db", "jabber:server:dialback");
-            final String send = e.toXML().asXML().replaceAll(ns.asXML(), "").replace("  "," ");
-            getConnection().deliverRawText(send);
-            Log.debug( "Close the underlying connection as key verification failed." );
-            getConnection().close();
-        }
-        return false;
+        return method.validateRemoteDomainAsync(dbResult, getStreamID()).handle((ignored, t) -> {
+            if (t == null) {
+                final String recipient = dbResult.attributeValue("to");
+                final String remoteDomain = dbResult.attributeValue("from");
+
+                // Add the validated domain as a valid domain. Do this before notifying the remote domain of success! (OF-2626)
+                // A session that was authenticated using SASL EXTERNAL retains that method when domains are piggybacked.
+                if (getAuthenticationMethod() == null) {
+                    setAuthenticationMethod(AuthenticationMethod.DIALBACK);
+                }
+                addValidatedDomain(remoteDomain);
+
+                // Report success to the peer.
+                final Namespace ns = Namespace.get("db", "jabber:server:dialback");
+                final Document outbound = DocumentHelper.createDocument();
+                final Element root = outbound.addElement("root");
+                root.add(ns);
+                final Element result = root.addElement(QName.get("result", ns));
+                result.addAttribute("from", recipient);
+                result.addAttribute("to", remoteDomain);
+                result.addAttribute("type", "valid");
+
+                // The namespace was already defined in a parent element that was sent earlier. Strip it from the XML.
+                final String send = result.asXML().replaceAll(ns.asXML(), "").replace("  "," ");
+                getConnection().deliverRawText(send);
+
+                return true;
+            }
+
+            final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (cause instanceof StreamErrorException) {
+                final StreamErrorException e = (StreamErrorException) cause;
+                Log.info("Unable to validate domain '{}' (full stack trace is logged on debug level): {}", fromDomain, e.getStreamError().getText());
+                Log.debug("Unable to validate domain '{}'", fromDomain, e);
+                getConnection().deliverRawText(e.getStreamError().toXML());
+
+                // Close the underlying connection
+                getConnection().close();
+            } else if (cause instanceof ServerDialbackErrorException) {
+                final ServerDialbackErrorException e = (ServerDialbackErrorException) cause;
+                Log.debug( "Unable to validate domain '{}': (full stack trace is logged on debug level): {}", fromDomain, e.getError().getText());
+                Log.debug("Unable to validate domain '{}'", fromDomain, e);
+
+                // The namespace was already defined in a parent element that was sent earlier. Strip it from the XML.
+                final Namespace ns = Namespace.get("db", "jabber:server:dialback");
+                final String send = e.toXML().asXML().replaceAll(ns.asXML(), "").replace("  "," ");
+                getConnection().deliverRawText(send);
+            } else if (cause instanceof ServerDialbackKeyInvalidException) {
+                final ServerDialbackKeyInvalidException e = (ServerDialbackKeyInvalidException) cause;
+                Log.debug( "Dialback key is invalid. Sending verification result to remote domain." );
+
+                // The namespace was already defined in a parent element that was sent earlier. Strip it from the XML.
+                final Namespace ns = Namespace.get("db", "jabber:server:dialback");
+                final String send = e.toXML().asXML().replaceAll(ns.asXML(), "").replace("  "," ");
+                getConnection().deliverRawText(send);
+                Log.debug( "Close the underlying connection as key verification failed." );
+                getConnection().close();
+            } else {
+                Log.warn("An unexpected exception occurred while validating domain '{}'. Closing connection.", fromDomain, cause);
+                getConnection().close();
+            }
+            return false;
+        });
     }
 
     /**
@@ -436,7 +465,11 @@ public class LocalIncomingServerSession extends LocalServerSession implements In
             usingSelfSigned = CertificateManager.isSelfSignedCertificate((X509Certificate) chain[0]);
         }
         
-        if (usingSelfSigned && ServerDialback.isEnabledForSelfSigned() && validatedDomains.isEmpty()) {
+        // When connection sharing is enabled, also offer server dialback after authentication, allowing the peer to
+        // authenticate additional domains over this connection (piggybacking).
+        final boolean offerForMultiplexing = LocalOutgoingServerSession.MULTIPLEX_ENABLED.getValue() && ServerDialback.isEnabled() && !validatedDomains.isEmpty();
+
+        if ((usingSelfSigned && ServerDialback.isEnabledForSelfSigned() && validatedDomains.isEmpty()) || offerForMultiplexing) {
             final Element dialback = DocumentHelper.createElement(QName.get("dialback", "urn:xmpp:features:dialback"));
             dialback.addElement("errors");
             result.add(dialback);
@@ -22,8 +22,8 @@ import org.dom4j.Element;
 import org.jivesoftware.openfire.*;
 import org.jivesoftware.openfire.auth.UnauthorizedException;
 import org.jivesoftware.openfire.event.ServerSessionEventDispatcher;
+import org.jivesoftware.openfire.net.SASLAuthentication;
 import org.jivesoftware.openfire.nio.NettySessionInitializer;
-import org.jivesoftware.openfire.server.OutgoingServerSocketReader;
 import org.jivesoftware.openfire.server.RemoteServerManager;
 import org.jivesoftware.openfire.server.ServerDialback;
 import org.jivesoftware.openfire.spi.ConnectionConfiguration;
@@ -40,9 +40,15 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -83,8 +89,33 @@ public class LocalOutgoingServerSession extends LocalServerSession implements Ou
         .setDynamic(true)
         .build();
 
-    private OutgoingServerSocketReader socketReader;
-    private final Collection<DomainPair> outgoingDomainPairs = new HashSet<>();
+    /**
+     * Enables aggressive connection sharing: a new domain pair is authenticated over any existing outgoing session of
+     * which the TLS certificate of the peer covers the remote domain of the new domain pair, rather than only over
+     * sessions to the same remote domain or to domains hosted by the same peer that were authenticated using dialback.
+     * Incoming sessions that were authenticated using SASL EXTERNAL will offer dialback to peers, allowing them to do
+     * the same.
+     */
+    public static final SystemProperty<Boolean> MULTIPLEX_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.server.multiplex.enabled")
+        .setDefaultValue(false)
+        .setDynamic(true)
+        .build();
+
+    private final Collection<DomainPair> outgoingDomainPairs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether the peer offered the server dialback stream feature on the most recently opened stream of this session.
+     * When it did, additional domain pairs can be authenticated using dialback, even if the session itself was
+     * authenticated using SASL EXTERNAL.
+     */
+    private volatile boolean dialbackOffered = false;
+
+    /**
+     * Dialback results that are pending for domain pairs that are being added to this session (piggybacking), keyed
+     * by the domain pair.
+     */
+    private final Map<DomainPair, CompletableFuture<Boolean>> pendingDialbackResults = new ConcurrentHashMap<>();
 
     /**
      * Authenticates the local domain to the remote domain. Once authenticated the remote domain can be expected to
@@ -178,6 +209,17 @@ public class LocalOutgoingServerSession extends LocalServerSession implements Ou
                 if (session == null) {
                     log.debug( "There are no pre-existing session to other domains hosted on the remote domain." );
                 }
+
+                if (session == null && MULTIPLEX_ENABLED.getValue())
+                {
+                    log.debug( "Searching for pre-existing outgoing sessions to a peer that presented a certificate that covers the remote domain (if one exists, it will be re-used) ..." );
+                    session = findMultiplexableSession( sessionManager, domainPair );
+                    if (session == null) {
+                        log.debug( "There are no pre-existing sessions to a peer that presented a certificate that covers the remote domain." );
+                    } else {
+                        log.debug( "A pre-existing session to a peer that presented a certificate that covers the remote domain was found: {}", session );
+                    }
+                }
             }
 
             if ( session != null )
@@ -236,6 +278,62 @@ public class LocalOutgoingServerSession extends LocalServerSession implements Ou
         }
     }
 
+    /**
+     * Finds an outgoing session that can be used to authenticate a domain pair, because the TLS certificate of its
+     * peer covers the remote domain of that domain pair and the peer supports piggybacking of additional domain pairs
+     * using dialback.
+     *
+     * Sessions that are already authenticated for the local domain of the domain pair are preferred, as the peer is
+     * then not asked to accept a new local domain.
+     *
+     * @param sessionManager the session manager to search.
+     * @param domainPair the local and remote domain for which authentication is to be established.
+     * @return a session that can be re-used, or null.
+     */
+    static LocalOutgoingServerSession findMultiplexableSession(@Nonnull final SessionManager sessionManager, @Nonnull final DomainPair domainPair)
+    {
+        final Set<LocalOutgoingServerSession> candidates = new LinkedHashSet<>();
+        final Set<LocalOutgoingServerSession> otherCandidates = new LinkedHashSet<>();
+        for (final DomainPair existing : sessionManager.getOutgoingDomainPairs()) {
+            final OutgoingServerSession session = sessionManager.getOutgoingServerSession(existing);
+            if (session instanceof LocalOutgoingServerSession) {
+                (existing.getLocal().equals(domainPair.getLocal()) ? candidates : otherCandidates).add((LocalOutgoingServerSession) session);
+            }
+        }
+        candidates.addAll(otherCandidates);
+
+        for (final LocalOutgoingServerSession candidate : candidates) {
+            if (candidate.canMultiplex(domainPair.getRemote())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if this session can be used to authenticate a domain pair with a particular remote domain, because the
+     * peer presented a TLS certificate that covers that domain, and the peer allows additional domain pairs to be
+     * authenticated using dialback.
+     *
+     * @param remoteDomain the remote domain to check.
+     * @return true if this session can be used for the remote domain.
+     */
+    public boolean canMultiplex(@Nonnull final String remoteDomain)
+    {
+        if (isClosed() || conn == null || !conn.isEncrypted()) {
+            return false;
+        }
+        if (!isUsingServerDialback() && !dialbackOffered) {
+            return false;
+        }
+        try {
+            return SASLAuthentication.verifyCertificates(conn.getPeerCertificates(), remoteDomain, true);
+        } catch (final Exception e) {
+            Log.debug("Unable to verify if the certificate of the peer of session {} covers remote domain '{}'.", this, remoteDomain, e);
+            return false;
+        }
+    }
+
     /**
      * Establishes a new outgoing session to a remote domain. If the remote domain supports TLS and SASL then the new
      * outgoing connection will be encrypted with TLS and authenticated using SASL. However, if TLS or SASL is not
@@ -274,12 +372,6 @@ public class LocalOutgoingServerSession extends LocalServerSession implements Ou
         return listenerConfiguration.getTlsPolicy() != Connection.TLSPolicy.required;
     }
 
-    public LocalOutgoingServerSession(String localDomain, Connection connection, OutgoingServerSocketReader socketReader, StreamID streamID) {
-        super(localDomain, connection, streamID);
-        this.socketReader = socketReader;
-        socketReader.setSession(this);
-    }
-
     public LocalOutgoingServerSession(String localDomain, Connection connection, StreamID streamID) {
         super(localDomain, connection, streamID);
     }
@@ -309,21 +401,66 @@ public class LocalOutgoingServerSession extends LocalServerSession implements Ou
 
     @Override
     public boolean authenticateSubdomain(@Nonnull final DomainPair domainPair) {
-        if (!isUsingServerDialback()) {
+        if (!isUsingServerDialback() && !(MULTIPLEX_ENABLED.getValue() && dialbackOffered)) {
             /*
-             * We cannot do this reliably; but this code should be unreachable.
+             * We cannot do this reliably, as the peer did not indicate that it supports dialback on this stream.
              */
             return false;
         }
-        ServerDialback method = new ServerDialback(getConnection(), domainPair);
-        if (method.authenticateDomain(socketReader, getStreamID().getID())) {
-            // Add the validated domain as an authenticated domain
-            addOutgoingDomainPair(domainPair);
-            return true;
+        if (!ServerDialback.isEnabled() && !ServerDialback.isEnabledForSelfSigned()) {
+            Log.info("Failed to authenticate domain pair {}: Dialback has been disabled by configuration.", domainPair);
+            return false;
+        }
+
+        // The answer of the Receiving Server is delivered through processDialbackResult(Element), by the handler of this session's connection.
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        final CompletableFuture<Boolean> existing = pendingDialbackResults.putIfAbsent(domainPair, result);
+        final CompletableFuture<Boolean> pending = existing != null ? existing : result;
+        try {
+            if (existing == null) {
+                Log.debug("Sending dialback key for {} and wait for the validation response...", domainPair);
+                new ServerDialback(getConnection(), domainPair).createAndSendDialbackKey(getStreamID().getID());
+            }
+            if (pending.get(RemoteServerManager.getSocketTimeout(), TimeUnit.MILLISECONDS)) {
+                // Add the validated domain as an authenticated domain
+                addOutgoingDomainPair(domainPair);
+                return true;
+            }
+            Log.debug("Failed to authenticate domain pair {}: the validation response was received, but did not grant authentication.", domainPair);
+        } catch (TimeoutException e) {
+            Log.debug("Failed to authenticate domain pair {}: Time out waiting for validation response.", domainPair);
+        } catch (InterruptedException e) {
+            Log.debug("Failed to authenticate domain pair {}: An interrupt was received while waiting for validation response (is Openfire shutting down?)", domainPair);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.debug("Failed to authenticate domain pair {}.", domainPair, e);
+        } finally {
+            pendingDialbackResults.remove(domainPair, pending);
         }
         return false;
     }
 
+    /**
+     * Processes a 'db:result' element that was received from the Receiving Server in answer to a dialback key that was
+     * sent by {@link #authenticateSubdomain(DomainPair)}.
+     *
+     * @param dbResult the 'db:result' element received from the Receiving Server.
+     * @return true if the element was an answer to a pending request, otherwise false.
+     */
+    public boolean processDialbackResult(@Nonnull final Element dbResult) {
+        final String to = dbResult.attributeValue("to");
+        final String from = dbResult.attributeValue("from");
+        if (to == null || from == null) {
+            return false;
+        }
+        final CompletableFuture<Boolean> pending = pendingDialbackResults.get(new DomainPair(to, from));
+        if (pending == null) {
+            return false;
+        }
+        pending.complete("valid".equals(dbResult.attributeValue("type")));
+        return true;
+    }
+
     private void returnErrorToSenderAsync(Packet packet) {
         TaskEngine.getInstance().submit(() -> {
             final PacketRouter packetRouter = XMPPServer.getInstance().getPacketRouter();
@@ -379,6 +516,22 @@ public class LocalOutgoingServerSession extends LocalServerSession implements Ou
         });
     }
 
+    /**
+     * Registers whether the peer offered the server dialback stream feature on the most recently opened stream.
+     *
+     * @param dialbackOffered true if the peer offered dialback, otherwise false.
+     */
+    public void setDialbackOffered(final boolean dialbackOffered) {
+        this.dialbackOffered = dialbackOffered;
+    }
+
+    /**
+     * @return true if the peer offered the server dialback stream feature on the most recently opened stream.
+     */
+    public boolean isDialbackOffered() {
+        return dialbackOffered;
+    }
+
     @Override
     public List<Element> getAvailableStreamFeatures() {
         // Nothing special to add
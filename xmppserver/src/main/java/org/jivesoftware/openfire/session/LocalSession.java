@@ -24,6 +24,7 @@ import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.auth.UnauthorizedException;
 import org.jivesoftware.openfire.interceptor.InterceptorManager;
 import org.jivesoftware.openfire.interceptor.PacketRejectedException;
+import org.jivesoftware.openfire.nio.NettyConnection;
 import org.jivesoftware.openfire.streammanagement.StreamManager;
 import org.jivesoftware.util.LocaleUtils;
 import org.slf4j.Logger;
@@ -497,6 +498,16 @@ public abstract class LocalSession implements Session {
             .orElse(Boolean.FALSE);
     }
 
+    /**
+     * Returns the number of stanzas that were received on the connection of this session, but that have not yet been
+     * processed.
+     *
+     * @return the number of stanzas awaiting processing (zero if the session has no connection).
+     */
+    public int getInFlightStanzaCount() {
+        return conn instanceof NettyConnection ? ((NettyConnection) conn).getInFlightStanzaCount() : 0;
+    }
+
     @Override
     public Certificate[] getPeerCertificates() {
         return Optional.ofNullable(conn)
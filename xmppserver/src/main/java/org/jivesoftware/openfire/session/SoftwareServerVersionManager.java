@@ -17,12 +17,16 @@
 package org.jivesoftware.openfire.session;
 
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.event.ServerSessionEventListener;
 import org.jivesoftware.openfire.event.ServerSessionEventDispatcher;
 import org.xmpp.packet.IQ;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * A SoftwareServerVersionManager is the main responsible for sending query to remote entity and 
  * Obtain software information from the remote entity server using XEP-0092 .
@@ -35,6 +39,12 @@ public class SoftwareServerVersionManager extends BasicModule implements ServerS
         super("Software Server Version Manager");
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Registering the session listener does not affect other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
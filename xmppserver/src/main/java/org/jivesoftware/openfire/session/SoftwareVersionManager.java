@@ -18,6 +18,7 @@ package org.jivesoftware.openfire.session;
 
 import org.jivesoftware.openfire.SessionManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.event.SessionEventDispatcher;
 import org.jivesoftware.openfire.event.SessionEventListener;
 import org.jivesoftware.util.SystemProperty;
@@ -29,6 +30,8 @@ import org.xmpp.packet.JID;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Set;
 import java.util.TimerTask;
 
 /**
@@ -56,6 +59,12 @@ public class SoftwareVersionManager extends BasicModule implements SessionEventL
         super("Software Version Manager");
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Registering the session listener does not affect other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
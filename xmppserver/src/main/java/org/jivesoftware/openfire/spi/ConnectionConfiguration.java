@@ -32,6 +32,10 @@ public class ConnectionConfiguration
     private final Set<String> encryptionProtocols;
     private final Set<String> encryptionCipherSuites;
     private final Connection.CompressionPolicy compressionPolicy;
+    private final boolean tcpNoDelay;
+    private final boolean tcpQuickAck;
+    private final boolean edgeTriggered;
+    private final int acceptorCount;
 
     // derived
     private final IdentityStore identityStore;
@@ -55,12 +59,42 @@ public class ConnectionConfiguration
      * @param compressionPolicy the compression policy
      * @param strictCertificateValidation {@code true} to abort connections if certificate validation fails, otherwise {@code false}
      */
-    // TODO input validation
     public ConnectionConfiguration( ConnectionType type, boolean enabled, int maxThreadPoolSize, int maxBufferSize, Connection.ClientAuth clientAuth, InetAddress bindAddress, int port, Connection.TLSPolicy tlsPolicy, CertificateStoreConfiguration identityStoreConfiguration, CertificateStoreConfiguration trustStoreConfiguration, boolean acceptSelfSignedCertificates, boolean verifyCertificateValidity, Set<String> encryptionProtocols, Set<String> encryptionCipherSuites, Connection.CompressionPolicy compressionPolicy, boolean strictCertificateValidation )
+    {
+        this( type, enabled, maxThreadPoolSize, maxBufferSize, clientAuth, bindAddress, port, tlsPolicy, identityStoreConfiguration, trustStoreConfiguration, acceptSelfSignedCertificates, verifyCertificateValidity, encryptionProtocols, encryptionCipherSuites, compressionPolicy, strictCertificateValidation, true, false, true, 1 );
+    }
+
+    /**
+     * @param type the connection type
+     * @param enabled is the connection enabled or disabled
+     * @param maxThreadPoolSize The maximum number of threads that are to be used to processing network activity. Must be equal to or larger than one.
+     * @param maxBufferSize The maximum amount of bytes of the read buffer that I/O processor allocates per each read, or a non-positive value to configure no maximum.
+     * @param clientAuth specification if peers should be authenticated ('mutual authentication') (cannot be null).
+     * @param bindAddress The network address on which connections are accepted, or null when any local address can be used.
+     * @param port The TCP port number on which connections are accepted (must be a valid TCP port number).
+     * @param tlsPolicy The TLS policy that is applied to connections (cannot be null).
+     * @param identityStoreConfiguration the certificates the server identify as
+     * @param trustStoreConfiguration the certificates the server trusts
+     * @param acceptSelfSignedCertificates {@code true} to accept self-signed certificates, otherwise {@code false}
+     * @param verifyCertificateValidity {@code true} to accept self-signed certificates, otherwise {@code false}
+     * @param encryptionProtocols the set of protocols supported
+     * @param encryptionCipherSuites the set of ciphers supported
+     * @param compressionPolicy the compression policy
+     * @param strictCertificateValidation {@code true} to abort connections if certificate validation fails, otherwise {@code false}
+     * @param tcpNoDelay {@code true} to disable Nagle's algorithm on accepted connections, otherwise {@code false}
+     * @param tcpQuickAck {@code true} to enable TCP_QUICKACK on accepted connections (native transport only), otherwise {@code false}
+     * @param edgeTriggered {@code true} to use the native transport in edge-triggered mode, {@code false} for level-triggered mode.
+     * @param acceptorCount The number of server sockets that are bound to the port using SO_REUSEPORT (native transport only). Must be equal to or larger than one.
+     */
+    // TODO input validation
+    public ConnectionConfiguration( ConnectionType type, boolean enabled, int maxThreadPoolSize, int maxBufferSize, Connection.ClientAuth clientAuth, InetAddress bindAddress, int port, Connection.TLSPolicy tlsPolicy, CertificateStoreConfiguration identityStoreConfiguration, CertificateStoreConfiguration trustStoreConfiguration, boolean acceptSelfSignedCertificates, boolean verifyCertificateValidity, Set<String> encryptionProtocols, Set<String> encryptionCipherSuites, Connection.CompressionPolicy compressionPolicy, boolean strictCertificateValidation, boolean tcpNoDelay, boolean tcpQuickAck, boolean edgeTriggered, int acceptorCount )
     {
         if ( maxThreadPoolSize <= 0 ) {
             throw new IllegalArgumentException( "Argument 'maxThreadPoolSize' must be equal to or greater than one." );
         }
+        if ( acceptorCount <= 0 ) {
+            throw new IllegalArgumentException( "Argument 'acceptorCount' must be equal to or greater than one." );
+        }
         if ( clientAuth == null ) {
             throw new IllegalArgumentException( "Argument 'clientAuth' cannot be null." );
         }
@@ -81,6 +115,10 @@ public class ConnectionConfiguration
         this.encryptionCipherSuites = Collections.unmodifiableSet( encryptionCipherSuites );
         this.compressionPolicy = compressionPolicy;
         this.strictCertificateValidation = strictCertificateValidation;
+        this.tcpNoDelay = tcpNoDelay;
+        this.tcpQuickAck = tcpQuickAck;
+        this.edgeTriggered = edgeTriggered;
+        this.acceptorCount = acceptorCount;
 
         final CertificateStoreManager certificateStoreManager = XMPPServer.getInstance().getCertificateStoreManager();
         this.identityStore = certificateStoreManager.getIdentityStore( type );
@@ -214,4 +252,47 @@ public class ConnectionConfiguration
     public boolean isStrictCertificateValidation() {
         return strictCertificateValidation;
     }
+
+    /**
+     * A boolean that indicates if Nagle's algorithm is disabled (TCP_NODELAY) on connections.
+     *
+     * @return true when small packets are sent without delay, otherwise false.
+     */
+    public boolean isTcpNoDelay()
+    {
+        return tcpNoDelay;
+    }
+
+    /**
+     * A boolean that indicates if TCP_QUICKACK is enabled on connections. This option is applied only when the native
+     * transport is used.
+     *
+     * @return true when TCP_QUICKACK is enabled, otherwise false.
+     */
+    public boolean isTcpQuickAck()
+    {
+        return tcpQuickAck;
+    }
+
+    /**
+     * A boolean that indicates if the native transport is used in edge-triggered mode (as opposed to level-triggered
+     * mode). This option is applied only when the native transport is used.
+     *
+     * @return true for edge-triggered mode, false for level-triggered mode.
+     */
+    public boolean isEdgeTriggered()
+    {
+        return edgeTriggered;
+    }
+
+    /**
+     * The number of server sockets that are bound to the port, using SO_REUSEPORT. This option is applied only when
+     * the native transport is used.
+     *
+     * @return the number of server sockets (one or more).
+     */
+    public int getAcceptorCount()
+    {
+        return acceptorCount;
+    }
 }
@@ -20,6 +20,7 @@ import org.jivesoftware.openfire.ConnectionManager;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.keystore.CertificateStoreConfiguration;
 import org.jivesoftware.openfire.net.SocketConnection;
+import org.jivesoftware.openfire.nio.NettyTransport;
 import org.jivesoftware.util.JiveGlobals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -292,7 +293,11 @@ public class ConnectionListener
                 getEncryptionProtocols(),
                 getEncryptionCipherSuites(),
                 getCompressionPolicy(),
-                getStrictCertificateValidation()
+                getStrictCertificateValidation(),
+                JiveGlobals.getBooleanProperty( "xmpp.socket.tcp-nodelay", true ),
+                NettyTransport.TCP_QUICKACK.getValue(),
+                NettyTransport.EDGE_TRIGGERED.getValue(),
+                NettyTransport.ACCEPTORS.getValue()
         );
     }
 
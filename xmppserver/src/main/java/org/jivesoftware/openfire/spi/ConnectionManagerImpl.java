@@ -25,6 +25,7 @@ import org.jivesoftware.openfire.container.PluginManagerListener;
 import org.jivesoftware.openfire.http.HttpBindManager;
 import org.jivesoftware.openfire.keystore.CertificateStore;
 import org.jivesoftware.openfire.keystore.CertificateStoreManager;
+import org.jivesoftware.openfire.nio.NettyOutboundEventLoopGroup;
 import org.jivesoftware.openfire.session.ConnectionSettings;
 import org.jivesoftware.util.CertificateEventListener;
 import org.jivesoftware.util.CertificateManager;
@@ -351,6 +352,7 @@ public class ConnectionManagerImpl extends BasicModule implements ConnectionMana
         }
 
         NettyConnectionAcceptor.shutdownEventLoopGroups();
+        NettyOutboundEventLoopGroup.shutdown();
 
         // Stop the HTTP client listener.
         try
@@ -23,17 +23,21 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.jivesoftware.openfire.Connection;
 import org.jivesoftware.openfire.nio.NettyChannelHandlerFactory;
+import org.jivesoftware.openfire.nio.NettyProcessingExecutors;
+import org.jivesoftware.openfire.nio.NettyTransport;
 import org.jivesoftware.util.JiveGlobals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -43,13 +47,15 @@ import static org.jivesoftware.openfire.nio.NettySessionInitializer.GRACEFUL_SHU
 import static org.jivesoftware.openfire.nio.NettySessionInitializer.GRACEFUL_SHUTDOWN_TIMEOUT;
 
 /**
- * Responsible for accepting new (socket) connections, using Java NIO implementation provided by the Netty framework.
+ * Responsible for accepting new (socket) connections, using the Java NIO or native epoll implementation (see
+ * {@link NettyTransport}) provided by the Netty framework.
  *
  * @author Matthew Vivian
  * @author Alex Gidman
  */
 public class NettyConnectionAcceptor extends ConnectionAcceptor {
-    // NioEventLoopGroup is a multithreaded event loop that handles I/O operation.
+    // An EventLoopGroup is a multithreaded event loop that handles I/O operation. Its implementation depends on the
+    // transport that is used (see NettyTransport).
     // The first one, often called 'boss', accepts an incoming connection.
     // The second one, often called 'worker', handles the traffic of the accepted connection once the boss
     // accepts the connection and registers the accepted connection to the worker. How many Threads are
@@ -61,7 +67,7 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
      * <p>
      * The parent 'boss' accepts an incoming connection.
      */
-    private static final EventLoopGroup PARENT_GROUP = new NioEventLoopGroup();
+    private static final EventLoopGroup PARENT_GROUP = NettyTransport.getActive().newEventLoopGroup(0, null);
 
     /**
      * A multithreaded event loop that handles I/O operation
@@ -69,7 +75,7 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
      * The child 'worker', handles the traffic of the accepted connection once the parent accepts the connection
      * and registers the accepted connection to the worker.
      */
-    private static final EventLoopGroup CHILD_GROUP = new NioEventLoopGroup();
+    private static final EventLoopGroup CHILD_GROUP = NettyTransport.getActive().newEventLoopGroup(0, null);
 
     /**
      * A thread-safe Set containing all open Channels associated with this ConnectionAcceptor
@@ -80,7 +86,12 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
     private final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
     private final Logger Log;
-    private Channel mainChannel;
+
+    /**
+     * The channels that accept new connections. When SO_REUSEPORT is used, more than one channel is bound to the same
+     * address.
+     */
+    private final List<Channel> mainChannels = new ArrayList<>();
 
     /**
      * Additional {@link ChannelHandler}s that are to be added to the pipeline of Netty-based channels created by this
@@ -107,21 +118,22 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
         Log.debug("Running Netty on port: " + getPort());
 
         try {
+            final NettyTransport transport = NettyTransport.getActive();
+
             // ServerBootstrap is a helper class that sets up a server
             ServerBootstrap serverBootstrap = new ServerBootstrap();
             serverBootstrap.group(PARENT_GROUP, CHILD_GROUP)
                 // Instantiate a new Channel to accept incoming connections.
-                .channel(NioServerSocketChannel.class)
+                .channel(transport.getServerSocketChannelClass())
                 // The handler specified here will always be evaluated by a newly accepted Channel.
                 .childHandler(new NettyServerInitializer(configuration, allChannels, channelHandlerFactories))
                 // Set the listen backlog (queue) length.
                 .option(ChannelOption.SO_BACKLOG, JiveGlobals.getIntProperty("xmpp.socket.backlog", 50))
-                // option() is for the NioServerSocketChannel that accepts incoming connections.
-                // childOption() is for the Channels accepted by the parent ServerChannel,
-                // which is NioSocketChannel in this case.
+                // option() is for the ServerSocketChannel that accepts incoming connections.
+                // childOption() is for the Channels accepted by the parent ServerChannel.
                 .childOption(ChannelOption.SO_KEEPALIVE, true)
                 // Setting TCP_NODELAY to false enables the Nagle algorithm, which delays sending small successive packets
-                .childOption(ChannelOption.TCP_NODELAY, JiveGlobals.getBooleanProperty( "xmpp.socket.tcp-nodelay", true))
+                .childOption(ChannelOption.TCP_NODELAY, configuration.isTcpNoDelay())
                 // Set that it will be possible to bind a socket if there is a connection in the timeout state.
                 .childOption(ChannelOption.SO_REUSEADDR, true);
 
@@ -140,14 +152,30 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
                 serverBootstrap.childOption(ChannelOption.SO_LINGER, linger);
             }
 
+            int acceptorCount = 1;
+            if ( transport.isNative() ) {
+                final EpollMode mode = configuration.isEdgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+                serverBootstrap.option(EpollChannelOption.EPOLL_MODE, mode);
+                serverBootstrap.childOption(EpollChannelOption.EPOLL_MODE, mode);
+                serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, configuration.isTcpQuickAck());
+                if ( configuration.getAcceptorCount() > 1 ) {
+                    // SO_REUSEPORT allows more than one socket to be bound to the same address. The kernel distributes
+                    // incoming connections over those sockets, each of which is served by a different event loop.
+                    serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+                    acceptorCount = configuration.getAcceptorCount();
+                }
+            }
+
             // Bind to the port and start the server to accept incoming connections.
-            this.mainChannel = serverBootstrap.bind(
-                    new InetSocketAddress(
-                        configuration.getBindAddress(),
-                        configuration.getPort())
-                )
-                .sync()
-                .channel();
+            for ( int i = 0; i < acceptorCount; i++ ) {
+                this.mainChannels.add(serverBootstrap.bind(
+                        new InetSocketAddress(
+                            configuration.getBindAddress(),
+                            configuration.getPort())
+                    )
+                    .sync()
+                    .channel());
+            }
 
         } catch (InterruptedException e) {
             Log.error("Error starting: " + configuration.getPort(), e);
@@ -168,14 +196,16 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
      * Close the main channel (this is not synchronous and does not verify the channel has closed).
      */
     private void closeMainChannel() {
-        if (this.mainChannel != null) {
+        for (final Channel mainChannel : this.mainChannels) {
             Log.info("Closing channel " + mainChannel);
             mainChannel.close();
         }
+        this.mainChannels.clear();
     }
 
     /**
-     * Shuts down event loop groups if they are not already shutdown - this will close all channels.
+     * Shuts down event loop groups if they are not already shutdown - this will close all channels. The executors
+     * that process data received on channels are shut down too.
      */
     public static void shutdownEventLoopGroups() {
         if (!PARENT_GROUP.isShuttingDown()) {
@@ -184,6 +214,7 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
         if (!CHILD_GROUP.isShuttingDown()) {
             CHILD_GROUP.shutdownGracefully(GRACEFUL_SHUTDOWN_QUIET_PERIOD.getValue().toMillis(), GRACEFUL_SHUTDOWN_TIMEOUT.getValue().toMillis(), TimeUnit.MILLISECONDS);
         }
+        NettyProcessingExecutors.shutdown();
     }
 
     /**
@@ -194,7 +225,7 @@ public class NettyConnectionAcceptor extends ConnectionAcceptor {
      */
     @Override
     public synchronized boolean isIdle() {
-        return mainChannel.isOpen() && !mainChannel.isActive();
+        return !mainChannels.isEmpty() && mainChannels.stream().allMatch(mainChannel -> mainChannel.isOpen() && !mainChannel.isActive());
     }
 
     @Override
@@ -64,8 +64,14 @@ public class NettyServerInitializer extends ChannelInitializer<SocketChannel> {
             .addLast(new StringEncoder(StandardCharsets.UTF_8))
             .addLast("stalledSessionHandler", new WriteTimeoutHandler(Math.toIntExact(WRITE_TIMEOUT_SECONDS.getValue().getSeconds())))
             .addLast("idleStateHandler", new IdleStateHandler(maxIdleTimeBeforeClosing, maxIdleTimeBeforePinging, 0))
-            .addLast("keepAliveHandler", new NettyIdleStateKeepAliveHandler(isClientConnection))
-            .addLast(businessLogicHandler);
+            .addLast("keepAliveHandler", new NettyIdleStateKeepAliveHandler(isClientConnection));
+
+        if (isClientConnection) {
+            // Throttles the rate in which new client sessions are established (this is a no-op unless enabled by configuration).
+            ch.pipeline().addLast(NettyAdmissionHandler.ADMISSION_HANDLER_NAME, new NettyAdmissionHandler());
+        }
+
+        ch.pipeline().addLast(businessLogicHandler);
 
         // Add ChannelHandler providers implemented by plugins, if any.
         channelHandlerFactories.forEach(factory -> {
@@ -32,6 +32,7 @@ import org.jivesoftware.openfire.*;
 import org.jivesoftware.openfire.auth.UnauthorizedException;
 import org.jivesoftware.openfire.component.InternalComponentManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.event.UserEventDispatcher;
 import org.jivesoftware.openfire.event.UserEventListener;
 import org.jivesoftware.openfire.handler.PresenceUpdateHandler;
@@ -524,6 +525,12 @@ public class PresenceManagerImpl extends BasicModule implements PresenceManager,
         routingTable = server.getRoutingTable();
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Registering the user event listener does not depend on other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
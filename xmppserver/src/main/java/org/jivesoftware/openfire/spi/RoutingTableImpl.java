@@ -36,6 +36,7 @@ import org.jivesoftware.openfire.cluster.ClusteredCacheEntryListener;
 import org.jivesoftware.openfire.cluster.NodeID;
 import org.jivesoftware.openfire.component.ExternalComponentManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.forward.Forwarded;
 import org.jivesoftware.openfire.handler.PresenceUpdateHandler;
 import org.jivesoftware.openfire.server.OutgoingSessionPromise;
@@ -1197,6 +1198,12 @@ public class RoutingTableImpl extends BasicModule implements RoutingTable, Clust
         ClusterManager.addListener(this, 10);
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Starting the local routing table does not depend on other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
@@ -36,6 +36,7 @@ import org.dom4j.io.OutputFormat;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.cluster.ClusterManager;
 import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
 import org.jivesoftware.openfire.container.PluginManager;
 import org.jivesoftware.openfire.container.PluginMetadata;
 import org.jivesoftware.util.*;
@@ -136,6 +137,12 @@ public class UpdateManager extends BasicModule {
         ENABLED.addListener(this::enableService);
     }
 
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // The update checks run in the background, and do not affect other modules.
+        return Collections.emptySet();
+    }
+
     @Override
     public void start() throws IllegalStateException {
         super.start();
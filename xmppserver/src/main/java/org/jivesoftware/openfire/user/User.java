@@ -370,6 +370,28 @@ public class User implements Cacheable, Externalizable, Result {
         return new PropertiesMap();
     }
 
+    /**
+     * Returns true if the extended properties of the user have been loaded.
+     *
+     * @return true if the properties have been loaded.
+     */
+    synchronized boolean isPropertiesLoaded() {
+        return properties != null;
+    }
+
+    /**
+     * Sets the extended properties of the user, unless they have been loaded already. This is
+     * used by {@link UserManager#preloadProperties(Collection)} to populate the properties of
+     * many users at once.
+     *
+     * @param loaded the properties, as loaded by the user property provider.
+     */
+    synchronized void setPreloadedProperties(Map<String,String> loaded) {
+        if (properties == null) {
+            properties = loaded;
+        }
+    }
+
     /**
      * Returns the user's roster. A roster is a list of users that the user wishes to know
      * if they are online. Rosters are similar to buddy groups in popular IM clients.
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.user;
+
+import org.jivesoftware.openfire.SessionManager;
+import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.container.BasicModule;
+import org.jivesoftware.openfire.container.Module;
+import org.jivesoftware.openfire.event.SessionEventDispatcher;
+import org.jivesoftware.openfire.event.SessionEventListener;
+import org.jivesoftware.openfire.pep.IQPEPHandler;
+import org.jivesoftware.openfire.session.Session;
+import org.jivesoftware.openfire.vcard.VCardManager;
+import org.jivesoftware.util.SystemProperty;
+import org.jivesoftware.util.TaskEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xmpp.packet.JID;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimerTask;
+
+/**
+ * Loads the data that clients typically request right after logging in, before they request it.
+ *
+ * When enabled, the user's extended properties, vCard and Personal Eventing service (which holds the private data of
+ * XEP-0049, such as bookmarks) are loaded in the background when the first session of a user is created, so that the
+ * requests that a client sends after logging in are served from the caches that the corresponding managers already
+ * maintain, instead of each causing a separate query. The users that log in within {@link #LOGIN_PRELOAD_DELAY} are
+ * preloaded together, so that a burst of logins causes one query for the properties and one for the vCards of a batch
+ * of users, rather than queries for each user.
+ *
+ * The same data can be preloaded for many users at once by calling {@link #preload(Collection)}, which loads the
+ * properties and vCards of batches of users in one query each. Admin tools and plugins that iterate over many users
+ * should use it before doing so.
+ */
+public class UserDataPreloader extends BasicModule implements SessionEventListener {
+
+    private static final Logger Log = LoggerFactory.getLogger(UserDataPreloader.class);
+
+    /**
+     * Enables or disables loading data of users that log in.
+     */
+    public static final SystemProperty<Boolean> LOGIN_PRELOAD_ENABLED = SystemProperty.Builder.ofType(Boolean.class)
+        .setKey("xmpp.user.login-preload.enabled")
+        .setDefaultValue(false)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The duration during which users that log in are collected, before their data is loaded in one batch.
+     */
+    public static final SystemProperty<Duration> LOGIN_PRELOAD_DELAY = SystemProperty.Builder.ofType(Duration.class)
+        .setKey("xmpp.user.login-preload.delay")
+        .setDefaultValue(Duration.ofMillis(100))
+        .setMinValue(Duration.ZERO)
+        .setChronoUnit(ChronoUnit.MILLIS)
+        .setDynamic(true)
+        .build();
+
+    /**
+     * The usernames of the users that logged in, of which the data is yet to be loaded. Guarded by itself.
+     */
+    private final Set<String> pendingLogins = new LinkedHashSet<>();
+
+    /**
+     * Set when the data of the pending users is scheduled to be loaded. Guarded by {@link #pendingLogins}.
+     */
+    private boolean preloadScheduled;
+
+    public UserDataPreloader() {
+        super("User Data Preloader");
+    }
+
+    @Override
+    public Set<Class<? extends Module>> getStartDependencies() {
+        // Registering the session listener does not affect other modules.
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void start() throws IllegalStateException {
+        super.start();
+        SessionEventDispatcher.addListener(this);
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        SessionEventDispatcher.removeListener(this);
+    }
+
+    /**
+     * Loads the extended properties, vCards and Personal Eventing services of a number of local users. The properties
+     * and vCards of batches of users are loaded in one query each. Data that is cached already is not loaded again.
+     *
+     * @param usernames the usernames of the users.
+     */
+    public static void preload(@Nonnull final Collection<String> usernames) {
+        final Collection<String> unique = new LinkedHashSet<>(usernames);
+        final List<User> users = new ArrayList<>(unique.size());
+        for (final String username : unique) {
+            try {
+                users.add(UserManager.getInstance().getUser(username));
+            } catch (UserNotFoundException e) {
+                Log.trace("Not preloading the properties of '{}', as the user does not exist.", username);
+            }
+        }
+        UserManager.getInstance().preloadProperties(users);
+
+        final VCardManager vCardManager = VCardManager.getInstance();
+        if (vCardManager != null) {
+            vCardManager.preloadVCards(unique);
+        }
+
+        final IQPEPHandler pepHandler = XMPPServer.getInstance().getIQPEPHandler();
+        if (pepHandler != null && pepHandler.isEnabled()) {
+            for (final String username : unique) {
+                // Loads the service and puts it in the cache, without creating services for users that have none.
+                pepHandler.getServiceManager().getPEPService(XMPPServer.getInstance().createJID(username, null), false);
+            }
+        }
+    }
+
+    @Override
+    public void sessionCreated(final Session session) {
+        if (!LOGIN_PRELOAD_ENABLED.getValue()) {
+            return;
+        }
+        final JID address = session.getAddress();
+        if (address.getNode() == null || !XMPPServer.getInstance().isLocal(address)) {
+            return;
+        }
+        final String username = address.getNode();
+        if (SessionManager.getInstance().getSessionCount(username) > 1) {
+            // The data was loaded when the user logged in with another session.
+            return;
+        }
+
+        synchronized (pendingLogins) {
+            pendingLogins.add(username);
+            if (preloadScheduled) {
+                return;
+            }
+            preloadScheduled = true;
+        }
+        TaskEngine.getInstance().schedule(new TimerTask() {
+            @Override
+            public void run() {
+                preloadPendingLogins();
+            }
+        }, LOGIN_PRELOAD_DELAY.getValue());
+    }
+
+    /**
+     * Loads the data of all users that logged in since the previous invocation, in one batch.
+     */
+    private void preloadPendingLogins() {
+        final List<String> usernames;
+        synchronized (pendingLogins) {
+            usernames = new ArrayList<>(pendingLogins);
+            pendingLogins.clear();
+            preloadScheduled = false;
+        }
+        try {
+            preload(usernames);
+        } catch (Exception e) {
+            Log.warn("Unable to preload the data of {} user(s) that logged in.", usernames.size(), e);
+        }
+    }
+
+    @Override
+    public void sessionDestroyed(final Session session) {
+    }
+
+    @Override
+    public void anonymousSessionCreated(final Session session) {
+    }
+
+    @Override
+    public void anonymousSessionDestroyed(final Session session) {
+    }
+
+    @Override
+    public void resourceBound(final Session session) {
+    }
+}
@@ -287,6 +287,32 @@ public final class UserManager {
         return user;
     }
 
+    /**
+     * Loads the extended properties of a number of users at once, which is much more efficient
+     * than having {@link User#getProperties()} load them one user at a time, when iterating over
+     * many users. Users of which the properties have been loaded already are skipped.
+     *
+     * @param users the users of which to load the properties.
+     */
+    public void preloadProperties(final Collection<User> users) {
+        final Map<String, User> pending = new HashMap<>();
+        for (final User user : users) {
+            if (!user.isPropertiesLoaded()) {
+                pending.put(user.getUsername(), user);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        final Map<String, Map<String, String>> loaded = getUserPropertyProvider().loadProperties(pending.keySet());
+        for (final Map.Entry<String, Map<String, String>> entry : loaded.entrySet()) {
+            final User user = pending.get(entry.getKey());
+            if (user != null) {
+                user.setPreloadedProperties(entry.getValue());
+            }
+        }
+    }
+
     /**
      * Returns the User specified by jid node.
      *
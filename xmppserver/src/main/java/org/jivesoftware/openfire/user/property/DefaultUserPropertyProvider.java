@@ -24,6 +24,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -47,6 +52,7 @@ public class DefaultUserPropertyProvider implements UserPropertyProvider
     private static final Logger Log = LoggerFactory.getLogger( DefaultUserPropertyProvider.class );
 
     private static final String LOAD_PROPERTIES = "SELECT name, propValue FROM ofUserProp WHERE username=?";
+    private static final String LOAD_PROPERTIES_OF_USERS = "SELECT username, name, propValue FROM ofUserProp WHERE username IN ";
     private static final String LOAD_PROPERTY = "SELECT propValue FROM ofUserProp WHERE username=? AND name=?";
     private static final String DELETE_PROPERTY = "DELETE FROM ofUserProp WHERE username=? AND name=?";
     private static final String UPDATE_PROPERTY = "UPDATE ofUserProp SET propValue=? WHERE name=? AND username=?";
@@ -81,6 +87,71 @@ public class DefaultUserPropertyProvider implements UserPropertyProvider
         return properties;
     }
 
+    /**
+     * Retrieves all properties for a number of users, using one query for every {@link DbConnectionManager#IN_CLAUSE_BATCH_SIZE}
+     * users.
+     *
+     * @param usernames The identifiers of the users (cannot be null).
+     * @return The properties of each user, by username. Users that have no properties are included, with an empty map.
+     */
+    @Override
+    public Map<String, Map<String, String>> loadProperties( Collection<String> usernames )
+    {
+        final Map<String, Map<String, String>> result = new HashMap<>();
+        for ( final String username : usernames )
+        {
+            result.put( username, new ConcurrentHashMap<>() );
+        }
+        if ( result.isEmpty() )
+        {
+            return result;
+        }
+
+        final List<String> remaining = new ArrayList<>( result.keySet() );
+        Connection con = null;
+        try
+        {
+            con = DbConnectionManager.getConnection();
+            for ( int start = 0; start < remaining.size(); start += DbConnectionManager.IN_CLAUSE_BATCH_SIZE )
+            {
+                final List<String> batch = remaining.subList( start, Math.min( remaining.size(), start + DbConnectionManager.IN_CLAUSE_BATCH_SIZE ) );
+                PreparedStatement pstmt = null;
+                ResultSet rs = null;
+                try
+                {
+                    pstmt = con.prepareStatement( LOAD_PROPERTIES_OF_USERS + DbConnectionManager.getInClausePlaceholders( batch.size() ) );
+                    for ( int i = 0; i < batch.size(); i++ )
+                    {
+                        pstmt.setString( i + 1, batch.get( i ) );
+                    }
+                    rs = pstmt.executeQuery();
+                    while ( rs.next() )
+                    {
+                        final Map<String, String> properties = result.get( rs.getString( 1 ) );
+                        if ( properties != null )
+                        {
+                            properties.put( rs.getString( 2 ), rs.getString( 3 ) );
+                        }
+                    }
+                }
+                finally
+                {
+                    DbConnectionManager.closeStatement( rs, pstmt );
+                }
+            }
+        }
+        catch ( SQLException sqle )
+        {
+            Log.error( sqle.getMessage(), sqle );
+            return Collections.emptyMap();
+        }
+        finally
+        {
+            DbConnectionManager.closeConnection( con );
+        }
+        return result;
+    }
+
     @Override
     public String loadProperty( String username, String propertyName )
     {
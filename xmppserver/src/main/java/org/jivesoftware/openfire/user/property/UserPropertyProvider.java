@@ -18,6 +18,8 @@ package org.jivesoftware.openfire.user.property;
 import org.jivesoftware.openfire.user.User;
 import org.jivesoftware.openfire.user.UserNotFoundException;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -70,6 +72,34 @@ public interface UserPropertyProvider
      */
     String loadProperty( String username, String propName ) throws UserNotFoundException;
 
+    /**
+     * Retrieves all properties for a number of users.
+     *
+     * The default implementation loads the properties of each user individually. Implementations are encouraged to
+     * override this method with one that retrieves the properties of many users at once.
+     *
+     * Users that cannot be found are not included in the result.
+     *
+     * @param usernames The identifiers of the users (cannot be null).
+     * @return The properties of each user, by username. Never null.
+     */
+    default Map<String, Map<String, String>> loadProperties( Collection<String> usernames )
+    {
+        final Map<String, Map<String, String>> result = new HashMap<>();
+        for ( final String username : usernames )
+        {
+            try
+            {
+                result.put( username, loadProperties( username ) );
+            }
+            catch ( UserNotFoundException e )
+            {
+                // Users that cannot be found are not included in the result.
+            }
+        }
+        return result;
+    }
+
     /**
      * Adds a property for an user.
      *
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.vcard;
+
+import org.dom4j.Element;
+import org.jivesoftware.util.Base64;
+import org.jivesoftware.util.StringUtils;
+import org.jivesoftware.util.cache.CacheSizes;
+import org.jivesoftware.util.cache.Cacheable;
+import org.jivesoftware.util.cache.ExternalizableUtil;
+
+import javax.annotation.Nonnull;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A vCard as it is kept in the cache of {@link VCardManager}, together with values that are derived from it.
+ *
+ * The size of the vCard in the cache is determined once, when the vCard is cached, instead of by serializing it every
+ * time that the cache needs it. The hash of its photo is computed when it is first needed, and then retained.
+ *
+ * Instances are immutable. The element that is held must not be modified.
+ */
+public class CachedVCard implements Cacheable, Externalizable {
+
+    private Element element;
+    private int xmlLength;
+    private volatile String photoHash;
+
+    /**
+     * Constructor added for Externalizable. Do not use this constructor.
+     */
+    public CachedVCard() {
+    }
+
+    /**
+     * Creates a cache entry for a vCard. The element is not copied, and must not be modified afterwards.
+     *
+     * @param element the vCard.
+     */
+    public CachedVCard(@Nonnull final Element element) {
+        this.element = element;
+        this.xmlLength = element.asXML().length();
+    }
+
+    /**
+     * Calculates the hash of the photo in a vCard, as used in vCard-based avatar updates (XEP-0153).
+     *
+     * @param vCard the vCard.
+     * @return the hex-encoded SHA-1 hash of the binary value of the photo, or an empty string if the vCard does not
+     *         contain a (decodable) photo.
+     */
+    @Nonnull
+    public static String calculatePhotoHash(@Nonnull final Element vCard) {
+        final Element photo = vCard.element("PHOTO");
+        if (photo == null) {
+            return "";
+        }
+        final Element binval = photo.element("BINVAL");
+        if (binval == null) {
+            return "";
+        }
+        final byte[] bytes = Base64.decode(binval.getTextTrim());
+        if (bytes == null) {
+            return "";
+        }
+        // Not using StringUtils.hash(), as that shares one digest between all threads.
+        try {
+            return StringUtils.encodeHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM.", e);
+        }
+    }
+
+    /**
+     * @return the vCard, which must not be modified.
+     */
+    @Nonnull
+    public Element getElement() {
+        return element;
+    }
+
+    /**
+     * @return the hex-encoded SHA-1 hash of the photo in the vCard, or an empty string if it does not contain a photo.
+     */
+    @Nonnull
+    public String getPhotoHash() {
+        String result = photoHash;
+        if (result == null) {
+            // Concurrent callers may both calculate the hash, which is harmless.
+            result = calculatePhotoHash(element);
+            photoHash = result;
+        }
+        return result;
+    }
+
+    @Override
+    public int getCachedSize() {
+        // The element takes roughly twice the size of its serialized form.
+        int size = 0;
+        size += CacheSizes.sizeOfObject();
+        size += CacheSizes.sizeOfInt();
+        size += xmlLength * 2;
+        size += CacheSizes.sizeOfString(photoHash);
+        return size;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ExternalizableUtil.getInstance().writeXML(out, element);
+        ExternalizableUtil.getInstance().writeInt(out, xmlLength);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        element = ExternalizableUtil.getInstance().readXML(in);
+        xmlLength = ExternalizableUtil.getInstance().readInt(in);
+    }
+}
@@ -33,6 +33,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Default implementation of the VCardProvider interface, which reads and writes data
@@ -48,6 +54,8 @@ public class DefaultVCardProvider implements VCardProvider {
     
     private static final String LOAD_PROPERTIES =
         "SELECT vcard FROM ofVCard WHERE username=?";
+    private static final String LOAD_PROPERTIES_OF_USERS =
+        "SELECT username, vcard FROM ofVCard WHERE username IN ";
     private static final String DELETE_PROPERTIES =
         "DELETE FROM ofVCard WHERE username=?";
     private static final String UPDATE_PROPERTIES =
@@ -97,6 +105,67 @@ public class DefaultVCardProvider implements VCardProvider {
         }
     }
 
+    /**
+     * Loads the vCards of a number of users, using one query for every
+     * {@link DbConnectionManager#IN_CLAUSE_BATCH_SIZE} users.
+     *
+     * @param usernames the usernames.
+     * @return the vCards as DOM elements, by username.
+     */
+    @Override
+    public Map<String, Element> loadVCards(Collection<String> usernames) {
+        final Map<String, Element> result = new HashMap<>();
+        final List<String> remaining = new ArrayList<>(new LinkedHashSet<>(usernames));
+        if (remaining.isEmpty()) {
+            return result;
+        }
+        final boolean resize = JiveGlobals.getBooleanProperty( PhotoResizer.PROPERTY_RESIZE_ON_LOAD, PhotoResizer.PROPERTY_RESIZE_ON_LOAD_DEFAULT );
+        Connection con = null;
+        try {
+            con = DbConnectionManager.getConnection();
+            for (int start = 0; start < remaining.size(); start += DbConnectionManager.IN_CLAUSE_BATCH_SIZE) {
+                final List<String> batch = remaining.subList(start, Math.min(remaining.size(), start + DbConnectionManager.IN_CLAUSE_BATCH_SIZE));
+                PreparedStatement pstmt = null;
+                ResultSet rs = null;
+                try {
+                    pstmt = con.prepareStatement(LOAD_PROPERTIES_OF_USERS + DbConnectionManager.getInClausePlaceholders(batch.size()));
+                    for (int i = 0; i < batch.size(); i++) {
+                        pstmt.setString(i + 1, batch.get(i));
+                    }
+                    rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        final String username = rs.getString(1);
+                        try {
+                            final Element vCardElement = SAXReaderUtil.readRootElement(rs.getString(2));
+                            if (resize) {
+                                PhotoResizer.resizeAvatar(vCardElement);
+                            }
+                            result.put(username, vCardElement);
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            Log.error("Interrupted while loading vCards.", e);
+                            return result;
+                        }
+                        catch (Exception e) {
+                            Log.error("Error loading vCard of username: " + username, e);
+                        }
+                    }
+                }
+                finally {
+                    DbConnectionManager.closeStatement(rs, pstmt);
+                }
+            }
+        }
+        catch (SQLException e) {
+            Log.error("Error loading vCards of {} users", remaining.size(), e);
+        }
+        finally {
+            DbConnectionManager.closeConnection(con);
+        }
+        return result;
+    }
+
     @Override
     public Element createVCard(String username, Element vCardElement) throws AlreadyExistsException {
         if (loadVCard(username) != null) {
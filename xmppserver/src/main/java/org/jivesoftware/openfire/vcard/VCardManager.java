@@ -16,13 +16,16 @@
 
 package org.jivesoftware.openfire.vcard;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.dom4j.Element;
-import org.dom4j.tree.DefaultElement;
 import org.jivesoftware.openfire.XMPPServer;
 import org.jivesoftware.openfire.container.BasicModule;
 import org.jivesoftware.openfire.disco.ServerFeaturesProvider;
@@ -59,7 +62,8 @@ public class VCardManager extends BasicModule implements ServerFeaturesProvider
 
     private EventHandler eventHandler;
 
-    private Cache<String, DefaultElement> vcardCache;
+    private Cache<String, CachedVCard> vcardCache;
+
     public static VCardManager getInstance() {
         return instance;
     }
@@ -87,13 +91,13 @@ public class VCardManager extends BasicModule implements ServerFeaturesProvider
             @Override
             public void vCardCreated(String username, Element vCard) {
                 // Since the vCard could be created by the provider, add it to the cache.
-                vcardCache.put(username, (DefaultElement) vCard);
+                cacheIfChanged(username, vCard);
             }
 
             @Override
             public void vCardUpdated(String username, Element vCard) {
                 // Since the vCard could be updated by the provider, update it to the cache.
-                vcardCache.put(username, (DefaultElement) vCard);
+                cacheIfChanged(username, vCard);
             }
 
             @Override
@@ -171,13 +175,13 @@ public class VCardManager extends BasicModule implements ServerFeaturesProvider
             if (!oldVCard.equals(vCardElement)) {
                 try {
                     newvCard = provider.updateVCard(username, vCardElement);
-                    vcardCache.put(username, (DefaultElement) newvCard);
+                    vcardCache.put(username, new CachedVCard(newvCard));
                     updated = true;
                 }
                 catch (NotFoundException e) {
                     Log.warn("Tried to update a vCard that does not exist", e);
                     newvCard = provider.createVCard(username, vCardElement);
-                    vcardCache.put(username, (DefaultElement) newvCard);
+                    vcardCache.put(username, new CachedVCard(newvCard));
                     created = true;
                 }
             }
@@ -185,13 +189,13 @@ public class VCardManager extends BasicModule implements ServerFeaturesProvider
         else {
             try {
                 newvCard = provider.createVCard(username, vCardElement);
-                vcardCache.put(username, (DefaultElement) newvCard);
+                vcardCache.put(username, new CachedVCard(newvCard));
                 created = true;
             }
             catch (AlreadyExistsException e) {
                 Log.warn("Tried to create a vCard when one already exist", e);
                 newvCard = provider.updateVCard(username, vCardElement);
-                vcardCache.put(username, (DefaultElement) newvCard);
+                vcardCache.put(username, new CachedVCard(newvCard));
                 updated = true;
             }
         }
@@ -239,15 +243,108 @@ public class VCardManager extends BasicModule implements ServerFeaturesProvider
         return vCardElement == null ? null : vCardElement.createCopy();
     }
 
+    /**
+     * Returns the cached vCard of a given user or null if none was defined before. Unlike
+     * {@link #getVCard(String)}, this does not create a copy of the vCard. The returned
+     * element is shared and <b>must not be modified</b>: callers that need to modify it, or
+     * add it to a stanza, must create a copy.
+     *
+     * @param username Username (not full JID) whose vCard to retrieve.
+     * @return the shared vCard of a given user.
+     */
+    public Element getVCardReadOnly(String username) {
+        return getOrLoadVCard(username);
+    }
+
+    /**
+     * Returns the hash of the photo in the vCard of a given user, as used in vCard-based
+     * avatar updates (XEP-0153). The hash is computed when it is first requested, and then
+     * retained for as long as the vCard is cached.
+     *
+     * @param username Username (not full JID) whose avatar hash to retrieve.
+     * @return the hex-encoded SHA-1 hash of the photo, an empty string if the vCard contains
+     *         no photo, or null if the user has no vCard.
+     */
+    public String getPhotoHash(String username) {
+        final CachedVCard cachedVCard = getOrLoadCachedVCard(username);
+        return cachedVCard == null ? null : cachedVCard.getPhotoHash();
+    }
+
+    /**
+     * Returns the vCards of a number of users. Users that have no vCard are not included in
+     * the result. The vCards of users that are not cached are loaded at once, which is much
+     * more efficient than retrieving them one by one when iterating over many users. Changes
+     * to the returned vCards will not be stored in the database.
+     *
+     * @param usernames Usernames (not full JIDs) whose vCards to retrieve.
+     * @return the vCards, by username.
+     */
+    public Map<String, Element> getVCards(Collection<String> usernames) {
+        final Map<String, Element> result = new HashMap<>();
+        for (final Map.Entry<String, CachedVCard> entry : getOrLoadCachedVCards(usernames).entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getElement().createCopy());
+        }
+        return result;
+    }
+
+    /**
+     * Ensures that the vCards of a number of users are cached, loading those that are not
+     * cached at once.
+     *
+     * @param usernames Usernames (not full JIDs) whose vCards to cache.
+     */
+    public void preloadVCards(Collection<String> usernames) {
+        getOrLoadCachedVCards(usernames);
+    }
+
+    private Map<String, CachedVCard> getOrLoadCachedVCards(Collection<String> usernames) {
+        final Map<String, CachedVCard> result = new HashMap<>();
+        final List<String> missing = new ArrayList<>();
+        for (final String username : usernames) {
+            final CachedVCard cachedVCard = vcardCache.get(username);
+            if (cachedVCard != null) {
+                result.put(username, cachedVCard);
+            } else {
+                missing.add(username);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (final Map.Entry<String, Element> entry : provider.loadVCards(missing).entrySet()) {
+                // Do not replace a vCard that was set (and cached) after it was loaded here.
+                final CachedVCard loaded = new CachedVCard(entry.getValue());
+                final CachedVCard cached = vcardCache.putIfAbsent(entry.getKey(), loaded);
+                result.put(entry.getKey(), cached == null ? loaded : cached);
+            }
+        }
+        return result;
+    }
+
     private Element getOrLoadVCard(String username) {
-        Element vCardElement = vcardCache.get(username);
-        if (vCardElement == null) {
-            vCardElement = provider.loadVCard(username);
+        final CachedVCard cachedVCard = getOrLoadCachedVCard(username);
+        return cachedVCard == null ? null : cachedVCard.getElement();
+    }
+
+    private CachedVCard getOrLoadCachedVCard(String username) {
+        CachedVCard cachedVCard = vcardCache.get(username);
+        if (cachedVCard == null) {
+            Element vCardElement = provider.loadVCard(username);
             if (vCardElement != null) {
-                vcardCache.put(username, (DefaultElement) vCardElement);
+                cachedVCard = new CachedVCard(vCardElement);
+                vcardCache.put(username, cachedVCard);
             }
         }
-        return vCardElement;
+        return cachedVCard;
+    }
+
+    /**
+     * Caches a vCard, unless the cache already holds that very element, which is the case
+     * when the event that announces the vCard was caused by this manager.
+     */
+    private void cacheIfChanged(String username, Element vCard) {
+        final CachedVCard cachedVCard = vcardCache.get(username);
+        if (cachedVCard == null || cachedVCard.getElement() != vCard) {
+            vcardCache.put(username, new CachedVCard(vCard));
+        }
     }
 
     @Override
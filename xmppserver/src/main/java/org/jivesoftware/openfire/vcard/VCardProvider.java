@@ -20,6 +20,10 @@ import org.dom4j.Element;
 import org.jivesoftware.util.AlreadyExistsException;
 import org.jivesoftware.util.NotFoundException;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Provider interface for users vcards.
  *
@@ -36,6 +40,28 @@ public interface VCardProvider {
      */
     Element loadVCard(String username);
 
+    /**
+     * Loads the vCards of a number of users. Users that have no vCard are not
+     * included in the result.
+     *
+     * The default implementation loads the vCard of each user individually.
+     * Implementations are encouraged to override this method with one that
+     * loads the vCards of many users at once.
+     *
+     * @param usernames the usernames.
+     * @return the vCards as DOM elements, by username.
+     */
+    default Map<String, Element> loadVCards(Collection<String> usernames) {
+        final Map<String, Element> result = new HashMap<>();
+        for (final String username : usernames) {
+            final Element vCard = loadVCard(username);
+            if (vCard != null) {
+                result.put(username, vCard);
+            }
+        }
+        return result;
+    }
+
     /**
      * Creates and saves the new user vcard. This method should throw an
      * UnsupportedOperationException if this operation is not supported by
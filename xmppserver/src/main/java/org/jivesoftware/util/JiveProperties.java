@@ -106,6 +106,9 @@ public class JiveProperties implements Map<String, String> {
         }
 
         loadProperties();
+
+        // Reloading does not dispatch property events, so values that were cached before are outdated.
+        SystemProperty.invalidateCachedValues();
     }
 
     @Override
@@ -16,6 +16,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -195,6 +196,7 @@ public final class SystemProperty<T> {
             public void propertySet(final String property, final Map<String, Object> params) {
                 final SystemProperty systemProperty = PROPERTIES.get(property);
                 if (systemProperty != null) {
+                    systemProperty.invalidateCachedValue();
                     final Object newValue = systemProperty.getValue();
                     systemProperty.listeners.forEach(consumer -> ((Consumer) consumer).accept(newValue));
                 }
@@ -207,12 +209,17 @@ public final class SystemProperty<T> {
 
             @Override
             public void xmlPropertySet(final String property, final Map<String, Object> params) {
-                // Ignored - we're only covering database properties
+                // Listeners are not notified, as we're only covering database properties. The cached value is
+                // discarded nonetheless, in case the database property was migrated from or to this XML property.
+                final SystemProperty systemProperty = PROPERTIES.get(property);
+                if (systemProperty != null) {
+                    systemProperty.invalidateCachedValue();
+                }
             }
 
             @Override
             public void xmlPropertyDeleted(final String property, final Map<String, Object> params) {
-                // Ignored - we're only covering database properties
+                xmlPropertySet(property, params);
             }
         });
     }
@@ -232,6 +239,15 @@ public final class SystemProperty<T> {
     private final Class baseClass;
     private final Class collectionType;
     private final boolean sorted;
+    private final boolean cacheable;
+
+    /**
+     * The parsed value of the property, so that reading it does not require a lookup and conversion of its string
+     * value. A new, invalid instance is set whenever the property changes. A value that is computed concurrently is
+     * only cached if the instance that was invalid when its computation started is still set, so that a value that
+     * was computed from an outdated string is never cached.
+     */
+    private final AtomicReference<CachedValue<T>> cachedValue = new AtomicReference<>(CachedValue.invalid());
 
     private SystemProperty(final Builder<T> builder) {
         // Before we do anything, convert XML based provider setup to Database based
@@ -254,6 +270,9 @@ public final class SystemProperty<T> {
         this.collectionType = builder.collectionType;
         this.sorted = builder.sorted;
         this.listeners.addAll(builder.listeners);
+        // Collections are mutable, and classes can become available later (eg: when a plugin is loaded), so those
+        // are converted on every read.
+        this.cacheable = !Collection.class.isAssignableFrom(clazz) && clazz != Class.class;
         this.initialValue = getValue();
     }
 
@@ -297,11 +316,40 @@ public final class SystemProperty<T> {
     }
 
     /**
+     * Discards the cached values of all properties. This is used when all properties have been reloaded, which
+     * does not cause property events to be dispatched.
+     */
+    static void invalidateCachedValues() {
+        PROPERTIES.values().forEach(SystemProperty::invalidateCachedValue);
+    }
+
+    private void invalidateCachedValue() {
+        cachedValue.set(CachedValue.invalid());
+    }
+
+    /**
+     * Returns the current value of the property. Values of most types are cached until the property changes, which
+     * makes this method cheap enough to be called on every use of the value. Values of collections and classes are
+     * determined on every invocation.
+     *
      * @return the current value of the SystemProperty, or the default value if it is not currently set to within the
      * configured constraints. {@code null} if the property has not been set and there is no default value.
      */
-    @SuppressWarnings("unchecked")
     public T getValue() {
+        if (!cacheable) {
+            return computeValue();
+        }
+        final CachedValue<T> cached = cachedValue.get();
+        if (cached.valid) {
+            return cached.value;
+        }
+        final T value = computeValue();
+        cachedValue.compareAndSet(cached, new CachedValue<>(value));
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T computeValue() {
         final T value = (T) FROM_STRING.get(getConverterClass()).apply(JiveGlobals.getProperty(key), this);
         if (value == null || (Collection.class.isAssignableFrom(value.getClass()) && ((Collection) value).isEmpty())) {
             return defaultValue;
@@ -688,6 +736,8 @@ public final class SystemProperty<T> {
             }
             final SystemProperty<T> property = new SystemProperty<>(this);
             PROPERTIES.put(key, property);
+            // The property may have changed before it was registered to receive property events.
+            property.invalidateCachedValue();
             return property;
         }
 
@@ -726,4 +776,28 @@ public final class SystemProperty<T> {
             }
         }
     }
+
+    /**
+     * A value of a property, or an indication that the value needs to be determined.
+     */
+    private static final class CachedValue<T> {
+        private final boolean valid;
+        private final T value;
+
+        private CachedValue(final T value) {
+            this(true, value);
+        }
+
+        private CachedValue(final boolean valid, final T value) {
+            this.valid = valid;
+            this.value = value;
+        }
+
+        /**
+         * @return a new instance, that is distinct from all other invalid instances.
+         */
+        static <T> CachedValue<T> invalid() {
+            return new CachedValue<>(false, null);
+        }
+    }
 }
@@ -19,6 +19,9 @@ package org.jivesoftware.util;
 import org.jivesoftware.openfire.JMXManager;
 import org.jivesoftware.openfire.mbean.ThreadPoolExecutorDelegate;
 import org.jivesoftware.openfire.mbean.ThreadPoolExecutorDelegateMBean;
+import org.jivesoftware.openfire.stats.Statistic;
+import org.jivesoftware.openfire.stats.StatisticsManager;
+import org.jivesoftware.openfire.stats.i18nStatistic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +34,9 @@ import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Performs tasks using worker threads. It also allows tasks to be scheduled to be
@@ -38,7 +44,12 @@ import java.util.concurrent.*;
  * {@link ExecutorService} and {@link Timer}. Any {@link TimerTask} that's
  * scheduled to be run in the future will automatically be run using the thread
  * executor's thread pool. This means that the standard restriction that TimerTasks
- * should run quickly does not apply.
+ * should run quickly does not apply.<p>
+ *
+ * Scheduled tasks are kept by a {@link ScheduledThreadPoolExecutor}, of which the
+ * threads only hand tasks over to the thread pool when they are due. Unlike a
+ * {@link Timer}, the scheduler uses more than one thread, and cancelled tasks are
+ * removed from its queue immediately.
  *
  * @author Matt Tucker
  */
@@ -76,11 +87,26 @@ public class TaskEngine {
         .setDynamic(false)
         .build();
 
+    /**
+     * The number of threads that hand scheduled tasks over to the thread pool when they are due.
+     */
+    public static final SystemProperty<Integer> SCHEDULER_POOL_SIZE = SystemProperty.Builder.ofType(Integer.class)
+        .setKey("xmpp.taskengine.scheduler.size")
+        .setMinValue(1)
+        .setDefaultValue(2)
+        .setDynamic(false)
+        .build();
+
     /**
      * Object name used to register delegate MBean (JMX) for the taskengine thread pool executor.
      */
     private ObjectName objectName;
 
+    /**
+     * Object name used to register delegate MBean (JMX) for the taskengine scheduler.
+     */
+    private ObjectName schedulerObjectName;
+
     private static final TaskEngine instance = new TaskEngine();
 
     /**
@@ -92,15 +118,28 @@ public class TaskEngine {
         return instance;
     }
 
-    private Timer timer;
+    private ScheduledThreadPoolExecutor scheduler;
     private ThreadPoolExecutor executor;
     private final Map<TimerTask, TimerTaskWrapper> wrappedTasks = new ConcurrentHashMap<>();
 
+    /**
+     * The number of times that a scheduled task was due, and the total and maximum time between the moment that it was
+     * due and the moment that it was handed over to the thread pool.
+     */
+    private final LongAdder scheduledRuns = new LongAdder();
+    private final LongAdder scheduleLagNanos = new LongAdder();
+    private final AtomicLong maxScheduleLagNanos = new AtomicLong();
+    private final AtomicBoolean statisticsInitialized = new AtomicBoolean();
+
     /**
      * Constructs a new task engine.
      */
     private TaskEngine() {
-        timer = new Timer("TaskEngine-timer", true);
+        scheduler = new ScheduledThreadPoolExecutor(
+            SCHEDULER_POOL_SIZE.getValue(),
+            new NamedThreadFactory( "TaskEngine-timer-", true, Thread.NORM_PRIORITY, Thread.currentThread().getThreadGroup(), 0L ));
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
         final ThreadFactory threadFactory = new NamedThreadFactory( "TaskEngine-pool-", true, Thread.NORM_PRIORITY, Thread.currentThread().getThreadGroup(), 0L );
         executor = new ThreadPoolExecutor(
             EXECUTOR_CORE_POOL_SIZE.getValue(),
@@ -113,7 +152,82 @@ public class TaskEngine {
         if (JMXManager.isEnabled()) {
             final ThreadPoolExecutorDelegateMBean mBean = new ThreadPoolExecutorDelegate(executor);
             objectName = JMXManager.tryRegister(mBean, ThreadPoolExecutorDelegateMBean.BASE_OBJECT_NAME + "taskEngine");
+            final ThreadPoolExecutorDelegateMBean schedulerMBean = new ThreadPoolExecutorDelegate(scheduler);
+            schedulerObjectName = JMXManager.tryRegister(schedulerMBean, ThreadPoolExecutorDelegateMBean.BASE_OBJECT_NAME + "taskEngine-scheduler");
+        }
+    }
+
+    /**
+     * Registers statistics on the scheduling of tasks: the number of tasks that are scheduled, and the average delay
+     * with which scheduled tasks are handed over to the thread pool after they became due. Subsequent invocations have
+     * no effect.
+     */
+    public void initStatistics() {
+        if (!statisticsInitialized.compareAndSet(false, true)) {
+            return;
         }
+        StatisticsManager.getInstance().addStatistic("taskengine_scheduled_tasks", new i18nStatistic("taskengine.scheduled_tasks", Statistic.Type.count) {
+            @Override
+            public double sample() {
+                return getScheduledTaskCount();
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return false;
+            }
+        });
+        StatisticsManager.getInstance().addStatistic("taskengine_schedule_lag", new i18nStatistic("taskengine.schedule_lag", Statistic.Type.count) {
+            private long previousRuns = 0;
+            private long previousLagNanos = 0;
+
+            @Override
+            public synchronized double sample() {
+                final long runs = scheduledRuns.sum();
+                final long lagNanos = scheduleLagNanos.sum();
+                final long deltaRuns = runs - previousRuns;
+                final long deltaLagNanos = lagNanos - previousLagNanos;
+                previousRuns = runs;
+                previousLagNanos = lagNanos;
+                return deltaRuns == 0 ? 0 : deltaLagNanos / (double) deltaRuns / 1_000_000;
+            }
+
+            @Override
+            public boolean isPartialSample() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of tasks that are scheduled for (repeated) execution in the future.
+     *
+     * @return the number of scheduled tasks.
+     */
+    public int getScheduledTaskCount() {
+        final ScheduledThreadPoolExecutor current = scheduler;
+        return current == null ? 0 : current.getQueue().size();
+    }
+
+    /**
+     * Returns the average time between the moment that scheduled tasks became due and the moment that they were handed
+     * over to the thread pool for execution.
+     *
+     * @return the average schedule lag.
+     */
+    public Duration getAverageScheduleLag() {
+        final long runs = scheduledRuns.sum();
+        return runs == 0 ? Duration.ZERO : Duration.ofNanos(scheduleLagNanos.sum() / runs);
+    }
+
+    /**
+     * Returns the longest time between the moment that a scheduled task became due and the moment that it was handed
+     * over to the thread pool for execution.
+     *
+     * @return the maximum schedule lag.
+     */
+    public Duration getMaxScheduleLag() {
+        return Duration.ofNanos(maxScheduleLagNanos.get());
     }
 
     /**
@@ -141,7 +255,7 @@ public class TaskEngine {
      */
     @Deprecated // Remove in Openfire 4.9.0 or later.
     public void schedule(TimerTask task, long delay) {
-        timer.schedule(new TimerTaskWrapper(task), delay);
+        schedule(task, Duration.ofMillis(delay));
     }
 
     /**
@@ -155,7 +269,9 @@ public class TaskEngine {
      *         cancelled, or timer was cancelled.
      */
     public void schedule(TimerTask task, Duration delay) {
-        timer.schedule(new TimerTaskWrapper(task), delay.toMillis());
+        final TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task, checkDelay(delay), Duration.ZERO, false);
+        wrappedTasks.put(task, taskWrapper);
+        taskWrapper.future = scheduler.schedule(taskWrapper, delay.toNanos(), TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -163,7 +279,7 @@ public class TaskEngine {
      */
     @Deprecated // Remove in Openfire 4.9.0 or later.
     public void schedule(TimerTask task, Date time) {
-        timer.schedule(new TimerTaskWrapper(task), time);
+        schedule(task, time.toInstant());
     }
 
     /**
@@ -177,7 +293,8 @@ public class TaskEngine {
      *         cancelled, timer was cancelled, or timer thread terminated.
      */
     public void schedule(TimerTask task, Instant time) {
-        timer.schedule(new TimerTaskWrapper(task), Date.from(time));
+        checkTime(time);
+        schedule(task, delayUntil(time));
     }
 
     /**
@@ -185,9 +302,7 @@ public class TaskEngine {
      */
     @Deprecated // Remove in Openfire 4.9.0 or later.
     public void schedule(TimerTask task, long delay, long period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
-        wrappedTasks.put(task, taskWrapper);
-        timer.schedule(taskWrapper, delay, period);
+        schedule(task, Duration.ofMillis(delay), Duration.ofMillis(period));
     }
 
     /**
@@ -222,9 +337,9 @@ public class TaskEngine {
      *
      */
     public void schedule(TimerTask task, Duration delay, Duration period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
+        final TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task, checkDelay(delay), checkPeriod(period), false);
         wrappedTasks.put(task, taskWrapper);
-        timer.schedule(taskWrapper, delay.toMillis(), period.toMillis());
+        taskWrapper.future = scheduler.scheduleWithFixedDelay(taskWrapper, delay.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -232,9 +347,7 @@ public class TaskEngine {
      */
     @Deprecated // Remove in Openfire 4.9.0 or later.
     public void schedule(TimerTask task, Date firstTime, long period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
-        wrappedTasks.put(task, taskWrapper);
-        timer.schedule(taskWrapper, firstTime, period);
+        schedule(task, firstTime.toInstant(), Duration.ofMillis(period));
     }
 
     /**
@@ -267,9 +380,8 @@ public class TaskEngine {
      *         cancelled, timer was cancelled, or timer thread terminated.
      */
     public void schedule(TimerTask task, Instant firstTime, Duration period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
-        wrappedTasks.put(task, taskWrapper);
-        timer.schedule(taskWrapper, Date.from(firstTime), period.toMillis());
+        checkTime(firstTime);
+        schedule(task, delayUntil(firstTime), period);
     }
 
     /**
@@ -277,9 +389,7 @@ public class TaskEngine {
      */
     @Deprecated // Remove in Openfire 4.9.0 or later.
     public void scheduleAtFixedRate(TimerTask task, long delay, long period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
-        wrappedTasks.put(task, taskWrapper);
-        timer.scheduleAtFixedRate(taskWrapper, delay, period);
+        scheduleAtFixedRate(task, Duration.ofMillis(delay), Duration.ofMillis(period));
     }
 
     /**
@@ -314,9 +424,9 @@ public class TaskEngine {
      *         cancelled, timer was cancelled, or timer thread terminated.
      */
     public void scheduleAtFixedRate(TimerTask task, Duration delay, Duration period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
+        final TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task, checkDelay(delay), checkPeriod(period), true);
         wrappedTasks.put(task, taskWrapper);
-        timer.scheduleAtFixedRate(taskWrapper, delay.toMillis(), period.toMillis());
+        taskWrapper.future = scheduler.scheduleAtFixedRate(taskWrapper, delay.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -324,9 +434,7 @@ public class TaskEngine {
      */
     @Deprecated // Remove in Openfire 4.9.0 or later.
     public void scheduleAtFixedRate(TimerTask task, Date firstTime, long period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
-        wrappedTasks.put(task, taskWrapper);
-        timer.scheduleAtFixedRate(taskWrapper, firstTime, period);
+        scheduleAtFixedRate(task, firstTime.toInstant(), Duration.ofMillis(period));
     }
 
     /**
@@ -360,9 +468,8 @@ public class TaskEngine {
      *         cancelled, timer was cancelled, or timer thread terminated.
      */
     public void scheduleAtFixedRate(TimerTask task, Instant firstTime, Duration period) {
-        TimerTaskWrapper taskWrapper = new TimerTaskWrapper(task);
-        wrappedTasks.put(task, taskWrapper);
-        timer.scheduleAtFixedRate(taskWrapper, Date.from(firstTime), period.toMillis());
+        checkTime(firstTime);
+        scheduleAtFixedRate(task, delayUntil(firstTime), period);
     }
 
     /**
@@ -377,6 +484,31 @@ public class TaskEngine {
         }
     }
 
+    private static Duration checkDelay(Duration delay) {
+        if (delay.isNegative()) {
+            throw new IllegalArgumentException("Negative delay.");
+        }
+        return delay;
+    }
+
+    private static Duration checkPeriod(Duration period) {
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("Non-positive period.");
+        }
+        return period;
+    }
+
+    private static void checkTime(Instant time) {
+        if (time.toEpochMilli() < 0) {
+            throw new IllegalArgumentException("Illegal execution time.");
+        }
+    }
+
+    private static Duration delayUntil(Instant time) {
+        final Duration delay = Duration.between(Instant.now(), time);
+        return delay.isNegative() ? Duration.ZERO : delay;
+    }
+
     /**
      * Shuts down the task engine service.
      */
@@ -391,32 +523,77 @@ public class TaskEngine {
             executor = null;
         }
 
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+        if (schedulerObjectName != null) {
+            JMXManager.tryUnregister(schedulerObjectName);
+            schedulerObjectName = null;
+        }
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
         }
+        wrappedTasks.clear();
     }
 
     /**
      * Wrapper class for a standard TimerTask. It simply executes the TimerTask
-     * using the executor's thread pool.
+     * using the executor's thread pool, when it is run by the scheduler.
      */
-    private class TimerTaskWrapper extends TimerTask {
+    private class TimerTaskWrapper implements Runnable {
 
-        private TimerTask task;
+        private final TimerTask task;
+        private final long periodNanos;
+        private final boolean fixedRate;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
 
-        public TimerTaskWrapper(TimerTask task) {
+        /**
+         * The moment (as per {@link System#nanoTime()}) at which the next run of the task is due.
+         */
+        private long dueNanos;
+
+        TimerTaskWrapper(TimerTask task, Duration delay, Duration period, boolean fixedRate) {
             this.task = task;
+            this.periodNanos = period.toNanos();
+            this.fixedRate = fixedRate;
+            this.dueNanos = System.nanoTime() + delay.toNanos();
         }
 
         @Override
         public void run() {
+            if (cancelled) {
+                // Cancelled before the future of this task was known.
+                cancel();
+                return;
+            }
+            final long now = System.nanoTime();
+            final long lag = Math.max(0, now - dueNanos);
+            scheduledRuns.increment();
+            scheduleLagNanos.add(lag);
+            if (lag > maxScheduleLagNanos.get()) {
+                maxScheduleLagNanos.accumulateAndGet(lag, Math::max);
+            }
+            if (periodNanos == 0) {
+                // A task that runs only once can no longer be cancelled.
+                wrappedTasks.remove(task, this);
+            } else {
+                dueNanos = fixedRate ? dueNanos + periodNanos : now + periodNanos;
+            }
+
             try {
                 submit(task);
             } catch (Throwable t) {
-                // need to catch here to prevent Timer from canceling TimerThread
+                // need to catch here to prevent the scheduler from cancelling periodic executions
                 Log.error("Failed to execute TimerTask", t);
             }
         }
+
+        void cancel() {
+            cancelled = true;
+            final ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
     }
 }
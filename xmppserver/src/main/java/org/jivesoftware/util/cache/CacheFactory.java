@@ -107,6 +107,7 @@ public class CacheFactory {
         cacheNames.put("Group", "group");
         cacheNames.put("Group Metadata Cache", "groupMeta");
         cacheNames.put("Group (Shared) Metadata Cache", "groupSharingMeta");
+        cacheNames.put("Shared Group Visibility", "sharedGroupVisibility");
         cacheNames.put("Javascript Cache", "javascript");
         cacheNames.put("Last Activity Cache", "lastActivity");
         cacheNames.put("Multicast Service", "multicast");
@@ -116,6 +117,7 @@ public class CacheFactory {
         cacheNames.put("Remote Users Existence", "remoteUsersCache");
         cacheNames.put("Roster", "username2roster");
         cacheNames.put("RosterItems", "username2rosterItems");
+        cacheNames.put("Roster Versions", "rosterVersions");
         cacheNames.put("User", "userCache");
         cacheNames.put("Locked Out Accounts", "lockOutCache");
         cacheNames.put("VCard", "vcardCache");
@@ -148,7 +150,6 @@ public class CacheFactory {
         cacheNames.put("JID Node-parts", "jidNodeprep");
         cacheNames.put("JID Domain-parts", "jidDomainprep");
         cacheNames.put("JID Resource-parts", "jidResourceprep");
-        cacheNames.put("Sequences", "sequences");
         cacheNames.put("MUC History", "mucHistory");
         cacheNames.put("MUC Service Pings Sent", "mucPings");
 
@@ -172,10 +173,14 @@ public class CacheFactory {
         cacheProps.put(PROPERTY_PREFIX_CACHE + "groupMeta" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(15).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "groupSharingMeta" + PROPERTY_SUFFIX_SIZE, 5_242_880L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "groupSharingMeta" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(15).toMillis());
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "sharedGroupVisibility" + PROPERTY_SUFFIX_SIZE, 5_242_880L);
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "sharedGroupVisibility" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(15).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "username2roster" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "username2roster" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(30).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "username2rosterItems" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "username2rosterItems" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(10).toMillis());
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "rosterVersions" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
+        cacheProps.put(PROPERTY_PREFIX_CACHE + "rosterVersions" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofHours(6).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "javascript" + PROPERTY_SUFFIX_SIZE, 1_048_576L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "javascript" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofDays(10).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "ldap" + PROPERTY_SUFFIX_SIZE, 5_242_880L);
@@ -236,8 +241,6 @@ public class CacheFactory {
         cacheProps.put(PROPERTY_PREFIX_CACHE + "pepServiceManager" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(30).toMillis());
         cacheProps.put(PROPERTY_PREFIX_CACHE + "publishedItems" + PROPERTY_SUFFIX_SIZE, 10_485_760L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "publishedItems" + PROPERTY_SUFFIX_MAX_LIFE_TIME, Duration.ofMinutes(15).toMillis());
-        cacheProps.put(PROPERTY_PREFIX_CACHE + "sequences" + PROPERTY_SUFFIX_SIZE, -1L);
-        cacheProps.put(PROPERTY_PREFIX_CACHE + "sequences" + PROPERTY_SUFFIX_MAX_LIFE_TIME, -1L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "mucHistory" + PROPERTY_SUFFIX_SIZE, -1L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "mucHistory" + PROPERTY_SUFFIX_MAX_LIFE_TIME, -1L);
         cacheProps.put(PROPERTY_PREFIX_CACHE + "mucPings" + PROPERTY_SUFFIX_SIZE, -1L);
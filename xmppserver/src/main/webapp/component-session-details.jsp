@@ -186,6 +186,16 @@
             <%= numFormatter.format(componentSession.getNumClientPackets()) %>/<%= numFormatter.format(componentSession.getNumServerPackets()) %>
         </td>
     </tr>
+    <% if (componentSession instanceof LocalSession) { %>
+    <tr>
+        <td class="c1">
+            <fmt:message key="session.details.in-flight" />:
+        </td>
+        <td>
+            <%= numFormatter.format(((LocalSession) componentSession).getInFlightStanzaCount()) %>
+        </td>
+    </tr>
+    <% } %>
     <tr>
         <td class="c1">
             <fmt:message key="session.details.hostname" />
@@ -23,6 +23,7 @@
 %>
 <%@ page import="org.jivesoftware.openfire.group.Group" %>
 <%@ page import="org.jivesoftware.openfire.group.GroupManager" %>
+<%@ page import="org.jivesoftware.openfire.roster.SharedGroupRosterPushQueue" %>
 <%@ page import="org.jivesoftware.util.ListPager" %>
 <%@ page import="org.jivesoftware.util.ParamUtils" %>
 
@@ -64,6 +65,8 @@
     pageContext.setAttribute("listPager", listPager);
     pageContext.setAttribute("canEdit", !groupManager.isReadOnly());
     pageContext.setAttribute("deleteSuccess", request.getParameter("deletesuccess") != null);
+    final SharedGroupRosterPushQueue pushQueue = webManager.getRosterManager().getSharedGroupRosterPushQueue();
+    pageContext.setAttribute("pushQueue", pushQueue);
 
 %>
 
@@ -71,6 +74,18 @@
     <div class="success"><fmt:message key="group.summary.delete_group"/></div>
 </c:if>
 
+<c:if test="${pushQueue.pendingPushCount > 0 or pushQueue.pendingProbeCount > 0}">
+    <admin:infoBox type="info">
+        <fmt:message key="group.summary.roster_push_progress">
+            <fmt:param value="${pushQueue.pendingPushCount}"/>
+            <fmt:param value="${pushQueue.pendingUserCount}"/>
+            <fmt:param value="${pushQueue.pendingProbeCount}"/>
+            <fmt:param value="${pushQueue.sentPushCount}"/>
+            <fmt:param value="${pushQueue.coalescedPushCount}"/>
+        </fmt:message>
+    </admin:infoBox>
+</c:if>
+
 <fmt:message key="group.summary.total_group" /> <b>${listPager.totalItemCount}</b>
 <c:if test="${listPager.filtered}">
     <fmt:message key="group.summary.filtered_group_count" />: <c:out value="${listPager.filteredItemCount}"/>
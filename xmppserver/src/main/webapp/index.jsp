@@ -20,6 +20,7 @@
 <%@ page import="org.jivesoftware.openfire.Connection"%>
 <%@ page import="org.jivesoftware.openfire.JMXManager" %>
 <%@ page import="org.jivesoftware.openfire.XMPPServer" %>
+<%@ page import="org.jivesoftware.openfire.container.ModuleStarter" %>
 <%@ page import="org.jivesoftware.openfire.filetransfer.proxy.FileTransferProxy" %>
 <%@ page import="org.jivesoftware.openfire.keystore.IdentityStore" %>
 <%@ page import="org.jivesoftware.openfire.mediaproxy.MediaProxyService" %>
@@ -250,6 +251,19 @@
                     </td>
                 </tr>
 
+                <%  final ModuleStarter moduleStarter = webManager.getXMPPServer().getModuleStarter();
+                    if (moduleStarter != null) { %>
+                <tr>
+                    <td class="c1"><fmt:message key="index.module_startup" /></td>
+                    <td class="c2">
+                        <a href="server-module-startup.jsp"><fmt:message key="index.module_startup.value">
+                            <fmt:param value="<%= moduleStarter.getTotalInitializationTime().toMillis() %>"/>
+                            <fmt:param value="<%= moduleStarter.getTotalStartTime().toMillis() %>"/>
+                        </fmt:message></a>
+                    </td>
+                </tr>
+                <%  } %>
+
             <%  } %>
 
             <tr>
@@ -23,6 +23,9 @@
 <%@ page import="org.jivesoftware.util.JiveGlobals"%>
 <%@ page import="org.jivesoftware.database.ProfiledConnection"%>
 <%@ page import="org.jivesoftware.database.ProfiledConnectionEntry"%>
+<%@ page import="org.jivesoftware.database.StatementProfiler"%>
+<%@ page import="org.jivesoftware.database.LatencyHistogram"%>
+<%@ page import="java.util.List"%>
 <%@ page import="org.jivesoftware.util.ParamUtils"%>
 <%@ page import="org.jivesoftware.util.CookieUtils"%>
 <%@ page import="org.jivesoftware.util.LocaleUtils"%>
@@ -64,6 +67,7 @@
     // Clear the statistics
     if (doClear) {
         ProfiledConnection.resetStatistics();
+        StatementProfiler.reset();
         // Reload the page without params.
         response.sendRedirect("server-db-stats.jsp");
     }
@@ -444,5 +448,113 @@
 
 <% } %>
 
+<%  if (StatementProfiler.ENABLED.getValue()) {
+        List<StatementProfiler.StatementStatistics> statements = StatementProfiler.getStatementStatistics();
+        List<StatementProfiler.SlowQuery> slowQueries = StatementProfiler.getSlowQueries();
+        LatencyHistogram poolWait = StatementProfiler.getPoolWait();
+%>
+    <br>
+    <h3><fmt:message key="server.db_stats.profiler" /></h3>
+
+    <p><fmt:message key="server.db_stats.profiler.description" /></p>
+
+    <form action="server-db-stats.jsp">
+        <input type="hidden" name="csrf" value="${csrf}">
+        <input type="submit" name="doClear" value="<fmt:message key="server.db_stats.clear_stats" />">
+    </form>
+
+    <ul>
+
+    <table bgcolor="#aaaaaa" width="600">
+    <tr><td>
+    <table bgcolor="#aaaaaa" cellpadding="3" cellspacing="1" style="width: 100%">
+    <tr bgcolor="#ffffff">
+        <td><fmt:message key="server.db_stats.profiler.pool_wait_mean" /></td>
+        <td><%= decFormat.format(poolWait.getMean().toNanos() / 1_000_000.0) %></td>
+    </tr>
+    <tr bgcolor="#ffffff">
+        <td><fmt:message key="server.db_stats.profiler.pool_wait_p99" /></td>
+        <td><%= decFormat.format(poolWait.getPercentile(99).toNanos() / 1_000_000.0) %></td>
+    </tr>
+    <tr bgcolor="#ffffff">
+        <td><fmt:message key="server.db_stats.profiler.slow_query_count" /></td>
+        <td><%= intFormat.format(StatementProfiler.getSlowQueryCount()) %></td>
+    </tr>
+    </table>
+    </td></tr>
+    </table>
+
+    <br />
+
+    <b><fmt:message key="server.db_stats.profiler.statements" /></b>
+
+    <table bgcolor="#aaaaaa" width="600">
+    <tr><td>
+    <table width="100%" cellpadding="3" cellspacing="1" border="0" bgcolor="#aaaaaa">
+    <tr>
+        <td bgcolor="#ffffff"><b><fmt:message key="server.db_stats.query" /></b></td>
+        <td bgcolor="#ffffff"><b><fmt:message key="server.db_stats.count" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.profiler.errors" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.time" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.average_time" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.profiler.p99" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.profiler.max" /></b></td>
+    </tr>
+<%      if (statements.isEmpty()) { %>
+    <tr><td bgcolor="#ffffff" colspan="7"><fmt:message key="server.db_stats.no_queries" /></td></tr>
+<%      }
+        for (int i = 0; i < Math.min(statements.size(), 20); i++) {
+            StatementProfiler.StatementStatistics statement = statements.get(i);
+            LatencyHistogram latency = statement.getLatency();
+            String bgcolor = (rowColor++ % 2 == 0) ? "#efefef" : "#ffffff";
+%>
+    <tr>
+        <td bgcolor="<%= bgcolor %>"><%= StringUtils.escapeHTMLTags(statement.getSql()) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= intFormat.format(latency.getCount()) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= intFormat.format(statement.getErrorCount()) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= intFormat.format(latency.getTotal().toMillis()) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= decFormat.format(latency.getMean().toNanos() / 1_000_000.0) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= decFormat.format(latency.getPercentile(99).toNanos() / 1_000_000.0) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= decFormat.format(latency.getMax().toNanos() / 1_000_000.0) %></td>
+    </tr>
+<%      } %>
+    </table>
+    </td></tr>
+    </table>
+
+    <br />
+
+    <b><fmt:message key="server.db_stats.profiler.slow_queries" /></b>
+
+    <table bgcolor="#aaaaaa" width="600">
+    <tr><td>
+    <table width="100%" cellpadding="3" cellspacing="1" border="0" bgcolor="#aaaaaa">
+    <tr>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.profiler.timestamp" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.time" /></b></td>
+        <td nowrap bgcolor="#ffffff"><b><fmt:message key="server.db_stats.profiler.thread" /></b></td>
+        <td bgcolor="#ffffff"><b><fmt:message key="server.db_stats.query" /></b></td>
+    </tr>
+<%      if (slowQueries.isEmpty()) { %>
+    <tr><td bgcolor="#ffffff" colspan="4"><fmt:message key="server.db_stats.no_queries" /></td></tr>
+<%      }
+        for (int i = slowQueries.size() - 1; i >= 0; i--) {
+            StatementProfiler.SlowQuery slowQuery = slowQueries.get(i);
+            String bgcolor = (rowColor++ % 2 == 0) ? "#efefef" : "#ffffff";
+%>
+    <tr>
+        <td nowrap bgcolor="<%= bgcolor %>"><%= JiveGlobals.formatDateTime(java.util.Date.from(slowQuery.getTimestamp())) %></td>
+        <td nowrap bgcolor="<%= bgcolor %>"><%= intFormat.format(slowQuery.getDuration().toMillis()) %><%= slowQuery.isFailed() ? " (!)" : "" %></td>
+        <td bgcolor="<%= bgcolor %>"><%= StringUtils.escapeHTMLTags(slowQuery.getThreadName()) %></td>
+        <td bgcolor="<%= bgcolor %>"><%= StringUtils.escapeHTMLTags(slowQuery.getSql()) %></td>
+    </tr>
+<%      } %>
+    </table>
+    </td></tr>
+    </table>
+
+    </ul>
+<%  } %>
+
 
 </body></html>
@@ -0,0 +1,139 @@
+<%@ page contentType="text/html; charset=UTF-8" %>
+<%--
+  -
+  - Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+  -
+  - Licensed under the Apache License, Version 2.0 (the "License");
+  - you may not use this file except in compliance with the License.
+  - You may obtain a copy of the License at
+  -
+  -     http://www.apache.org/licenses/LICENSE-2.0
+  -
+  - Unless required by applicable law or agreed to in writing, software
+  - distributed under the License is distributed on an "AS IS" BASIS,
+  - WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  - See the License for the specific language governing permissions and
+  - limitations under the License.
+--%>
+
+<%@ page import="org.jivesoftware.openfire.XMPPServer"
+    errorPage="error.jsp"
+%>
+<%@ page import="org.jivesoftware.openfire.container.ModuleStarter"%>
+<%@ page import="org.jivesoftware.openfire.container.PluginManager"%>
+<%@ page import="org.jivesoftware.util.JiveGlobals"%>
+<%@ page import="org.jivesoftware.util.StringUtils"%>
+<%@ page import="java.text.NumberFormat"%>
+<%@ page import="java.time.Duration"%>
+<%@ page import="java.util.Map"%>
+
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
+
+<jsp:useBean id="webManager" class="org.jivesoftware.util.WebManager"  />
+<% webManager.init(request, response, session, application, out ); %>
+
+<%
+    final ModuleStarter moduleStarter = XMPPServer.getInstance().getModuleStarter();
+    final NumberFormat intFormat = NumberFormat.getInstance(JiveGlobals.getLocale());
+%>
+
+<html>
+    <head>
+        <title><fmt:message key="server.module_startup.title" /></title>
+        <meta name="pageID" content="server-settings"/>
+    </head>
+<body>
+
+<p>
+<fmt:message key="server.module_startup.description" />
+</p>
+
+<%  if (moduleStarter == null) { %>
+
+<p><fmt:message key="server.module_startup.none" /></p>
+
+<%  } else {
+        final Map<String, Duration> initializationTimes = moduleStarter.getInitializationTimes();
+        final Map<String, Duration> startTimes = moduleStarter.getStartTimes();
+%>
+
+<p>
+<fmt:message key="server.module_startup.totals">
+    <fmt:param value="<%= intFormat.format(moduleStarter.getTotalInitializationTime().toMillis()) %>"/>
+    <fmt:param value="<%= intFormat.format(moduleStarter.getTotalStartTime().toMillis()) %>"/>
+</fmt:message>
+</p>
+
+<div class="jive-table">
+<table>
+<thead>
+    <tr>
+        <th style="width: 1%">&nbsp;</th>
+        <th nowrap><fmt:message key="server.module_startup.module" /></th>
+        <th style="width: 20%; text-align: right;" nowrap><fmt:message key="server.module_startup.initialization" /></th>
+        <th style="width: 20%; text-align: right;" nowrap><fmt:message key="server.module_startup.start" /></th>
+    </tr>
+</thead>
+<tbody>
+
+<%  int i = 0;
+    for (final Map.Entry<String, Duration> entry : moduleStarter.getTotalTimes().entrySet()) {
+        final Duration initialization = initializationTimes.get(entry.getKey());
+        final Duration start = startTimes.get(entry.getKey());
+        i++;
+%>
+    <tr>
+        <td style="width: 1%"><%= i %>.</td>
+        <td><%= StringUtils.escapeHTMLTags(entry.getKey()) %></td>
+        <td style="text-align: right;"><%= initialization == null ? "-" : intFormat.format(initialization.toMillis()) %></td>
+        <td style="text-align: right;"><%= start == null ? "-" : intFormat.format(start.toMillis()) %></td>
+    </tr>
+<%  } %>
+
+</tbody>
+</table>
+</div>
+
+<%  } %>
+
+<%  final PluginManager pluginManager = XMPPServer.getInstance().getPluginManager();
+    final Map<String, Duration> pluginLoadTimes = pluginManager == null ? null : pluginManager.getPluginLoadTimes();
+    if (pluginLoadTimes != null && !pluginLoadTimes.isEmpty()) {
+%>
+
+<br>
+<p>
+<fmt:message key="server.module_startup.plugins.description" />
+</p>
+
+<div class="jive-table">
+<table>
+<thead>
+    <tr>
+        <th style="width: 1%">&nbsp;</th>
+        <th nowrap><fmt:message key="server.module_startup.plugin" /></th>
+        <th style="width: 20%; text-align: right;" nowrap><fmt:message key="server.module_startup.load" /></th>
+    </tr>
+</thead>
+<tbody>
+
+<%  int j = 0;
+    for (final Map.Entry<String, Duration> entry : pluginLoadTimes.entrySet()) {
+        j++;
+%>
+    <tr>
+        <td style="width: 1%"><%= j %>.</td>
+        <td><%= StringUtils.escapeHTMLTags(entry.getKey()) %></td>
+        <td style="text-align: right;"><%= intFormat.format(entry.getValue().toMillis()) %></td>
+    </tr>
+<%  } %>
+
+</tbody>
+</table>
+</div>
+
+<%  } %>
+
+</body>
+</html>
@@ -227,6 +227,7 @@
                             <th style="width: 10%;"><fmt:message key="server.session.label.last_active" /></th>
                             <th style="width: 1%;"><fmt:message key="server.session.details.incoming_statistics" /></th>
                             <th style="width: 1%;"><fmt:message key="server.session.details.outgoing_statistics" /></th>
+                            <th style="width: 1%;"><fmt:message key="server.session.details.in_flight" /></th>
                         </tr>
 
                         <c:forEach items="${inSessions}" var="session">
@@ -272,6 +273,11 @@
                                 <td ><fmt:formatDate type="both" value="${session.lastActiveDate}"/></td>
                                 <td style="text-align: center" ><fmt:formatNumber type="number" value="${session.numClientPackets}"/></td>
                                 <td style="text-align: center" ><fmt:formatNumber type="number" value="${session.numServerPackets}"/></td>
+                                <td style="text-align: center" >
+                                    <c:if test="${session['class'].simpleName eq 'LocalIncomingServerSession'}">
+                                        <fmt:formatNumber type="number" value="${session.inFlightStanzaCount}"/>
+                                    </c:if>
+                                </td>
                             </tr>
                         </c:forEach>
                     </table>
@@ -292,6 +298,7 @@
                             <th style="width: 10%; "><fmt:message key="server.session.label.last_active" /></th>
                             <th style="width: 1%; "><fmt:message key="server.session.details.incoming_statistics" /></th>
                             <th style="width: 1%; "><fmt:message key="server.session.details.outgoing_statistics" /></th>
+                            <th style="width: 1%; "><fmt:message key="server.session.details.in_flight" /></th>
                         </tr>
 
                         <c:forEach items="${outSessions}" var="session">
@@ -337,6 +344,11 @@
                                 <td ><fmt:formatDate type="both" value="${session.lastActiveDate}"/></td>
                                 <td style="text-align: center" ><fmt:formatNumber type="number" value="${session.numClientPackets}"/></td>
                                 <td style="text-align: center" ><fmt:formatNumber type="number" value="${session.numServerPackets}"/></td>
+                                <td style="text-align: center" >
+                                    <c:if test="${session['class'].simpleName eq 'LocalOutgoingServerSession'}">
+                                        <fmt:formatNumber type="number" value="${session.inFlightStanzaCount}"/>
+                                    </c:if>
+                                </td>
                             </tr>
                         </c:forEach>
                      </table>
@@ -17,6 +17,10 @@
 --%>
 
 <%@ page import="org.jivesoftware.openfire.SessionManager,
+                 org.jivesoftware.openfire.nio.NettyOutboundEventLoopGroup,
+                 org.jivesoftware.openfire.server.OutgoingCircuitBreaker,
+                 org.jivesoftware.openfire.server.OutgoingSessionPromise,
+                 org.jivesoftware.openfire.server.OutgoingStanzaQueue,
                  org.jivesoftware.openfire.session.OutgoingServerSession,
                  org.jivesoftware.openfire.session.Session,
                  org.jivesoftware.util.ParamUtils,
@@ -226,6 +230,92 @@
 
 <%  } %>
 
+<%  final Collection<OutgoingStanzaQueue> outgoingQueues = OutgoingSessionPromise.getInstance().getQueues();
+    final Collection<OutgoingCircuitBreaker> circuitBreakers = OutgoingSessionPromise.getInstance().getCircuitBreakers();
+    if (!outgoingQueues.isEmpty() || !circuitBreakers.isEmpty()) { %>
+
+<br>
+<p>
+<fmt:message key="server.session.summary.queues.info" />
+</p>
+
+<div class="jive-table">
+<table>
+<thead>
+    <tr>
+        <th nowrap><fmt:message key="server.session.label.local_domain" /></th>
+        <th nowrap><fmt:message key="server.session.label.host" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.queued_stanzas" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.queued_size" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.oldest_stanza" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.rejected" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.superseded" /></th>
+    </tr>
+</thead>
+<tbody>
+    <%  if (outgoingQueues.isEmpty()) { %>
+        <tr>
+            <td colspan="7"><fmt:message key="server.session.summary.queues.none" /></td>
+        </tr>
+    <%  } %>
+    <%  for (final OutgoingStanzaQueue outgoingQueue : outgoingQueues) { %>
+        <tr>
+            <td><c:out value="<%= outgoingQueue.getDomainPair().getLocal() %>"/></td>
+            <td><c:out value="<%= outgoingQueue.getDomainPair().getRemote() %>"/></td>
+            <td style="text-align: center;"><%= outgoingQueue.getStanzaCount() %></td>
+            <td style="text-align: center;"><%= outgoingQueue.getByteSize() %></td>
+            <td style="text-align: center;"><%= StringUtils.getFullElapsedTime(outgoingQueue.getOldestStanzaAge()) %></td>
+            <td style="text-align: center;"><%= outgoingQueue.getRejectedCount() %></td>
+            <td style="text-align: center;"><%= outgoingQueue.getSupersededCount() %></td>
+        </tr>
+    <%  } %>
+</tbody>
+</table>
+</div>
+
+<%      if (!circuitBreakers.isEmpty()) { %>
+<br>
+<p>
+<fmt:message key="server.session.summary.circuit_breakers.info" />
+</p>
+
+<div class="jive-table">
+<table>
+<thead>
+    <tr>
+        <th nowrap><fmt:message key="server.session.label.host" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.failures" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.last_failure" /></th>
+        <th nowrap style="text-align: center;"><fmt:message key="server.session.label.blocked_until" /></th>
+    </tr>
+</thead>
+<tbody>
+    <%  for (final OutgoingCircuitBreaker circuitBreaker : circuitBreakers) { %>
+        <tr>
+            <td><c:out value="<%= circuitBreaker.getRemoteDomain() %>"/></td>
+            <td style="text-align: center;"><%= circuitBreaker.getConsecutiveFailures() %></td>
+            <td style="text-align: center;"><%= circuitBreaker.getLastFailure() == null ? "" : JiveGlobals.formatDateTime(Date.from(circuitBreaker.getLastFailure())) %></td>
+            <td style="text-align: center;"><%= circuitBreaker.getOpenUntil() == null ? "" : JiveGlobals.formatDateTime(Date.from(circuitBreaker.getOpenUntil())) %></td>
+        </tr>
+    <%  } %>
+</tbody>
+</table>
+</div>
+<%      } %>
+<%  } %>
+
+<br>
+<p>
+<fmt:message key="server.session.summary.outbound.info">
+    <fmt:param value="<%= NettyOutboundEventLoopGroup.getThreadCount() %>" />
+    <fmt:param value="<%= NettyOutboundEventLoopGroup.getActiveChannelCount() %>" />
+    <fmt:param value="<%= NettyOutboundEventLoopGroup.getSetupAttempts() %>" />
+    <fmt:param value="<%= NettyOutboundEventLoopGroup.getSetupFailures() %>" />
+    <fmt:param value="<%= StringUtils.getFullElapsedTime(NettyOutboundEventLoopGroup.getAverageSetupTime()) %>" />
+    <fmt:param value="<%= StringUtils.getFullElapsedTime(NettyOutboundEventLoopGroup.getMaximumSetupTime()) %>" />
+</fmt:message>
+</p>
+
 <br>
 <p>
 <fmt:message key="server.session.summary.last_update" />: <%= JiveGlobals.formatDateTime(new Date()) %>
@@ -247,6 +247,14 @@
             %>
         </td>
     </tr>
+    <tr>
+        <td class="c1">
+            <fmt:message key="session.details.in-flight"/>:
+        </td>
+        <td>
+            <%= numFormatter.format(s.getInFlightStanzaCount()) %>
+        </td>
+    </tr>
     <% } %>
     <tr>
         <td class="c1">
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link DbConnectionManager}.
+ */
+public class DbConnectionManagerTest
+{
+    /**
+     * Verifies that a placeholder list with one placeholder is generated.
+     */
+    @Test
+    public void testInClausePlaceholdersSingle() throws Exception
+    {
+        // Execute system under test.
+        final String result = DbConnectionManager.getInClausePlaceholders(1);
+
+        // Verify results.
+        assertEquals("(?)", result);
+    }
+
+    /**
+     * Verifies that a placeholder list with multiple placeholders is generated.
+     */
+    @Test
+    public void testInClausePlaceholdersMultiple() throws Exception
+    {
+        // Execute system under test.
+        final String result = DbConnectionManager.getInClausePlaceholders(3);
+
+        // Verify results.
+        assertEquals("(?,?,?)", result);
+    }
+
+    /**
+     * Verifies that a placeholder list without placeholders cannot be generated, as that is not valid SQL.
+     */
+    @Test
+    public void testInClausePlaceholdersNone() throws Exception
+    {
+        // Execute system under test & verify results.
+        assertThrows(IllegalArgumentException.class, () -> DbConnectionManager.getInClausePlaceholders(0));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.util.JiveGlobals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link SequenceManager}.
+ */
+public class SequenceManagerTest
+{
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        JiveGlobals.deleteProperty(SequenceManager.MAX_BLOCK_SIZE.getKey());
+    }
+
+    /**
+     * Verifies that the next block is reserved before the current block is exhausted, and that it is used when the
+     * current block is exhausted.
+     */
+    @Test
+    public void testPrefetchesNextBlock() throws Exception
+    {
+        // Setup test fixture.
+        final InMemorySequenceManager manager = new InMemorySequenceManager(9001, 8);
+        for (int i = 0; i < 7; i++) {
+            manager.nextUniqueID();
+        }
+
+        // Execute system under test.
+        await().until(() -> manager.reservedSizes.size() == 2);
+        manager.nextUniqueID();
+        final long result = manager.nextUniqueID();
+
+        // Verify results.
+        assertEquals(9, result);
+        assertEquals(List.of(8, 8), manager.reservedSizes);
+    }
+
+    /**
+     * Verifies that the block size is increased when IDs are drawn quickly, but not beyond the maximum block size.
+     */
+    @Test
+    public void testBlockSizeIncreasesUpToMaximum() throws Exception
+    {
+        // Setup test fixture.
+        SequenceManager.MAX_BLOCK_SIZE.setValue(8);
+        final InMemorySequenceManager manager = new InMemorySequenceManager(9002, 2);
+
+        // Execute system under test.
+        final Set<Long> result = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            result.add(manager.nextUniqueID());
+        }
+
+        // Verify results.
+        assertEquals(100, result.size());
+        assertEquals(2, (int) manager.reservedSizes.get(0));
+        assertEquals(8, (int) Collections.max(manager.reservedSizes));
+    }
+
+    /**
+     * A sequence manager that reserves blocks of IDs in memory, instead of in the database.
+     */
+    private static class InMemorySequenceManager extends SequenceManager
+    {
+        private final List<Integer> reservedSizes = new CopyOnWriteArrayList<>();
+        private long storedID = 1;
+
+        InMemorySequenceManager(final int type, final int size) {
+            super(type, size);
+        }
+
+        @Override
+        synchronized Block tryReserveBlock(final int size) {
+            reservedSizes.add(size);
+            final long currentID = storedID;
+            storedID += size;
+            return new Block(currentID, storedID);
+        }
+    }
+}
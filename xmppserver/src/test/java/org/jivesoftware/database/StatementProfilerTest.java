@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link StatementProfiler} and {@link LatencyHistogram}.
+ */
+public class StatementProfilerTest
+{
+    @AfterEach
+    public void tearDown()
+    {
+        StatementProfiler.reset();
+    }
+
+    /**
+     * Verifies that string and numeric literals are removed from SQL, while identifiers that contain digits are kept.
+     */
+    @Test
+    public void testRedact() throws Exception
+    {
+        // Setup test fixture.
+        final String sql = "SELECT col1 FROM ofUser WHERE username='o''brien' AND creationDate > 1700000000 AND x=-2.5";
+
+        // Execute system under test.
+        final String result = StatementProfiler.redact(sql);
+
+        // Verify results.
+        assertEquals("SELECT col1 FROM ofUser WHERE username=? AND creationDate > ? AND x=?", result);
+    }
+
+    /**
+     * Verifies that percentiles are estimated within a factor two of the recorded durations.
+     */
+    @Test
+    public void testHistogramPercentiles() throws Exception
+    {
+        // Setup test fixture.
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(Duration.ofMillis(1).toNanos());
+        }
+        histogram.record(Duration.ofMillis(100).toNanos());
+
+        // Execute system under test.
+        final Duration p50 = histogram.getPercentile(50);
+        final Duration p100 = histogram.getPercentile(100);
+
+        // Verify results.
+        assertEquals(100, histogram.getCount());
+        assertTrue(p50.compareTo(Duration.ofMillis(1)) >= 0 && p50.compareTo(Duration.ofMillis(2)) <= 0, "Unexpected p50: " + p50);
+        assertEquals(Duration.ofMillis(100), p100);
+        assertEquals(Duration.ofMillis(100), histogram.getMax());
+    }
+
+    /**
+     * Verifies that executions are recorded per statement, and that executions that exceed the threshold are recorded
+     * as slow queries.
+     */
+    @Test
+    public void testRecord() throws Exception
+    {
+        // Setup test fixture.
+        final String sql = "SELECT username FROM ofUser WHERE username=?";
+        final long slow = StatementProfiler.SLOW_QUERY_THRESHOLD.getValue().toNanos() + 1;
+
+        // Execute system under test.
+        StatementProfiler.record(sql, 1000, false);
+        StatementProfiler.record(sql, slow, true);
+
+        // Verify results.
+        final List<StatementProfiler.StatementStatistics> statistics = StatementProfiler.getStatementStatistics();
+        assertEquals(1, statistics.size());
+        assertEquals(sql, statistics.get(0).getSql());
+        assertEquals(2, statistics.get(0).getLatency().getCount());
+        assertEquals(1, statistics.get(0).getErrorCount());
+        assertEquals(1, StatementProfiler.getSlowQueryCount());
+        assertEquals(sql, StatementProfiler.getSlowQueries().get(0).getSql());
+        assertTrue(StatementProfiler.getSlowQueries().get(0).isFailed());
+    }
+}
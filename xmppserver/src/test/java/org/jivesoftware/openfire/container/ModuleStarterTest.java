@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.container;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link ModuleStarter}.
+ */
+public class ModuleStarterTest
+{
+    private static final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    /**
+     * Verifies that modules are started after the modules that they depend on, and after all modules that were loaded
+     * before them that do not declare their dependencies.
+     */
+    @Test
+    public void testStartOrder() throws Exception
+    {
+        // Setup test fixture.
+        started.clear();
+        final ModuleStarter moduleStarter = new ModuleStarter();
+        final List<Module> modules = List.of(new First(), new Independent(), new Dependent(), new Last());
+
+        // Execute system under test.
+        moduleStarter.start(modules);
+
+        // Verify results.
+        assertEquals(4, started.size());
+        assertEquals("First", started.get(0));
+        assertTrue(started.indexOf("Independent") < started.indexOf("Dependent"));
+        assertEquals("Last", started.get(3));
+        assertEquals(4, moduleStarter.getStartTimes().size());
+    }
+
+    /**
+     * Verifies that an exception thrown by a module does not prevent other modules from being started.
+     */
+    @Test
+    public void testFailingModule() throws Exception
+    {
+        // Setup test fixture.
+        started.clear();
+        final ModuleStarter moduleStarter = new ModuleStarter();
+        final List<Module> modules = List.of(new Failing(), new Last());
+
+        // Execute system under test.
+        moduleStarter.start(modules);
+
+        // Verify results.
+        assertEquals(List.of("Failing", "Last"), started);
+    }
+
+    private static class RecordingModule extends BasicModule {
+        RecordingModule(final String name) {
+            super(name);
+        }
+
+        @Override
+        public void start() {
+            started.add(getName());
+        }
+    }
+
+    private static class First extends RecordingModule {
+        First() {
+            super("First");
+        }
+    }
+
+    private static class Independent extends RecordingModule {
+        Independent() {
+            super("Independent");
+        }
+
+        @Override
+        public Set<Class<? extends Module>> getStartDependencies() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void start() {
+            try {
+                // Give a dependent module the opportunity to start prematurely.
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.start();
+        }
+    }
+
+    private static class Dependent extends RecordingModule {
+        Dependent() {
+            super("Dependent");
+        }
+
+        @Override
+        public Set<Class<? extends Module>> getStartDependencies() {
+            return Set.of(Independent.class);
+        }
+    }
+
+    private static class Last extends RecordingModule {
+        Last() {
+            super("Last");
+        }
+    }
+
+    private static class Failing extends RecordingModule {
+        Failing() {
+            super("Failing");
+        }
+
+        @Override
+        public Set<Class<? extends Module>> getStartDependencies() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void start() {
+            super.start();
+            throw new IllegalStateException("Intentionally failing.");
+        }
+    }
+}
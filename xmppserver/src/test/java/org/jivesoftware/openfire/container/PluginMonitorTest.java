@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.container;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that verify the functionality of {@link PluginMonitor}
+ */
+public class PluginMonitorTest
+{
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    /**
+     * Writes a plugin JAR file that contains a plugin.xml file and one other file.
+     */
+    private static void writePluginJar(final Path file, final String content) throws IOException
+    {
+        try (final OutputStream out = Files.newOutputStream(file); final JarOutputStream jar = new JarOutputStream(out)) {
+            jar.putNextEntry(new JarEntry("plugin.xml"));
+            jar.write("<plugin><name>Test</name></plugin>".getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+            jar.putNextEntry(new JarEntry("web/content.txt"));
+            jar.write(content.getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        }
+    }
+
+    /**
+     * Creates a plugin directory, optionally referring to a parent plugin.
+     */
+    private static Path createPluginDirectory(final Path pluginsDirectory, final String name, final String parentName) throws IOException
+    {
+        final Path result = Files.createDirectory(pluginsDirectory.resolve(name));
+        final String parent = parentName == null ? "" : "<parentPlugin>" + parentName + "</parentPlugin>";
+        Files.write(result.resolve("plugin.xml"), ("<plugin><name>" + name + "</name>" + parent + "</plugin>").getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    @Test
+    public void testChecksumOfKnownContent(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path file = directory.resolve("plugin.jar");
+        Files.write(file, "abc".getBytes(StandardCharsets.US_ASCII));
+
+        // Execute system under test.
+        final String result = PluginMonitor.calculateChecksum(file);
+
+        // Verify results.
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", result);
+    }
+
+    /**
+     * Verifies that the directory to which a plugin was extracted is reused after the plugin JAR file was touched
+     * without its content changing.
+     */
+    @Test
+    public void testTouchedJarReusesExtractedDirectory(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path jar = directory.resolve("test.jar");
+        final Path dir = directory.resolve("test");
+        writePluginJar(jar, "version 1");
+        assertTrue(PluginMonitor.unzipPlugin("test", jar, dir));
+        final FileTime touched = FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 60_000);
+        Files.setLastModifiedTime(jar, touched);
+
+        // Execute system under test.
+        final boolean result = PluginMonitor.reuseExtractedDirectory(dir, jar);
+
+        // Verify results.
+        assertTrue(result);
+        assertEquals(touched, Files.getLastModifiedTime(dir));
+        assertEquals("version 1", new String(Files.readAllBytes(dir.resolve("web/content.txt")), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Verifies that a plugin is extracted again after the content of its JAR file changed.
+     */
+    @Test
+    public void testChangedJarIsExtractedAgain(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path jar = directory.resolve("test.jar");
+        final Path dir = directory.resolve("test");
+        writePluginJar(jar, "version 1");
+        assertTrue(PluginMonitor.unzipPlugin("test", jar, dir));
+        final String originalChecksum = PluginMonitor.calculateChecksum(jar);
+        writePluginJar(jar, "version 2");
+
+        // Execute system under test.
+        final boolean reused = PluginMonitor.reuseExtractedDirectory(dir, jar);
+        assertTrue(PluginManager.deleteDir(dir));
+        final boolean result = PluginMonitor.unzipPlugin("test", jar, dir);
+
+        // Verify results.
+        assertFalse(reused);
+        assertTrue(result);
+        assertEquals("version 2", new String(Files.readAllBytes(dir.resolve("web/content.txt")), StandardCharsets.UTF_8));
+        assertTrue(PluginMonitor.isExtractedFrom(dir, jar));
+        assertNotEquals(originalChecksum, PluginMonitor.calculateChecksum(jar));
+    }
+
+    /**
+     * Verifies that a child plugin is loaded after its parent plugin was loaded.
+     */
+    @Test
+    public void testChildIsLoadedAfterParent(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path parent = createPluginDirectory(directory, "parent", null);
+        final Path child = createPluginDirectory(directory, "child", "parent");
+        final List<String> loaded = new CopyOnWriteArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Execute system under test.
+        final Map<String, CompletableFuture<Boolean>> result;
+        try {
+            result = PluginMonitor.scheduleLoading(List.of(List.of(parent, child)), name -> false, (name, path, hasParent) -> loaded.add(name), executor);
+            result.get("child").get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify results.
+        assertTrue(result.get("parent").get());
+        assertTrue(result.get("child").get());
+        assertEquals(List.of("parent", "child"), loaded);
+    }
+
+    /**
+     * Verifies that a child plugin is not loaded when its parent plugin fails to load.
+     */
+    @Test
+    public void testChildIsNotLoadedWhenParentFails(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path parent = createPluginDirectory(directory, "parent", null);
+        final Path child = createPluginDirectory(directory, "child", "parent");
+        final List<String> loaded = new CopyOnWriteArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Execute system under test.
+        final Map<String, CompletableFuture<Boolean>> result;
+        try {
+            result = PluginMonitor.scheduleLoading(List.of(List.of(parent, child)), name -> false, (name, path, hasParent) -> {
+                loaded.add(name);
+                return hasParent;
+            }, executor);
+            result.get("child").get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify results.
+        assertFalse(result.get("parent").get());
+        assertFalse(result.get("child").get());
+        assertEquals(List.of("parent"), loaded);
+    }
+
+    /**
+     * Verifies that a child plugin is not loaded when loading its parent plugin throws an exception.
+     */
+    @Test
+    public void testChildIsNotLoadedWhenParentThrows(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path parent = createPluginDirectory(directory, "parent", null);
+        final Path child = createPluginDirectory(directory, "child", "parent");
+        final List<String> loaded = new CopyOnWriteArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Execute system under test.
+        final Map<String, CompletableFuture<Boolean>> result;
+        try {
+            result = PluginMonitor.scheduleLoading(List.of(List.of(parent, child)), name -> false, (name, path, hasParent) -> {
+                loaded.add(name);
+                if (!hasParent) {
+                    throw new IllegalStateException("Parent plugin is broken.");
+                }
+                return true;
+            }, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify results.
+        assertThrows(ExecutionException.class, () -> result.get("child").get());
+        assertEquals(List.of("parent"), loaded);
+    }
+
+    /**
+     * Verifies that plugins that have already been loaded are not loaded again, but that their children are loaded.
+     */
+    @Test
+    public void testLoadedPluginsAreSkipped(@TempDir final Path directory) throws Exception
+    {
+        // Setup test fixture.
+        final Path parent = createPluginDirectory(directory, "parent", null);
+        final Path child = createPluginDirectory(directory, "child", "parent");
+        final List<String> loaded = new CopyOnWriteArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Execute system under test.
+        final Map<String, CompletableFuture<Boolean>> result;
+        try {
+            result = PluginMonitor.scheduleLoading(List.of(List.of(parent, child)), "parent"::equals, (name, path, hasParent) -> loaded.add(name), executor);
+            result.get("child").get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify results.
+        assertFalse(result.containsKey("parent"));
+        assertEquals(List.of("child"), loaded);
+    }
+}
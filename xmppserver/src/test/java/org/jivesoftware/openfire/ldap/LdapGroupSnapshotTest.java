@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.ldap;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.group.Group;
+import org.jivesoftware.openfire.group.GroupManager;
+import org.jivesoftware.openfire.group.GroupNotFoundException;
+import org.jivesoftware.util.JiveGlobals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.JID;
+
+import javax.naming.NamingException;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the implementation of {@link LdapGroupSnapshot}.
+ */
+public class LdapGroupSnapshotTest
+{
+    private static final JID JANE = new JID("jane@example.org");
+    private static final JID JOHN = new JID("john@example.org");
+
+    private LdapManager manager;
+    private GroupManager groupManager;
+
+    /**
+     * The groups in 'LDAP', by name.
+     */
+    private Map<String, Group> directory;
+
+    /**
+     * The change attribute of the groups in 'LDAP', by group name.
+     */
+    private Map<String, String> changeMarkers;
+
+    /**
+     * The names of the groups that were loaded, in order.
+     */
+    private List<String> loaded;
+
+    private boolean listingFails;
+
+    private boolean loadingFails;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        manager = mock(LdapManager.class);
+        groupManager = mock(GroupManager.class);
+        directory = new HashMap<>();
+        changeMarkers = new HashMap<>();
+        loaded = new ArrayList<>();
+        listingFails = false;
+        loadingFails = false;
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        JiveGlobals.deleteProperty(LdapGroupSnapshot.FULL_REFRESH_INTERVAL.getKey());
+    }
+
+    private LdapGroupSnapshot createSnapshot()
+    {
+        final LdapGroupSnapshot.GroupLoader loader = groupName -> {
+            if (loadingFails) {
+                throw new IllegalStateException("LDAP is unavailable.");
+            }
+            loaded.add(groupName);
+            final Group group = directory.get(groupName);
+            if (group == null) {
+                throw new GroupNotFoundException(groupName);
+            }
+            return group;
+        };
+        final LdapGroupSnapshot.GroupLister lister = () -> {
+            if (listingFails) {
+                throw new LdapPagedSearch.SearchFailedException(new NamingException("LDAP is unavailable."));
+            }
+            return new HashMap<>(changeMarkers);
+        };
+        return new LdapGroupSnapshot(manager, loader, lister, () -> groupManager);
+    }
+
+    /**
+     * Adds a group to 'LDAP', or replaces it.
+     */
+    private Group putGroup(final String name, final String description, final String changeMarker, final JID... members)
+    {
+        final Group group = mock(Group.class);
+        when(group.getName()).thenReturn(name);
+        when(group.getDescription()).thenReturn(description);
+        when(group.getMembers()).thenReturn(new HashSet<>(Arrays.asList(members)));
+        when(group.getAdmins()).thenReturn(Collections.emptySet());
+        directory.put(name, group);
+        changeMarkers.put(name, changeMarker);
+        return group;
+    }
+
+    private void removeGroup(final String name)
+    {
+        directory.remove(name);
+        changeMarkers.remove(name);
+    }
+
+    /**
+     * Verifies that the first refresh loads all groups, and makes the snapshot ready.
+     */
+    @Test
+    public void testInitialRefreshLoadsAllGroups() throws Exception
+    {
+        // Setup test fixture.
+        putGroup("Sales", null, "1", JANE);
+        putGroup("Support", null, "1", JANE, JOHN);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        final boolean readyBeforeRefresh = snapshot.isReady();
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        assertFalse(readyBeforeRefresh);
+        assertTrue(snapshot.isReady());
+        assertEquals(List.of("Sales", "Support"), snapshot.getGroupNames());
+        assertEquals(Set.of("Sales", "Support"), new HashSet<>(snapshot.getGroupNames(JANE)));
+        assertEquals(Set.of("Support"), new HashSet<>(snapshot.getGroupNames(JOHN)));
+        assertEquals(2, snapshot.getLastLoadedCount());
+        verifyNoInteractions(groupManager);
+    }
+
+    /**
+     * Verifies that an incremental refresh only loads the groups of which the change attribute has changed.
+     */
+    @Test
+    public void testIncrementalRefreshLoadsChangedGroupsOnly() throws Exception
+    {
+        // Setup test fixture.
+        final Group sales = putGroup("Sales", null, "1", JANE);
+        putGroup("Support", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        loaded.clear();
+        putGroup("Support", null, "2", JANE, JOHN);
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        assertEquals(List.of("Support"), loaded);
+        assertEquals(1, snapshot.getLastLoadedCount());
+        assertSame(sales, snapshot.getGroup("Sales"));
+        assertEquals(Set.of("Support"), new HashSet<>(snapshot.getGroupNames(JOHN)));
+    }
+
+    /**
+     * Verifies that all groups are loaded when the full refresh interval has passed.
+     */
+    @Test
+    public void testFullRefreshLoadsAllGroups() throws Exception
+    {
+        // Setup test fixture.
+        LdapGroupSnapshot.FULL_REFRESH_INTERVAL.setValue(Duration.ZERO);
+        putGroup("Sales", null, "1", JANE);
+        putGroup("Support", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        loaded.clear();
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        assertEquals(Set.of("Sales", "Support"), new HashSet<>(loaded));
+        assertEquals(2, snapshot.getLastLoadedCount());
+    }
+
+    /**
+     * Verifies that a group without a change attribute is loaded on every refresh, as its changes cannot be detected.
+     */
+    @Test
+    public void testGroupWithoutChangeAttributeIsAlwaysLoaded() throws Exception
+    {
+        // Setup test fixture.
+        putGroup("Sales", null, "", JANE);
+        putGroup("Support", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        loaded.clear();
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        assertEquals(List.of("Sales"), loaded);
+    }
+
+    /**
+     * Verifies that all groups are loaded when any group changes while nested groups are flattened, but that no group
+     * is loaded when nothing changed.
+     */
+    @Test
+    public void testChangeReloadsAllGroupsWhenFlatteningNestedGroups() throws Exception
+    {
+        // Setup test fixture.
+        when(manager.isFlattenNestedGroups()).thenReturn(true);
+        putGroup("Sales", null, "1", JANE);
+        putGroup("Support", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        loaded.clear();
+
+        // Execute system under test.
+        snapshot.refresh();
+        final List<String> loadedWithoutChange = new ArrayList<>(loaded);
+        loaded.clear();
+        putGroup("Support", null, "2", JANE, JOHN);
+        snapshot.refresh();
+
+        // Verify results.
+        assertEquals(List.of(), loadedWithoutChange);
+        assertEquals(Set.of("Sales", "Support"), new HashSet<>(loaded));
+    }
+
+    /**
+     * Verifies that added, changed and removed groups are applied to the group manager.
+     */
+    @Test
+    public void testChangesAreAppliedToGroupManager() throws Exception
+    {
+        // Setup test fixture.
+        final Group sales = putGroup("Sales", "Sales team", "1", JANE);
+        final Group support = putGroup("Support", null, "1", JANE);
+        final Group marketing = putGroup("Marketing", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        final Group updatedSales = putGroup("Sales", "Sales department", "2", JOHN);
+        removeGroup("Support");
+        putGroup("Development", null, "1", JOHN);
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        verify(groupManager).memberAddedPostProcess(updatedSales, JOHN, false);
+        verify(groupManager).memberRemovedPostProcess(updatedSales, JANE);
+        verify(groupManager).redescribeGroupPostProcess(updatedSales, "Sales team");
+        verify(groupManager).deleteGroupPreProcess(support);
+        verify(groupManager).deleteGroupPostProcess(support);
+        verify(groupManager).getGroup("Development", true);
+        verify(groupManager, never()).memberAddedPostProcess(eq(marketing), any(), anyBoolean());
+        verify(groupManager, never()).deleteGroupPreProcess(sales);
+        verifyNoMoreInteractions(groupManager);
+    }
+
+    /**
+     * Verifies that the snapshot is retained when the groups cannot be listed.
+     */
+    @Test
+    public void testFailedRefreshKeepsSnapshot() throws Exception
+    {
+        // Setup test fixture.
+        final Group sales = putGroup("Sales", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        removeGroup("Sales");
+        listingFails = true;
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        assertTrue(snapshot.isReady());
+        assertEquals(List.of("Sales"), snapshot.getGroupNames());
+        assertSame(sales, snapshot.getGroup("Sales"));
+        verifyNoInteractions(groupManager);
+    }
+
+    /**
+     * Verifies that a group retains its previous state when it cannot be loaded.
+     */
+    @Test
+    public void testFailedLoadKeepsPreviousGroup() throws Exception
+    {
+        // Setup test fixture.
+        final Group sales = putGroup("Sales", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        changeMarkers.put("Sales", "2");
+        loadingFails = true;
+
+        // Execute system under test.
+        snapshot.refresh();
+
+        // Verify results.
+        assertSame(sales, snapshot.getGroup("Sales"));
+        assertEquals(0, snapshot.getLastLoadedCount());
+        verifyNoInteractions(groupManager);
+    }
+
+    /**
+     * Verifies that changes are not applied to the group manager after the snapshot was stopped.
+     */
+    @Test
+    public void testStoppedSnapshotDoesNotApplyChanges() throws Exception
+    {
+        // Setup test fixture.
+        putGroup("Sales", null, "1", JANE);
+        final LdapGroupSnapshot snapshot = createSnapshot();
+        snapshot.refresh();
+        putGroup("Sales", null, "2", JANE, JOHN);
+
+        // Execute system under test.
+        snapshot.stop();
+        snapshot.refresh();
+
+        // Verify results.
+        verifyNoInteractions(groupManager);
+    }
+}
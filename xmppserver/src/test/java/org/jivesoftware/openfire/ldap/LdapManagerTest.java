@@ -73,6 +73,27 @@ public class LdapManagerTest
         assertEquals("ldaps://localhost:389/ou=people,dc=example,dc=org ldaps://example.org:389/ou=people,dc=example,dc=org", result);
     }
 
+    /**
+     * Test if {@link LdapManager#getProviderURL(LdapName, int)} lists the hosts starting with the requested host, so
+     * that connections can be distributed over all hosts.
+     */
+    @Test
+    public void testGetProviderURLRotatedHosts() throws Exception
+    {
+        // Setup fixture.
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("ldap.host", "localhost example.org example.com");
+        properties.put("ldap.port", "389");
+        final LdapManager manager = new LdapManager( properties );
+        final LdapName name = new LdapName("ou=people,dc=example,dc=org");
+
+        // Execute system under test.
+        final String result = manager.getProviderURL( name, 4 );
+
+        // Verify result.
+        assertEquals("ldaps://example.org:389/ou=people,dc=example,dc=org ldaps://example.com:389/ou=people,dc=example,dc=org ldaps://localhost:389/ou=people,dc=example,dc=org", result);
+    }
+
     /**
      * Test if {@link LdapManager#getProviderURL(LdapName)} escapes whitespace characters in the baseDN value.
      */
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.ldap;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.util.JiveGlobals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link LdapResultCache}.
+ */
+public class LdapResultCacheTest
+{
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        JiveGlobals.deleteProperty(LdapResultCache.MAX_ENTRIES.getKey());
+    }
+
+    /**
+     * A clock that only advances when instructed to.
+     */
+    private static class ManualClock extends Clock
+    {
+        private Instant now = Instant.parse("2023-01-01T00:00:00Z");
+
+        void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    /**
+     * Verifies that a result is looked up once, and then answered from cache while it has not expired.
+     */
+    @Test
+    public void testCachedWithinTimeToLive() throws Exception
+    {
+        // Setup test fixture.
+        final ManualClock clock = new ManualClock();
+        final AtomicInteger lookups = new AtomicInteger();
+        final LdapResultCache<String, Integer> cache = new LdapResultCache<>("test", key -> lookups.incrementAndGet(), Runnable::run, clock);
+
+        // Execute system under test.
+        final int first = cache.get("john");
+        clock.advance(LdapResultCache.TTL.getValue().dividedBy(4));
+        final int second = cache.get("john");
+
+        // Verify results.
+        assertEquals(1, first);
+        assertEquals(1, second);
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that a result that is used after half of its time to live is refreshed in the background, while the
+     * cached result is returned.
+     */
+    @Test
+    public void testRefreshAhead() throws Exception
+    {
+        // Setup test fixture.
+        final ManualClock clock = new ManualClock();
+        final AtomicInteger lookups = new AtomicInteger();
+        final List<Runnable> refreshes = new ArrayList<>();
+        final LdapResultCache<String, Integer> cache = new LdapResultCache<>("test", key -> lookups.incrementAndGet(), refreshes::add, clock);
+        cache.get("john");
+        clock.advance(LdapResultCache.TTL.getValue().dividedBy(2));
+
+        // Execute system under test.
+        final int beforeRefresh = cache.get("john");
+        cache.get("john"); // should not schedule a second refresh.
+        refreshes.forEach(Runnable::run);
+        final int afterRefresh = cache.get("john");
+
+        // Verify results.
+        assertEquals(1, beforeRefresh);
+        assertEquals(1, refreshes.size());
+        assertEquals(2, afterRefresh);
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that an expired result is looked up again.
+     */
+    @Test
+    public void testExpired() throws Exception
+    {
+        // Setup test fixture.
+        final ManualClock clock = new ManualClock();
+        final AtomicInteger lookups = new AtomicInteger();
+        final LdapResultCache<String, Integer> cache = new LdapResultCache<>("test", key -> lookups.incrementAndGet(), task -> {}, clock);
+        cache.get("john");
+        clock.advance(LdapResultCache.TTL.getValue());
+
+        // Execute system under test.
+        final int result = cache.get("john");
+
+        // Verify results.
+        assertEquals(2, result);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that a failed lookup is not cached, and that an expired result is used while it cannot be looked up
+     * again.
+     */
+    @Test
+    public void testFailedLookupKeepsExpiredResult() throws Exception
+    {
+        // Setup test fixture.
+        final ManualClock clock = new ManualClock();
+        final AtomicInteger lookups = new AtomicInteger();
+        final AtomicBoolean failing = new AtomicBoolean();
+        final LdapResultCache<String, Integer> cache = new LdapResultCache<>("test", key -> {
+            if (failing.get()) {
+                throw new IllegalStateException("LDAP server unavailable");
+            }
+            return lookups.incrementAndGet();
+        }, task -> {}, clock);
+        cache.get("john");
+        clock.advance(LdapResultCache.TTL.getValue());
+        failing.set(true);
+
+        // Execute system under test.
+        final int duringFailure = cache.get("john");
+        assertThrows(IllegalStateException.class, () -> cache.get("jane"));
+        failing.set(false);
+        final int afterFailure = cache.get("john");
+
+        // Verify results.
+        assertEquals(1, duringFailure);
+        assertEquals(2, afterFailure);
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Verifies that a failed background refresh leaves the cached result in place.
+     */
+    @Test
+    public void testFailedRefreshKeepsResult() throws Exception
+    {
+        // Setup test fixture.
+        final ManualClock clock = new ManualClock();
+        final AtomicBoolean failing = new AtomicBoolean();
+        final List<Runnable> refreshes = new ArrayList<>();
+        final LdapResultCache<String, Integer> cache = new LdapResultCache<>("test", key -> {
+            if (failing.get()) {
+                throw new IllegalStateException("LDAP server unavailable");
+            }
+            return 1;
+        }, refreshes::add, clock);
+        cache.get("john");
+        clock.advance(LdapResultCache.TTL.getValue().dividedBy(2));
+        failing.set(true);
+
+        // Execute system under test.
+        cache.get("john");
+        refreshes.forEach(Runnable::run);
+        final int result = cache.get("john");
+
+        // Verify results.
+        assertEquals(1, result);
+        assertEquals(0, cache.getRefreshCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that the result that was used least recently is removed when the cache is full.
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception
+    {
+        // Setup test fixture.
+        LdapResultCache.MAX_ENTRIES.setValue(2);
+        final ManualClock clock = new ManualClock();
+        final AtomicInteger lookups = new AtomicInteger();
+        final LdapResultCache<String, Integer> cache = new LdapResultCache<>("test", key -> lookups.incrementAndGet(), task -> {}, clock);
+        cache.get("john");
+        cache.get("jane");
+        cache.get("john");
+
+        // Execute system under test.
+        cache.get("jack");
+        final int lookupsBefore = lookups.get();
+        cache.get("john");
+        final int lookupsAfterJohn = lookups.get();
+        cache.get("jane");
+
+        // Verify results.
+        assertEquals(lookupsBefore, lookupsAfterJohn); // still cached
+        assertEquals(lookupsAfterJohn + 1, lookups.get()); // was evicted
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+}
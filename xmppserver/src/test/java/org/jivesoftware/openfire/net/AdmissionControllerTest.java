@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.net.AdmissionController.Stage;
+import org.jivesoftware.util.JiveGlobals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link AdmissionController}
+ */
+public class AdmissionControllerTest
+{
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        AdmissionController.ENABLED.setValue(true);
+        AdmissionController.MAX_QUEUE_DURATION.setValue(Duration.ofSeconds(10));
+        AdmissionController.BURST_DURATION.setValue(Duration.ofSeconds(2));
+        Stage.ACCEPT.getGlobalRate().setValue(1.0);
+        Stage.ACCEPT.getPerAddressRate().setValue(1.0);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        JiveGlobals.deleteProperty(AdmissionController.ENABLED.getKey());
+        JiveGlobals.deleteProperty(AdmissionController.MAX_QUEUE_DURATION.getKey());
+        JiveGlobals.deleteProperty(AdmissionController.BURST_DURATION.getKey());
+        JiveGlobals.deleteProperty(Stage.ACCEPT.getGlobalRate().getKey());
+        JiveGlobals.deleteProperty(Stage.ACCEPT.getPerAddressRate().getKey());
+    }
+
+    /**
+     * Verifies that requests are admitted immediately while capacity is available.
+     */
+    @Test
+    public void testAdmitsWithinCapacity() throws Exception
+    {
+        // Setup test fixture.
+        final AdmissionController controller = new AdmissionController(null);
+
+        // Execute system under test.
+        final long first = controller.requestAdmission(Stage.ACCEPT, "192.0.2.1");
+        final long second = controller.requestAdmission(Stage.ACCEPT, "192.0.2.2");
+
+        // Verify results.
+        assertEquals(0, first);
+        assertEquals(0, second);
+        assertEquals(2, controller.getAdmittedCount(Stage.ACCEPT));
+    }
+
+    /**
+     * Verifies that a request that is delayed by its per-address bucket does not cause the global bucket to hand out
+     * more tokens than its rate allows to requests from other addresses.
+     */
+    @Test
+    public void testPerAddressDelayDoesNotExceedGlobalRate() throws Exception
+    {
+        // Setup test fixture. Both buckets hold two tokens, and receive one token per second.
+        final AdmissionController controller = new AdmissionController(null);
+        controller.requestAdmission(Stage.ACCEPT, "192.0.2.1");
+        controller.requestAdmission(Stage.ACCEPT, "192.0.2.1");
+        final long delayedByAddress = controller.requestAdmission(Stage.ACCEPT, "192.0.2.1");
+
+        // Execute system under test.
+        final long otherAddress = controller.requestAdmission(Stage.ACCEPT, "192.0.2.2");
+
+        // Verify results. The fourth request within a second is the second one that needs to wait for the global bucket.
+        assertTrue(delayedByAddress > SECOND / 2 && delayedByAddress <= SECOND, "Unexpected delay: " + delayedByAddress);
+        assertTrue(otherAddress > SECOND * 3 / 2, "Unexpected delay: " + otherAddress);
+    }
+
+    /**
+     * Verifies that a request is rejected when it cannot be admitted within the maximum queue duration.
+     */
+    @Test
+    public void testRejectsBeyondMaximumQueueDuration() throws Exception
+    {
+        // Setup test fixture.
+        AdmissionController.MAX_QUEUE_DURATION.setValue(Duration.ZERO);
+        final AdmissionController controller = new AdmissionController(null);
+        controller.requestAdmission(Stage.ACCEPT, "192.0.2.1");
+        controller.requestAdmission(Stage.ACCEPT, "192.0.2.2");
+
+        // Execute system under test.
+        final long result = controller.requestAdmission(Stage.ACCEPT, "192.0.2.3");
+
+        // Verify results.
+        assertTrue(result < 0);
+        assertEquals(1, controller.getRejectedCount(Stage.ACCEPT));
+    }
+}
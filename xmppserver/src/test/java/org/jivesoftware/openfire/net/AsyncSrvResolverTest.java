@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.naming.NamingException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link AsyncSrvResolver}
+ */
+public class AsyncSrvResolverTest
+{
+    private static final String QUERY = "_xmpp-server._tcp.example.org.";
+    private static final DNSUtil.WeightedHostAddress RECORD = new DNSUtil.WeightedHostAddress("xmpp.example.org", 5269, false, 1, 1);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private StubBackend backend;
+    private AsyncSrvResolver resolver;
+
+    @BeforeAll
+    public static void beforeClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Fixtures.clearExistingProperties();
+        AsyncSrvResolver.DEFAULT_TTL.setValue(Duration.ofSeconds(100));
+        AsyncSrvResolver.NEGATIVE_TTL.setValue(Duration.ofSeconds(10));
+        AsyncSrvResolver.REFRESH_AHEAD_FACTOR.setValue(0.8);
+
+        tasks.clear();
+        clock.set(0);
+        backend = new StubBackend();
+        resolver = new AsyncSrvResolver(new ConcurrentHashMap<>(), tasks::add, clock::get);
+        resolver.setBackend(backend);
+    }
+
+    /**
+     * Runs all tasks that were submitted to the executor of the resolver.
+     */
+    private void runTasks()
+    {
+        final List<Runnable> copy = new ArrayList<>(tasks);
+        tasks.clear();
+        copy.forEach(Runnable::run);
+    }
+
+    /**
+     * Verifies that concurrent lookups of the same query result in one query to the backend.
+     */
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws Exception
+    {
+        // Setup test fixture.
+        backend.answer = new DNSUtil.WeightedHostAddress[] { RECORD };
+
+        // Execute system under test.
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> first = resolver.lookup(QUERY);
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> second = resolver.lookup(QUERY);
+        runTasks();
+
+        // Verify results.
+        assertEquals(1, backend.invocations.get());
+        assertSame(first, second);
+        assertArrayEquals(new DNSUtil.WeightedHostAddress[] { RECORD }, first.get());
+    }
+
+    /**
+     * Verifies that an answer is served from cache, without querying the backend, until its TTL expires.
+     */
+    @Test
+    public void testAnswerIsCachedUntilExpiry() throws Exception
+    {
+        // Setup test fixture.
+        backend.answer = new DNSUtil.WeightedHostAddress[] { RECORD };
+        resolver.lookup(QUERY);
+        runTasks();
+
+        // Execute system under test.
+        clock.set(Duration.ofSeconds(50).toMillis());
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> cached = resolver.lookup(QUERY);
+        clock.set(Duration.ofSeconds(100).toMillis());
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> expired = resolver.lookup(QUERY);
+
+        // Verify results.
+        assertTrue(cached.isDone());
+        assertArrayEquals(new DNSUtil.WeightedHostAddress[] { RECORD }, cached.get());
+        assertFalse(expired.isDone());
+        runTasks();
+        assertEquals(2, backend.invocations.get());
+    }
+
+    /**
+     * Verifies that a cached answer is returned, and refreshed in the background, when it is used after the
+     * refresh-ahead fraction of its TTL has passed.
+     */
+    @Test
+    public void testAnswerIsRefreshedAhead() throws Exception
+    {
+        // Setup test fixture.
+        backend.answer = new DNSUtil.WeightedHostAddress[] { RECORD };
+        resolver.lookup(QUERY);
+        runTasks();
+        final DNSUtil.WeightedHostAddress updated = new DNSUtil.WeightedHostAddress("other.example.org", 5269, false, 1, 1);
+        backend.answer = new DNSUtil.WeightedHostAddress[] { updated };
+
+        // Execute system under test.
+        clock.set(Duration.ofSeconds(90).toMillis());
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> stale = resolver.lookup(QUERY);
+        runTasks();
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> refreshed = resolver.lookup(QUERY);
+
+        // Verify results.
+        assertArrayEquals(new DNSUtil.WeightedHostAddress[] { RECORD }, stale.get());
+        assertTrue(refreshed.isDone());
+        assertArrayEquals(new DNSUtil.WeightedHostAddress[] { updated }, refreshed.get());
+        assertEquals(2, backend.invocations.get());
+    }
+
+    /**
+     * Verifies that a failed lookup is cached for the negative TTL.
+     */
+    @Test
+    public void testFailedLookupIsNegativelyCached() throws Exception
+    {
+        // Setup test fixture.
+        backend.failure = new NamingException("Test failure");
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> failed = resolver.lookup(QUERY);
+        runTasks();
+
+        // Execute system under test.
+        clock.set(Duration.ofSeconds(5).toMillis());
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> cached = resolver.lookup(QUERY);
+        clock.set(Duration.ofSeconds(10).toMillis());
+        resolver.lookup(QUERY);
+        runTasks();
+
+        // Verify results.
+        assertEquals(0, failed.get().length);
+        assertTrue(cached.isDone());
+        assertEquals(0, cached.get().length);
+        assertEquals(2, backend.invocations.get());
+    }
+
+    /**
+     * Verifies that a failure to refresh an answer ahead of its expiry does not replace the answer.
+     */
+    @Test
+    public void testFailedRefreshRetainsAnswer() throws Exception
+    {
+        // Setup test fixture.
+        backend.answer = new DNSUtil.WeightedHostAddress[] { RECORD };
+        resolver.lookup(QUERY);
+        runTasks();
+        backend.failure = new NamingException("Test failure");
+
+        // Execute system under test.
+        clock.set(Duration.ofSeconds(90).toMillis());
+        resolver.lookup(QUERY);
+        runTasks();
+        final CompletableFuture<DNSUtil.WeightedHostAddress[]> result = resolver.lookup(QUERY);
+
+        // Verify results.
+        assertTrue(result.isDone());
+        assertArrayEquals(new DNSUtil.WeightedHostAddress[] { RECORD }, result.get());
+    }
+
+    /**
+     * A backend that provides a fixed answer, and counts the number of times that it's invoked.
+     */
+    private static class StubBackend implements SrvLookupBackend
+    {
+        final AtomicInteger invocations = new AtomicInteger();
+        DNSUtil.WeightedHostAddress[] answer = new DNSUtil.WeightedHostAddress[0];
+        NamingException failure;
+
+        @Nonnull
+        @Override
+        public Answer lookup(@Nonnull final String query) throws NamingException
+        {
+            invocations.incrementAndGet();
+            if (failure != null) {
+                throw failure;
+            }
+            return new Answer(answer, null);
+        }
+    }
+}
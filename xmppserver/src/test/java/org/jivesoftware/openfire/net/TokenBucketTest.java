@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link TokenBucket}
+ */
+public class TokenBucketTest
+{
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Verifies that tokens from a full bucket are handed out without delay.
+     */
+    @Test
+    public void testFullBucketAdmitsImmediately() throws Exception
+    {
+        // Setup test fixture.
+        final TokenBucket bucket = new TokenBucket(3, 0);
+
+        // Execute system under test.
+        final long first = bucket.reserve(1, 3, 0, 0);
+        final long second = bucket.reserve(1, 3, 0, 0);
+        final long third = bucket.reserve(1, 3, 0, 0);
+
+        // Verify results.
+        assertEquals(0, first);
+        assertEquals(0, second);
+        assertEquals(0, third);
+    }
+
+    /**
+     * Verifies that a token is reserved ahead of time when a bucket is empty, and the required delay is within bounds.
+     */
+    @Test
+    public void testEmptyBucketQueues() throws Exception
+    {
+        // Setup test fixture.
+        final TokenBucket bucket = new TokenBucket(1, 0);
+        bucket.reserve(2, 1, 0, 0);
+
+        // Execute system under test.
+        final long first = bucket.reserve(2, 1, 0, 10 * SECOND);
+        final long second = bucket.reserve(2, 1, 0, 10 * SECOND);
+
+        // Verify results.
+        assertEquals(SECOND / 2, first);
+        assertEquals(SECOND, second);
+    }
+
+    /**
+     * Verifies that no token is reserved when the required delay exceeds the maximum.
+     */
+    @Test
+    public void testEmptyBucketRejectsWhenDelayTooLong() throws Exception
+    {
+        // Setup test fixture.
+        final TokenBucket bucket = new TokenBucket(1, 0);
+        bucket.reserve(1, 1, 0, 0);
+
+        // Execute system under test.
+        final long result = bucket.reserve(1, 1, 0, SECOND / 2);
+
+        // Verify results.
+        assertEquals(-1, result);
+        assertEquals(0, bucket.getTokens(), 0.0001); // Rejected requests should not consume a token.
+    }
+
+    /**
+     * Verifies that tokens are replenished over time, up to the capacity of the bucket.
+     */
+    @Test
+    public void testRefillIsCappedByCapacity() throws Exception
+    {
+        // Setup test fixture.
+        final TokenBucket bucket = new TokenBucket(2, 0);
+        bucket.reserve(1, 2, 0, 0);
+        bucket.reserve(1, 2, 0, 0);
+
+        // Execute system under test.
+        final boolean fullAfterOneSecond = bucket.isFull(1, 2, SECOND);
+        final boolean fullAfterOneHour = bucket.isFull(1, 2, 3600 * SECOND);
+
+        // Verify results.
+        assertFalse(fullAfterOneSecond);
+        assertTrue(fullAfterOneHour);
+        assertEquals(2, bucket.getTokens(), 0.0001);
+    }
+
+    /**
+     * Verifies that a bucket does not limit anything when it is configured with a non-positive rate.
+     */
+    @Test
+    public void testNonPositiveRateDisablesLimit() throws Exception
+    {
+        // Setup test fixture.
+        final TokenBucket bucket = new TokenBucket(1, 0);
+
+        // Execute system under test & verify results.
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, bucket.reserve(0, 1, 0, 0));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import org.jivesoftware.openfire.nio.FairProcessingScheduler.SchedulingClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link FairProcessingScheduler}.
+ *
+ * The schedulers in these tests have no threads of their own: tasks are executed by the test, one at a time.
+ */
+public class FairProcessingSchedulerTest
+{
+    private static FairProcessingScheduler scheduler(final int clientWeight, final int serverWeight, final int componentWeight)
+    {
+        return new FairProcessingScheduler(0, Thread::new, schedulingClass -> {
+            switch (schedulingClass) {
+                case SERVER: return serverWeight;
+                case COMPONENT: return componentWeight;
+                default: return clientWeight;
+            }
+        });
+    }
+
+    private static void runAll(final FairProcessingScheduler scheduler)
+    {
+        while (scheduler.runNextTask()) {
+            // Tasks record their own execution.
+        }
+    }
+
+    /**
+     * Verifies that the tasks of one session are executed in the order in which they were submitted.
+     */
+    @Test
+    public void testTasksOfSessionAreOrdered() throws Exception
+    {
+        // Setup test fixture.
+        final FairProcessingScheduler scheduler = scheduler(1, 1, 1);
+        final Executor session = scheduler.newSessionExecutor(SchedulingClass.CLIENT);
+        final List<Integer> executed = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int task = i;
+            session.execute(() -> executed.add(task));
+        }
+
+        // Execute system under test.
+        runAll(scheduler);
+
+        // Verify results.
+        assertEquals(List.of(0, 1, 2, 3, 4), executed);
+        assertEquals(0, scheduler.getQueuedTaskCount(SchedulingClass.CLIENT));
+    }
+
+    /**
+     * Verifies that sessions of the same class take turns, so that a session with many tasks does not delay the
+     * tasks of another session.
+     */
+    @Test
+    public void testSessionsTakeTurns() throws Exception
+    {
+        // Setup test fixture.
+        final FairProcessingScheduler scheduler = scheduler(1, 1, 1);
+        final Executor busy = scheduler.newSessionExecutor(SchedulingClass.CLIENT);
+        final Executor quiet = scheduler.newSessionExecutor(SchedulingClass.CLIENT);
+        final List<String> executed = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final int task = i;
+            busy.execute(() -> executed.add("busy" + task));
+        }
+        quiet.execute(() -> executed.add("quiet0"));
+
+        // Execute system under test.
+        runAll(scheduler);
+
+        // Verify results.
+        assertEquals(List.of("busy0", "quiet0", "busy1", "busy2"), executed);
+    }
+
+    /**
+     * Verifies that processing capacity is shared between classes in proportion to their weights.
+     */
+    @Test
+    public void testClassesShareByWeight() throws Exception
+    {
+        // Setup test fixture.
+        final FairProcessingScheduler scheduler = scheduler(3, 1, 1);
+        final Executor client = scheduler.newSessionExecutor(SchedulingClass.CLIENT);
+        final Executor server = scheduler.newSessionExecutor(SchedulingClass.SERVER);
+        final List<SchedulingClass> executed = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            client.execute(() -> executed.add(SchedulingClass.CLIENT));
+            server.execute(() -> executed.add(SchedulingClass.SERVER));
+        }
+        assertEquals(8, scheduler.getQueuedTaskCount(SchedulingClass.CLIENT));
+        assertEquals(8, scheduler.getQueuedTaskCount(SchedulingClass.SERVER));
+
+        // Execute system under test.
+        for (int i = 0; i < 8; i++) {
+            assertTrue(scheduler.runNextTask());
+        }
+
+        // Verify results.
+        assertEquals(6, executed.stream().filter(SchedulingClass.CLIENT::equals).count());
+        assertEquals(2, executed.stream().filter(SchedulingClass.SERVER::equals).count());
+    }
+
+    /**
+     * Verifies that a class that has no tasks waiting for execution does not hold up the tasks of other classes.
+     */
+    @Test
+    public void testIdleClassDoesNotUseItsShare() throws Exception
+    {
+        // Setup test fixture.
+        final FairProcessingScheduler scheduler = scheduler(1, 1, 5);
+        final Executor server = scheduler.newSessionExecutor(SchedulingClass.SERVER);
+        final List<Integer> executed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int task = i;
+            server.execute(() -> executed.add(task));
+        }
+
+        // Execute system under test.
+        runAll(scheduler);
+
+        // Verify results.
+        assertEquals(List.of(0, 1, 2, 3), executed);
+        assertFalse(scheduler.runNextTask());
+    }
+
+    /**
+     * Verifies that tasks are rejected after the scheduler has been shut down.
+     */
+    @Test
+    public void testRejectsAfterShutdown() throws Exception
+    {
+        // Setup test fixture.
+        final FairProcessingScheduler scheduler = scheduler(1, 1, 1);
+        final Executor session = scheduler.newSessionExecutor(SchedulingClass.COMPONENT);
+
+        // Execute system under test.
+        scheduler.shutdown();
+
+        // Verify results.
+        assertTrue(scheduler.isShutdown());
+        assertThrows(RejectedExecutionException.class, () -> session.execute(() -> {}));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.nio;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.jivesoftware.openfire.net.AdmissionController;
+import org.jivesoftware.openfire.net.AdmissionController.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests that verify the implementation of {@link NettyAdmissionHandler}
+ */
+public class NettyAdmissionHandlerTest
+{
+    private static final String AUTH = "<auth xmlns='urn:ietf:params:xml:ns:xmpp-sasl' mechanism='PLAIN'>AGp1bGlldAByMG0zMG0wcjMw</auth>";
+    private static final String BIND = "<iq type='set' id='bind_1'><bind xmlns='urn:ietf:params:xml:ns:xmpp-bind'/></iq>";
+
+    /**
+     * Verifies that a connection is closed when it is not admitted.
+     */
+    @Test
+    public void testRejectedConnectionIsClosed() throws Exception
+    {
+        // Setup test fixture.
+        final AdmissionController controller = mock(AdmissionController.class);
+        when(controller.requestAdmission(eq(Stage.ACCEPT), any())).thenReturn(-1L);
+
+        // Execute system under test.
+        final EmbeddedChannel channel = new EmbeddedChannel(new NettyAdmissionHandler(controller));
+
+        // Verify results.
+        assertFalse(channel.isOpen());
+    }
+
+    /**
+     * Verifies that admitted stanzas are passed on, and that the handler removes itself after resource binding.
+     */
+    @Test
+    public void testAdmittedStanzasArePassedOn() throws Exception
+    {
+        // Setup test fixture.
+        final AdmissionController controller = mock(AdmissionController.class);
+        when(controller.requestAdmission(any(), any())).thenReturn(0L);
+        final EmbeddedChannel channel = new EmbeddedChannel(new NettyAdmissionHandler(controller));
+
+        // Execute system under test.
+        channel.writeInbound(AUTH, BIND);
+
+        // Verify results.
+        assertEquals(AUTH, channel.readInbound());
+        assertEquals(BIND, channel.readInbound());
+        assertNull(channel.pipeline().get(NettyAdmissionHandler.class));
+    }
+
+    /**
+     * Verifies that stanzas are queued, in order, while admission is delayed, and are passed on after the delay.
+     */
+    @Test
+    public void testDelayedAdmissionQueuesStanzas() throws Exception
+    {
+        // Setup test fixture.
+        final AdmissionController controller = mock(AdmissionController.class);
+        when(controller.requestAdmission(any(), any())).thenReturn(0L);
+        when(controller.requestAdmission(eq(Stage.SASL), any())).thenReturn(TimeUnit.SECONDS.toNanos(1));
+        final EmbeddedChannel channel = new EmbeddedChannel(new NettyAdmissionHandler(controller));
+
+        // Execute system under test.
+        channel.writeInbound(AUTH, BIND);
+        final Object beforeDelay = channel.readInbound();
+        final boolean autoReadDuringDelay = channel.config().isAutoRead();
+        channel.advanceTimeBy(1, TimeUnit.SECONDS);
+        channel.runScheduledPendingTasks();
+
+        // Verify results.
+        assertNull(beforeDelay);
+        assertFalse(autoReadDuringDelay);
+        assertEquals(AUTH, channel.readInbound());
+        assertEquals(BIND, channel.readInbound());
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    /**
+     * Verifies that reading is not resumed after a delayed admission while another party has suspended reading too.
+     */
+    @Test
+    public void testDelayedAdmissionDoesNotOverrideOtherSuspension() throws Exception
+    {
+        // Setup test fixture.
+        final AdmissionController controller = mock(AdmissionController.class);
+        when(controller.requestAdmission(any(), any())).thenReturn(0L);
+        when(controller.requestAdmission(eq(Stage.SASL), any())).thenReturn(TimeUnit.SECONDS.toNanos(1));
+        final EmbeddedChannel channel = new EmbeddedChannel(new NettyAdmissionHandler(controller));
+        channel.writeInbound(AUTH);
+        NettyReadSuspension.suspend(channel); // for example, by a processing backlog.
+
+        // Execute system under test.
+        channel.advanceTimeBy(1, TimeUnit.SECONDS);
+        channel.runScheduledPendingTasks();
+        final boolean autoReadAfterDelay = channel.config().isAutoRead();
+        NettyReadSuspension.resume(channel);
+
+        // Verify results.
+        assertFalse(autoReadAfterDelay);
+        assertEquals(AUTH, channel.readInbound());
+        assertTrue(channel.config().isAutoRead());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.privacy;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.jivesoftware.openfire.roster.Roster;
+import org.jivesoftware.openfire.roster.RosterItem;
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the implementation of {@link PrivacyListMatcher}.
+ */
+public class PrivacyListMatcherTest
+{
+    private static final JID OWNER = new JID("owner", "example.org", null);
+
+    private static PrivacyItem item(final int order, final String action, final String type, final String value, final String... stanzas)
+    {
+        final Element element = DocumentHelper.createElement("item");
+        element.addAttribute("order", String.valueOf(order));
+        element.addAttribute("action", action);
+        if (type != null) {
+            element.addAttribute("type", type);
+            element.addAttribute("value", value);
+        }
+        for (final String stanza : stanzas) {
+            element.addElement(stanza);
+        }
+        return new PrivacyItem(element);
+    }
+
+    private static Roster roster() throws Exception
+    {
+        final Roster roster = mock(Roster.class);
+        when(roster.getRosterItem(any(JID.class))).thenAnswer(invocation -> {
+            final JID jid = invocation.getArgument(0);
+            switch (jid.toBareJID()) {
+                case "friend@example.org":
+                    return new RosterItem(jid, RosterItem.SUB_BOTH, RosterItem.ASK_NONE, RosterItem.RECV_NONE, null, List.of("Friends"));
+                case "colleague@example.com":
+                    return new RosterItem(jid, RosterItem.SUB_TO, RosterItem.ASK_NONE, RosterItem.RECV_NONE, null, List.of("Work"));
+                default:
+                    throw new UserNotFoundException();
+            }
+        });
+        return roster;
+    }
+
+    private static List<Packet> packets()
+    {
+        final List<Packet> result = new ArrayList<>();
+        final String[] others = { "friend@example.org/phone", "colleague@example.com/laptop", "stranger@example.net/x", "spammer.example.net", "friend@example.org" };
+        for (final String other : others) {
+            final JID jid = new JID(other);
+            final JID ownerResource = new JID("owner", "example.org", "desktop");
+            for (final boolean incoming : new boolean[] { true, false }) {
+                final JID from = incoming ? jid : ownerResource;
+                final JID to = incoming ? ownerResource : jid;
+
+                final Message message = new Message();
+                result.add(message);
+                final IQ iq = new IQ(IQ.Type.get);
+                result.add(iq);
+                final Presence available = new Presence();
+                result.add(available);
+                final Presence unavailable = new Presence(Presence.Type.unavailable);
+                result.add(unavailable);
+                final Presence subscribe = new Presence(Presence.Type.subscribe);
+                result.add(subscribe);
+                for (int i = result.size() - 5; i < result.size(); i++) {
+                    result.get(i).setFrom(from);
+                    result.get(i).setTo(to);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static PrivacyItem linearMatch(final List<PrivacyItem> items, final Packet packet, final Roster roster)
+    {
+        for (final PrivacyItem item : items) {
+            if (item.matchesCondition(packet, roster, OWNER)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifies that the compiled matcher finds the same item as evaluating every item in turn, for a list that combines
+     * all types of items and stanza filters.
+     */
+    @Test
+    public void testMatchesLinearEvaluation() throws Exception
+    {
+        // Setup test fixture.
+        final List<PrivacyItem> items = new ArrayList<>();
+        items.add(item(1, "allow", "jid", "friend@example.org/phone", "message"));
+        items.add(item(2, "deny", "jid", "spammer.example.net"));
+        items.add(item(3, "deny", "group", "Work", "presence-out"));
+        items.add(item(4, "allow", "subscription", "both"));
+        items.add(item(5, "deny", "jid", "example.net", "iq", "presence-in"));
+        items.add(item(6, "deny", "jid", "stranger@example.net", "message"));
+        items.add(item(7, "deny", "subscription", "none", "message"));
+        items.add(item(8, "deny", "group", "Friends", "presence-out"));
+        items.add(item(9, "allow", null, null, "iq"));
+        items.add(item(10, "deny", null, null));
+        items.add(item(11, "allow", "jid", "colleague@example.com"));
+        Collections.sort(items);
+        final Roster roster = roster();
+        final PrivacyListMatcher matcher = new PrivacyListMatcher(items);
+
+        for (final Packet packet : packets()) {
+            // Execute system under test.
+            final PrivacyItem result = matcher.findFirstMatch(packet, OWNER, () -> roster);
+
+            // Verify results.
+            assertSame(linearMatch(items, packet, roster), result, "Unexpected match for " + packet.toXML());
+        }
+    }
+
+    /**
+     * Verifies that the roster is not consulted when an item that does not need it matches first.
+     */
+    @Test
+    public void testRosterNotConsultedWhenNotNeeded() throws Exception
+    {
+        // Setup test fixture.
+        final List<PrivacyItem> items = new ArrayList<>();
+        items.add(item(1, "deny", "jid", "stranger@example.net"));
+        items.add(item(2, "deny", "group", "Friends"));
+        final PrivacyListMatcher matcher = new PrivacyListMatcher(items);
+        final Message message = new Message();
+        message.setFrom(new JID("stranger@example.net/x"));
+        message.setTo(OWNER);
+
+        // Execute system under test.
+        final PrivacyItem result = matcher.findFirstMatch(message, OWNER, () -> { throw new AssertionError("Roster should not be needed"); });
+
+        // Verify results.
+        assertSame(items.get(0), result);
+    }
+
+    /**
+     * Verifies that no item matches when the list has no applicable items.
+     */
+    @Test
+    public void testNoMatch() throws Exception
+    {
+        // Setup test fixture.
+        final List<PrivacyItem> items = new ArrayList<>();
+        items.add(item(1, "deny", "jid", "stranger@example.net", "message"));
+        final PrivacyListMatcher matcher = new PrivacyListMatcher(items);
+        final IQ iq = new IQ(IQ.Type.get);
+        iq.setFrom(new JID("stranger@example.net/x"));
+        iq.setTo(OWNER);
+
+        // Execute system under test.
+        final PrivacyItem result = matcher.findFirstMatch(iq, OWNER, () -> null);
+
+        // Verify results.
+        assertNull(result);
+    }
+}
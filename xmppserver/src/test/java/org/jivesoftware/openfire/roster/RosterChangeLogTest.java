@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link RosterChangeLog}.
+ */
+public class RosterChangeLogTest
+{
+    private static Element item(final String jid, final String subscription)
+    {
+        final Element item = DocumentHelper.createElement("item");
+        item.addAttribute("jid", jid);
+        item.addAttribute("subscription", subscription);
+        return item;
+    }
+
+    /**
+     * Verifies that the pushes that followed a version are returned in order, and that only the last push for each
+     * contact is returned.
+     */
+    @Test
+    public void testItemsSinceVersion() throws Exception
+    {
+        // Setup test fixture.
+        final RosterChangeLog log = new RosterChangeLog("epoch");
+        final String initial = log.getVersion();
+        log.add(item("bob@example.org", "both"), 10);
+        final String afterBob = log.getVersion();
+        log.add(item("carol@example.org", "to"), 10);
+        log.add(item("bob@example.org", "remove"), 10);
+
+        // Execute system under test.
+        final LinkedHashMap<String, Element> sinceInitial = log.getItemsSince(initial);
+        final LinkedHashMap<String, Element> sinceBob = log.getItemsSince(afterBob);
+        final LinkedHashMap<String, Element> sinceLatest = log.getItemsSince(log.getVersion());
+
+        // Verify results.
+        assertNotNull(sinceInitial);
+        assertEquals(List.of("epoch-2", "epoch-3"), List.copyOf(sinceInitial.keySet()));
+        assertEquals("remove", sinceInitial.get("epoch-3").attributeValue("subscription"));
+        assertNotNull(sinceBob);
+        assertEquals(2, sinceBob.size());
+        assertNotNull(sinceLatest);
+        assertTrue(sinceLatest.isEmpty());
+    }
+
+    /**
+     * Verifies that a version cannot be used when pushes that followed it are no longer retained, or when it belongs
+     * to another epoch.
+     */
+    @Test
+    public void testUnusableVersions() throws Exception
+    {
+        // Setup test fixture.
+        final RosterChangeLog log = new RosterChangeLog("epoch");
+        final String initial = log.getVersion();
+        log.add(item("bob@example.org", "both"), 2);
+        log.add(item("carol@example.org", "both"), 2);
+        log.add(item("dave@example.org", "both"), 2);
+
+        // Execute system under test.
+        final LinkedHashMap<String, Element> sinceInitial = log.getItemsSince(initial);
+        final LinkedHashMap<String, Element> otherEpoch = log.getItemsSince("other-1");
+        final LinkedHashMap<String, Element> future = log.getItemsSince("epoch-4");
+        final LinkedHashMap<String, Element> malformed = log.getItemsSince("epoch-x");
+
+        // Verify results.
+        assertNull(sinceInitial);
+        assertNull(otherEpoch);
+        assertNull(future);
+        assertNull(malformed);
+        assertEquals(2, log.getItemsSince("epoch-1").size());
+        assertEquals(2, log.size());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.JID;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link SharedGroupRosterPushQueue}.
+ */
+public class SharedGroupRosterPushQueueTest
+{
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SharedGroupRosterPushQueue.INTERVAL.setValue(Duration.ofMillis(250));
+        SharedGroupRosterPushQueue.PUSHES_PER_SECOND.setValue(5000);
+        SharedGroupRosterPushQueue.PROBES_PER_SECOND.setValue(1000);
+    }
+
+    private static org.xmpp.packet.Roster push(final String contact, final org.xmpp.packet.Roster.Subscription subscription)
+    {
+        final org.xmpp.packet.Roster roster = new org.xmpp.packet.Roster();
+        roster.setType(IQ.Type.set);
+        roster.addItem(new JID(contact, Fixtures.XMPP_DOMAIN, null), null, null, subscription, null);
+        return roster;
+    }
+
+    /**
+     * Verifies that when the same contact is pushed more than once before the queue is flushed, only the last push
+     * is delivered.
+     */
+    @Test
+    public void testPushesForSameContactAreCoalesced() throws Exception
+    {
+        // Setup test fixture.
+        final List<org.xmpp.packet.Roster> delivered = new ArrayList<>();
+        final SharedGroupRosterPushQueue queue = new SharedGroupRosterPushQueue((username, roster) -> delivered.add(roster), (username, probee) -> {});
+        queue.queuePush("alice", push("bob", org.xmpp.packet.Roster.Subscription.both));
+        queue.queuePush("alice", push("carol", org.xmpp.packet.Roster.Subscription.both));
+        final org.xmpp.packet.Roster last = push("bob", org.xmpp.packet.Roster.Subscription.remove);
+        queue.queuePush("alice", last);
+
+        // Execute system under test.
+        queue.flush();
+
+        // Verify results.
+        assertEquals(2, delivered.size());
+        assertSame(last, delivered.get(1));
+        assertEquals(1, queue.getCoalescedPushCount());
+        assertEquals(2, queue.getSentPushCount());
+        assertEquals(0, queue.getPendingPushCount());
+    }
+
+    /**
+     * Verifies that a queued push is discarded when a push for the same contact is sent immediately.
+     */
+    @Test
+    public void testSupersededPushIsDiscarded() throws Exception
+    {
+        // Setup test fixture.
+        final List<org.xmpp.packet.Roster> delivered = new ArrayList<>();
+        final SharedGroupRosterPushQueue queue = new SharedGroupRosterPushQueue((username, roster) -> delivered.add(roster), (username, probee) -> {});
+        queue.queuePush("alice", push("bob", org.xmpp.packet.Roster.Subscription.both));
+
+        // Execute system under test.
+        queue.discardSuperseded("alice", push("bob", org.xmpp.packet.Roster.Subscription.remove));
+        queue.flush();
+
+        // Verify results.
+        assertTrue(delivered.isEmpty());
+        assertEquals(0, queue.getPendingUserCount());
+    }
+
+    /**
+     * Verifies that the number of roster pushes and presence probes that is delivered per flush is limited, that the
+     * pushes of one user are delivered together, and that duplicate probes are sent only once.
+     */
+    @Test
+    public void testDeliveryIsRateLimited() throws Exception
+    {
+        // Setup test fixture.
+        SharedGroupRosterPushQueue.INTERVAL.setValue(Duration.ofMillis(100));
+        SharedGroupRosterPushQueue.PUSHES_PER_SECOND.setValue(20); // two per flush.
+        SharedGroupRosterPushQueue.PROBES_PER_SECOND.setValue(10); // one per flush.
+        final List<String> pushedTo = new ArrayList<>();
+        final List<JID> probed = new ArrayList<>();
+        final SharedGroupRosterPushQueue queue = new SharedGroupRosterPushQueue((username, roster) -> pushedTo.add(username), (username, probee) -> probed.add(probee));
+        queue.queuePush("alice", push("bob", org.xmpp.packet.Roster.Subscription.both));
+        queue.queuePush("alice", push("carol", org.xmpp.packet.Roster.Subscription.both));
+        queue.queuePush("alice", push("dave", org.xmpp.packet.Roster.Subscription.both));
+        queue.queuePush("bob", push("alice", org.xmpp.packet.Roster.Subscription.both));
+        queue.queueProbe("alice", new JID("bob", Fixtures.XMPP_DOMAIN, null));
+        queue.queueProbe("alice", new JID("bob", Fixtures.XMPP_DOMAIN, null));
+        queue.queueProbe("alice", new JID("carol", Fixtures.XMPP_DOMAIN, null));
+
+        // Execute system under test.
+        queue.flush();
+        final List<String> firstPushes = new ArrayList<>(pushedTo);
+        final int firstProbes = probed.size();
+        queue.flush();
+
+        // Verify results.
+        assertEquals(List.of("alice", "alice", "alice"), firstPushes);
+        assertEquals(1, firstProbes);
+        assertEquals(List.of("alice", "alice", "alice", "bob"), pushedTo);
+        assertEquals(2, probed.size());
+        assertEquals(1, queue.getCoalescedProbeCount());
+        assertEquals(0, queue.getPendingProbeCount());
+    }
+}
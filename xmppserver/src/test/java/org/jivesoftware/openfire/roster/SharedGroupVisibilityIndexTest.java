@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.roster;
+
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.openfire.group.Group;
+import org.jivesoftware.openfire.group.SharedGroupVisibility;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.JID;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests that verify the implementation of {@link SharedGroupVisibilityIndex}.
+ */
+public class SharedGroupVisibilityIndexTest
+{
+    private static final JID ALICE = new JID("alice", Fixtures.XMPP_DOMAIN, null);
+    private static final JID BOB = new JID("bob", Fixtures.XMPP_DOMAIN, null);
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    private static Group group(final String name, final SharedGroupVisibility sharedWith, final String... viewers)
+    {
+        final Group group = mock(Group.class);
+        when(group.getName()).thenReturn(name);
+        when(group.getSharedWith()).thenReturn(sharedWith);
+        when(group.getSharedWithUsersInGroupNames()).thenReturn(Arrays.asList(viewers));
+        return group;
+    }
+
+    /**
+     * Verifies that a user can see the groups that are shared with everybody, and the groups that are shared with the
+     * users of a group of which the user is a member, but no other groups.
+     */
+    @Test
+    public void testVisibleGroupNames() throws Exception
+    {
+        // Setup test fixture.
+        final Group everybody = group("everybody", SharedGroupVisibility.everybody);
+        final Group sales = group("sales", SharedGroupVisibility.usersOfGroups);
+        final Group support = group("support", SharedGroupVisibility.usersOfGroups, "sales");
+        final Group management = group("management", SharedGroupVisibility.usersOfGroups);
+        final Map<JID, Collection<Group>> membership = new HashMap<>();
+        membership.put(ALICE, List.of(sales));
+        membership.put(BOB, List.of());
+        final SharedGroupVisibilityIndex index = new SharedGroupVisibilityIndex(() -> List.of(everybody, sales, support, management), membership::get, new ConcurrentHashMap<>());
+
+        // Execute system under test.
+        final Set<String> alice = index.getVisibleGroupNames(ALICE);
+        final Set<String> bob = index.getVisibleGroupNames(BOB);
+
+        // Verify results.
+        assertEquals(Set.of("everybody", "sales", "support"), alice);
+        assertEquals(Set.of("everybody"), bob);
+        assertTrue(index.isVisible("support", ALICE));
+        assertFalse(index.isVisible("support", BOB));
+        assertEquals(Set.of("everybody", "support", "sales"), index.getGroupNamesVisibleToMembersOf("sales"));
+        assertEquals(Set.of("support", "sales"), index.getViewerGroupNames("support"));
+    }
+
+    /**
+     * Verifies that the visible groups of a user are recomputed after the user was invalidated, and that the sharing
+     * configuration is not reloaded when that happens.
+     */
+    @Test
+    public void testInvalidateUser() throws Exception
+    {
+        // Setup test fixture.
+        final Group sales = group("sales", SharedGroupVisibility.usersOfGroups);
+        final Map<JID, Collection<Group>> membership = new HashMap<>();
+        membership.put(ALICE, List.of());
+        final AtomicInteger configurationLoads = new AtomicInteger();
+        final SharedGroupVisibilityIndex index = new SharedGroupVisibilityIndex(() -> { configurationLoads.incrementAndGet(); return List.of(sales); }, membership::get, new ConcurrentHashMap<>());
+        assertFalse(index.isVisible("sales", ALICE));
+
+        // Execute system under test.
+        membership.put(ALICE, List.of(sales));
+        final boolean beforeInvalidation = index.isVisible("sales", ALICE);
+        index.invalidate(ALICE);
+        final boolean afterInvalidation = index.isVisible("sales", ALICE);
+
+        // Verify results.
+        assertFalse(beforeInvalidation);
+        assertTrue(afterInvalidation);
+        assertEquals(1, configurationLoads.get());
+    }
+
+    /**
+     * Verifies that a group that is being deleted is excluded from the index, even if the group provider still
+     * returns it, until a group with the same name is created.
+     */
+    @Test
+    public void testDeletedGroupIsExcluded() throws Exception
+    {
+        // Setup test fixture.
+        final Group everybody = group("everybody", SharedGroupVisibility.everybody);
+        final Group sales = group("sales", SharedGroupVisibility.usersOfGroups);
+        final Group support = group("support", SharedGroupVisibility.usersOfGroups, "sales");
+        final SharedGroupVisibilityIndex index = new SharedGroupVisibilityIndex(() -> List.of(everybody, sales, support), user -> List.of(sales), new ConcurrentHashMap<>());
+        assertEquals(Set.of("everybody", "sales", "support"), index.getVisibleGroupNames(ALICE));
+
+        // Execute system under test.
+        index.groupDeleted("everybody");
+        index.groupDeleted("sales");
+        final Set<String> afterDeletion = index.getVisibleGroupNames(ALICE);
+        index.groupCreated("everybody");
+        final Set<String> afterCreation = index.getVisibleGroupNames(ALICE);
+
+        // Verify results.
+        assertEquals(Set.of(), afterDeletion);
+        assertEquals(Set.of("everybody"), afterCreation);
+    }
+}
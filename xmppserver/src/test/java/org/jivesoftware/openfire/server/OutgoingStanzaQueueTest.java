@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.server;
+
+import org.jivesoftware.openfire.session.DomainPair;
+import org.junit.jupiter.api.Test;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.JID;
+import org.xmpp.packet.Message;
+import org.xmpp.packet.Packet;
+import org.xmpp.packet.Presence;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link OutgoingStanzaQueue} and {@link OutgoingCircuitBreaker}
+ */
+public class OutgoingStanzaQueueTest
+{
+    private static final DomainPair DOMAIN_PAIR = new DomainPair("local.example.org", "remote.example.org");
+    private static final JID LOCAL = new JID("user", "local.example.org", "resource");
+    private static final JID REMOTE = new JID("contact", "remote.example.org", null);
+
+    private static Message message(final String body)
+    {
+        final Message message = new Message();
+        message.setFrom(LOCAL);
+        message.setTo(REMOTE);
+        message.setBody(body);
+        return message;
+    }
+
+    private static Presence presence(final String status)
+    {
+        final Presence presence = new Presence();
+        presence.setFrom(LOCAL);
+        presence.setTo(REMOTE);
+        if (status != null) {
+            presence.setStatus(status);
+        }
+        return presence;
+    }
+
+    /**
+     * Verifies that IQ responses are dequeued before stanzas that were queued earlier.
+     */
+    @Test
+    public void testIQResponsesArePrioritized() throws Exception
+    {
+        // Setup test fixture.
+        final OutgoingStanzaQueue queue = new OutgoingStanzaQueue(DOMAIN_PAIR, 100, 0, true, true);
+        final Message message = message("test");
+        final IQ request = new IQ(IQ.Type.get);
+        request.setFrom(LOCAL);
+        request.setTo(REMOTE);
+        final IQ response = IQ.createResultIQ(request);
+        response.setFrom(LOCAL);
+        response.setTo(REMOTE);
+        queue.offer(message);
+        queue.offer(request);
+        queue.offer(response);
+
+        // Execute system under test.
+        final Packet first = queue.poll();
+        final Packet second = queue.poll();
+        final Packet third = queue.poll();
+
+        // Verify results.
+        assertSame(response, first);
+        assertSame(message, second);
+        assertSame(request, third);
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Verifies that a queued presence update is replaced by a newer update from the same sender to the same recipient.
+     */
+    @Test
+    public void testPresenceIsSuperseded() throws Exception
+    {
+        // Setup test fixture.
+        final OutgoingStanzaQueue queue = new OutgoingStanzaQueue(DOMAIN_PAIR, 100, 0, true, true);
+        final Presence stale = presence("away");
+        final Message message = message("test");
+        final Presence current = presence("online");
+
+        // Execute system under test.
+        queue.offer(stale);
+        queue.offer(message);
+        queue.offer(current);
+
+        // Verify results.
+        assertEquals(2, queue.getStanzaCount());
+        assertEquals(1, queue.getSupersededCount());
+        assertSame(message, queue.poll());
+        assertSame(current, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Verifies that presence that is used to join a multi-user chat room is never superseded.
+     */
+    @Test
+    public void testMucJoinIsNotSuperseded() throws Exception
+    {
+        // Setup test fixture.
+        final OutgoingStanzaQueue queue = new OutgoingStanzaQueue(DOMAIN_PAIR, 100, 0, true, true);
+        final Presence join = presence(null);
+        join.addChildElement("x", "http://jabber.org/protocol/muc");
+        final Presence update = presence("away");
+
+        // Execute system under test.
+        queue.offer(join);
+        queue.offer(update);
+
+        // Verify results.
+        assertEquals(2, queue.getStanzaCount());
+        assertSame(join, queue.poll());
+        assertSame(update, queue.poll());
+    }
+
+    /**
+     * Verifies that stanzas are rejected when they would cause the queue to exceed its size limit.
+     */
+    @Test
+    public void testByteLimitIsEnforced() throws Exception
+    {
+        // Setup test fixture.
+        final Message small = message("test");
+        final Message large = message("test".repeat(100));
+        final OutgoingStanzaQueue queue = new OutgoingStanzaQueue(DOMAIN_PAIR, 100, small.toXML().length() * 2L, true, true);
+
+        // Execute system under test.
+        final boolean first = queue.offer(small);
+        final boolean second = queue.offer(large);
+        final boolean third = queue.offer(small.createCopy());
+
+        // Verify results.
+        assertTrue(first);
+        assertFalse(second);
+        assertTrue(third);
+        assertEquals(1, queue.getRejectedCount());
+        assertEquals(small.toXML().length() * 2L, queue.getByteSize());
+    }
+
+    /**
+     * Verifies that the age of the oldest queued stanza is reported.
+     */
+    @Test
+    public void testOldestStanzaAge() throws Exception
+    {
+        // Setup test fixture.
+        final AtomicLong clock = new AtomicLong(1000);
+        final OutgoingStanzaQueue queue = new OutgoingStanzaQueue(DOMAIN_PAIR, 100, 0, true, true, clock::get);
+        queue.offer(message("first"));
+        clock.set(3000);
+        queue.offer(message("second"));
+        clock.set(5000);
+
+        // Execute system under test.
+        final Duration result = queue.getOldestStanzaAge();
+
+        // Verify results.
+        assertEquals(Duration.ofSeconds(4), result);
+    }
+
+    /**
+     * Verifies that a circuit breaker opens after the threshold is reached, for a period that grows with each
+     * subsequent failure, up to the maximum.
+     */
+    @Test
+    public void testCircuitBreakerBacksOff() throws Exception
+    {
+        // Setup test fixture.
+        final OutgoingCircuitBreaker circuitBreaker = new OutgoingCircuitBreaker("remote.example.org");
+        final Instant now = Instant.EPOCH;
+        final Duration open = Duration.ofSeconds(10);
+        final Duration max = Duration.ofSeconds(30);
+
+        // Execute system under test & verify results.
+        circuitBreaker.recordFailure(now, 2, open, max);
+        assertTrue(circuitBreaker.allowsAttempt(now));
+
+        circuitBreaker.recordFailure(now, 2, open, max);
+        assertFalse(circuitBreaker.allowsAttempt(now));
+        assertEquals(now.plus(open), circuitBreaker.getOpenUntil());
+
+        circuitBreaker.recordFailure(now, 2, open, max);
+        assertEquals(now.plus(open.multipliedBy(2)), circuitBreaker.getOpenUntil());
+
+        circuitBreaker.recordFailure(now, 2, open, max);
+        assertEquals(now.plus(max), circuitBreaker.getOpenUntil());
+        assertTrue(circuitBreaker.allowsAttempt(now.plus(max)));
+    }
+}
@@ -20,6 +20,7 @@ import org.dom4j.Element;
 import org.jivesoftware.Fixtures;
 import org.jivesoftware.openfire.IQRouter;
 import org.jivesoftware.openfire.XMPPServer;
+import org.jivesoftware.openfire.user.property.UserPropertyProvider;
 import org.jivesoftware.util.JiveGlobals;
 import org.jivesoftware.util.cache.CacheFactory;
 import org.junit.jupiter.api.AfterEach;
@@ -34,6 +35,12 @@ import org.xmpp.packet.JID;
 import org.xmpp.packet.PacketError;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -78,6 +85,8 @@ public class UserManagerTest {
         // Use the stub user provider, and a very short timeout
         JiveGlobals.setProperty("provider.user.className", Fixtures.StubUserProvider.class.getName());
         JiveGlobals.setProperty("usermanager.remote-disco-info-timeout-seconds", "0");
+        JiveGlobals.setProperty("provider.userproperty.className", RecordingUserPropertyProvider.class.getName());
+        RecordingUserPropertyProvider.requests.clear();
 
         final XMPPServer xmppServer = Fixtures.mockXMPPServer();
         iqRouter = xmppServer.getIQRouter();
@@ -293,4 +302,80 @@ public class UserManagerTest {
         assertThat(result, is(false));
         verify(iqRouter).route(any());
     }
+
+    /**
+     * Verifies that preloading properties only loads the properties of users of which the properties were not
+     * loaded yet, leaving the properties of the other users untouched.
+     */
+    @Test
+    public void preloadPropertiesSkipsUsersWithLoadedProperties() throws Exception {
+        // Setup test fixture.
+        final User user = userManager.getUser(USER_ID);
+        final User user2 = userManager.getUser(USER_ID_2);
+        user.getProperties().put("color", "red");
+        RecordingUserPropertyProvider.requests.clear();
+
+        // Execute system under test.
+        userManager.preloadProperties(List.of(user, user2));
+
+        // Verify results.
+        assertThat(RecordingUserPropertyProvider.requests, is(List.of(Set.of(USER_ID_2))));
+        assertThat(user.getProperties(), is(Map.of("loadedFor", USER_ID, "color", "red")));
+        assertThat(user2.getProperties(), is(Map.of("loadedFor", USER_ID_2)));
+    }
+
+    /**
+     * A user property provider that records the users for which properties are loaded.
+     */
+    public static class RecordingUserPropertyProvider implements UserPropertyProvider {
+
+        /**
+         * The usernames for which properties were loaded, one entry per load.
+         */
+        static final List<Set<String>> requests = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean isReadOnly() {
+            return false;
+        }
+
+        @Override
+        public Map<String, String> loadProperties(final String username) {
+            requests.add(Set.of(username));
+            return createProperties(username);
+        }
+
+        @Override
+        public Map<String, Map<String, String>> loadProperties(final Collection<String> usernames) {
+            requests.add(new HashSet<>(usernames));
+            final Map<String, Map<String, String>> result = new HashMap<>();
+            for (final String username : usernames) {
+                result.put(username, createProperties(username));
+            }
+            return result;
+        }
+
+        private static Map<String, String> createProperties(final String username) {
+            final Map<String, String> result = new HashMap<>();
+            result.put("loadedFor", username);
+            return result;
+        }
+
+        @Override
+        public String loadProperty(final String username, final String propName) {
+            return createProperties(username).get(propName);
+        }
+
+        @Override
+        public void insertProperty(final String username, final String propName, final String propValue) {
+        }
+
+        @Override
+        public void updateProperty(final String username, final String propName, final String propValue) {
+        }
+
+        @Override
+        public void deleteProperty(final String username, final String propName) {
+        }
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.user.property;
+
+import org.dbunit.DBTestCase;
+import org.dbunit.PropertiesBasedJdbcDatabaseTester;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.xml.XmlDataSet;
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.database.DbConnectionManager;
+import org.jivesoftware.database.DefaultConnectionProvider;
+import org.jivesoftware.openfire.XMPPServer;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests that verify the functionality of {@link DefaultUserPropertyProvider}.
+ *
+ * Implementation-wise, this class extends for DBTestCase, which is as JUnit 3 derivative. Practically, this means that
+ * Junit 4 annotations in this class will be ignored.
+ */
+public class DefaultUserPropertyProviderTest extends DBTestCase
+{
+    public static final String DRIVER = "org.hsqldb.jdbcDriver";
+    public static final String URL;
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    static {
+        final URL location = DefaultUserPropertyProviderTest.class.getResource("/datasets/openfire.script");
+        assert location != null;
+        final String fileLocation = location.toString().substring(0, location.toString().lastIndexOf("/")+1) + "openfire";
+        URL = "jdbc:hsqldb:"+fileLocation+";ifexists=true";
+
+        // Setup database configuration of DBUnit.
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_DRIVER_CLASS, DRIVER );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_CONNECTION_URL, URL );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_USERNAME, USERNAME );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_PASSWORD, PASSWORD );
+    }
+
+    public void setUp() throws Exception
+    {
+        // Ensure that DB-Unit's setUp is called!
+        super.setUp();
+
+        // Mock the XMPPServer implementation that's used internally.
+        Fixtures.clearExistingProperties();
+        XMPPServer.setInstance(Fixtures.mockXMPPServer());
+
+        // Wire the database connection provider used by the property provider.
+        final DefaultConnectionProvider conProvider = new DefaultConnectionProvider();
+        conProvider.setDriver(DRIVER);
+        conProvider.setServerURL(URL);
+        conProvider.setUsername(USERNAME);
+        conProvider.setPassword(PASSWORD);
+        DbConnectionManager.setConnectionProvider(conProvider);
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+        Fixtures.clearExistingProperties();
+    }
+
+    @Override
+    protected IDataSet getDataSet() throws Exception {
+        // This dataset restores the state of the database to one that does not contain any user properties or vCards.
+        return new XmlDataSet(getClass().getResourceAsStream("/datasets/clean-user-data.xml"));
+    }
+
+    /**
+     * Verifies that the properties of a number of users are loaded, and that users without properties are included
+     * with an empty map.
+     */
+    public void testLoadPropertiesOfUsers() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultUserPropertyProvider provider = new DefaultUserPropertyProvider();
+        provider.insertProperty("jane", "color", "blue");
+        provider.insertProperty("jane", "size", "large");
+        provider.insertProperty("john", "color", "red");
+        provider.insertProperty("jack", "color", "green");
+
+        // Execute system under test.
+        final Map<String, Map<String, String>> result = provider.loadProperties(List.of("jane", "john", "jill"));
+
+        // Verify results.
+        assertEquals(3, result.size());
+        assertEquals(Map.of("color", "blue", "size", "large"), result.get("jane"));
+        assertEquals(Map.of("color", "red"), result.get("john"));
+        assertEquals(Map.of(), result.get("jill"));
+    }
+
+    /**
+     * Verifies that the properties of more users than fit in one query are all loaded.
+     */
+    public void testLoadPropertiesOfUsersInBatches() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultUserPropertyProvider provider = new DefaultUserPropertyProvider();
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < DbConnectionManager.IN_CLAUSE_BATCH_SIZE * 2 + 1; i++) {
+            usernames.add("user" + i);
+            provider.insertProperty("user" + i, "index", String.valueOf(i));
+        }
+
+        // Execute system under test.
+        final Map<String, Map<String, String>> result = provider.loadProperties(usernames);
+
+        // Verify results.
+        assertEquals(usernames.size(), result.size());
+        for (int i = 0; i < usernames.size(); i++) {
+            assertEquals(Map.of("index", String.valueOf(i)), result.get("user" + i));
+        }
+    }
+
+    /**
+     * Verifies that a username that is provided more than once is loaded once.
+     */
+    public void testLoadPropertiesOfDuplicateUsers() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultUserPropertyProvider provider = new DefaultUserPropertyProvider();
+        provider.insertProperty("jane", "color", "blue");
+
+        // Execute system under test.
+        final Map<String, Map<String, String>> result = provider.loadProperties(List.of("jane", "jane"));
+
+        // Verify results.
+        assertEquals(1, result.size());
+        assertEquals(Map.of("color", "blue"), result.get("jane"));
+    }
+
+    /**
+     * Verifies that no properties are returned when no users are provided.
+     */
+    public void testLoadPropertiesOfNoUsers() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultUserPropertyProvider provider = new DefaultUserPropertyProvider();
+        provider.insertProperty("jane", "color", "blue");
+
+        // Execute system under test.
+        final Map<String, Map<String, String>> result = provider.loadProperties(List.of());
+
+        // Verify results.
+        assertTrue(result.isEmpty());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.user.property;
+
+import org.jivesoftware.openfire.user.UserNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the default implementations of the methods of {@link UserPropertyProvider}.
+ */
+public class UserPropertyProviderTest
+{
+    /**
+     * Verifies that the default implementation loads the properties of each user individually, and that users that
+     * cannot be found are not included in the result.
+     */
+    @Test
+    public void testLoadPropertiesOfUsers() throws Exception
+    {
+        // Setup test fixture.
+        final UserPropertyProvider provider = mock(UserPropertyProvider.class, CALLS_REAL_METHODS);
+        doReturn(Map.of("color", "blue")).when(provider).loadProperties("jane");
+        doReturn(Map.of()).when(provider).loadProperties("john");
+        doThrow(new UserNotFoundException()).when(provider).loadProperties("jill");
+
+        // Execute system under test.
+        final Map<String, Map<String, String>> result = provider.loadProperties(List.of("jane", "john", "jill"));
+
+        // Verify results.
+        assertEquals(Map.of("jane", Map.of("color", "blue"), "john", Map.of()), result);
+    }
+
+    /**
+     * Verifies that the default implementation does not load any properties when no users are provided.
+     */
+    @Test
+    public void testLoadPropertiesOfNoUsers() throws Exception
+    {
+        // Setup test fixture.
+        final UserPropertyProvider provider = mock(UserPropertyProvider.class, CALLS_REAL_METHODS);
+
+        // Execute system under test.
+        final Map<String, Map<String, String>> result = provider.loadProperties(List.of());
+
+        // Verify results.
+        assertTrue(result.isEmpty());
+        verify(provider, never()).loadProperties(anyString());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.vcard;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.QName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link CachedVCard}.
+ */
+public class CachedVCardTest
+{
+    @Test
+    public void testPhotoHash() throws Exception
+    {
+        // Setup test fixture.
+        final byte[] photo = "not really an image".getBytes(StandardCharsets.UTF_8);
+        final Element vCard = DocumentHelper.createElement(QName.get("vCard", "vcard-temp"));
+        vCard.addElement("FN").setText("Juliet Capulet");
+        vCard.addElement("PHOTO").addElement("BINVAL").setText(Base64.getEncoder().encodeToString(photo));
+
+        // Execute system under test.
+        final CachedVCard result = new CachedVCard(vCard);
+
+        // Verify results.
+        final StringBuilder expected = new StringBuilder();
+        for (final byte b : MessageDigest.getInstance("SHA-1").digest(photo)) {
+            expected.append(String.format("%02x", b));
+        }
+        assertEquals(expected.toString(), result.getPhotoHash());
+        assertSame(vCard, result.getElement());
+    }
+
+    @Test
+    public void testNoPhoto() throws Exception
+    {
+        // Setup test fixture.
+        final Element vCard = DocumentHelper.createElement(QName.get("vCard", "vcard-temp"));
+        vCard.addElement("FN").setText("Juliet Capulet");
+
+        // Execute system under test.
+        final CachedVCard result = new CachedVCard(vCard);
+
+        // Verify results.
+        assertEquals("", result.getPhotoHash());
+    }
+
+    @Test
+    public void testUndecodablePhoto() throws Exception
+    {
+        // Setup test fixture.
+        final Element vCard = DocumentHelper.createElement(QName.get("vCard", "vcard-temp"));
+        vCard.addElement("PHOTO").addElement("BINVAL").setText("not*base64");
+
+        // Execute system under test.
+        final CachedVCard result = new CachedVCard(vCard);
+
+        // Verify results.
+        assertEquals("", result.getPhotoHash());
+    }
+
+    @Test
+    public void testExternalizable() throws Exception
+    {
+        // Setup test fixture.
+        final Element vCard = DocumentHelper.createElement(QName.get("vCard", "vcard-temp"));
+        vCard.addElement("FN").setText("Juliet Capulet");
+        vCard.addElement("PHOTO").addElement("BINVAL").setText(Base64.getEncoder().encodeToString("image".getBytes(StandardCharsets.UTF_8)));
+        final CachedVCard original = new CachedVCard(vCard);
+
+        // Execute system under test.
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            original.writeExternal(out);
+        }
+        final CachedVCard result = new CachedVCard();
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            result.readExternal(in);
+        }
+
+        // Verify results.
+        assertEquals(vCard.asXML(), result.getElement().asXML());
+        assertEquals(original.getPhotoHash(), result.getPhotoHash());
+        assertEquals(original.getCachedSize(), result.getCachedSize());
+    }
+}
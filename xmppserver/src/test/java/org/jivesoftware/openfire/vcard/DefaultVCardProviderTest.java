@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.vcard;
+
+import org.dbunit.DBTestCase;
+import org.dbunit.PropertiesBasedJdbcDatabaseTester;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.xml.XmlDataSet;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.jivesoftware.Fixtures;
+import org.jivesoftware.database.DbConnectionManager;
+import org.jivesoftware.database.DefaultConnectionProvider;
+import org.jivesoftware.openfire.XMPPServer;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests that verify the functionality of {@link DefaultVCardProvider}.
+ *
+ * Implementation-wise, this class extends for DBTestCase, which is as JUnit 3 derivative. Practically, this means that
+ * Junit 4 annotations in this class will be ignored.
+ */
+public class DefaultVCardProviderTest extends DBTestCase
+{
+    public static final String DRIVER = "org.hsqldb.jdbcDriver";
+    public static final String URL;
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    static {
+        final URL location = DefaultVCardProviderTest.class.getResource("/datasets/openfire.script");
+        assert location != null;
+        final String fileLocation = location.toString().substring(0, location.toString().lastIndexOf("/")+1) + "openfire";
+        URL = "jdbc:hsqldb:"+fileLocation+";ifexists=true";
+
+        // Setup database configuration of DBUnit.
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_DRIVER_CLASS, DRIVER );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_CONNECTION_URL, URL );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_USERNAME, USERNAME );
+        System.setProperty( PropertiesBasedJdbcDatabaseTester.DBUNIT_PASSWORD, PASSWORD );
+    }
+
+    public void setUp() throws Exception
+    {
+        // Ensure that DB-Unit's setUp is called!
+        super.setUp();
+
+        // Mock the XMPPServer implementation that's used internally.
+        Fixtures.clearExistingProperties();
+        XMPPServer.setInstance(Fixtures.mockXMPPServer());
+
+        // Wire the database connection provider used by the vCard provider.
+        final DefaultConnectionProvider conProvider = new DefaultConnectionProvider();
+        conProvider.setDriver(DRIVER);
+        conProvider.setServerURL(URL);
+        conProvider.setUsername(USERNAME);
+        conProvider.setPassword(PASSWORD);
+        DbConnectionManager.setConnectionProvider(conProvider);
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+        Fixtures.clearExistingProperties();
+    }
+
+    @Override
+    protected IDataSet getDataSet() throws Exception {
+        // This dataset restores the state of the database to one that does not contain any user properties or vCards.
+        return new XmlDataSet(getClass().getResourceAsStream("/datasets/clean-user-data.xml"));
+    }
+
+    private static Element vCard(final String fullName)
+    {
+        final Element result = DocumentHelper.createElement(DocumentHelper.createQName("vCard", DocumentHelper.createNamespace("", "vcard-temp")));
+        result.addElement("FN").setText(fullName);
+        return result;
+    }
+
+    /**
+     * Verifies that the vCards of a number of users are loaded, and that users without a vCard are not included.
+     */
+    public void testLoadVCards() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultVCardProvider provider = new DefaultVCardProvider();
+        provider.createVCard("jane", vCard("Jane Doe"));
+        provider.createVCard("john", vCard("John Doe"));
+        provider.createVCard("jack", vCard("Jack Doe"));
+
+        // Execute system under test.
+        final Map<String, Element> result = provider.loadVCards(List.of("jane", "john", "jill"));
+
+        // Verify results.
+        assertEquals(2, result.size());
+        assertEquals("Jane Doe", result.get("jane").elementText("FN"));
+        assertEquals("John Doe", result.get("john").elementText("FN"));
+        assertFalse(result.containsKey("jill"));
+    }
+
+    /**
+     * Verifies that the vCards of more users than fit in one query are all loaded.
+     */
+    public void testLoadVCardsInBatches() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultVCardProvider provider = new DefaultVCardProvider();
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < DbConnectionManager.IN_CLAUSE_BATCH_SIZE * 2 + 1; i++) {
+            usernames.add("user" + i);
+            provider.createVCard("user" + i, vCard("User " + i));
+        }
+
+        // Execute system under test.
+        final Map<String, Element> result = provider.loadVCards(usernames);
+
+        // Verify results.
+        assertEquals(usernames.size(), result.size());
+        for (int i = 0; i < usernames.size(); i++) {
+            assertEquals("User " + i, result.get("user" + i).elementText("FN"));
+        }
+    }
+
+    /**
+     * Verifies that a username that is provided more than once is loaded once.
+     */
+    public void testLoadVCardsOfDuplicateUsers() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultVCardProvider provider = new DefaultVCardProvider();
+        provider.createVCard("jane", vCard("Jane Doe"));
+
+        // Execute system under test.
+        final Map<String, Element> result = provider.loadVCards(List.of("jane", "jane"));
+
+        // Verify results.
+        assertEquals(1, result.size());
+        assertEquals("Jane Doe", result.get("jane").elementText("FN"));
+    }
+
+    /**
+     * Verifies that no vCards are returned when no users are provided.
+     */
+    public void testLoadVCardsOfNoUsers() throws Exception
+    {
+        // Setup test fixture.
+        final DefaultVCardProvider provider = new DefaultVCardProvider();
+        provider.createVCard("jane", vCard("Jane Doe"));
+
+        // Execute system under test.
+        final Map<String, Element> result = provider.loadVCards(List.of());
+
+        // Verify results.
+        assertTrue(result.isEmpty());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.openfire.vcard;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests that verify the default implementations of the methods of {@link VCardProvider}.
+ */
+public class VCardProviderTest
+{
+    /**
+     * Verifies that the default implementation loads the vCard of each user individually, and that users without a
+     * vCard are not included in the result.
+     */
+    @Test
+    public void testLoadVCards() throws Exception
+    {
+        // Setup test fixture.
+        final Element vCard = DocumentHelper.createElement(DocumentHelper.createQName("vCard", DocumentHelper.createNamespace("", "vcard-temp")));
+        final VCardProvider provider = mock(VCardProvider.class, CALLS_REAL_METHODS);
+        doReturn(vCard).when(provider).loadVCard("jane");
+        doReturn(null).when(provider).loadVCard("jill");
+
+        // Execute system under test.
+        final Map<String, Element> result = provider.loadVCards(List.of("jane", "jill"));
+
+        // Verify results.
+        assertEquals(Map.of("jane", vCard), result);
+    }
+
+    /**
+     * Verifies that the default implementation does not load any vCards when no users are provided.
+     */
+    @Test
+    public void testLoadVCardsOfNoUsers() throws Exception
+    {
+        // Setup test fixture.
+        final VCardProvider provider = mock(VCardProvider.class, CALLS_REAL_METHODS);
+
+        // Execute system under test.
+        final Map<String, Element> result = provider.loadVCards(List.of());
+
+        // Verify results.
+        assertTrue(result.isEmpty());
+        verify(provider, never()).loadVCard(anyString());
+    }
+}
@@ -679,5 +679,62 @@ public class SystemPropertyTest {
         assertThat(JiveGlobals.getProperty(key), is("TEST_2"));
     }
 
+    @Test
+    public void willCacheTheValueUntilThePropertyChanges() {
+
+        final String key = "a-cached-property";
+
+        final SystemProperty<Duration> property = SystemProperty.Builder.ofType(Duration.class)
+            .setKey(key)
+            .setDefaultValue(Duration.ofSeconds(1))
+            .setChronoUnit(ChronoUnit.MILLIS)
+            .setDynamic(true)
+            .build();
 
+        final Duration first = property.getValue();
+        assertThat(property.getValue() == first, is(true));
+        JiveGlobals.setProperty(key, "2000");
+        assertThat(property.getValue(), is(Duration.ofSeconds(2)));
+        JiveGlobals.deleteProperty(key);
+        assertThat(property.getValue(), is(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void willRecomputeTheCachedValueAfterAllPropertiesWereReloaded() {
+
+        final String key = "a-reloaded-cached-property";
+
+        final SystemProperty<Duration> property = SystemProperty.Builder.ofType(Duration.class)
+            .setKey(key)
+            .setDefaultValue(Duration.ofSeconds(1))
+            .setChronoUnit(ChronoUnit.MILLIS)
+            .setDynamic(true)
+            .build();
+
+        JiveGlobals.setProperty(key, "2000");
+        final Duration first = property.getValue();
+        assertThat(property.getValue() == first, is(true));
+        SystemProperty.invalidateCachedValues();
+        final Duration second = property.getValue();
+        assertThat(second == first, is(false));
+        assertThat(second, is(Duration.ofSeconds(2)));
+        assertThat(property.getValue() == second, is(true));
+    }
+
+    @Test
+    public void willNotCacheTheValueOfACollection() {
+
+        final String key = "an-uncached-list-property";
+
+        final SystemProperty<List<Long>> property = SystemProperty.Builder.ofType(List.class)
+            .setKey(key)
+            .setDefaultValue(Collections.emptyList())
+            .setDynamic(true)
+            .buildList(Long.class);
+
+        JiveGlobals.setProperty(key, "1,2");
+        final List<Long> first = property.getValue();
+        first.add(3L);
+        assertThat(property.getValue(), is(Arrays.asList(1L, 2L)));
+    }
 }
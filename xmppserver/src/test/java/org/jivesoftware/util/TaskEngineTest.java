@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 Ignite Realtime Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jivesoftware.util;
+
+import org.jivesoftware.Fixtures;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests that verify the implementation of {@link TaskEngine}.
+ */
+public class TaskEngineTest
+{
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        Fixtures.reconfigureOpenfireHome();
+        Fixtures.disableDatabasePersistence();
+    }
+
+    /**
+     * Verifies that a task that is scheduled for repeated execution is executed more than once.
+     */
+    @Test
+    public void testRepeatedTaskIsRepeated() throws Exception
+    {
+        // Setup test fixture.
+        final AtomicInteger runs = new AtomicInteger();
+        final TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        // Execute system under test.
+        TaskEngine.getInstance().schedule(task, Duration.ZERO, Duration.ofMillis(10));
+        try {
+            // Verify results.
+            await().until(() -> runs.get() >= 3);
+        } finally {
+            TaskEngine.getInstance().cancelScheduledTask(task);
+        }
+    }
+
+    /**
+     * Verifies that a task that is scheduled for repeated execution keeps being executed after it throws an exception.
+     */
+    @Test
+    public void testThrowingTaskIsRepeated() throws Exception
+    {
+        // Setup test fixture.
+        final AtomicInteger runs = new AtomicInteger();
+        final TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                throw new IllegalStateException("This task always fails.");
+            }
+        };
+
+        // Execute system under test.
+        TaskEngine.getInstance().scheduleAtFixedRate(task, Duration.ZERO, Duration.ofMillis(10));
+        try {
+            // Verify results.
+            await().until(() -> runs.get() >= 3);
+        } finally {
+            TaskEngine.getInstance().cancelScheduledTask(task);
+        }
+    }
+
+    /**
+     * Verifies that a cancelled task is not executed, and that it is removed from the queue of scheduled tasks
+     * immediately, instead of when it would have been due.
+     */
+    @Test
+    public void testCancelledTaskIsRemovedFromQueue() throws Exception
+    {
+        // Setup test fixture.
+        final AtomicInteger runs = new AtomicInteger();
+        final List<TimerTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tasks.add(new TimerTask() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            });
+        }
+        for (final TimerTask task : tasks) {
+            TaskEngine.getInstance().schedule(task, Duration.ofHours(1));
+        }
+        final int scheduled = TaskEngine.getInstance().getScheduledTaskCount();
+
+        // Execute system under test.
+        for (final TimerTask task : tasks) {
+            TaskEngine.getInstance().cancelScheduledTask(task);
+        }
+
+        // Verify results.
+        assertTrue(scheduled >= tasks.size());
+        await().until(() -> TaskEngine.getInstance().getScheduledTaskCount() <= scheduled - tasks.size());
+        assertEquals(0, runs.get());
+    }
+}